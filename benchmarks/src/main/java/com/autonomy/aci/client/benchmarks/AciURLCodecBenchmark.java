@@ -0,0 +1,86 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.benchmarks;
+
+import com.autonomy.aci.client.util.AciURLCodec;
+import com.autonomy.aci.client.util.AciURLCodecException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks <code>AciURLCodec</code> encoding and decoding of typical parameter values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class AciURLCodecBenchmark {
+
+    /**
+     * <code>ascii</code> is a plain search, <code>reserved</code> a field text expression full of characters that need
+     * escaping, and <code>unicode</code> mostly multibyte text.
+     */
+    @Param({"ascii", "reserved", "unicode"})
+    public String text;
+
+    private final AciURLCodec codec = AciURLCodec.getInstance();
+
+    private String decoded;
+
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        switch (text) {
+            case "ascii":
+                decoded = "the quick brown fox jumps over the lazy dog";
+                break;
+            case "reserved":
+                decoded = "MATCH{cats,dogs}:CATEGORY AND (RANGE{.,01/01/2020}:DATE OR EXISTS{}:\"DRE TITLE\") & 100%";
+                break;
+            case "unicode":
+                decoded = "Größenwahn café naïve 東京都 Ελληνικά русский язык";
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown text: " + text);
+        }
+
+        encoded = codec.encode(decoded);
+    }
+
+    @Benchmark
+    public String encode() {
+        return codec.encode(decoded);
+    }
+
+    @Benchmark
+    public String decode() throws AciURLCodecException {
+        return codec.decode(encoded);
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.benchmarks;
+
+import com.autonomy.aci.client.util.ActionParameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building, updating and reading <code>ActionParameters</code>, as done for every request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ActionParametersBenchmark {
+
+    /**
+     * The number of parameters besides the action...
+     */
+    @Param({"4", "16", "64"})
+    public int parameterCount;
+
+    private String[] names;
+
+    private String[] values;
+
+    private ActionParameters parameters;
+
+    @Setup
+    public void setup() {
+        names = new String[parameterCount];
+        values = new String[parameterCount];
+
+        for (int ii = 0; ii < parameterCount; ii++) {
+            names[ii] = "Parameter" + ii;
+            values[ii] = "value " + ii;
+        }
+
+        parameters = build();
+    }
+
+    @Benchmark
+    public ActionParameters build() {
+        final ActionParameters built = new ActionParameters("Query");
+        for (int ii = 0; ii < parameterCount; ii++) {
+            built.add(names[ii], values[ii]);
+        }
+        return built;
+    }
+
+    /**
+     * Replaces the last parameter, which is the worst case when looked up by name.
+     */
+    @Benchmark
+    public Object put() {
+        return parameters.put(names[parameterCount - 1], "new value");
+    }
+
+    /**
+     * Looks up the last parameter with a differently cased name.
+     */
+    @Benchmark
+    public Object get() {
+        return parameters.get("PARAMETER" + (parameterCount - 1));
+    }
+
+}
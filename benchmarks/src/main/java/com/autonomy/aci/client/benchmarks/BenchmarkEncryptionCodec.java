@@ -0,0 +1,37 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.benchmarks;
+
+import com.autonomy.aci.client.transport.impl.AbstractEncryptionCodec;
+
+/**
+ * An <code>EncryptionCodec</code> that deflates and encodes like a real one, but doesn't encrypt. This measures the cost
+ * of the encrypted response path in the API without that of any particular cipher.
+ */
+public class BenchmarkEncryptionCodec extends AbstractEncryptionCodec {
+
+    private static final long serialVersionUID = 6431089716587651740L;
+
+    @Override
+    protected byte[] encryptInternal(final byte[] bytes) {
+        return bytes;
+    }
+
+    @Override
+    protected byte[] decryptInternal(final byte[] bytes) {
+        return bytes;
+    }
+
+}
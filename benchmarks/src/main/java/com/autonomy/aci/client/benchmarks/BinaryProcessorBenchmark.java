@@ -0,0 +1,77 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.benchmarks;
+
+import com.autonomy.aci.client.services.impl.BinaryResponseProcessor;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.EncryptionCodecException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading binary responses, such as those from <code>View</code> or <code>GetContent</code> with
+ * <code>OutputType=Binary</code>, with the <code>BinaryResponseProcessor</code>, either unencrypted or through the
+ * decrypting response stream.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class BinaryProcessorBenchmark {
+
+    @Param({"10KB", "1MB", "10MB"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean encrypted;
+
+    private final BinaryResponseProcessor processor = new BinaryResponseProcessor();
+
+    private ResponseFactory responses;
+
+    @Setup
+    public void setup() throws EncryptionCodecException {
+        final byte[] content = Payloads.binary(Payloads.parseSize(size));
+
+        if (encrypted) {
+            final BenchmarkEncryptionCodec codec = new BenchmarkEncryptionCodec();
+            responses = new ResponseFactory(Payloads.encryptedBinary(content, codec), "image/jpeg", codec);
+        } else {
+            responses = new ResponseFactory(content, "image/jpeg");
+        }
+    }
+
+    @Benchmark
+    public byte[] binary() throws IOException {
+        try (final AciResponseInputStream response = responses.open()) {
+            return processor.process(response);
+        }
+    }
+
+}
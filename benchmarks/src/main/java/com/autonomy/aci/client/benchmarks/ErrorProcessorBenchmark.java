@@ -0,0 +1,83 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.benchmarks;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.impl.BinaryResponseProcessor;
+import com.autonomy.aci.client.services.impl.ErrorProcessor;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the error path, where an ACI server returns an error response: parsing it directly with the
+ * <code>ErrorProcessor</code>, and having it thrown from a <code>BinaryResponseProcessor</code> and a typical
+ * <code>AbstractStAXProcessor</code>, which is what an application actually sees.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorProcessorBenchmark {
+
+    private final ErrorProcessor errorProcessor = new ErrorProcessor();
+
+    private final BinaryResponseProcessor binaryResponseProcessor = new BinaryResponseProcessor();
+
+    private final HitProcessor hitProcessor = new HitProcessor();
+
+    private final ResponseFactory responses = new ResponseFactory(Payloads.error(), "text/xml");
+
+    @Benchmark
+    public AciErrorException errorProcessor() throws IOException {
+        try (final AciResponseInputStream response = responses.open()) {
+            return errorProcessor.process(response);
+        } catch (final AciErrorException e) {
+            // Processing an error response throws what it would have returned...
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object binaryResponseProcessor() throws IOException {
+        try (final AciResponseInputStream response = responses.open()) {
+            return binaryResponseProcessor.process(response);
+        } catch (final AciErrorException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object stax() throws IOException {
+        try (final AciResponseInputStream response = responses.open()) {
+            return hitProcessor.process(response);
+        } catch (final AciErrorException e) {
+            return e;
+        }
+    }
+
+}
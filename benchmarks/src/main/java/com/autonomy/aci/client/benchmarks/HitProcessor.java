@@ -0,0 +1,100 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.benchmarks;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.services.impl.AbstractStAXProcessor;
+import com.autonomy.aci.client.services.impl.ErrorProcessor;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A typical hand written <code>AbstractStAXProcessor</code>, that picks the reference, title and weight out of each
+ * hit in a <code>Query</code> response and skips everything else.
+ */
+public class HitProcessor extends AbstractStAXProcessor<List<HitProcessor.Hit>> {
+
+    private static final long serialVersionUID = -3870410546223164455L;
+
+    public HitProcessor() {
+        setErrorProcessor(new ErrorProcessor());
+    }
+
+    @Override
+    public List<Hit> process(final XMLStreamReader aciResponse) throws AciErrorException, ProcessorException {
+        try {
+            if (isErrorResponse(aciResponse)) {
+                processErrorResponse(aciResponse);
+            }
+
+            final List<Hit> hits = new ArrayList<>();
+            Hit hit = null;
+
+            while (aciResponse.hasNext()) {
+                if (aciResponse.next() != XMLEvent.START_ELEMENT) {
+                    continue;
+                }
+
+                final String name = aciResponse.getLocalName();
+                if ("autn:hit".equals(name)) {
+                    hit = new Hit();
+                    hits.add(hit);
+                } else if (hit != null) {
+                    if ("autn:reference".equals(name)) {
+                        hit.reference = aciResponse.getElementText();
+                    } else if ("autn:title".equals(name)) {
+                        hit.title = aciResponse.getElementText();
+                    } else if ("autn:weight".equals(name)) {
+                        hit.weight = Double.parseDouble(aciResponse.getElementText());
+                    }
+                }
+            }
+
+            return hits;
+        } catch (final XMLStreamException xmlse) {
+            throw new ProcessorException("Unable to parse the query response.", xmlse);
+        }
+    }
+
+    /**
+     * The interesting parts of a hit.
+     */
+    public static class Hit {
+
+        String reference;
+
+        String title;
+
+        double weight;
+
+        public String getReference() {
+            return reference;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.benchmarks;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.services.impl.AbstractJsonProcessor;
+import com.autonomy.aci.client.util.JsonTokenizer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The <code>simplejson</code> equivalent of {@link HitProcessor}, that picks the reference, title and weight out of
+ * each hit in a <code>Query</code> response and skips everything else.
+ */
+public class JsonHitProcessor extends AbstractJsonProcessor<List<HitProcessor.Hit>> {
+
+    private static final long serialVersionUID = 4105127356316542331L;
+
+    @Override
+    public List<HitProcessor.Hit> process(final JsonTokenizer aciResponse) throws AciErrorException, ProcessorException {
+        try {
+            if (isErrorResponse(aciResponse)) {
+                processErrorResponse(aciResponse);
+            }
+
+            final List<HitProcessor.Hit> hits = new ArrayList<>();
+            forwardToNamedField("autn:hit", aciResponse);
+            aciResponse.next();
+            final int arrayDepth = aciResponse.getDepth();
+
+            while (aciResponse.next() == JsonTokenizer.Token.START_OBJECT) {
+                final HitProcessor.Hit hit = new HitProcessor.Hit();
+                hits.add(hit);
+
+                while (aciResponse.next() == JsonTokenizer.Token.FIELD_NAME) {
+                    if (aciResponse.textEquals("autn:reference")) {
+                        aciResponse.next();
+                        hit.reference = aciResponse.getText();
+                    } else if (aciResponse.textEquals("autn:title")) {
+                        aciResponse.next();
+                        hit.title = aciResponse.getText();
+                    } else if (aciResponse.textEquals("autn:weight")) {
+                        aciResponse.next();
+                        hit.weight = aciResponse.getDoubleValue();
+                    } else {
+                        aciResponse.next();
+                        aciResponse.skipValue();
+                    }
+                }
+            }
+
+            if (aciResponse.getDepth() != arrayDepth - 1) {
+                throw new IOException("Expected the end of the hits.");
+            }
+            return hits;
+        } catch (final IOException ioe) {
+            throw new ProcessorException("Unable to parse the query response.", ioe);
+        }
+    }
+
+}
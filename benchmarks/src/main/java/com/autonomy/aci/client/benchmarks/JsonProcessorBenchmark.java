@@ -0,0 +1,83 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.benchmarks;
+
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares picking the same fields out of the same <code>Query</code> hits requested as XML, with a typical
+ * <code>AbstractStAXProcessor</code>, and as <code>ResponseFormat=simplejson</code>, with the equivalent
+ * <code>AbstractJsonProcessor</code>. The sizes of the two responses are printed in the setup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class JsonProcessorBenchmark {
+
+    /**
+     * The approximate size of the XML query response data...
+     */
+    @Param({"100KB", "1MB", "10MB"})
+    public String payload;
+
+    private final HitProcessor hitProcessor = new HitProcessor();
+
+    private final JsonHitProcessor jsonHitProcessor = new JsonHitProcessor();
+
+    private ResponseFactory xmlResponses;
+
+    private ResponseFactory jsonResponses;
+
+    @Setup
+    public void setup() {
+        final int size = Payloads.parseSize(payload);
+        final byte[] xml = Payloads.response("QUERY", Payloads.queryData(size));
+        final byte[] json = Payloads.queryJsonResponse(size);
+        xmlResponses = new ResponseFactory(xml, "text/xml");
+        jsonResponses = new ResponseFactory(json, "application/json; charset=UTF-8");
+    }
+
+    @Benchmark
+    public List<HitProcessor.Hit> stax() throws IOException {
+        try (final AciResponseInputStream response = xmlResponses.open()) {
+            return hitProcessor.process(response);
+        }
+    }
+
+    @Benchmark
+    public List<HitProcessor.Hit> json() throws IOException {
+        try (final AciResponseInputStream response = jsonResponses.open()) {
+            return jsonHitProcessor.process(response);
+        }
+    }
+
+}
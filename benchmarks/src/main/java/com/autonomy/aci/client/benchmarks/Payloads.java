@@ -0,0 +1,228 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.benchmarks;
+
+import com.autonomy.aci.client.transport.EncryptionCodec;
+import com.autonomy.aci.client.transport.EncryptionCodecException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generates ACI responses shaped like those from IDOL, so that benchmarks don't depend on a server or large recorded
+ * files. The same arguments always generate the same response.
+ */
+public final class Payloads {
+
+    /**
+     * How much of the response data IDOL puts in each encrypted block...
+     */
+    private static final int ENCRYPTED_BLOCK_SIZE = 64 * 1024;
+
+    private static final String[] WORDS = {
+            "autonomy", "idol", "content", "server", "query", "retrieval", "document", "index", "field", "search",
+            "knowledge", "enterprise", "concept", "cluster", "category", "relevance", "weight", "language", "english",
+            "information", "the", "of", "and", "a", "to", "in", "is", "that", "for", "on", "with", "as", "café", "naïve"
+    };
+
+    private Payloads() {
+        // Just static methods...
+    }
+
+    /**
+     * Parses a size like <code>100KB</code>, <code>10MB</code> or <code>512</code>.
+     * @param size The size
+     * @return The size in bytes
+     */
+    public static int parseSize(final String size) {
+        if (size.endsWith("MB")) {
+            return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024 * 1024;
+        }
+        if (size.endsWith("KB")) {
+            return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024;
+        }
+        return Integer.parseInt(size);
+    }
+
+    /**
+     * @return The <code>responsedata</code> of a typical <code>GetVersion</code> response
+     */
+    public static String getVersionData() {
+        return "<autn:version>24.4.0</autn:version><autn:build>2024-09-01</autn:build>"
+                + "<autn:commit>8c1c9d7a</autn:commit><autn:productname>IDOL Server</autn:productname>"
+                + "<autn:producttypecsv>AXE,DAH,DIH,IDOLSERVER</autn:producttypecsv><autn:aciencryption>false</autn:aciencryption>"
+                + "<autn:licensedaciport>9000</autn:licensedaciport>";
+    }
+
+    /**
+     * Generates the <code>responsedata</code> of a <code>Query</code> response with <code>print=all</code>, with as
+     * many hits as it takes to reach the given size.
+     * @param targetBytes The approximate size of the data in bytes
+     * @return The response data
+     */
+    public static String queryData(final int targetBytes) {
+        final Random random = new Random(targetBytes);
+        final StringBuilder hitData = new StringBuilder(targetBytes + 4096);
+
+        int hits = 0;
+        while (hitData.length() < targetBytes) {
+            hits++;
+            hitData.append("<autn:hit><autn:reference>http://example.com/documents/").append(hits).append(".html</autn:reference>")
+                    .append("<autn:id>").append(hits).append("</autn:id>")
+                    .append("<autn:section>0</autn:section>")
+                    .append("<autn:weight>").append(100.0 - (hits % 10000) / 100.0).append("</autn:weight>")
+                    .append("<autn:links>").append(words(random, 2)).append("</autn:links>")
+                    .append("<autn:database>News</autn:database>")
+                    .append("<autn:title>").append(words(random, 8)).append("</autn:title>")
+                    .append("<autn:content><DOCUMENT>")
+                    .append("<DREREFERENCE>http://example.com/documents/").append(hits).append(".html</DREREFERENCE>")
+                    .append("<AUTHOR>").append(words(random, 2)).append("</AUTHOR>")
+                    .append("<CATEGORY>").append(words(random, 1)).append("</CATEGORY>")
+                    .append("<CATEGORY>").append(words(random, 1)).append("</CATEGORY>")
+                    .append("<DREDATE>").append(1500000000 + hits).append("</DREDATE>")
+                    .append("<DRECONTENT>").append(words(random, 150)).append(" &amp; ").append(words(random, 50)).append("</DRECONTENT>")
+                    .append("</DOCUMENT></autn:content></autn:hit>");
+        }
+
+        return "<autn:numhits>" + hits + "</autn:numhits><autn:totalhits>1000000</autn:totalhits>" + hitData;
+    }
+
+    /**
+     * Generates a <code>Query</code> response requested with <code>ResponseFormat=simplejson</code>, with the same hits
+     * as the response data from {@link #queryData(int)} with the same size.
+     * @param targetBytes The approximate size of the equivalent XML response data in bytes
+     * @return The response
+     */
+    public static byte[] queryJsonResponse(final int targetBytes) {
+        final int hits = queryData(targetBytes).split("<autn:hit>", -1).length - 1;
+        final Random random = new Random(targetBytes);
+        final StringBuilder hitData = new StringBuilder(targetBytes);
+
+        for (int hit = 1; hit <= hits; hit++) {
+            hitData.append((hit == 1) ? "" : ",")
+                    .append("{\"autn:reference\":\"http://example.com/documents/").append(hit).append(".html\"")
+                    .append(",\"autn:id\":").append(hit)
+                    .append(",\"autn:section\":0")
+                    .append(",\"autn:weight\":").append(100.0 - (hit % 10000) / 100.0)
+                    .append(",\"autn:links\":\"").append(words(random, 2)).append('"')
+                    .append(",\"autn:database\":\"News\"")
+                    .append(",\"autn:title\":\"").append(words(random, 8)).append('"')
+                    .append(",\"autn:content\":{\"DOCUMENT\":{")
+                    .append("\"DREREFERENCE\":\"http://example.com/documents/").append(hit).append(".html\"")
+                    .append(",\"AUTHOR\":\"").append(words(random, 2)).append('"')
+                    .append(",\"CATEGORY\":[\"").append(words(random, 1)).append("\",\"").append(words(random, 1)).append("\"]")
+                    .append(",\"DREDATE\":\"").append(1500000000 + hit).append('"')
+                    .append(",\"DRECONTENT\":\"").append(words(random, 150)).append(" & ").append(words(random, 50)).append('"')
+                    .append("}}}");
+        }
+
+        return ("{\"autnresponse\":{\"action\":\"QUERY\",\"response\":\"SUCCESS\",\"responsedata\":{\"autn:numhits\":" + hits
+                + ",\"autn:totalhits\":1000000,\"autn:hit\":[" + hitData + "]}}}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String words(final Random random, final int count) {
+        final StringBuilder builder = new StringBuilder();
+        for (int ii = 0; ii < count; ii++) {
+            if (ii > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return A typical error response
+     */
+    public static byte[] error() {
+        return ("<?xml version='1.0' encoding='UTF-8' ?><autnresponse xmlns:autn='http://schemas.autonomy.com/aci/'>"
+                + "<action>QUERY</action><response>ERROR</response><responsedata><error>"
+                + "<errorid>AXEQUERY536</errorid><rawerrorid>0x218</rawerrorid>"
+                + "<errorstring>Invalid field text</errorstring><errordescription>The fieldtext expression could not be parsed</errordescription>"
+                + "<errorcode>ERRORFIELDTEXT</errorcode><errortime>01 Jan 24 12:00:00</errortime>"
+                + "</error></responsedata></autnresponse>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param size The size in bytes
+     * @return Random bytes, like an image
+     */
+    public static byte[] binary(final int size) {
+        final byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Wraps response data in a successful unencrypted response.
+     * @param action The action name
+     * @param data   The response data
+     * @return The response
+     */
+    public static byte[] response(final String action, final String data) {
+        return ("<?xml version='1.0' encoding='UTF-8' ?><autnresponse xmlns:autn='http://schemas.autonomy.com/aci/'>"
+                + header(action) + "<responsedata>" + data + "</responsedata></autnresponse>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String header(final String action) {
+        return "<action>" + action + "</action><response>SUCCESS</response>";
+    }
+
+    /**
+     * Encrypts response data as IDOL would, with the header and the data in separately encrypted blocks.
+     * @param action The action name
+     * @param data   The response data
+     * @param codec  The codec to encrypt with
+     * @return The encrypted response, to be sent with an <code>AUTN-Content-Type</code> of <code>text/xml</code>
+     * @throws EncryptionCodecException If the codec fails
+     */
+    public static byte[] encryptedResponse(final String action, final String data, final EncryptionCodec codec) throws EncryptionCodecException {
+        final StringBuilder builder = new StringBuilder("<?xml version='1.0' encoding='UTF-8' ?><autnresponse xmlns:autn='http://schemas.autonomy.com/aci/'>");
+        builder.append("<autn:encryptedheader>").append(encrypt(header(action).getBytes(StandardCharsets.UTF_8), codec)).append("</autn:encryptedheader>");
+        builder.append("<responsedata>");
+        appendBlocks(builder, data.getBytes(StandardCharsets.UTF_8), codec);
+        builder.append("</responsedata></autnresponse>");
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encrypts binary content as IDOL would.
+     * @param content The content
+     * @param codec   The codec to encrypt with
+     * @return The encrypted response, to be sent with the <code>AUTN-Content-Type</code> of the content
+     * @throws EncryptionCodecException If the codec fails
+     */
+    public static byte[] encryptedBinary(final byte[] content, final EncryptionCodec codec) throws EncryptionCodecException {
+        final StringBuilder builder = new StringBuilder("<?xml version='1.0' encoding='UTF-8' ?><autnresponse xmlns:autn='http://schemas.autonomy.com/aci/'>");
+        builder.append("<responsedata>");
+        appendBlocks(builder, content, codec);
+        builder.append("</responsedata></autnresponse>");
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendBlocks(final StringBuilder builder, final byte[] content, final EncryptionCodec codec) throws EncryptionCodecException {
+        for (int offset = 0; offset < content.length; offset += ENCRYPTED_BLOCK_SIZE) {
+            final int length = Math.min(ENCRYPTED_BLOCK_SIZE, content.length - offset);
+            final byte[] block = new byte[length];
+            System.arraycopy(content, offset, block, 0, length);
+            builder.append("<autn:encrypteddata>").append(encrypt(block, codec)).append("</autn:encrypteddata>");
+        }
+    }
+
+    private static String encrypt(final byte[] bytes, final EncryptionCodec codec) throws EncryptionCodecException {
+        return new String(codec.encrypt(bytes), StandardCharsets.US_ASCII);
+    }
+
+}
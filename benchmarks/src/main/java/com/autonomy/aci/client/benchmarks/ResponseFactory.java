@@ -0,0 +1,86 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.benchmarks;
+
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import com.autonomy.aci.client.transport.impl.DecryptingAciResponseInputStreamImpl;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * Opens the same response as many times as needed, either as it would be read from an unencrypted server, or through
+ * <code>DecryptingAciResponseInputStreamImpl</code> as it would be read from an encrypted one.
+ */
+final class ResponseFactory {
+
+    private final byte[] content;
+
+    private final String contentType;
+
+    private final AciServerDetails serverDetails;
+
+    private final ClassicHttpResponse encryptedResponse;
+
+    /**
+     * Creates a factory for an unencrypted response.
+     * @param content     The response
+     * @param contentType Its content type
+     */
+    ResponseFactory(final byte[] content, final String contentType) {
+        this.content = content;
+        this.contentType = contentType;
+        this.serverDetails = null;
+        this.encryptedResponse = null;
+    }
+
+    /**
+     * Creates a factory for an encrypted response.
+     * @param encrypted   The encrypted response
+     * @param contentType The content type of the decrypted response
+     * @param codec       The codec that encrypted it
+     */
+    ResponseFactory(final byte[] encrypted, final String contentType, final BenchmarkEncryptionCodec codec) {
+        this.content = encrypted;
+        this.contentType = contentType;
+
+        serverDetails = new AciServerDetails("localhost", 9000);
+        serverDetails.setEncryptionCodec(codec);
+
+        // A ByteArrayEntity isn't streamed, so the response can be read again and again...
+        encryptedResponse = new BasicClassicHttpResponse(200);
+        encryptedResponse.setEntity(new ByteArrayEntity(encrypted, ContentType.TEXT_XML));
+        encryptedResponse.setHeader("AUTN-Content-Type", contentType);
+    }
+
+    AciResponseInputStream open() throws IOException {
+        return (encryptedResponse == null)
+                ? new ByteArrayAciResponseInputStream(content, 200, contentType, null, null)
+                : new DecryptingAciResponseInputStreamImpl(serverDetails, encryptedResponse);
+    }
+
+    /**
+     * @return The size of the response as sent
+     */
+    int size() {
+        return content.length;
+    }
+
+}
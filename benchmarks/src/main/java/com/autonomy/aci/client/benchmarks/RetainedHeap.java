@@ -0,0 +1,70 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.concurrent.Callable;
+
+/**
+ * Measures the heap retained by the result of a benchmark by comparing the heap used after a full GC with and without
+ * the result, so it's only approximate, but is good enough to tell a <code>Document</code> from a <code>byte[]</code>.
+ * Benchmarks report it once per iteration as the JMH secondary result <code>retainedBytes</code>.
+ */
+final class RetainedHeap {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private RetainedHeap() {
+        // Only static methods...
+    }
+
+    /**
+     * Measures the heap retained by the result of <code>operation</code>.
+     * @param operation Creates the result
+     * @return The approximate number of bytes retained by the result
+     * @throws Exception If <code>operation</code> fails
+     */
+    static long measure(final Callable<?> operation) throws Exception {
+        final long before = usedAfterGc();
+        final Object result = operation.call();
+        final long after = usedAfterGc();
+
+        // Keep the result reachable until after it's been measured...
+        Reference.reachabilityFence(result);
+
+        return Math.max(0L, after - before);
+    }
+
+    private static long usedAfterGc() throws InterruptedException {
+        long used = Long.MAX_VALUE;
+
+        // Collect until the heap stops shrinking, as a single System.gc() isn't always a full collection...
+        for (int ii = 0; ii < 5; ii++) {
+            System.gc();
+            Thread.sleep(20L);
+
+            final long now = MEMORY.getHeapMemoryUsage().getUsed();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+
+        return used;
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.benchmarks;
+
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the fixed, per-request cost of a <code>AbstractStAXProcessor</code> over a small
+ * <code>GetVersion</code>-sized response, where setting up the <code>XMLInputFactory</code> is a significant part of
+ * the work: either creating a new processor for every request, as many applications do, or sharing one processor
+ * between four threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StAXProcessorBenchmark {
+
+    private final HitProcessor sharedProcessor = new HitProcessor();
+
+    private final ResponseFactory responses = new ResponseFactory(Payloads.response("QUERY", Payloads.queryData(1024)), "text/xml");
+
+    @Benchmark
+    public List<HitProcessor.Hit> newProcessorPerRequest() throws IOException {
+        try (final AciResponseInputStream response = responses.open()) {
+            return new HitProcessor().process(response);
+        }
+    }
+
+    @Benchmark
+    public List<HitProcessor.Hit> sharedProcessor() throws IOException {
+        try (final AciResponseInputStream response = responses.open()) {
+            return sharedProcessor.process(response);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<HitProcessor.Hit> sharedProcessorFourThreads() throws IOException {
+        try (final AciResponseInputStream response = responses.open()) {
+            return sharedProcessor.process(response);
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.benchmarks;
+
+import com.autonomy.aci.client.services.impl.ByteArrayProcessor;
+import com.autonomy.aci.client.services.impl.CompactDocument;
+import com.autonomy.aci.client.services.impl.CompactDocumentProcessor;
+import com.autonomy.aci.client.services.impl.DocumentProcessor;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.EncryptionCodecException;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.w3c.dom.Document;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks processing successful XML responses, from a small <code>GetVersion</code> to a 50MB <code>Query</code>
+ * response, with the <code>DocumentProcessor</code>, <code>CompactDocumentProcessor</code>,
+ * <code>ByteArrayProcessor</code> and a typical <code>AbstractStAXProcessor</code>, each either unencrypted or through
+ * the decrypting response stream. Along with the throughput and the allocation rate from the GC profiler,
+ * <code>retainedBytes</code> is the approximate heap retained by each result.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class XmlProcessorBenchmark {
+
+    /**
+     * <code>getversion</code>, or the size of a query response...
+     */
+    @Param({"getversion", "100KB", "1MB", "10MB", "50MB"})
+    public String payload;
+
+    @Param({"false", "true"})
+    public boolean encrypted;
+
+    private final DocumentProcessor documentProcessor = new DocumentProcessor();
+
+    private final CompactDocumentProcessor compactDocumentProcessor = new CompactDocumentProcessor();
+
+    private final ByteArrayProcessor byteArrayProcessor = new ByteArrayProcessor();
+
+    private final HitProcessor hitProcessor = new HitProcessor();
+
+    private ResponseFactory responses;
+
+    @Setup
+    public void setup() throws EncryptionCodecException {
+        final boolean getVersion = "getversion".equals(payload);
+        final String action = getVersion ? "GETVERSION" : "QUERY";
+        final String data = getVersion ? Payloads.getVersionData() : Payloads.queryData(Payloads.parseSize(payload));
+
+        if (encrypted) {
+            final BenchmarkEncryptionCodec codec = new BenchmarkEncryptionCodec();
+            responses = new ResponseFactory(Payloads.encryptedResponse(action, data, codec), "text/xml", codec);
+        } else {
+            responses = new ResponseFactory(Payloads.response(action, data), "text/xml");
+        }
+    }
+
+    @Benchmark
+    public Document document(final Retained retained) throws IOException {
+        try (final AciResponseInputStream response = responses.open()) {
+            return documentProcessor.process(response);
+        }
+    }
+
+    @Benchmark
+    public CompactDocument compactDocument(final Retained retained) throws IOException {
+        try (final AciResponseInputStream response = responses.open()) {
+            return compactDocumentProcessor.process(response);
+        }
+    }
+
+    @Benchmark
+    public byte[] byteArray(final Retained retained) throws IOException {
+        try (final AciResponseInputStream response = responses.open()) {
+            return byteArrayProcessor.process(response);
+        }
+    }
+
+    @Benchmark
+    public List<HitProcessor.Hit> stax(final Retained retained) throws IOException {
+        try (final AciResponseInputStream response = responses.open()) {
+            return hitProcessor.process(response);
+        }
+    }
+
+    /**
+     * Reports the heap retained by the result of the current benchmark once per iteration.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Retained {
+
+        private long retainedBytes;
+
+        @Setup(Level.Iteration)
+        public void measure(final XmlProcessorBenchmark benchmark, final BenchmarkParams params) throws Exception {
+            final String name = params.getBenchmark();
+            final Callable<?> operation;
+
+            if (name.endsWith(".document")) {
+                operation = () -> benchmark.document(this);
+            } else if (name.endsWith(".compactDocument")) {
+                operation = () -> benchmark.compactDocument(this);
+            } else if (name.endsWith(".byteArray")) {
+                operation = () -> benchmark.byteArray(this);
+            } else {
+                operation = () -> benchmark.stax(this);
+            }
+
+            retainedBytes = RetainedHeap.measure(operation);
+        }
+
+        /**
+         * Reported through a method, as JMH resets counter fields after the iteration set up.
+         * @return The heap retained by a single result
+         */
+        public long retainedBytes() {
+            return retainedBytes;
+        }
+
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.impl;
+
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.EncryptionCodecException;
+import com.autonomy.aci.client.transport.InputStreamActionParameter;
+import com.autonomy.aci.client.util.ActionParameters;
+import com.autonomy.aci.client.util.PreparedAction;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.apache.hc.core5.net.URIBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks turning <code>ActionParameters</code> into GET, POST and multipart requests with
+ * <code>AciHttpClientImpl</code>, which orders, converts and encodes the parameters. This is in the same package as
+ * <code>AciHttpClientImpl</code> so that it can call <code>constructHttp5Request</code> directly, without sending
+ * anything. <code>uriBuilder</code> is the cost of building the same URI with <code>URIBuilder</code> alone, for
+ * comparison. <code>preparedGet</code> and <code>preparedPost</code> send the same parameters as a
+ * <code>PreparedAction</code> whose last parameter is the only variable one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class RequestConstructionBenchmark {
+
+    /**
+     * The number of parameters besides the action...
+     */
+    @Param({"4", "16", "64"})
+    public int parameterCount;
+
+    private final AciServerDetails serverDetails = new AciServerDetails("localhost", 9000);
+
+    private final AciHttpClientImpl getClient = new AciHttpClientImpl();
+
+    private final AciHttpClientImpl postClient = new AciHttpClientImpl();
+
+    private ActionParameters parameters;
+
+    private ActionParameters multipartParameters;
+
+    private List<NameValuePair> pairs;
+
+    private PreparedAction preparedAction;
+
+    private String variableValue;
+
+    @Setup
+    public void setup() {
+        postClient.setUsePostMethod(true);
+
+        parameters = new ActionParameters("Query");
+        pairs = new ArrayList<>();
+        pairs.add(new BasicNameValuePair("Action", "Query"));
+
+        for (int ii = 0; ii < parameterCount; ii++) {
+            final String name = "Parameter" + ii;
+            final String value = "some value & " + ii + " more=text";
+            parameters.add(name, value);
+            pairs.add(new BasicNameValuePair(name, value));
+        }
+
+        final ActionParameters staticParameters = new ActionParameters(parameters);
+        final String variableName = "Parameter" + (parameterCount - 1);
+        variableValue = (String) staticParameters.get(variableName);
+        staticParameters.remove(variableName);
+        preparedAction = new PreparedAction(staticParameters, variableName);
+
+        // Building the request doesn't read the file, so it can be reused...
+        multipartParameters = new ActionParameters(parameters);
+        multipartParameters.add(new InputStreamActionParameter("File", new ByteArrayInputStream(new byte[4096])));
+    }
+
+    @Benchmark
+    public HttpUriRequest get() throws EncryptionCodecException, URISyntaxException, UnsupportedEncodingException {
+        return getClient.constructHttp5Request(serverDetails, parameters);
+    }
+
+    @Benchmark
+    public HttpUriRequest post() throws EncryptionCodecException, URISyntaxException, UnsupportedEncodingException {
+        return postClient.constructHttp5Request(serverDetails, parameters);
+    }
+
+    @Benchmark
+    public HttpUriRequest multipart() throws EncryptionCodecException, URISyntaxException, UnsupportedEncodingException {
+        return getClient.constructHttp5Request(serverDetails, multipartParameters);
+    }
+
+    @Benchmark
+    public HttpUriRequest preparedGet() throws EncryptionCodecException, URISyntaxException, UnsupportedEncodingException {
+        return getClient.constructHttp5Request(serverDetails, preparedAction.bind(variableValue));
+    }
+
+    @Benchmark
+    public HttpUriRequest preparedPost() throws EncryptionCodecException, URISyntaxException, UnsupportedEncodingException {
+        return postClient.constructHttp5Request(serverDetails, preparedAction.bind(variableValue));
+    }
+
+    @Benchmark
+    public URI uriBuilder() throws URISyntaxException {
+        return new URIBuilder()
+                .setScheme("http")
+                .setHost(serverDetails.getHost())
+                .setPort(serverDetails.getPort())
+                .setPath("/")
+                .setParameters(pairs)
+                .build();
+    }
+
+}
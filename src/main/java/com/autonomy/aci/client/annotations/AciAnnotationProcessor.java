@@ -0,0 +1,567 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.annotations;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a StAX processor for each class annotated with {@link AciDocument}, so ACI responses can be bound to
+ * plain Java objects without any reflection. The generated processor extends
+ * {@link com.autonomy.aci.client.services.impl.AbstractStAXProcessor}, checks for an error response in the same way as
+ * hand-written processors, then binds each occurrence of the repeated element, returning a <code>List</code> of them.
+ * It also has a static <code>readElement</code> method, and an <code>ElementProcessor</code> for use with
+ * {@link com.autonomy.aci.client.services.impl.AciServiceImpl#executeStreamingAction}, that bind a single element.
+ * <p>
+ * The paths of the {@link AciField} annotations are compiled into a tree, which the generated code walks by switching
+ * on element names, skipping any elements that nothing is bound to. Primitive fields are parsed without boxing.
+ * <p>
+ * The processor isn't registered in the main jar, so it doesn't run in every build that uses this library. It's
+ * registered as a service in the jar with the <code>processor</code> classifier, so add that jar to the annotation
+ * processor path, e.g. with <code>javac -processorpath</code> or the <code>annotationProcessorPaths</code> of the
+ * <code>maven-compiler-plugin</code>. Alternatively, name it with <code>javac -processor</code>. Processors found on
+ * the class path aren't run by default from JDK 23, so use one of these even if the processor jar is a dependency.
+ */
+@SupportedAnnotationTypes("com.autonomy.aci.client.annotations.AciDocument")
+public class AciAnnotationProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (final Element element : roundEnv.getElementsAnnotatedWith(AciDocument.class)) {
+            final TypeElement type = (TypeElement) element;
+            final Node root = buildTree(type);
+
+            if (root != null) {
+                try {
+                    generate(type, root);
+                } catch (final IOException ioe) {
+                    error(type, "Unable to write the processor for " + type.getQualifiedName() + ": " + ioe.getMessage());
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks that <code>type</code> can be bound to, and builds the tree of the paths of its fields.
+     * @return The root of the tree, or <code>null</code> if there were errors
+     */
+    private Node buildTree(final TypeElement type) {
+        boolean valid = true;
+
+        if ((type.getKind() != ElementKind.CLASS) || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@AciDocument can only be used on classes that aren't abstract");
+            valid = false;
+        }
+        if (type.getModifiers().contains(Modifier.PRIVATE)
+                || ((type.getNestingKind() == NestingKind.MEMBER) && !type.getModifiers().contains(Modifier.STATIC))) {
+            error(type, "@AciDocument classes can't be private, and if they're nested they must be static");
+            valid = false;
+        }
+        if (!hasNoArgsConstructor(type)) {
+            error(type, "@AciDocument classes must have a constructor with no arguments that isn't private");
+            valid = false;
+        }
+
+        final Node root = new Node(0, null, null);
+        final List<Node> nodes = new ArrayList<>();
+        nodes.add(root);
+
+        for (final VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            final AciField annotation = field.getAnnotation(AciField.class);
+            if (annotation != null) {
+                valid &= addField(root, nodes, field, annotation.value());
+            }
+        }
+
+        return valid ? root : null;
+    }
+
+    private boolean hasNoArgsConstructor(final TypeElement type) {
+        for (final ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean addField(final Node root, final List<Node> nodes, final VariableElement field, final String path) {
+        final Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC)) {
+            error(field, "@AciField fields can't be private, final or static");
+            return false;
+        }
+
+        final Binding binding = Binding.of(field.asType(), processingEnv.getElementUtils().getTypeElement("java.util.List"), processingEnv);
+        if (binding == null) {
+            error(field, "@AciField fields must be a String, a primitive other than char or its wrapper, or a List of String or a wrapper");
+            return false;
+        }
+
+        Node node = root;
+        for (final String name : path.split("/", -1)) {
+            if (name.isEmpty() || (name.charAt(0) == '@')) {
+                error(field, "@AciField path \"" + path + "\" must be element names separated by /");
+                return false;
+            }
+            if (node.field != null) {
+                error(field, "@AciField path \"" + path + "\" goes through the element that " + node.field.getSimpleName() + " is bound to");
+                return false;
+            }
+
+            Node child = node.children.get(name);
+            if (child == null) {
+                child = new Node(nodes.size(), name, node);
+                nodes.add(child);
+                node.children.put(name, child);
+            }
+            node = child;
+        }
+
+        if ((node.field != null) || !node.children.isEmpty()) {
+            error(field, "@AciField path \"" + path + "\" is already bound to, or goes through an element that is");
+            return false;
+        }
+
+        node.field = field;
+        node.binding = binding;
+        return true;
+    }
+
+    private void generate(final TypeElement type, final Node root) throws IOException {
+        final PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        final String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        final String typeName = type.getQualifiedName().toString();
+        final String processorName = processorName(type);
+        final String elementName = type.getAnnotation(AciDocument.class).value();
+
+        final List<Node> nodes = new ArrayList<>();
+        collect(root, nodes);
+        nodes.sort((one, two) -> Integer.compare(one.id, two.id));
+
+        final StringBuilder parents = new StringBuilder();
+        for (final Node node : nodes) {
+            parents.append(parents.length() == 0 ? "" : ", ").append((node.parent == null) ? 0 : node.parent.id);
+        }
+
+        final SourceWriter out = new SourceWriter();
+        if (!packageName.isEmpty()) {
+            out.line("package " + packageName + ';').line();
+        }
+        out.line("/**")
+                .line(" * Binds each <code>" + escape(elementName) + "</code> element of an ACI response to a {@link " + typeName + "}.")
+                .line(" */")
+                .line("@javax.annotation.processing.Generated(\"" + AciAnnotationProcessor.class.getName() + "\")")
+                .open("public final class " + processorName + " extends com.autonomy.aci.client.services.impl.AbstractStAXProcessor<java.util.List<" + typeName + ">>")
+                .line()
+                .line("private static final long serialVersionUID = 1L;")
+                .line()
+                .line("/**")
+                .line(" * The name of the element that each {@link " + typeName + "} is bound from.")
+                .line(" */")
+                .line("public static final String ELEMENT_NAME = " + literal(elementName) + ';')
+                .line()
+                .line("/**")
+                .line(" * The parent of each state, where each state is an element that has fields bound to it or below it.")
+                .line(" */")
+                .line("private static final int[] PARENTS = {" + parents + "};")
+                .line()
+                .line("@Override")
+                .open("public java.util.List<" + typeName + "> process(final javax.xml.stream.XMLStreamReader xmlStreamReader)")
+                .open("try")
+                .open("if (isErrorResponse(xmlStreamReader))")
+                .open("if (getErrorProcessor() == null)")
+                .line("setErrorProcessor(new com.autonomy.aci.client.services.impl.ErrorProcessor());")
+                .close()
+                .line("processErrorResponse(xmlStreamReader);")
+                .close()
+                .line()
+                .line("final java.util.List<" + typeName + "> results = new java.util.ArrayList<>();")
+                .open("while (xmlStreamReader.hasNext())")
+                .open("if ((xmlStreamReader.next() == javax.xml.stream.XMLStreamConstants.START_ELEMENT) && ELEMENT_NAME.equals(nameOf(xmlStreamReader)))")
+                .line("results.add(readElement(xmlStreamReader));")
+                .close()
+                .close()
+                .line("return results;")
+                .close("} catch (final javax.xml.stream.XMLStreamException | NumberFormatException e) {")
+                .indent()
+                .line("throw new com.autonomy.aci.client.services.ProcessorException(\"Unable to bind the ACI response to " + type.getSimpleName() + ".\", e);")
+                .close()
+                .close()
+                .line()
+                .line("/**")
+                .line(" * Binds a single element.")
+                .line(" * @param xmlStreamReader The response, positioned on the start of the element, which is left on its end")
+                .line(" * @return The bound element")
+                .line(" * @throws javax.xml.stream.XMLStreamException If there was an error reading the response")
+                .line(" * @throws NumberFormatException If the text of an element bound to a number isn't one")
+                .line(" */")
+                .open("public static " + typeName + " readElement(final javax.xml.stream.XMLStreamReader xmlStreamReader) throws javax.xml.stream.XMLStreamException")
+                .line("final " + typeName + " result = new " + typeName + "();")
+                .line("int state = 0;")
+                .line()
+                .open("while (true)")
+                .line("final int eventType = xmlStreamReader.next();")
+                .open("if (eventType == javax.xml.stream.XMLStreamConstants.END_ELEMENT)")
+                .open("if (state == 0)")
+                .line("return result;")
+                .close()
+                .line("state = PARENTS[state];")
+                .close("} else if (eventType == javax.xml.stream.XMLStreamConstants.START_ELEMENT) {")
+                .indent()
+                .open("switch (state)");
+
+        for (final Node node : nodes) {
+            if (node.children.isEmpty()) {
+                continue;
+            }
+
+            out.line("case " + node.id + ':').indent().open("switch (nameOf(xmlStreamReader))");
+            for (final Node child : node.children.values()) {
+                out.line("case " + literal(child.name) + ':').indent();
+                if (child.field == null) {
+                    out.line("state = " + child.id + ';');
+                } else {
+                    out.lines(child.binding.assign("result." + child.field.getSimpleName(), "xmlStreamReader.getElementText()"));
+                }
+                out.line("break;").outdent();
+            }
+            out.line("default:").indent().line("skipElement(xmlStreamReader);").line("break;").outdent()
+                    .close()
+                    .line("break;")
+                    .outdent();
+        }
+
+        out.line("default:").indent().line("skipElement(xmlStreamReader);").line("break;").outdent()
+                .close()
+                .close()
+                .close()
+                .close()
+                .line()
+                .line("/**")
+                .line(" * @return The name of the element the reader is on, with its prefix whether or not the reader is namespace aware")
+                .line(" */")
+                .open("private static String nameOf(final javax.xml.stream.XMLStreamReader xmlStreamReader)")
+                .line("final String prefix = xmlStreamReader.getPrefix();")
+                .line("return ((prefix == null) || prefix.isEmpty()) ? xmlStreamReader.getLocalName() : prefix + ':' + xmlStreamReader.getLocalName();")
+                .close()
+                .line()
+                .line("/**")
+                .line(" * Moves from the start of an element to its end, ignoring everything in it.")
+                .line(" */")
+                .open("private static void skipElement(final javax.xml.stream.XMLStreamReader xmlStreamReader) throws javax.xml.stream.XMLStreamException")
+                .line("int depth = 1;")
+                .open("while (depth > 0)")
+                .line("final int eventType = xmlStreamReader.next();")
+                .open("if (eventType == javax.xml.stream.XMLStreamConstants.START_ELEMENT)")
+                .line("depth++;")
+                .close("} else if (eventType == javax.xml.stream.XMLStreamConstants.END_ELEMENT) {")
+                .indent()
+                .line("depth--;")
+                .close()
+                .close()
+                .close()
+                .line()
+                .line("/**")
+                .line(" * Binds each element it's given, for use with {@link com.autonomy.aci.client.services.impl.AciServiceImpl#executeStreamingAction}.")
+                .line(" */")
+                .open("public static final class ElementProcessor extends com.autonomy.aci.client.services.impl.AbstractStAXProcessor<" + typeName + ">")
+                .line()
+                .line("private static final long serialVersionUID = 1L;")
+                .line()
+                .line("@Override")
+                .open("public " + typeName + " process(final javax.xml.stream.XMLStreamReader xmlStreamReader)")
+                .open("try")
+                .line("return readElement(xmlStreamReader);")
+                .close("} catch (final javax.xml.stream.XMLStreamException | NumberFormatException e) {")
+                .indent()
+                .line("throw new com.autonomy.aci.client.services.ProcessorException(\"Unable to bind the element to " + type.getSimpleName() + ".\", e);")
+                .close()
+                .close()
+                .line()
+                .close()
+                .line()
+                .close();
+
+        final String fileName = packageName.isEmpty() ? processorName : packageName + '.' + processorName;
+        try (final Writer writer = processingEnv.getFiler().createSourceFile(fileName, type).openWriter()) {
+            writer.write(out.toString());
+        }
+    }
+
+    /**
+     * @return The simple name of the processor for <code>type</code>, which for nested classes includes the names of
+     * the enclosing classes, e.g. <code>Outer_InnerProcessor</code>
+     */
+    private static String processorName(final TypeElement type) {
+        final StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+            name.insert(0, '_').insert(0, enclosing.getSimpleName());
+        }
+        return name.append("Processor").toString();
+    }
+
+    private static void collect(final Node node, final List<Node> nodes) {
+        nodes.add(node);
+        for (final Node child : node.children.values()) {
+            collect(child, nodes);
+        }
+    }
+
+    private static String literal(final String value) {
+        final StringBuilder literal = new StringBuilder("\"");
+        for (final char character : value.toCharArray()) {
+            if ((character == '"') || (character == '\\')) {
+                literal.append('\\').append(character);
+            } else if ((character < 0x20) || (character > 0x7E)) {
+                literal.append(String.format("\\u%04x", (int) character));
+            } else {
+                literal.append(character);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private static String escape(final String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("*/", "*&#47;");
+    }
+
+    private void error(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * An element in the tree of paths. Elements that fields are bound to are leaves, the others are states of the
+     * generated code.
+     */
+    private static final class Node {
+
+        private final int id;
+
+        private final String name;
+
+        private final Node parent;
+
+        private final Map<String, Node> children = new LinkedHashMap<>();
+
+        private VariableElement field;
+
+        private Binding binding;
+
+        private Node(final int id, final String name, final Node parent) {
+            this.id = id;
+            this.name = name;
+            this.parent = parent;
+        }
+
+    }
+
+    /**
+     * How the text of an element is converted to the type of a field.
+     */
+    private static final class Binding {
+
+        /**
+         * The expression that converts the text, with <code>%s</code> in place of the text.
+         */
+        private final String conversion;
+
+        private final boolean list;
+
+        private Binding(final String conversion, final boolean list) {
+            this.conversion = conversion;
+            this.list = list;
+        }
+
+        /**
+         * @return The binding for <code>type</code>, or <code>null</code> if it can't be bound to
+         */
+        private static Binding of(final TypeMirror type, final TypeElement listType, final ProcessingEnvironment processingEnv) {
+            if (type.getKind().isPrimitive()) {
+                final String conversion = primitive(type.getKind());
+                return (conversion == null) ? null : new Binding(conversion, false);
+            }
+            if (type.getKind() != TypeKind.DECLARED) {
+                return null;
+            }
+
+            final DeclaredType declared = (DeclaredType) type;
+            final TypeElement element = (TypeElement) declared.asElement();
+            if (element.equals(listType)) {
+                if (declared.getTypeArguments().size() != 1) {
+                    return null;
+                }
+                final TypeMirror argument = declared.getTypeArguments().get(0);
+                if (argument.getKind() != TypeKind.DECLARED) {
+                    return null;
+                }
+                final String conversion = declared(((TypeElement) processingEnv.getTypeUtils().asElement(argument)).getQualifiedName().toString());
+                return (conversion == null) ? null : new Binding(conversion, true);
+            }
+
+            final String conversion = declared(element.getQualifiedName().toString());
+            return (conversion == null) ? null : new Binding(conversion, false);
+        }
+
+        private static String primitive(final TypeKind kind) {
+            switch (kind) {
+                case BOOLEAN:
+                    return "Boolean.parseBoolean(%s.trim())";
+                case BYTE:
+                    return "Byte.parseByte(%s.trim())";
+                case SHORT:
+                    return "Short.parseShort(%s.trim())";
+                case INT:
+                    return "Integer.parseInt(%s.trim())";
+                case LONG:
+                    return "Long.parseLong(%s.trim())";
+                case FLOAT:
+                    return "Float.parseFloat(%s.trim())";
+                case DOUBLE:
+                    return "Double.parseDouble(%s.trim())";
+                default:
+                    return null;
+            }
+        }
+
+        private static String declared(final String name) {
+            switch (name) {
+                case "java.lang.String":
+                    return "%s";
+                case "java.lang.Boolean":
+                    return "Boolean.valueOf(Boolean.parseBoolean(%s.trim()))";
+                case "java.lang.Byte":
+                    return "Byte.valueOf(%s.trim())";
+                case "java.lang.Short":
+                    return "Short.valueOf(%s.trim())";
+                case "java.lang.Integer":
+                    return "Integer.valueOf(%s.trim())";
+                case "java.lang.Long":
+                    return "Long.valueOf(%s.trim())";
+                case "java.lang.Float":
+                    return "Float.valueOf(%s.trim())";
+                case "java.lang.Double":
+                    return "Double.valueOf(%s.trim())";
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * @return The statements that set or add to <code>target</code>
+         */
+        private String[] assign(final String target, final String text) {
+            final String value = String.format(conversion, text);
+            if (!list) {
+                return new String[]{target + " = " + value + ';'};
+            }
+            return new String[]{
+                    "if (" + target + " == null) {",
+                    "    " + target + " = new java.util.ArrayList<>();",
+                    "}",
+                    target + ".add(" + value + ");"
+            };
+        }
+
+    }
+
+    /**
+     * Builds indented source code.
+     */
+    private static final class SourceWriter {
+
+        private final StringBuilder source = new StringBuilder();
+
+        private int depth;
+
+        private SourceWriter line() {
+            source.append('\n');
+            return this;
+        }
+
+        private SourceWriter line(final String line) {
+            for (int ii = 0; ii < depth; ii++) {
+                source.append("    ");
+            }
+            source.append(line).append('\n');
+            return this;
+        }
+
+        private SourceWriter lines(final String... lines) {
+            for (final String line : lines) {
+                line(line);
+            }
+            return this;
+        }
+
+        private SourceWriter open(final String line) {
+            return line(line + " {").indent();
+        }
+
+        private SourceWriter close() {
+            return outdent().line("}");
+        }
+
+        private SourceWriter close(final String line) {
+            return outdent().line(line);
+        }
+
+        private SourceWriter indent() {
+            depth++;
+            return this;
+        }
+
+        private SourceWriter outdent() {
+            depth--;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return source.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class that each occurrence of a repeated element in an ACI response, e.g. the <code>autn:hit</code> elements
+ * in a <code>Query</code> response, is bound to. The {@link AciAnnotationProcessor} generates a StAX processor for
+ * the class, named after it with a <code>Processor</code> suffix, e.g. <code>HitProcessor</code> for a
+ * <code>Hit</code> class, that binds each element using the {@link AciField} annotations on the fields of the class:
+ * <pre>
+ *   &#064;AciDocument("autn:hit")
+ *   public class Hit {
+ *       &#064;AciField("autn:reference")
+ *       String reference;
+ *
+ *       &#064;AciField("autn:weight")
+ *       double weight;
+ *   }
+ *
+ *   final List&lt;Hit&gt; hits = aciService.executeAction(parameters, new HitProcessor());
+ * </pre>
+ * The class must have a constructor with no arguments that isn't <code>private</code>, and if it's a nested class
+ * it must be <code>static</code>.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface AciDocument {
+
+    /**
+     * @return The name of the repeated element, including its prefix, e.g. <code>autn:hit</code>
+     */
+    String value();
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds the text of an element to a field of an {@link AciDocument} class. The element is given by its path from the
+ * repeated element, with names separated by <code>/</code>, e.g. <code>autn:content/DOCUMENT/DRETITLE</code>.
+ * <p>
+ * The field can't be <code>private</code>, <code>final</code> or <code>static</code>, and must be a
+ * <code>String</code>, a primitive other than <code>char</code> or its wrapper, or a <code>List</code> of
+ * <code>String</code> or a wrapper, which every occurrence of the element is added to. Other fields keep the value of
+ * the last occurrence.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface AciField {
+
+    /**
+     * @return The path of the element from the repeated element
+     */
+    String value();
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.JsonProcessor;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.util.JsonTokenizer;
+import org.apache.commons.lang3.Validate;
+import org.apache.hc.core5.http.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Abstract <code>JsonProcessor</code> that should be extended by processors of ACI responses requested with
+ * <code>ResponseFormat=simplejson</code>. It's the JSON equivalent of {@link AbstractStAXProcessor}: it checks the
+ * content type of the response, creates a {@link JsonTokenizer} that reads the response in the character set it was
+ * sent in, and has methods to detect and process error responses.
+ * <p>
+ * In a <code>simplejson</code> response, the <code>autnresponse</code> object has <code>action</code>,
+ * <code>response</code> and <code>responsedata</code> fields, in that order, so {@link #isErrorResponse(JsonTokenizer)}
+ * only has to read the start of the response.
+ * @param <T> The type of object this processor will generate
+ */
+public abstract class AbstractJsonProcessor<T> implements JsonProcessor<T> {
+
+    private static final long serialVersionUID = -5337203318262838446L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractJsonProcessor.class);
+
+    /**
+     * The processor to use when processing error responses, if <code>null</code> a {@link JsonErrorProcessor} is used.
+     */
+    private JsonProcessor<AciErrorException> errorProcessor;
+
+    /**
+     * This method firstly checks that the content type of the response is JSON. If so, it converts the
+     * <code>AciResponseInputStream</code> into a <code>JsonTokenizer</code> and calls the {@link
+     * #process(JsonTokenizer)} method that should be implemented in a subclass to do all the work.
+     * @param aciResponseInputStream The ACI response to process
+     * @return An object of type <code>T</code>
+     * @throws AciErrorException  If the ACI response was an error response
+     * @throws ProcessorException If an error occurred during the processing of the IDOL response
+     */
+    @Override
+    public T process(final AciResponseInputStream aciResponseInputStream) {
+        LOGGER.trace("process() called...");
+
+        final String contentType = aciResponseInputStream.getContentType();
+        if (!isJson(contentType)) {
+            throw new ProcessorException("This processor is unable to process non-JSON ACI responses. The content type for this response is " + contentType);
+        }
+
+        // The response is closed by whoever opened it...
+        return process(new JsonTokenizer(new InputStreamReader(aciResponseInputStream, getCharset(contentType))));
+    }
+
+    /**
+     * @param contentType The content type of a response
+     * @return <code>true</code> if it's a JSON content type, e.g. <code>application/json</code>
+     */
+    static boolean isJson(final String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        final String lowerCase = contentType.toLowerCase(Locale.ROOT);
+        return lowerCase.startsWith("application/json") || lowerCase.startsWith("text/json");
+    }
+
+    /**
+     * @param contentType The content type of a response
+     * @return The character set of the response, which is UTF-8 unless the content type says otherwise
+     */
+    static Charset getCharset(final String contentType) {
+        try {
+            final Charset charset = ContentType.parse(contentType).getCharset();
+            return (charset == null) ? StandardCharsets.UTF_8 : charset;
+        } catch (final RuntimeException e) {
+            LOGGER.debug("Unable to get the charset from {}, so using UTF-8.", contentType, e);
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    /**
+     * Process the ACI response input into an object of type <code>T</code>.
+     * @param aciResponse The ACI response to process
+     * @return An object of type <code>T</code>
+     * @throws AciErrorException  If the ACI response was an error response
+     * @throws ProcessorException If an error occurred during the processing of the IDOL response
+     */
+    @Override
+    public abstract T process(final JsonTokenizer aciResponse);
+
+    /**
+     * Reads from the tokenizer and tries to determine if the ACI response contains an error or not. The tokenizer is
+     * left on the value of the <code>autnresponse.response</code> field.
+     * @param tokenizer The response to process
+     * @return <code>true</code> if the response contains an error, <code>false</code> otherwise
+     * @throws IOException If there was a problem reading the response, or it has no <code>response</code> field
+     */
+    protected boolean isErrorResponse(final JsonTokenizer tokenizer) throws IOException {
+        LOGGER.trace("isErrorResponse() called...");
+        return readErrorResponse(tokenizer);
+    }
+
+    /**
+     * As {@link #isErrorResponse(JsonTokenizer)}, for use by classes that aren't processors.
+     */
+    static boolean readErrorResponse(final JsonTokenizer tokenizer) throws IOException {
+        while (tokenizer.hasNext()) {
+            if ((tokenizer.next() == JsonTokenizer.Token.FIELD_NAME) && (tokenizer.getDepth() == 2) && tokenizer.textEquals("response")) {
+                tokenizer.next();
+                return "ERROR".equalsIgnoreCase(tokenizer.getText());
+            }
+        }
+
+        // Couldn't find an autnresponse.response field...
+        throw new IOException("Unable to find the autnresponse.response field.");
+    }
+
+    /**
+     * Process the remainder of the response with the configured error processor.
+     * @param tokenizer The response containing the error information
+     * @throws AciErrorException  Once the response has been parsed for all the error information it contains
+     * @throws ProcessorException If something went wrong while trying to process the error response
+     */
+    protected void processErrorResponse(final JsonTokenizer tokenizer) {
+        LOGGER.trace("processErrorResponse() called...");
+
+        // Process the error response and propagate the resulting exception...
+        ((errorProcessor == null) ? new JsonErrorProcessor() : errorProcessor).process(tokenizer);
+    }
+
+    /**
+     * Forwards through the response looking for a field with <code>fieldName</code>, at any depth.
+     * @param fieldName The name of the field to find
+     * @param tokenizer The response to forward through
+     * @throws IOException If there was an error reading the response, or no field with <code>fieldName</code> could be
+     *                     found
+     */
+    protected void forwardToNamedField(final String fieldName, final JsonTokenizer tokenizer) throws IOException {
+        Validate.notNull(fieldName, "The field name must not be null.");
+
+        while (tokenizer.hasNext()) {
+            if ((tokenizer.next() == JsonTokenizer.Token.FIELD_NAME) && tokenizer.textEquals(fieldName)) {
+                return;
+            }
+        }
+        throw new IOException("Unable to find a field called " + fieldName);
+    }
+
+    public JsonProcessor<AciErrorException> getErrorProcessor() {
+        return errorProcessor;
+    }
+
+    public void setErrorProcessor(final JsonProcessor<AciErrorException> errorProcessor) {
+        this.errorProcessor = errorProcessor;
+    }
+
+}
@@ -28,8 +28,6 @@ import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.XMLEvent;
-import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.util.Locale;
 
 /**
@@ -41,6 +39,9 @@ import java.util.Locale;
  * for this very reason). When a subclass is created, this class checks to see if any of the properties have been set
  * as system properties and if they have it sets the corresponding property to this value, these values can then be
  * overridden by using the appropriate setter method.
+ * <p>
+ * All processors share a single, pre-configured <code>XMLInputFactory</code> for each combination of these properties,
+ * so creating a processor per request is cheap, and a single processor can safely be used by many threads at once.
  */
 public abstract class AbstractStAXProcessor<T> implements StAXProcessor<T> {
 
@@ -48,11 +49,6 @@ public abstract class AbstractStAXProcessor<T> implements StAXProcessor<T> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractStAXProcessor.class);
 
-    /**
-     * Holds the factory for creating <code>XMLStreamReader</code>'s...
-     */
-    private transient XMLInputFactory xmlInputFactory;
-
     /**
      * Turns on/off implementation specific DTD validation.
      */
@@ -89,9 +85,7 @@ public abstract class AbstractStAXProcessor<T> implements StAXProcessor<T> {
     private StAXProcessor<AciErrorException> errorProcessor;
 
     /**
-     * This constructor gets a new {@link XMLInputFactory} instance that is reused every time
-     * {@link #process(com.autonomy.aci.client.transport.AciResponseInputStream)} is called, this
-     * should be faster than creating a new instance every time this method is called.
+     * This constructor reads the initial values of the {@link XMLInputFactory} properties.
      * <p>
      * The properties are set to the following defaults if they are not specified as system properties:
      * <table>
@@ -113,17 +107,15 @@ public abstract class AbstractStAXProcessor<T> implements StAXProcessor<T> {
         replacingEntityReferences = BooleanUtils.toBoolean(StringUtils.defaultString(System.getProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES), "true"));
         supportingExternalEntities = BooleanUtils.toBoolean(StringUtils.defaultString(System.getProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES), "false"));
         supportDtd = BooleanUtils.toBoolean(StringUtils.defaultString(System.getProperty(XMLInputFactory.SUPPORT_DTD), "true"));
-
-        // Create the XMLStreamReader factory...
-        xmlInputFactory = XMLInputFactory.newInstance();
     }
 
-    private void readObject(final ObjectInputStream inputStream) throws IOException, ClassNotFoundException {
-        // Read in all the serialized properties...
-        inputStream.defaultReadObject();
-
-        // Recreate the XMLStreamReader factory...
-        xmlInputFactory = XMLInputFactory.newInstance();
+    /**
+     * Gets the shared factory for the current values of the properties, as they might have changed since the last run.
+     * @return The factory to create the <code>XMLStreamReader</code> with
+     */
+    XMLInputFactory getXMLInputFactory() {
+        return XMLInputFactoryCache.getInstance().getXMLInputFactory(
+                namespaceAware, validating, coalescing, replacingEntityReferences, supportingExternalEntities, supportDtd);
     }
 
     /**
@@ -146,16 +138,8 @@ public abstract class AbstractStAXProcessor<T> implements StAXProcessor<T> {
         XMLStreamReader xmlStreamReader = null;
 
         try {
-            // Update the factory with the various properties as they might have changed since the last run...
-            xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, namespaceAware);
-            xmlInputFactory.setProperty(XMLInputFactory.IS_VALIDATING, validating);
-            xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, coalescing);
-            xmlInputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, replacingEntityReferences);
-            xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, supportingExternalEntities);
-            xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, supportDtd);
-
             // Convert the input stream..
-            xmlStreamReader = xmlInputFactory.createXMLStreamReader(aciResponseInputStream);
+            xmlStreamReader = getXMLInputFactory().createXMLStreamReader(aciResponseInputStream);
             return process(xmlStreamReader);
         } catch (final XMLStreamException xmlse) {
             throw new ProcessorException("Unable to convert the InputStream to a XMLStreamReader", xmlse);
@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Implementation of the <code>AciService</code> interface.
@@ -53,6 +54,16 @@ public class AciServiceImpl implements AciService {
      */
     private AciServerDetails aciServerDetails;
 
+    /**
+     * Holds value of property metricsListener.
+     */
+    private AciMetricsListener metricsListener;
+
+    /**
+     * Holds value of property errorSniffing.
+     */
+    private boolean errorSniffing;
+
     /**
      * Creates a new instance of AciServiceImpl.
      */
@@ -125,6 +136,11 @@ public class AciServiceImpl implements AciService {
         Validate.isTrue(parameters.contains(TEST_ACTION_PARAMETER), "The parameter set must contain an action=xxx parameter.");
         Validate.notNull(processor, "The processor must not be null.");
 
+        final AciMetricsListener listener = metricsListener;
+        if (listener != null) {
+            return executeAction(serverDetails, parameters, processor, listener);
+        }
+
         // This is so we can close the response and return the connection to the pool...
         AciResponseInputStream response = null;
 
@@ -133,7 +149,7 @@ public class AciServiceImpl implements AciService {
 
             // Execute the action and process the response...
             response = aciHttpClient.executeAction(serverDetails, parameters);
-            return processor.process(response);
+            return processor.process(checkForError(response));
         } catch (final AciHttpException ahe) {
             LOGGER.trace("AciHttpException caught while executing the ACI action");
             throw new AciServiceException(ahe);
@@ -149,6 +165,221 @@ public class AciServiceImpl implements AciService {
         }
     }
 
+    /**
+     * Executes an ACI action and lazily processes each occurrence of a repeated element in the response, such as the
+     * <code>autn:hit</code> elements of a <code>Query</code> response, as the returned stream is consumed. Unlike
+     * {@link #executeAction(Set, Processor)}, the response and its connection are held until the stream is closed, so
+     * the stream <strong>must</strong> be closed, ideally with try-with-resources.
+     * @param <T>              The type each element is processed into
+     * @param parameters       The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                         Action=&lt;command&gt;} parameter
+     * @param elementName      The name of the repeated element, e.g. <code>autn:hit</code>
+     * @param elementProcessor Processes each element, see {@link StAXElementIterator}
+     * @return A stream of the processed elements
+     * @throws AciServiceException If an error occurred during the communication with the ACI Server, or reading the
+     *                             start of the response
+     * @throws AciErrorException   If the response was an error response
+     * @see StAXElementIterator
+     */
+    public <T> Stream<T> executeStreamingAction(final Set<? extends ActionParameter<?>> parameters, final String elementName, final StAXProcessor<T> elementProcessor) {
+        LOGGER.trace("executeStreamingAction() called...");
+
+        // Execute and return the result...
+        return executeStreamingAction(aciServerDetails, parameters, elementName, elementProcessor);
+    }
+
+    /**
+     * Executes an ACI action and lazily processes each occurrence of a repeated element in the response as the
+     * returned stream is consumed. The stream <strong>must</strong> be closed.
+     * @param <T>              The type each element is processed into
+     * @param serverDetails    The connection details of the ACI Server to execute the action on
+     * @param parameters       The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                         Action=&lt;command&gt;} parameter
+     * @param elementName      The name of the repeated element, e.g. <code>autn:hit</code>
+     * @param elementProcessor Processes each element, see {@link StAXElementIterator}
+     * @return A stream of the processed elements
+     * @throws AciServiceException      If an error occurred during the communication with the ACI Server, or reading
+     *                                  the start of the response
+     * @throws AciErrorException        If the response was an error response
+     * @throws IllegalArgumentException If <code>serverDetails</code> is <code>null</code>, or the <code>parameters</code>
+     *                                  is <code>null</code>, empty or missing an action parameter. Will also be thrown if
+     *                                  the <code>elementName</code> or <code>elementProcessor</code> is null.
+     * @see StAXElementIterator
+     */
+    public <T> Stream<T> executeStreamingAction(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters, final String elementName, final StAXProcessor<T> elementProcessor) {
+        LOGGER.trace("executeStreamingAction() called...");
+
+        // Sanity check the HttpClient...
+        Validate.notNull(aciHttpClient, "An AciHttpClient implementation must be set before calling this method.");
+
+        // Sanity check the method parameters...
+        Validate.notNull(serverDetails, "ACI Server connection details must be set before calling this method.");
+        Validate.notEmpty(parameters, "The parameter set must not be null or empty.");
+        Validate.isTrue(parameters.contains(TEST_ACTION_PARAMETER), "The parameter set must contain an action=xxx parameter.");
+        Validate.notNull(elementName, "The element name must not be null.");
+        Validate.notNull(elementProcessor, "The element processor must not be null.");
+
+        try {
+            LOGGER.debug("Sending the ACI parameters and server details to the AciHttpClient...");
+
+            // The iterator owns the response from here on, and closes it if it can't be created...
+            final AciResponseInputStream response = aciHttpClient.executeAction(serverDetails, parameters);
+            return new StAXElementIterator<>(response, elementName, elementProcessor).stream();
+        } catch (final AciHttpException ahe) {
+            LOGGER.trace("AciHttpException caught while executing the ACI action");
+            throw new AciServiceException(ahe);
+        } catch (final IOException ioe) {
+            LOGGER.trace("IOException caught while executing the ACI action");
+            throw new AciServiceException(ioe);
+        } catch (final ProcessorException pe) {
+            LOGGER.trace("ProcessorException caught while parsing ACI response");
+            throw new AciServiceException(pe);
+        }
+    }
+
+    /**
+     * As {@link #executeStreamingAction(Set, String, StAXProcessor)}, for actions executed with
+     * <code>ResponseFormat=simplejson</code>. The stream <strong>must</strong> be closed.
+     * @param <T>              The type each value is processed into
+     * @param parameters       The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                         Action=&lt;command&gt;} parameter, and a {@code ResponseFormat=simplejson} parameter
+     * @param fieldName        The name of the repeated field, e.g. <code>autn:hit</code>
+     * @param elementProcessor Processes each value, see {@link JsonElementIterator}
+     * @return A stream of the processed values
+     * @throws AciServiceException If an error occurred during the communication with the ACI Server, or reading the
+     *                             start of the response
+     * @throws AciErrorException   If the response was an error response
+     * @see JsonElementIterator
+     */
+    public <T> Stream<T> executeStreamingAction(final Set<? extends ActionParameter<?>> parameters, final String fieldName, final JsonProcessor<T> elementProcessor) {
+        LOGGER.trace("executeStreamingAction() called...");
+
+        // Execute and return the result...
+        return executeStreamingAction(aciServerDetails, parameters, fieldName, elementProcessor);
+    }
+
+    /**
+     * As {@link #executeStreamingAction(AciServerDetails, Set, String, StAXProcessor)}, for actions executed with
+     * <code>ResponseFormat=simplejson</code>. The stream <strong>must</strong> be closed.
+     * @param <T>              The type each value is processed into
+     * @param serverDetails    The connection details of the ACI Server to execute the action on
+     * @param parameters       The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                         Action=&lt;command&gt;} parameter, and a {@code ResponseFormat=simplejson} parameter
+     * @param fieldName        The name of the repeated field, e.g. <code>autn:hit</code>
+     * @param elementProcessor Processes each value, see {@link JsonElementIterator}
+     * @return A stream of the processed values
+     * @throws AciServiceException      If an error occurred during the communication with the ACI Server, or reading
+     *                                  the start of the response
+     * @throws AciErrorException        If the response was an error response
+     * @throws IllegalArgumentException If <code>serverDetails</code> is <code>null</code>, or the <code>parameters</code>
+     *                                  is <code>null</code>, empty or missing an action parameter. Will also be thrown if
+     *                                  the <code>fieldName</code> or <code>elementProcessor</code> is null.
+     * @see JsonElementIterator
+     */
+    public <T> Stream<T> executeStreamingAction(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters, final String fieldName, final JsonProcessor<T> elementProcessor) {
+        LOGGER.trace("executeStreamingAction() called...");
+
+        // Sanity check the HttpClient...
+        Validate.notNull(aciHttpClient, "An AciHttpClient implementation must be set before calling this method.");
+
+        // Sanity check the method parameters...
+        Validate.notNull(serverDetails, "ACI Server connection details must be set before calling this method.");
+        Validate.notEmpty(parameters, "The parameter set must not be null or empty.");
+        Validate.isTrue(parameters.contains(TEST_ACTION_PARAMETER), "The parameter set must contain an action=xxx parameter.");
+        Validate.notNull(fieldName, "The field name must not be null.");
+        Validate.notNull(elementProcessor, "The element processor must not be null.");
+
+        try {
+            LOGGER.debug("Sending the ACI parameters and server details to the AciHttpClient...");
+
+            // The iterator owns the response from here on, and closes it if it can't be created...
+            final AciResponseInputStream response = aciHttpClient.executeAction(serverDetails, parameters);
+            return new JsonElementIterator<>(response, fieldName, elementProcessor).stream();
+        } catch (final AciHttpException ahe) {
+            LOGGER.trace("AciHttpException caught while executing the ACI action");
+            throw new AciServiceException(ahe);
+        } catch (final IOException ioe) {
+            LOGGER.trace("IOException caught while executing the ACI action");
+            throw new AciServiceException(ioe);
+        } catch (final ProcessorException pe) {
+            LOGGER.trace("ProcessorException caught while parsing ACI response");
+            throw new AciServiceException(pe);
+        }
+    }
+
+    /**
+     * As {@link #executeAction(AciServerDetails, Set, Processor)}, but timing the processing of the response and telling
+     * the <code>listener</code> how the execution ended.
+     */
+    private <T> T executeAction(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor, final AciMetricsListener listener) {
+        final String action = getActionName(parameters);
+        final long start = System.nanoTime();
+        long processing = 0L;
+        boolean processed = false;
+        AciMetricsListener.Outcome outcome = AciMetricsListener.Outcome.PROCESSOR_ERROR;
+
+        // This is so we can close the response and return the connection to the pool...
+        AciResponseInputStream response = null;
+
+        try {
+            LOGGER.debug("Sending the ACI parameters and server details to the AciHttpClient...");
+
+            // Execute the action and process the response...
+            response = aciHttpClient.executeAction(serverDetails, parameters);
+
+            processing = System.nanoTime();
+            processed = true;
+            final T result = processor.process(checkForError(response));
+            outcome = AciMetricsListener.Outcome.SUCCESS;
+            return result;
+        } catch (final AciHttpException ahe) {
+            LOGGER.trace("AciHttpException caught while executing the ACI action");
+            outcome = AciMetricsListener.Outcome.TRANSPORT_ERROR;
+            throw new AciServiceException(ahe);
+        } catch (final IOException ioe) {
+            LOGGER.trace("IOException caught while executing the ACI action");
+            outcome = AciMetricsListener.Outcome.TRANSPORT_ERROR;
+            throw new AciServiceException(ioe);
+        } catch (final ProcessorException pe) {
+            LOGGER.trace("ProcessorException caught while parsing ACI response");
+            throw new AciServiceException(pe);
+        } catch (final AciErrorException aee) {
+            outcome = AciMetricsListener.Outcome.ACI_ERROR;
+            throw aee;
+        } finally {
+            // Close the response as the processor should have dealt with it...
+            IOUtils.getInstance().closeQuietly(response);
+
+            final long end = System.nanoTime();
+            listener.actionCompleted(action, serverDetails, outcome, processed ? end - processing : 0L, end - start);
+        }
+    }
+
+    /**
+     * Checks for an error response before it's processed, if {@link #setErrorSniffing(boolean) errorSniffing} is on.
+     * @param response The response
+     * @return The response to give the processor
+     * @throws AciErrorException If the response is an error response
+     * @throws IOException       If the response couldn't be read
+     */
+    private AciResponseInputStream checkForError(final AciResponseInputStream response) throws IOException {
+        return errorSniffing ? ErrorResponseSniffer.checkForError(response) : response;
+    }
+
+    /**
+     * @param parameters ACI request parameters
+     * @return The value of the action parameter, or <code>null</code> if there isn't one
+     */
+    private static String getActionName(final Set<? extends ActionParameter<?>> parameters) {
+        for (final ActionParameter<?> parameter : parameters) {
+            if ((parameter != null) && AciConstants.PARAM_ACTION.equalsIgnoreCase(parameter.getName())) {
+                final Object value = parameter.getValue();
+                return (value == null) ? null : value.toString();
+            }
+        }
+        return null;
+    }
+
     /**
      * Getter for property aciHttpClient.
      * @return Value of property aciHttpClient.
@@ -181,4 +412,43 @@ public class AciServiceImpl implements AciService {
         this.aciServerDetails = aciServerDetails;
     }
 
+    /**
+     * Getter for property metricsListener.
+     * @return Value of property metricsListener.
+     */
+    public AciMetricsListener getMetricsListener() {
+        return this.metricsListener;
+    }
+
+    /**
+     * Setter for property metricsListener, which is told how long processing each response takes and how the execution
+     * of each action ended. Register the same listener with an {@link com.autonomy.aci.client.transport.impl.AciHttpClientImpl}
+     * to also time the transport phases. Defaults to <code>null</code>, in which case nothing is timed.
+     * @param metricsListener New value of property metricsListener.
+     */
+    public void setMetricsListener(final AciMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Getter for property errorSniffing.
+     * @return Value of property errorSniffing.
+     */
+    public boolean isErrorSniffing() {
+        return this.errorSniffing;
+    }
+
+    /**
+     * Setter for property errorSniffing. When <code>true</code>, the first few bytes of each XML response are checked
+     * for an ACI error before the processor is called, and if there is one the error response is parsed into an
+     * <code>AciErrorException</code> and thrown without calling the processor. The start of a successful response is
+     * replayed, so the processor sees the whole response. This saves processors that build the whole response, e.g. the
+     * {@link DocumentProcessor}, from doing so only to find an error, but means a processor never sees an error
+     * response, so leave it off if a processor handles errors itself. Defaults to <code>false</code>.
+     * @param errorSniffing New value of property errorSniffing.
+     */
+    public void setErrorSniffing(final boolean errorSniffing) {
+        this.errorSniffing = errorSniffing;
+    }
+
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciConstants;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.ActionParameter;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Identifies an action sent to a server, so that equivalent actions can share a response. Parameter names and the action
+ * name are compared case insensitively and the order of the parameters doesn't matter, but other parameter values are
+ * compared exactly, as many of them are case sensitive. Actions with parameters that have to be posted, e.g. files,
+ * can't be keyed.
+ */
+final class ActionKey {
+
+    private final AciServerDetails serverDetails;
+
+    private final String action;
+
+    /**
+     * Sorted <code>name=value</code> pairs, with lowercased names...
+     */
+    private final String[] parameters;
+
+    /**
+     * Distinguishes keys for the same action that have been processed differently, may be <code>null</code>...
+     */
+    private final Object processor;
+
+    private final int hashCode;
+
+    private ActionKey(final AciServerDetails serverDetails, final String action, final String[] parameters, final Object processor) {
+        this.serverDetails = serverDetails;
+        this.action = action;
+        this.parameters = parameters;
+        this.processor = processor;
+        this.hashCode = (31 * ((31 * serverDetails.hashCode()) + Arrays.hashCode(parameters))) + Objects.hashCode(processor);
+    }
+
+    /**
+     * Creates a key for an action.
+     * @param serverDetails The server the action is sent to, which is copied if its class supports it
+     * @param parameters    The action parameters
+     * @return The key, or <code>null</code> if the parameters can't be keyed
+     */
+    static ActionKey create(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters) {
+        final String[] normalised = new String[parameters.size()];
+        String action = null;
+        int index = 0;
+
+        for (final ActionParameter<?> parameter : parameters) {
+            if (parameter.requiresPostRequest()) {
+                return null;
+            }
+
+            final String name = parameter.getName().toLowerCase(Locale.ENGLISH);
+            String value = (parameter.getValue() == null) ? "" : parameter.getValue().toString();
+
+            // Action names are case insensitive, unlike most parameter values...
+            if (AciConstants.PARAM_ACTION.equalsIgnoreCase(name)) {
+                value = value.toLowerCase(Locale.ENGLISH);
+                action = value;
+            }
+
+            // The NUL can't appear in a parameter name, so pairs can't be confused with each other...
+            normalised[index++] = name + '\u0000' + value;
+        }
+
+        Arrays.sort(normalised);
+
+        // A subclass that doesn't override copy() would lose its own details, e.g. a GSS service name, so use it as is...
+        final AciServerDetails copy = serverDetails.copy();
+        return new ActionKey((copy.getClass() == serverDetails.getClass()) ? copy : serverDetails, action, normalised, null);
+    }
+
+    /**
+     * @param processor What the response is processed with
+     * @return A key for the same action, but which is only equal to keys with an equal processor
+     */
+    ActionKey withProcessor(final Object processor) {
+        return new ActionKey(serverDetails, action, parameters, processor);
+    }
+
+    /**
+     * @return The lowercased name of the action, or <code>null</code> if there isn't an action parameter
+     */
+    String getAction() {
+        return action;
+    }
+
+    AciServerDetails getServerDetails() {
+        return serverDetails;
+    }
+
+    /**
+     * @param that Another key
+     * @return <code>true</code> if <code>that</code> is for the same action, regardless of processor
+     */
+    boolean isSameAction(final ActionKey that) {
+        return serverDetails.equals(that.serverDetails) && Arrays.equals(parameters, that.parameters);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (!(obj instanceof ActionKey)) {
+            return false;
+        }
+
+        final ActionKey that = (ActionKey) obj;
+        return (hashCode == that.hashCode) && isSameAction(that) && Objects.equals(processor, that.processor);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return serverDetails.getHost() + ':' + serverDetails.getPort() + ' ' + action;
+    }
+
+}
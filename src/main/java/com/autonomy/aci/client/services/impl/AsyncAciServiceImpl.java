@@ -0,0 +1,293 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.*;
+import com.autonomy.aci.client.transport.*;
+import com.autonomy.aci.client.util.IOUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Implementation of the <code>AsyncAciService</code> interface.
+ * <p>
+ * Actions are sent via an {@link AsyncAciHttpClient}, so no thread is blocked while waiting for the ACI server to
+ * respond. Once the response has arrived it is given to the supplied <code>Processor</code> on the configured
+ * <code>processorExecutor</code>, which defaults to the common <code>ForkJoinPool</code>. Processing is deliberately kept
+ * off the HTTP client's I/O threads, as processors can take a while to parse large responses. Cancelling the returned
+ * future cancels the HTTP exchange too, so a response that's still arriving stops being downloaded.
+ * <p>
+ * This class also implements the blocking <code>AciService</code> interface by waiting on the returned future, so it
+ * can be used wherever an <code>AciService</code> is expected.
+ * <p>
+ * Like <code>AciServiceImpl</code>, this implementation does no configuration of the <code>AsyncAciHttpClient</code> or
+ * <code>AciServerDetails</code> objects that it uses.
+ */
+public class AsyncAciServiceImpl implements AsyncAciService, AciService {
+
+    /**
+     * Class logger...
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncAciServiceImpl.class);
+
+    /**
+     * Used to confirm that a passed in set of parameters contains an action=xxx parameter...
+     */
+    private static final AciParameter TEST_ACTION_PARAMETER = new AciParameter(AciConstants.PARAM_ACTION, null);
+
+    /**
+     * Holds value of property asyncAciHttpClient.
+     */
+    private AsyncAciHttpClient asyncAciHttpClient;
+
+    /**
+     * Holds value of property aciServerDetails.
+     */
+    private AciServerDetails aciServerDetails;
+
+    /**
+     * Holds value of property processorExecutor.
+     */
+    private Executor processorExecutor = ForkJoinPool.commonPool();
+
+    /**
+     * Creates a new instance of AsyncAciServiceImpl.
+     */
+    public AsyncAciServiceImpl() {
+        super();
+    }
+
+    /**
+     * Creates a new instance of AsyncAciServiceImpl.
+     * @param asyncAciHttpClient The configured <code>AsyncAciHttpClient</code> to use for communication
+     */
+    public AsyncAciServiceImpl(final AsyncAciHttpClient asyncAciHttpClient) {
+        this.asyncAciHttpClient = asyncAciHttpClient;
+    }
+
+    /**
+     * Creates a new instance of AsyncAciServiceImpl.
+     * @param asyncAciHttpClient The configured <code>AsyncAciHttpClient</code> to use for communication
+     * @param aciServerDetails   The details of the ACI Server to contact
+     */
+    public AsyncAciServiceImpl(final AsyncAciHttpClient asyncAciHttpClient, final AciServerDetails aciServerDetails) {
+        this.asyncAciHttpClient = asyncAciHttpClient;
+        this.aciServerDetails = aciServerDetails;
+    }
+
+    /**
+     * Executes an ACI action and processes the response with the supplied <code>Processor</code>. This method relies on
+     * the ACI Server connection details being set via the {@link #setAciServerDetails(AciServerDetails)} method.
+     * @param parameters The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                   Action=<command>} parameter.
+     * @param processor  The <code>Processor</code> to use for converting the response stream into an object
+     * @return A <code>CompletableFuture</code> that will be completed with the processed ACI response
+     * @throws IllegalArgumentException If connection details haven't been set, or the <code>parameters</code> is
+     *                                  <code>null</code>, empty or missing an action parameter. Will also be thrown if
+     *                                  the <code>processor</code> is null.
+     */
+    @Override
+    public <T> CompletableFuture<T> executeActionAsync(final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor) {
+        LOGGER.trace("executeActionAsync() called...");
+
+        // Execute and return the result...
+        return executeActionAsync(aciServerDetails, parameters, processor);
+    }
+
+    /**
+     * Executes an ACI action and processes the response with the supplied <code>Processor</code>.
+     * @param serverDetails The connection details of the ACI Server to execute the action on
+     * @param parameters    The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                      Action=&lt;command&gt;} parameter
+     * @param processor     The <code>Processor</code> to use for converting the response stream into an object
+     * @return A <code>CompletableFuture</code> that will be completed with the processed ACI response, or completed
+     * exceptionally with an <code>AciServiceException</code>
+     * @throws IllegalArgumentException If <code>serverDetails</code> is <code>null</code>, or the <code>parameters</code>
+     *                                  is <code>null</code>, empty or missing an action parameter. Will also be thrown
+     *                                  if the <code>processor</code> is null.
+     */
+    @Override
+    public <T> CompletableFuture<T> executeActionAsync(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor) {
+        LOGGER.trace("executeActionAsync() called...");
+
+        // Sanity check the HttpClient...
+        Validate.notNull(asyncAciHttpClient, "An AsyncAciHttpClient implementation must be set before calling this method.");
+
+        // Sanity check the method parameters...
+        Validate.notNull(serverDetails, "ACI Server connection details must be set before calling this method.");
+        Validate.notEmpty(parameters, "The parameter set must not be null or empty.");
+        Validate.isTrue(parameters.contains(TEST_ACTION_PARAMETER), "The parameter set must contain an action=xxx parameter.");
+        Validate.notNull(processor, "The processor must not be null.");
+
+        LOGGER.debug("Sending the ACI parameters and server details to the AsyncAciHttpClient...");
+
+        final CompletableFuture<AciResponseInputStream> exchange = asyncAciHttpClient.executeActionAsync(serverDetails, parameters);
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        exchange.whenCompleteAsync((response, throwable) -> {
+            if (throwable != null) {
+                result.completeExceptionally(toAciServiceException(throwable));
+            } else if (result.isDone()) {
+                // The caller has cancelled, so there's no point processing the response...
+                IOUtils.getInstance().closeQuietly(response);
+            } else {
+                try {
+                    result.complete(process(response, processor));
+                } catch (final RuntimeException | Error e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        }, processorExecutor);
+
+        // Cancelling a future doesn't cancel the ones it depends on, so pass it on to stop the HTTP exchange...
+        result.whenComplete((value, throwable) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+
+        return result;
+    }
+
+    private static <T> T process(final AciResponseInputStream response, final Processor<T> processor) {
+        try {
+            return processor.process(response);
+        } catch (final ProcessorException pe) {
+            LOGGER.trace("ProcessorException caught while parsing ACI response");
+            throw new AciServiceException(pe);
+        } finally {
+            // Close the response as the processor should have dealt with it...
+            IOUtils.getInstance().closeQuietly(response);
+        }
+    }
+
+    /**
+     * Executes an ACI action and waits for the processed response. This method relies on the ACI Server connection
+     * details being set via the {@link #setAciServerDetails(AciServerDetails)} method.
+     * @param parameters The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                   Action=<command>} parameter.
+     * @param processor  The <code>Processor</code> to use for converting the response stream into an object
+     * @return The ACI response encoded as an object of type <code>T</code>
+     * @throws AciServiceException If an error occurred during the communication with the ACI Server, processing the
+     *                             response or if the response contained an error
+     */
+    @Override
+    public <T> T executeAction(final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor) {
+        LOGGER.trace("executeAction() called...");
+
+        return executeAction(aciServerDetails, parameters, processor);
+    }
+
+    /**
+     * Executes an ACI action and waits for the processed response.
+     * @param serverDetails The connection details of the ACI Server to execute the action on
+     * @param parameters    The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                      Action=&lt;command&gt;} parameter
+     * @param processor     The <code>Processor</code> to use for converting the response stream into an object
+     * @return The ACI response encoded as an object of type <code>T</code>
+     * @throws AciServiceException If an error occurred during the communication with the ACI Server, processing the
+     *                             response or if the response contained an error
+     */
+    @Override
+    public <T> T executeAction(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor) {
+        LOGGER.trace("executeAction() called...");
+
+        try {
+            return executeActionAsync(serverDetails, parameters, processor).join();
+        } catch (final CompletionException ce) {
+            throw toAciServiceException(ce);
+        }
+    }
+
+    /**
+     * Unwraps the exception an asynchronous stage failed with and converts it into the exception the synchronous API
+     * would have thrown.
+     * @param throwable The exception to convert
+     * @return The runtime exception to throw
+     */
+    private RuntimeException toAciServiceException(final Throwable throwable) {
+        final Throwable cause = (throwable instanceof CompletionException) && (throwable.getCause() != null)
+                ? throwable.getCause()
+                : throwable;
+
+        if ((cause instanceof AciHttpException) || (cause instanceof IOException)) {
+            LOGGER.trace("{} caught while executing the ACI action", cause.getClass().getSimpleName());
+            return new AciServiceException(cause);
+        } else if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        } else {
+            return new AciServiceException(cause);
+        }
+    }
+
+    /**
+     * Getter for property asyncAciHttpClient.
+     * @return Value of property asyncAciHttpClient.
+     */
+    public AsyncAciHttpClient getAsyncAciHttpClient() {
+        return asyncAciHttpClient;
+    }
+
+    /**
+     * Setter for property asyncAciHttpClient.
+     * @param asyncAciHttpClient New value of property asyncAciHttpClient.
+     */
+    public void setAsyncAciHttpClient(final AsyncAciHttpClient asyncAciHttpClient) {
+        this.asyncAciHttpClient = asyncAciHttpClient;
+    }
+
+    /**
+     * Getter for property aciServerDetails.
+     * @return Value of property aciServerDetails.
+     */
+    public AciServerDetails getAciServerDetails() {
+        return aciServerDetails;
+    }
+
+    /**
+     * Setter for property aciServerDetails.
+     * @param aciServerDetails New value of property aciServerDetails.
+     */
+    public void setAciServerDetails(final AciServerDetails aciServerDetails) {
+        this.aciServerDetails = aciServerDetails;
+    }
+
+    /**
+     * Getter for property processorExecutor.
+     * @return Value of property processorExecutor.
+     */
+    public Executor getProcessorExecutor() {
+        return processorExecutor;
+    }
+
+    /**
+     * Setter for property processorExecutor. This is the <code>Executor</code> that responses are processed on.
+     * @param processorExecutor New value of property processorExecutor.
+     * @throws IllegalArgumentException if <code>processorExecutor</code> is <code>null</code>
+     */
+    public void setProcessorExecutor(final Executor processorExecutor) {
+        Validate.notNull(processorExecutor, "The processorExecutor must not be null.");
+        this.processorExecutor = processorExecutor;
+    }
+
+}
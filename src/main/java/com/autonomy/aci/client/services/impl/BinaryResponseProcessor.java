@@ -20,8 +20,6 @@ import com.autonomy.aci.client.transport.AciResponseInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Locale;
-
 /**
  * Takes an ACI response and returns it as a byte array. This processor should only be used for those actions that
  * <strong>don't return XML</strong> by default, for example, cluster actions that return an image. This processor will
@@ -34,7 +32,9 @@ import java.util.Locale;
  * <strong>Note:</strong> If the content type is <code>text/xml</code> then an
  * {@link com.autonomy.aci.client.services.AciErrorException} will be thrown regardless of the contents of the actual
  * response. If the response didn't contain an error, then the resulting exception's error properties will all be
- * <code>null</code>. Any other content type will result in the response being returned in a <code>byte[]</code>.
+ * <code>null</code>. Any other content type will result in the response being returned in a <code>byte[]</code>. Only
+ * the start of a successful XML response is read to find out that it isn't an error, the error processor is only used
+ * for error responses.
  */
 public class BinaryResponseProcessor implements Processor<byte[]> {
 
@@ -55,27 +55,15 @@ public class BinaryResponseProcessor implements Processor<byte[]> {
     public byte[] process(final AciResponseInputStream inputStream) {
         LOGGER.trace("process() called...");
 
+        LOGGER.debug("Content-type is {}...", inputStream.getContentType());
+
         // Check the content type to determine what we do next...
-        final String contentType = inputStream.getContentType();
-
-        LOGGER.debug("Content-type is {}...", contentType);
-
-        if (contentType.toLowerCase(Locale.ROOT).startsWith("text/xml")) {
-            // Process the error response...
-            try {
-                throw errorProcessor.process(inputStream);
-            } catch (final AciErrorException e) {
-                if (e.getErrorId() == null) {
-                    throw new AciErrorException(
-                        "BinaryResponseProcessor should not be used for XML responses");
-                } else {
-                    throw e;
-                }
-            }
-        } else {
-            // Return the raw bytes...
-            return byteArrayProcessor.process(inputStream);
+        if (ErrorResponseSniffer.isXml(inputStream)) {
+            throw ErrorResponseSniffer.rejectXmlResponse(inputStream, errorProcessor, "BinaryResponseProcessor");
         }
+
+        // Return the raw bytes...
+        return byteArrayProcessor.process(inputStream);
     }
 
     public Processor<AciErrorException> getErrorProcessor() {
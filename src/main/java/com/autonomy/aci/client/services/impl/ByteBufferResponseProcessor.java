@@ -0,0 +1,149 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads an ACI response into a <code>ByteBuffer</code> supplied by the caller, which may be a direct buffer, so that
+ * the same buffer can be reused for many responses. Like the {@link BinaryResponseProcessor}, this processor should
+ * only be used for those actions that <strong>don't return XML</strong>, and it throws an {@link AciErrorException} if
+ * the content type of the response is <code>text/xml</code>.
+ * <p>
+ * The response is written from the current position of the buffer, and the buffer is flipped before it's returned, so
+ * it's ready to be read from or written to a channel. If the response is larger than the space remaining in the buffer
+ * a {@link ProcessorException} is thrown. The buffer is left flipped, so callers <strong>must</strong> call
+ * {@link ByteBuffer#clear()} on it before reusing the processor, otherwise the next response is written over the
+ * previous one and limited to its size. As the buffer isn't thread safe, a processor shouldn't be used by more than one
+ * thread at a time.
+ * <p>
+ * While this class is <code>Serializable</code>, as all processors are, the buffer is marked as transient, so upon
+ * deserialization this processor will not be usable.
+ */
+public class ByteBufferResponseProcessor implements Processor<ByteBuffer> {
+
+    private static final long serialVersionUID = -1117804450427457945L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ByteBufferResponseProcessor.class);
+
+    /**
+     * The most bytes copied at a time into a buffer that isn't backed by an array...
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * The buffer to read the response into.
+     */
+    private final transient ByteBuffer buffer;
+
+    /**
+     * This holds the error processor to use if the content type of the response is <code>text/xml</code>.
+     */
+    private Processor<AciErrorException> errorProcessor = new ErrorProcessor();
+
+    /**
+     * Creates a new instance of ByteBufferResponseProcessor.
+     * @param buffer The buffer to read responses into
+     * @throws NullPointerException If <code>buffer</code> is <code>null</code>
+     */
+    public ByteBufferResponseProcessor(final ByteBuffer buffer) {
+        this.buffer = Validate.notNull(buffer, "The buffer must not be null.");
+    }
+
+    /**
+     * Reads the response into the buffer.
+     * @param inputStream The ACI response to process
+     * @return The buffer, flipped so it holds the response, which must be cleared before the processor is used again
+     * @throws AciErrorException  If the response is an XML response
+     * @throws ProcessorException If the response couldn't be read or doesn't fit in the buffer
+     */
+    @Override
+    public ByteBuffer process(final AciResponseInputStream inputStream) {
+        LOGGER.trace("process() called...");
+
+        if (ErrorResponseSniffer.isXml(inputStream)) {
+            throw ErrorResponseSniffer.rejectXmlResponse(inputStream, errorProcessor, "ByteBufferResponseProcessor");
+        }
+
+        try {
+            if (buffer.hasArray()) {
+                readIntoArray(inputStream);
+            } else {
+                readInChunks(inputStream);
+            }
+
+            if (!buffer.hasRemaining() && (inputStream.read() != -1)) {
+                throw new ProcessorException("The ACI response is larger than the " + buffer.capacity() + " byte buffer.");
+            }
+        } catch (final IOException ioe) {
+            throw new ProcessorException("Unable to read the ACI response into the buffer.", ioe);
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads straight into the array that backs the buffer.
+     */
+    private void readIntoArray(final InputStream inputStream) throws IOException {
+        final byte[] array = buffer.array();
+
+        while (buffer.hasRemaining()) {
+            final int number = inputStream.read(array, buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (number == -1) {
+                break;
+            }
+            buffer.position(buffer.position() + number);
+        }
+    }
+
+    /**
+     * Reads through a small array, for direct buffers.
+     */
+    private void readInChunks(final InputStream inputStream) throws IOException {
+        final byte[] chunk = new byte[Math.min(CHUNK_SIZE, Math.max(1, buffer.remaining()))];
+
+        while (buffer.hasRemaining()) {
+            final int number = inputStream.read(chunk, 0, Math.min(chunk.length, buffer.remaining()));
+            if (number == -1) {
+                break;
+            }
+            buffer.put(chunk, 0, number);
+        }
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public Processor<AciErrorException> getErrorProcessor() {
+        return errorProcessor;
+    }
+
+    public void setErrorProcessor(final Processor<AciErrorException> errorProcessor) {
+        this.errorProcessor = errorProcessor;
+    }
+
+}
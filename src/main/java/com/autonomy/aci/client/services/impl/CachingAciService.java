@@ -0,0 +1,585 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciService;
+import com.autonomy.aci.client.services.AciServiceException;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.ActionParameter;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * An <code>AciService</code> decorator that caches the responses of read-only actions, so that repeatedly sending the
+ * same action, e.g. from a dashboard, doesn't go over the wire every time.
+ * <p>
+ * Only actions named in <code>cacheableActions</code> are cached. Actions are matched regardless of the order or case of
+ * their parameter names, but parameter values must match exactly. By default the raw response bytes are cached and each
+ * hit is processed again with the <code>Processor</code> passed in, so any processor can use the cache. If
+ * <code>cacheProcessedResults</code> is set, the processed result is cached instead and handed to every caller that
+ * uses an equal <code>Processor</code>, so only do that when the results are immutable.
+ * <p>
+ * Entries expire <code>timeToLive</code> milliseconds after they were added, and the least recently used entries are
+ * evicted when there are more than <code>maxEntries</code> entries, or their responses total more than
+ * <code>maxBytes</code>. Responses that fail processing, e.g. ACI errors, are never cached, and responses larger than
+ * <code>maxBytes</code> are processed as they're read rather than being buffered.
+ */
+public class CachingAciService implements AciService {
+
+    /**
+     * Class logger...
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingAciService.class);
+
+    /**
+     * The actions cached by default...
+     */
+    private static final Set<String> DEFAULT_CACHEABLE_ACTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "getstatus", "getquerytagvalues", "query"
+    )));
+
+    /**
+     * The delegate used to actually execute the actions.
+     */
+    private final AciService aciService;
+
+    /**
+     * Least recently accessed first, guarded by itself...
+     */
+    private final LinkedHashMap<ActionKey, CacheEntry> cache = new LinkedHashMap<>(16, 0.75F, true);
+
+    /**
+     * The total size of the cached responses, guarded by the cache...
+     */
+    private long totalBytes;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Holds value of property aciServerDetails.
+     */
+    private volatile AciServerDetails aciServerDetails;
+
+    /**
+     * Holds value of property cacheableActions.
+     */
+    private volatile Set<String> cacheableActions = DEFAULT_CACHEABLE_ACTIONS;
+
+    /**
+     * Holds value of property cacheProcessedResults.
+     */
+    private volatile boolean cacheProcessedResults;
+
+    /**
+     * Holds value of property timeToLive.
+     */
+    private volatile long timeToLive = 30000L;
+
+    /**
+     * Holds value of property maxEntries.
+     */
+    private volatile int maxEntries = 1000;
+
+    /**
+     * Holds value of property maxBytes.
+     */
+    private volatile long maxBytes = 64L * 1024L * 1024L;
+
+    /**
+     * Creates a new instance of CachingAciService.
+     * @param aciService The <code>AciService</code> used to execute actions that aren't in the cache
+     * @throws NullPointerException If <code>aciService</code> is <code>null</code>
+     */
+    public CachingAciService(final AciService aciService) {
+        this(aciService, null);
+    }
+
+    /**
+     * Creates a new instance of CachingAciService.
+     * @param aciService       The <code>AciService</code> used to execute actions that aren't in the cache
+     * @param aciServerDetails The details of the ACI Server to contact when none are given
+     * @throws NullPointerException If <code>aciService</code> is <code>null</code>
+     */
+    public CachingAciService(final AciService aciService, final AciServerDetails aciServerDetails) {
+        this.aciService = Validate.notNull(aciService, "AciService must not be null.");
+        this.aciServerDetails = aciServerDetails;
+    }
+
+    /**
+     * Executes an ACI action, using a cached response if there is one. This method relies on the ACI Server connection
+     * details being set via the {@link #setAciServerDetails(AciServerDetails)} method, as they're part of the cache key.
+     * @param parameters The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                   Action=<command>} parameter.
+     * @param processor  The <code>Processor</code> to use for converting the response stream into an object
+     * @return The ACI response encoded as an object of type <code>T</code>
+     * @throws AciServiceException      If an error occurred during the communication with the ACI Server, processing the
+     *                                  response or if the response contained an error
+     * @throws IllegalArgumentException If connection details haven't been set
+     */
+    @Override
+    public <T> T executeAction(final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor) {
+        LOGGER.trace("executeAction() called...");
+
+        return executeAction(aciServerDetails, parameters, processor);
+    }
+
+    /**
+     * Executes an ACI action, using a cached response if there is one.
+     * @param serverDetails The connection details of the ACI Server to execute the action on
+     * @param parameters    The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                      Action=<command>} parameter
+     * @param processor     The <code>Processor</code> to use for converting the response stream into an object
+     * @return The ACI response encoded as an object of type <code>T</code>
+     * @throws AciServiceException      If an error occurred during the communication with the ACI Server, processing the
+     *                                  response or if the response contained an error
+     * @throws IllegalArgumentException If <code>serverDetails</code> is <code>null</code>, or the <code>parameters</code> is
+     *                                  <code>null</code>, empty or missing an action parameter. Will also be thrown if the
+     *                                  <code>processor</code> is null.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T executeAction(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor) {
+        LOGGER.trace("executeAction() called...");
+
+        Validate.notNull(serverDetails, "ACI Server connection details must be set before calling this method.");
+        Validate.notEmpty(parameters, "The parameter set must not be null or empty.");
+        Validate.notNull(processor, "The processor must not be null.");
+
+        final ActionKey actionKey = ActionKey.create(serverDetails, parameters);
+
+        if ((actionKey == null) || !cacheableActions.contains(actionKey.getAction())) {
+            return aciService.executeAction(serverDetails, parameters, processor);
+        }
+
+        final boolean processed = cacheProcessedResults;
+        final ActionKey key = processed ? actionKey.withProcessor(processor) : actionKey;
+
+        final Object cached = get(key);
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            LOGGER.debug("Using cached response for {}...", key);
+
+            return processed ? (T) cached : process(processor, (ByteArrayAciResponseInputStream) cached);
+        }
+
+        missCount.incrementAndGet();
+
+        final long limit = maxBytes;
+        final Object outcome = aciService.executeAction(serverDetails, parameters, response -> buffer(response, limit, processor));
+
+        if (outcome instanceof Uncached) {
+            LOGGER.debug("Not caching response for {} as it is larger than maxBytes...", key);
+            return ((Uncached<T>) outcome).result;
+        }
+
+        final ByteArrayAciResponseInputStream response = (ByteArrayAciResponseInputStream) outcome;
+
+        // Process before caching, so that error responses aren't cached...
+        final T result = process(processor, response);
+
+        if (!processed) {
+            put(key, response, response.size());
+        } else if (result != null) {
+            put(key, result, response.size());
+        }
+
+        return result;
+    }
+
+    private static <T> T process(final Processor<T> processor, final ByteArrayAciResponseInputStream response) {
+        try {
+            return processor.process(response.copy());
+        } catch (final ProcessorException pe) {
+            LOGGER.trace("ProcessorException caught while parsing ACI response");
+            throw new AciServiceException(pe);
+        }
+    }
+
+    /**
+     * Buffers <code>response</code> if it's no bigger than <code>limit</code>, otherwise processes it as it's read, so an
+     * uncacheable response is never held in memory.
+     * @return The buffered response, or an <code>Uncached</code> holding the processed result
+     */
+    private static Object buffer(final AciResponseInputStream response, final long limit, final Processor<?> processor) {
+        try {
+            final long contentLength = response.getContentLength();
+            if (contentLength > limit) {
+                return new Uncached<>(processor.process(response));
+            }
+
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream(((contentLength > 0L) && (contentLength < Integer.MAX_VALUE)) ? (int) contentLength : 8192);
+            final byte[] bytes = new byte[8192];
+
+            for (int read = response.read(bytes); read != -1; read = response.read(bytes)) {
+                buffer.write(bytes, 0, read);
+
+                if (buffer.size() > limit) {
+                    return new Uncached<>(processor.process(new ReplayingAciResponseInputStream(buffer.toByteArray(), response)));
+                }
+            }
+
+            return ByteArrayAciResponseInputStream.buffer(new ReplayingAciResponseInputStream(buffer.toByteArray(), response));
+        } catch (final IOException ioe) {
+            throw new ProcessorException("Unable to read the ACI response.", ioe);
+        }
+    }
+
+    private Object get(final ActionKey key) {
+        synchronized (cache) {
+            final CacheEntry entry = cache.get(key);
+
+            if (entry == null) {
+                return null;
+            }
+
+            if (entry.expiresAt - System.nanoTime() <= 0L) {
+                remove(key);
+                evictionCount.incrementAndGet();
+                return null;
+            }
+
+            return entry.value;
+        }
+    }
+
+    private void put(final ActionKey key, final Object value, final int size) {
+        if (size > maxBytes) {
+            LOGGER.debug("Not caching response for {} as it is larger than maxBytes...", key);
+            return;
+        }
+
+        final CacheEntry entry = new CacheEntry(value, size, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeToLive));
+
+        synchronized (cache) {
+            final CacheEntry previous = cache.put(key, entry);
+            if (previous != null) {
+                totalBytes -= previous.size;
+            }
+            totalBytes += size;
+
+            // Evict the least recently used entries until we're back within bounds...
+            final Iterator<CacheEntry> iterator = cache.values().iterator();
+            while (((cache.size() > maxEntries) || (totalBytes > maxBytes)) && iterator.hasNext()) {
+                final CacheEntry eldest = iterator.next();
+                iterator.remove();
+                totalBytes -= eldest.size;
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    // Must be called holding the lock...
+    private void remove(final ActionKey key) {
+        final CacheEntry entry = cache.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.size;
+        }
+    }
+
+    /**
+     * Removes any cached responses for an action, however they were processed.
+     * @param serverDetails The connection details of the ACI Server the action was executed on
+     * @param parameters    The parameters of the action
+     */
+    public void invalidate(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters) {
+        LOGGER.trace("invalidate() called...");
+
+        final ActionKey actionKey = ActionKey.create(serverDetails, parameters);
+        if (actionKey != null) {
+            removeIf(actionKey::isSameAction);
+        }
+    }
+
+    /**
+     * Removes all the cached responses from a server.
+     * @param serverDetails The connection details of the ACI Server
+     */
+    public void invalidate(final AciServerDetails serverDetails) {
+        LOGGER.trace("invalidate() called...");
+
+        removeIf(key -> key.getServerDetails().equals(serverDetails));
+    }
+
+    /**
+     * Removes all the cached responses.
+     */
+    public void invalidateAll() {
+        LOGGER.trace("invalidateAll() called...");
+
+        synchronized (cache) {
+            cache.clear();
+            totalBytes = 0L;
+        }
+    }
+
+    private void removeIf(final Predicate<ActionKey> predicate) {
+        synchronized (cache) {
+            final Iterator<Map.Entry<ActionKey, CacheEntry>> iterator = cache.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<ActionKey, CacheEntry> entry = iterator.next();
+                if (predicate.test(entry.getKey())) {
+                    iterator.remove();
+                    totalBytes -= entry.getValue().size;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of actions that were answered from the cache
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return The number of cacheable actions that weren't in the cache
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return The number of entries that were removed because they expired or the cache was full, but not those that
+     * were invalidated
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return The number of entries currently in the cache, including any that have expired but not yet been removed
+     */
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return The total size in bytes of the responses currently in the cache
+     */
+    public long getBytes() {
+        synchronized (cache) {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * Getter for property aciServerDetails.
+     * @return Value of property aciServerDetails.
+     */
+    public AciServerDetails getAciServerDetails() {
+        return aciServerDetails;
+    }
+
+    /**
+     * Setter for property aciServerDetails.
+     * @param aciServerDetails New value of property aciServerDetails.
+     */
+    public void setAciServerDetails(final AciServerDetails aciServerDetails) {
+        this.aciServerDetails = aciServerDetails;
+    }
+
+    /**
+     * Getter for property cacheableActions.
+     * @return Value of property cacheableActions, lowercased.
+     */
+    public Set<String> getCacheableActions() {
+        return cacheableActions;
+    }
+
+    /**
+     * Setter for property cacheableActions, the names of the actions whose responses may be cached. Only include
+     * read-only actions. Names are matched case insensitively. Defaults to <code>GetStatus</code>,
+     * <code>GetQueryTagValues</code> and <code>Query</code>.
+     * @param cacheableActions New value of property cacheableActions.
+     */
+    public void setCacheableActions(final Set<String> cacheableActions) {
+        Validate.notNull(cacheableActions, "Cacheable actions must not be null.");
+
+        final Set<String> lowercased = new HashSet<>();
+        for (final String action : cacheableActions) {
+            lowercased.add(action.toLowerCase(Locale.ENGLISH));
+        }
+        this.cacheableActions = Collections.unmodifiableSet(lowercased);
+    }
+
+    /**
+     * Getter for property cacheProcessedResults.
+     * @return Value of property cacheProcessedResults.
+     */
+    public boolean isCacheProcessedResults() {
+        return cacheProcessedResults;
+    }
+
+    /**
+     * Setter for property cacheProcessedResults. If <code>true</code> processed results are cached rather than the raw
+     * response, keyed on the <code>Processor</code> as well as the action, so processors should implement
+     * <code>equals</code> and <code>hashCode</code> if equivalent instances are used. Defaults to <code>false</code>.
+     * @param cacheProcessedResults New value of property cacheProcessedResults.
+     */
+    public void setCacheProcessedResults(final boolean cacheProcessedResults) {
+        this.cacheProcessedResults = cacheProcessedResults;
+    }
+
+    /**
+     * Getter for property timeToLive.
+     * @return Value of property timeToLive.
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Setter for property timeToLive, how many milliseconds a response is cached for. Defaults to <code>30000</code>.
+     * @param timeToLive New value of property timeToLive.
+     */
+    public void setTimeToLive(final long timeToLive) {
+        Validate.isTrue(timeToLive > 0L, "Time to live must be positive.");
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Getter for property maxEntries.
+     * @return Value of property maxEntries.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Setter for property maxEntries, the maximum number of responses to cache. Defaults to <code>1000</code>.
+     * @param maxEntries New value of property maxEntries.
+     */
+    public void setMaxEntries(final int maxEntries) {
+        Validate.isTrue(maxEntries > 0, "Max entries must be positive.");
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Getter for property maxBytes.
+     * @return Value of property maxBytes.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Setter for property maxBytes, the maximum total size of the cached responses. Responses larger than this are never
+     * cached. Defaults to 64MB.
+     * @param maxBytes New value of property maxBytes.
+     */
+    public void setMaxBytes(final long maxBytes) {
+        Validate.isTrue(maxBytes > 0L, "Max bytes must be positive.");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The result of processing a response that was too big to cache...
+     */
+    private static final class Uncached<T> {
+
+        private final T result;
+
+        private Uncached(final T result) {
+            this.result = result;
+        }
+
+    }
+
+    /**
+     * Replays the start of a response that has already been read, followed by the rest of it...
+     */
+    private static final class ReplayingAciResponseInputStream extends AciResponseInputStream {
+
+        private final AciResponseInputStream response;
+
+        private ReplayingAciResponseInputStream(final byte[] start, final AciResponseInputStream response) {
+            super(new SequenceInputStream(new ByteArrayInputStream(start), response));
+            this.response = response;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getHeader(final String name) {
+            return response.getHeader(name);
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return response.getContentEncoding();
+        }
+
+        @Override
+        public long getContentLength() {
+            return response.getContentLength();
+        }
+
+        @Override
+        public String getContentType() {
+            return response.getContentType();
+        }
+
+    }
+
+    /**
+     * A cached response or result.
+     */
+    private static final class CacheEntry {
+
+        private final Object value;
+
+        private final int size;
+
+        private final long expiresAt;
+
+        private CacheEntry(final Object value, final int size, final long expiresAt) {
+            this.value = value;
+            this.size = size;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes an ACI response to a <code>WritableByteChannel</code> and returns the number of bytes written. Like the
+ * {@link BinaryResponseProcessor}, this processor should only be used for those actions that <strong>don't return
+ * XML</strong>, e.g. actions that return a rendered view or an image, and it throws an {@link AciErrorException} if
+ * the content type of the response is <code>text/xml</code>. Unlike the {@link BinaryResponseProcessor}, the response
+ * is never held in memory, so it's suitable for responses of any size.
+ * <p>
+ * The channel isn't closed, and should be in blocking mode. As each processor writes to its own channel, a new
+ * instance should be created for each action executed. While this class is <code>Serializable</code>, as all processors
+ * are, the channel is marked as transient, so upon deserialization this processor will not be usable.
+ */
+public class ChannelResponseProcessor implements Processor<Long> {
+
+    private static final long serialVersionUID = -752777311350616010L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChannelResponseProcessor.class);
+
+    /**
+     * The size of the buffer used to copy the response...
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The channel to write the response to.
+     */
+    private final transient WritableByteChannel channel;
+
+    /**
+     * This holds the error processor to use if the content type of the response is <code>text/xml</code>.
+     */
+    private Processor<AciErrorException> errorProcessor = new ErrorProcessor();
+
+    /**
+     * Creates a new instance of ChannelResponseProcessor.
+     * @param channel The channel to write responses to
+     * @throws NullPointerException If <code>channel</code> is <code>null</code>
+     */
+    public ChannelResponseProcessor(final WritableByteChannel channel) {
+        this.channel = Validate.notNull(channel, "The channel must not be null.");
+    }
+
+    /**
+     * Writes the response to the channel.
+     * @param inputStream The ACI response to process
+     * @return The number of bytes written to the channel
+     * @throws AciErrorException  If the response is an XML response
+     * @throws ProcessorException If the response couldn't be read or written to the channel
+     */
+    @Override
+    public Long process(final AciResponseInputStream inputStream) {
+        LOGGER.trace("process() called...");
+
+        if (ErrorResponseSniffer.isXml(inputStream)) {
+            throw ErrorResponseSniffer.rejectXmlResponse(inputStream, errorProcessor, "ChannelResponseProcessor");
+        }
+
+        try {
+            return transfer(inputStream, channel);
+        } catch (final IOException ioe) {
+            throw new ProcessorException("Unable to write the ACI response to the channel.", ioe);
+        }
+    }
+
+    /**
+     * Copies <code>input</code> to <code>channel</code> through a single buffer, which is as few copies as an
+     * <code>InputStream</code> allows.
+     * @param input   The stream to copy
+     * @param channel The channel to write to
+     * @return The number of bytes copied
+     * @throws IOException If the stream couldn't be read or the channel written to
+     */
+    static long transfer(final InputStream input, final WritableByteChannel channel) throws IOException {
+        final byte[] bytes = new byte[BUFFER_SIZE];
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long count = 0;
+
+        int number = input.read(bytes);
+        while (number != -1) {
+            buffer.clear().limit(number);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            count += number;
+            number = input.read(bytes);
+        }
+
+        return count;
+    }
+
+    public Processor<AciErrorException> getErrorProcessor() {
+        return errorProcessor;
+    }
+
+    public void setErrorProcessor(final Processor<AciErrorException> errorProcessor) {
+        this.errorProcessor = errorProcessor;
+    }
+
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciService;
+import com.autonomy.aci.client.services.AciServiceException;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.ActionParameter;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An <code>AciService</code> decorator that coalesces identical concurrent actions, so that when many threads send the
+ * same action to the same server at once, e.g. after a cache miss, only one request is actually sent and its response
+ * is shared between all of them.
+ * <p>
+ * Only actions named in <code>coalescedActions</code> are coalesced, as sharing the response of an action that changes
+ * something on the server would be wrong. Actions are matched regardless of the order or case of their parameter names,
+ * but parameter values must match exactly. By default the response is buffered once and each waiting caller processes
+ * its own copy with the <code>Processor</code> it passed in. If <code>shareProcessedResults</code> is set, callers that
+ * pass an equal <code>Processor</code> share a single processed result instead, so only do that when the results are
+ * immutable.
+ * <p>
+ * Unlike {@link CachingAciService} nothing is kept once the request has completed, so a caller that arrives after the
+ * response has been received sends a new request.
+ */
+public class CoalescingAciService implements AciService {
+
+    /**
+     * Class logger...
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoalescingAciService.class);
+
+    /**
+     * The actions coalesced by default...
+     */
+    private static final Set<String> DEFAULT_COALESCED_ACTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "getcontent", "getstatus", "getquerytagvalues", "query"
+    )));
+
+    /**
+     * The delegate used to actually execute the actions.
+     */
+    private final AciService aciService;
+
+    /**
+     * The requests currently in flight...
+     */
+    private final ConcurrentMap<ActionKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Holds value of property aciServerDetails.
+     */
+    private volatile AciServerDetails aciServerDetails;
+
+    /**
+     * Holds value of property coalescedActions.
+     */
+    private volatile Set<String> coalescedActions = DEFAULT_COALESCED_ACTIONS;
+
+    /**
+     * Holds value of property shareProcessedResults.
+     */
+    private volatile boolean shareProcessedResults;
+
+    /**
+     * Creates a new instance of CoalescingAciService.
+     * @param aciService The <code>AciService</code> used to execute actions
+     * @throws NullPointerException If <code>aciService</code> is <code>null</code>
+     */
+    public CoalescingAciService(final AciService aciService) {
+        this(aciService, null);
+    }
+
+    /**
+     * Creates a new instance of CoalescingAciService.
+     * @param aciService       The <code>AciService</code> used to execute actions
+     * @param aciServerDetails The details of the ACI Server to contact when none are given
+     * @throws NullPointerException If <code>aciService</code> is <code>null</code>
+     */
+    public CoalescingAciService(final AciService aciService, final AciServerDetails aciServerDetails) {
+        this.aciService = Validate.notNull(aciService, "AciService must not be null.");
+        this.aciServerDetails = aciServerDetails;
+    }
+
+    /**
+     * Executes an ACI action, sharing the response of an identical action if one is already in flight. This method
+     * relies on the ACI Server connection details being set via the {@link #setAciServerDetails(AciServerDetails)}
+     * method.
+     * @param parameters The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                   Action=<command>} parameter.
+     * @param processor  The <code>Processor</code> to use for converting the response stream into an object
+     * @return The ACI response encoded as an object of type <code>T</code>
+     * @throws AciServiceException      If an error occurred during the communication with the ACI Server, processing the
+     *                                  response or if the response contained an error
+     * @throws IllegalArgumentException If connection details haven't been set
+     */
+    @Override
+    public <T> T executeAction(final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor) {
+        LOGGER.trace("executeAction() called...");
+
+        return executeAction(aciServerDetails, parameters, processor);
+    }
+
+    /**
+     * Executes an ACI action, sharing the response of an identical action if one is already in flight.
+     * @param serverDetails The connection details of the ACI Server to execute the action on
+     * @param parameters    The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                      Action=<command>} parameter
+     * @param processor     The <code>Processor</code> to use for converting the response stream into an object
+     * @return The ACI response encoded as an object of type <code>T</code>
+     * @throws AciServiceException      If an error occurred during the communication with the ACI Server, processing the
+     *                                  response or if the response contained an error
+     * @throws IllegalArgumentException If <code>serverDetails</code> is <code>null</code>, or the <code>parameters</code> is
+     *                                  <code>null</code>, empty or missing an action parameter. Will also be thrown if the
+     *                                  <code>processor</code> is null.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T executeAction(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor) {
+        LOGGER.trace("executeAction() called...");
+
+        Validate.notNull(serverDetails, "ACI Server connection details must be set before calling this method.");
+        Validate.notEmpty(parameters, "The parameter set must not be null or empty.");
+        Validate.notNull(processor, "The processor must not be null.");
+
+        final ActionKey actionKey = ActionKey.create(serverDetails, parameters);
+
+        if ((actionKey == null) || !coalescedActions.contains(actionKey.getAction())) {
+            return aciService.executeAction(serverDetails, parameters, processor);
+        }
+
+        final boolean processed = shareProcessedResults;
+        final ActionKey key = processed ? actionKey.withProcessor(processor) : actionKey;
+
+        final CompletableFuture<Object> flight = new CompletableFuture<>();
+        final CompletableFuture<Object> existing = inFlight.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            LOGGER.debug("Waiting for in flight request for {}...", key);
+
+            final Object shared = await(existing);
+            return processed ? (T) shared : process(processor, (ByteArrayAciResponseInputStream) shared);
+        }
+
+        requestCount.incrementAndGet();
+
+        try {
+            final ByteArrayAciResponseInputStream response = aciService.executeAction(serverDetails, parameters, CoalescingAciService::buffer);
+
+            if (processed) {
+                // Everyone waiting has an equal processor, so they all get the same result or error...
+                final T result = process(processor, response);
+                flight.complete(result);
+                return result;
+            }
+
+            flight.complete(response);
+            return process(processor, response);
+        } catch (final RuntimeException re) {
+            flight.completeExceptionally(re);
+            throw re;
+        } catch (final Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static Object await(final CompletableFuture<Object> flight) {
+        try {
+            return flight.get();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AciServiceException("Interrupted waiting for an in flight request.", ie);
+        } catch (final ExecutionException ee) {
+            // Rethrow the leader's exception, so that everyone sees the same failure...
+            final Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AciServiceException(cause);
+        }
+    }
+
+    private static <T> T process(final Processor<T> processor, final ByteArrayAciResponseInputStream response) {
+        try {
+            return processor.process(response.copy());
+        } catch (final ProcessorException pe) {
+            LOGGER.trace("ProcessorException caught while parsing ACI response");
+            throw new AciServiceException(pe);
+        }
+    }
+
+    private static ByteArrayAciResponseInputStream buffer(final AciResponseInputStream response) {
+        try {
+            return ByteArrayAciResponseInputStream.buffer(response);
+        } catch (final IOException ioe) {
+            throw new ProcessorException("Unable to read the ACI response.", ioe);
+        }
+    }
+
+    /**
+     * @return The number of requests that were actually sent for coalesced actions
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return The number of actions that shared the response of a request that was already in flight
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return The number of distinct requests currently in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Getter for property aciServerDetails.
+     * @return Value of property aciServerDetails.
+     */
+    public AciServerDetails getAciServerDetails() {
+        return aciServerDetails;
+    }
+
+    /**
+     * Setter for property aciServerDetails.
+     * @param aciServerDetails New value of property aciServerDetails.
+     */
+    public void setAciServerDetails(final AciServerDetails aciServerDetails) {
+        this.aciServerDetails = aciServerDetails;
+    }
+
+    /**
+     * Getter for property coalescedActions.
+     * @return Value of property coalescedActions, lowercased.
+     */
+    public Set<String> getCoalescedActions() {
+        return coalescedActions;
+    }
+
+    /**
+     * Setter for property coalescedActions, the names of the actions that may share a response. Only include read-only
+     * actions. Names are matched case insensitively. Defaults to <code>GetContent</code>, <code>GetStatus</code>,
+     * <code>GetQueryTagValues</code> and <code>Query</code>.
+     * @param coalescedActions New value of property coalescedActions.
+     */
+    public void setCoalescedActions(final Set<String> coalescedActions) {
+        Validate.notNull(coalescedActions, "Coalesced actions must not be null.");
+
+        final Set<String> lowercased = new HashSet<>();
+        for (final String action : coalescedActions) {
+            lowercased.add(action.toLowerCase(Locale.ENGLISH));
+        }
+        this.coalescedActions = Collections.unmodifiableSet(lowercased);
+    }
+
+    /**
+     * Getter for property shareProcessedResults.
+     * @return Value of property shareProcessedResults.
+     */
+    public boolean isShareProcessedResults() {
+        return shareProcessedResults;
+    }
+
+    /**
+     * Setter for property shareProcessedResults. If <code>true</code> only callers with an equal <code>Processor</code>
+     * share a request, and the response is processed once with the result handed to all of them, so processors should
+     * implement <code>equals</code> and <code>hashCode</code> if equivalent instances are used. Defaults to
+     * <code>false</code>.
+     * @param shareProcessedResults New value of property shareProcessedResults.
+     */
+    public void setShareProcessedResults(final boolean shareProcessedResults) {
+        this.shareProcessedResults = shareProcessedResults;
+    }
+
+}
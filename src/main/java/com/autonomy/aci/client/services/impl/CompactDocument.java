@@ -0,0 +1,671 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.ProcessorException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, read-only tree of an ACI response, created by the {@link CompactDocumentProcessor}. Rather than an object
+ * per node, as a DOM has, the tree is held in a handful of <code>int</code> arrays indexed by element, element names
+ * are shared, and all text is held in a single array that's only turned into <code>String</code>s when it's asked for.
+ * Text nodes aren't stored at all, as they're the gaps between an element's children in that array.
+ * When all the text is ISO-8859-1, as it usually is, that array holds a byte per character. This makes it a fraction of
+ * the size of the equivalent DOM, which suits holding on to large responses, or reading a few values from them.
+ * <p>
+ * Elements are navigated with {@link CompactElement} views, or with a subset of XPath, see
+ * {@link #select(String)}. If a real DOM is needed, e.g. for existing code, {@link #toDocument()} creates one.
+ * <p>
+ * As the response is parsed without namespace awareness, element names include their prefix, e.g.
+ * <code>autn:hit</code>, as they do in the <code>Document</code> from the {@link DocumentProcessor}.
+ */
+public class CompactDocument {
+
+    /**
+     * Index into {@link #names} for each element. Node 0 is the document itself, which has no name.
+     */
+    private final int[] nameIndexes;
+
+    private final int[] parents;
+
+    /**
+     * The index of the last node in each node's subtree. As nodes are numbered in document order, a node's descendants
+     * are exactly the nodes after it, up to and including this one, its first child is the next node, and its next
+     * sibling is the node after its subtree.
+     */
+    private final int[] subtreeEnds;
+
+    /**
+     * The range of the text holding the text of all a node's descendants.
+     */
+    private final int[] textStarts;
+
+    private final int[] textEnds;
+
+    /**
+     * The first of an element's attributes, which run up to the first of the next node's.
+     */
+    private final int[] attributeStarts;
+
+    private final String[] names;
+
+    private final int[] attributeNameIndexes;
+
+    /**
+     * The start of each attribute's value in {@link #attributeValues}, which runs up to the start of the next one's.
+     */
+    private final int[] attributeValueStarts;
+
+    private final char[] attributeValues;
+
+    /**
+     * The text of the document, if it's all ISO-8859-1, otherwise <code>null</code>.
+     */
+    private final byte[] latin1Text;
+
+    /**
+     * The text of the document, if it isn't all ISO-8859-1, otherwise <code>null</code>.
+     */
+    private final char[] text;
+
+    private final int nodeCount;
+
+    private CompactDocument(final Builder builder) {
+        nodeCount = builder.nodeCount;
+        nameIndexes = Arrays.copyOf(builder.nameIndexes, nodeCount);
+        parents = Arrays.copyOf(builder.parents, nodeCount);
+        subtreeEnds = Arrays.copyOf(builder.subtreeEnds, nodeCount);
+        textStarts = Arrays.copyOf(builder.textStarts, nodeCount);
+        textEnds = Arrays.copyOf(builder.textEnds, nodeCount);
+        attributeStarts = Arrays.copyOf(builder.attributeStarts, nodeCount + 1);
+        attributeStarts[nodeCount] = builder.attributeCount;
+
+        names = builder.names.toArray(new String[0]);
+
+        attributeNameIndexes = Arrays.copyOf(builder.attributeNameIndexes, builder.attributeCount);
+        attributeValueStarts = Arrays.copyOf(builder.attributeValueStarts, builder.attributeCount + 1);
+        attributeValueStarts[builder.attributeCount] = builder.attributeValuesLength;
+        attributeValues = Arrays.copyOf(builder.attributeValues, builder.attributeValuesLength);
+
+        if (builder.textCharacterBits <= 0xFF) {
+            latin1Text = builder.textToLatin1Array();
+            text = null;
+        } else {
+            latin1Text = null;
+            text = builder.textToArray();
+        }
+    }
+
+    /**
+     * Reads the rest of the document element from <code>xmlStreamReader</code>. If the reader is part way through the
+     * document, at the start of an element, only that element is read.
+     * @param xmlStreamReader The response to read
+     * @return The tree
+     * @throws XMLStreamException If the response couldn't be read
+     */
+    static CompactDocument parse(final XMLStreamReader xmlStreamReader) throws XMLStreamException {
+        final Builder builder = new Builder();
+        int eventType = xmlStreamReader.getEventType();
+
+        while (true) {
+            switch (eventType) {
+                case XMLEvent.START_ELEMENT:
+                    builder.startElement(xmlStreamReader);
+                    break;
+                case XMLEvent.END_ELEMENT:
+                    if (builder.endElement()) {
+                        // Anything after the element we started with isn't part of it...
+                        return new CompactDocument(builder.endDocument());
+                    }
+                    break;
+                case XMLEvent.CHARACTERS:
+                case XMLEvent.CDATA:
+                case XMLEvent.SPACE:
+                    builder.text(xmlStreamReader.getTextCharacters(), xmlStreamReader.getTextStart(), xmlStreamReader.getTextLength());
+                    break;
+                default:
+                    // Comments, processing instructions etc. aren't kept...
+                    break;
+            }
+
+            if (!xmlStreamReader.hasNext()) {
+                break;
+            }
+            eventType = xmlStreamReader.next();
+        }
+
+        return new CompactDocument(builder.endDocument());
+    }
+
+    /**
+     * @return The document element, e.g. <code>autnresponse</code>, or <code>null</code> if the document is empty
+     */
+    public CompactElement getRootElement() {
+        final int child = firstChild(0);
+        return (child < 0) ? null : new CompactElement(this, child);
+    }
+
+    /**
+     * @return The number of elements in the document
+     */
+    public int getElementCount() {
+        return nodeCount - 1;
+    }
+
+    /**
+     * Selects elements with a subset of XPath, evaluated from the document, so that paths starting with a single
+     * <code>/</code> start at the document element:
+     * <ul>
+     *     <li><code>name</code> selects child elements with the given name, or <code>*</code> for any name</li>
+     *     <li><code>//</code> selects descendants rather than children, e.g. <code>//autn:hit</code></li>
+     *     <li><code>[n]</code> selects only the n<sup>th</sup>, counting from 1, of the elements a step selects from
+     *     each parent, e.g. <code>/autnresponse/responsedata/autn:hit[2]</code></li>
+     * </ul>
+     * @param path The path
+     * @return The selected elements, in document order
+     * @throws IllegalArgumentException If the path isn't supported
+     */
+    public List<CompactElement> select(final String path) {
+        return select(0, path);
+    }
+
+    /**
+     * As {@link #select(String)}, returning only the first element selected.
+     * @param path The path
+     * @return The first selected element, or <code>null</code> if none were
+     */
+    public CompactElement selectFirst(final String path) {
+        return selectFirst(0, path);
+    }
+
+    /**
+     * As {@link #select(String)}, returning the text of the first element selected. The last step may instead be an
+     * attribute, e.g. <code>/autnresponse/responsedata/autn:hit/@id</code>.
+     * @param path The path
+     * @return The text of the first element selected, or the value of its attribute, or an empty string if there is no
+     * such element or attribute, as with XPath
+     */
+    public String valueOf(final String path) {
+        return valueOf(0, path);
+    }
+
+    /**
+     * Creates a DOM <code>Document</code> with the same content, for code that needs one. This costs as much as parsing
+     * the response with the {@link DocumentProcessor} would have.
+     * @return A new <code>Document</code>
+     * @throws ProcessorException If a <code>DocumentBuilder</code> couldn't be created
+     */
+    public Document toDocument() {
+        final Document document;
+
+        try {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        } catch (final ParserConfigurationException pce) {
+            throw new ProcessorException("Unable to create a DOM document.", pce);
+        }
+
+        final Node[] created = new Node[nodeCount];
+        created[0] = document;
+
+        // How far through its text each element has got, so any text before the next child can be added first...
+        final int[] textPositions = Arrays.copyOf(textStarts, nodeCount);
+
+        for (int node = 1; node < nodeCount; node++) {
+            final Element element = document.createElement(names[nameIndexes[node]]);
+            for (int attribute = attributeStarts[node]; attribute < attributeStarts[node + 1]; attribute++) {
+                element.setAttribute(names[attributeNameIndexes[attribute]], attributeValue(attribute));
+            }
+
+            final int parent = parents[node];
+            if ((parent > 0) && (textPositions[parent] < textStarts[node])) {
+                created[parent].appendChild(document.createTextNode(getText(textPositions[parent], textStarts[node])));
+            }
+            textPositions[parent] = textEnds[node];
+
+            created[parent].appendChild(element);
+            created[node] = element;
+        }
+
+        // Any text after the last child of each element...
+        for (int node = 1; node < nodeCount; node++) {
+            if (textPositions[node] < textEnds[node]) {
+                created[node].appendChild(document.createTextNode(getText(textPositions[node], textEnds[node])));
+            }
+        }
+
+        return document;
+    }
+
+    List<CompactElement> select(final int context, final String path) {
+        final BitSet selected = evaluate(context, path);
+        final List<CompactElement> elements = new ArrayList<>(selected.cardinality());
+
+        for (int node = selected.nextSetBit(0); node >= 0; node = selected.nextSetBit(node + 1)) {
+            elements.add(new CompactElement(this, node));
+        }
+
+        return elements;
+    }
+
+    CompactElement selectFirst(final int context, final String path) {
+        final int node = evaluate(context, path).nextSetBit(0);
+        return (node < 0) ? null : new CompactElement(this, node);
+    }
+
+    String valueOf(final int context, final String path) {
+        final int slash = path.lastIndexOf('/');
+        final String last = path.substring(slash + 1);
+
+        if (last.startsWith("@")) {
+            final int node;
+            if (slash < 0) {
+                node = context;
+            } else if (slash == 0) {
+                // The document itself has no attributes...
+                return "";
+            } else {
+                node = evaluate(context, path.substring(0, slash)).nextSetBit(0);
+            }
+
+            final String value = (node < 0) ? null : getAttribute(node, last.substring(1));
+            return (value == null) ? "" : value;
+        }
+
+        final int node = evaluate(context, path).nextSetBit(0);
+        return (node < 0) ? "" : getText(node);
+    }
+
+    /**
+     * Evaluates a path to a set of element indexes, which iterates in document order.
+     */
+    private BitSet evaluate(final int context, final String path) {
+        Validate.notEmpty(path, "path must not be empty");
+
+        BitSet current = new BitSet(nodeCount);
+        int position = 0;
+
+        if (path.charAt(0) == '/') {
+            current.set(0);
+        } else {
+            current.set(context);
+        }
+
+        while (position < path.length()) {
+            boolean descendants = false;
+
+            if (path.startsWith("//", position)) {
+                descendants = true;
+                position += 2;
+            } else if (path.charAt(position) == '/') {
+                position++;
+            }
+
+            int end = path.indexOf('/', position);
+            if (end < 0) {
+                end = path.length();
+            }
+
+            final String step = path.substring(position, end);
+            position = end;
+
+            if (step.isEmpty() || step.startsWith("@") || (step.indexOf('(') >= 0)) {
+                throw new IllegalArgumentException("Unsupported path: " + path);
+            }
+
+            current = step(current, step, descendants);
+        }
+
+        return current;
+    }
+
+    private BitSet step(final BitSet current, final String step, final boolean descendants) {
+        final String name;
+        final int index;
+
+        final int bracket = step.indexOf('[');
+        if (bracket < 0) {
+            name = step;
+            index = 0;
+        } else {
+            if (!step.endsWith("]")) {
+                throw new IllegalArgumentException("Unsupported step: " + step);
+            }
+            name = step.substring(0, bracket);
+            try {
+                index = Integer.parseInt(step.substring(bracket + 1, step.length() - 1));
+            } catch (final NumberFormatException nfe) {
+                throw new IllegalArgumentException("Unsupported step: " + step, nfe);
+            }
+            Validate.isTrue(index > 0, "Positions start at 1: %s", step);
+        }
+
+        final int nameIndex = "*".equals(name) ? -1 : findName(name);
+        final BitSet next = new BitSet(nodeCount);
+
+        if ((nameIndex == -2) || current.isEmpty()) {
+            return next;
+        }
+
+        // The end of the subtrees already searched, as a node in current may be inside another one's subtree...
+        int searchedEnd = -1;
+
+        for (int node = current.nextSetBit(0); node >= 0; node = current.nextSetBit(node + 1)) {
+            if (descendants) {
+                // Every element in the subtree, including the node itself, is a parent to select children from. The
+                // BitSet takes care of children selected more than once...
+                for (int parent = Math.max(node, searchedEnd + 1); parent <= subtreeEnds[node]; parent++) {
+                    selectChildren(parent, nameIndex, index, next);
+                }
+                searchedEnd = Math.max(searchedEnd, subtreeEnds[node]);
+            } else {
+                selectChildren(node, nameIndex, index, next);
+            }
+        }
+
+        return next;
+    }
+
+    private void selectChildren(final int parent, final int nameIndex, final int index, final BitSet selected) {
+        int position = 0;
+
+        for (int child = firstChild(parent); child >= 0; child = nextSibling(child)) {
+            if ((nameIndex < 0) || (nameIndexes[child] == nameIndex)) {
+                position++;
+                if ((index == 0) || (index == position)) {
+                    selected.set(child);
+                    if (index != 0) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The index of <code>name</code>, or <code>-2</code> if no element or attribute has that name
+     */
+    private int findName(final String name) {
+        for (int ii = 0; ii < names.length; ii++) {
+            if (names[ii].equals(name)) {
+                return ii;
+            }
+        }
+        return -2;
+    }
+
+    int firstChild(final int node) {
+        return (subtreeEnds[node] > node) ? node + 1 : -1;
+    }
+
+    int nextSibling(final int node) {
+        final int next = subtreeEnds[node] + 1;
+        return ((next < nodeCount) && (parents[next] == parents[node])) ? next : -1;
+    }
+
+    String getName(final int node) {
+        return names[nameIndexes[node]];
+    }
+
+    int getParent(final int node) {
+        return parents[node];
+    }
+
+    boolean hasName(final int node, final String name) {
+        return names[nameIndexes[node]].equals(name);
+    }
+
+    String getText(final int node) {
+        return getText(textStarts[node], textEnds[node]);
+    }
+
+    private String getText(final int start, final int end) {
+        return (latin1Text == null)
+                ? new String(text, start, end - start)
+                : new String(latin1Text, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    String getAttribute(final int node, final String name) {
+        for (int attribute = attributeStarts[node]; attribute < attributeStarts[node + 1]; attribute++) {
+            if (names[attributeNameIndexes[attribute]].equals(name)) {
+                return attributeValue(attribute);
+            }
+        }
+        return null;
+    }
+
+    Map<String, String> getAttributes(final int node) {
+        if (attributeStarts[node] == attributeStarts[node + 1]) {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, String> attributes = new LinkedHashMap<>();
+        for (int attribute = attributeStarts[node]; attribute < attributeStarts[node + 1]; attribute++) {
+            attributes.put(names[attributeNameIndexes[attribute]], attributeValue(attribute));
+        }
+        return attributes;
+    }
+
+    private String attributeValue(final int attribute) {
+        return new String(attributeValues, attributeValueStarts[attribute], attributeValueStarts[attribute + 1] - attributeValueStarts[attribute]);
+    }
+
+    /**
+     * Builds the arrays as the response is read, growing them as necessary.
+     */
+    private static final class Builder {
+
+        private static final int TEXT_CHUNK_SIZE = 8192;
+
+        private int[] nameIndexes = new int[256];
+        private int[] parents = new int[256];
+        private int[] subtreeEnds = new int[256];
+        private int[] textStarts = new int[256];
+        private int[] textEnds = new int[256];
+        private int[] attributeStarts = new int[256];
+        private int nodeCount;
+
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> nameIndex = new HashMap<>();
+
+        private int[] attributeNameIndexes = new int[64];
+        private int[] attributeValueStarts = new int[64];
+        private int attributeCount;
+
+        private char[] attributeValues = new char[256];
+        private int attributeValuesLength;
+
+        /**
+         * Text is read into fixed size chunks, rather than a growing array, so that it's only copied once more, into
+         * an array of exactly the right size, when the document is complete.
+         */
+        private final List<char[]> textChunks = new ArrayList<>();
+        private char[] textChunk = new char[TEXT_CHUNK_SIZE];
+        private int textChunkLength;
+        private int textLength;
+
+        /**
+         * All the text's characters OR'ed together, so that we know whether it'll all fit in a byte per character.
+         */
+        private int textCharacterBits;
+
+        /**
+         * The element currently being read.
+         */
+        private int current;
+
+        private Builder() {
+            addNode(-1, -1);
+        }
+
+        private int addNode(final int nameIndex, final int parent) {
+            if (nodeCount == nameIndexes.length) {
+                final int capacity = nodeCount * 2;
+                nameIndexes = Arrays.copyOf(nameIndexes, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                subtreeEnds = Arrays.copyOf(subtreeEnds, capacity);
+                textStarts = Arrays.copyOf(textStarts, capacity);
+                textEnds = Arrays.copyOf(textEnds, capacity);
+                attributeStarts = Arrays.copyOf(attributeStarts, capacity);
+            }
+
+            final int node = nodeCount++;
+            nameIndexes[node] = nameIndex;
+            parents[node] = parent;
+            subtreeEnds[node] = node;
+            textStarts[node] = textLength;
+            textEnds[node] = textLength;
+            attributeStarts[node] = attributeCount;
+            return node;
+        }
+
+        private int nameIndex(final String name) {
+            Integer index = nameIndex.get(name);
+            if (index == null) {
+                index = names.size();
+                names.add(name);
+                nameIndex.put(name, index);
+            }
+            return index;
+        }
+
+        private static String qualifiedName(final String prefix, final String localName) {
+            return StringUtils.isEmpty(prefix) ? localName : prefix + ':' + localName;
+        }
+
+        private void startElement(final XMLStreamReader xmlStreamReader) {
+            current = addNode(nameIndex(qualifiedName(xmlStreamReader.getPrefix(), xmlStreamReader.getLocalName())), current);
+
+            for (int ii = 0; ii < xmlStreamReader.getAttributeCount(); ii++) {
+                addAttribute(qualifiedName(xmlStreamReader.getAttributePrefix(ii), xmlStreamReader.getAttributeLocalName(ii)), xmlStreamReader.getAttributeValue(ii));
+            }
+        }
+
+        private void addAttribute(final String name, final String value) {
+            if (attributeCount == attributeNameIndexes.length) {
+                final int capacity = attributeCount * 2;
+                attributeNameIndexes = Arrays.copyOf(attributeNameIndexes, capacity);
+                attributeValueStarts = Arrays.copyOf(attributeValueStarts, capacity);
+            }
+
+            if (attributeValuesLength + value.length() > attributeValues.length) {
+                attributeValues = Arrays.copyOf(attributeValues, Math.max(attributeValues.length * 2, attributeValuesLength + value.length()));
+            }
+
+            value.getChars(0, value.length(), attributeValues, attributeValuesLength);
+
+            attributeNameIndexes[attributeCount] = nameIndex(name);
+            attributeValueStarts[attributeCount] = attributeValuesLength;
+            attributeValuesLength += value.length();
+            attributeCount++;
+        }
+
+        /**
+         * @return <code>true</code> if the document element has been closed
+         */
+        private boolean endElement() {
+            textEnds[current] = textLength;
+            subtreeEnds[current] = nodeCount - 1;
+            current = parents[current];
+            return current == 0;
+        }
+
+        private void text(final char[] characters, final int start, final int length) {
+            if ((length == 0) || (current == 0)) {
+                // Whitespace outside the document element isn't part of the document...
+                return;
+            }
+
+            // There are no text nodes, an element's text is just the range of text read between its start and end...
+            int copied = 0;
+            while (copied < length) {
+                if (textChunkLength == TEXT_CHUNK_SIZE) {
+                    textChunks.add(textChunk);
+                    textChunk = new char[TEXT_CHUNK_SIZE];
+                    textChunkLength = 0;
+                }
+
+                final int count = Math.min(length - copied, TEXT_CHUNK_SIZE - textChunkLength);
+                for (int ii = 0; ii < count; ii++) {
+                    final char character = characters[start + copied + ii];
+                    textCharacterBits |= character;
+                    textChunk[textChunkLength + ii] = character;
+                }
+                textChunkLength += count;
+                copied += count;
+            }
+
+            textLength += length;
+        }
+
+        private char[] textToArray() {
+            final char[] text = new char[textLength];
+            int offset = 0;
+
+            for (final char[] chunk : textChunks) {
+                System.arraycopy(chunk, 0, text, offset, TEXT_CHUNK_SIZE);
+                offset += TEXT_CHUNK_SIZE;
+            }
+
+            System.arraycopy(textChunk, 0, text, offset, textChunkLength);
+            return text;
+        }
+
+        private byte[] textToLatin1Array() {
+            final byte[] text = new byte[textLength];
+            int offset = 0;
+
+            for (final char[] chunk : textChunks) {
+                copyLatin1(chunk, TEXT_CHUNK_SIZE, text, offset);
+                offset += TEXT_CHUNK_SIZE;
+            }
+
+            copyLatin1(textChunk, textChunkLength, text, offset);
+            return text;
+        }
+
+        private static void copyLatin1(final char[] chunk, final int length, final byte[] text, final int offset) {
+            for (int ii = 0; ii < length; ii++) {
+                text[offset + ii] = (byte) chunk[ii];
+            }
+        }
+
+        private Builder endDocument() {
+            textEnds[0] = textLength;
+            subtreeEnds[0] = nodeCount - 1;
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.util.DateTimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.text.ParseException;
+
+/**
+ * <code>Processor</code> implementation that converts an ACI response into a {@link CompactDocument}, a read-only tree
+ * that uses a fraction of the memory of the DOM <code>Document</code> that the {@link DocumentProcessor} creates. Use it
+ * in place of the <code>DocumentProcessor</code> when large responses are only read, and use
+ * {@link CompactDocument#toDocument()} for anything that still needs a DOM.
+ */
+public class CompactDocumentProcessor extends AbstractStAXProcessor<CompactDocument> {
+
+    private static final long serialVersionUID = 2863574015392047126L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompactDocumentProcessor.class);
+
+    /**
+     * Process the ACI response into a <code>CompactDocument</code>.
+     * @param xmlStreamReader The ACI response to process
+     * @return A <code>CompactDocument</code>
+     * @throws AciErrorException  If the ACI response was an error response
+     * @throws ProcessorException If an error occurred during the processing of the ACI response
+     */
+    @Override
+    public CompactDocument process(final XMLStreamReader xmlStreamReader) {
+        LOGGER.trace("process() called...");
+
+        final CompactDocument document;
+
+        try {
+            document = CompactDocument.parse(xmlStreamReader);
+        } catch (final XMLStreamException xmlse) {
+            throw new ProcessorException("Unable to parse the ACI response into a CompactDocument.", xmlse);
+        }
+
+        LOGGER.debug("Checking for ERROR response...");
+
+        checkACIResponseForError(document);
+
+        return document;
+    }
+
+    /**
+     * Checks the document to see if it is an ACI Server error response. If it is, it pulls all the information contained
+     * in the response into an <code>AciErrorException</code> and throws it, otherwise it does nothing.
+     * @param document The document to check.
+     * @throws AciErrorException If an error response was detected.
+     */
+    private void checkACIResponseForError(final CompactDocument document) {
+        LOGGER.trace("checkACIResponseForError() called...");
+
+        if ("ERROR".equals(document.valueOf("/autnresponse/response"))) {
+            LOGGER.debug("Error response detected, creating an AciErrorException...");
+
+            final AciErrorException error = new AciErrorException();
+            error.setErrorId(document.valueOf("/autnresponse/responsedata/error/errorid"));
+            error.setRawErrorId(document.valueOf("/autnresponse/responsedata/error/rawerrorid"));
+            error.setErrorString(document.valueOf("/autnresponse/responsedata/error/errorstring"));
+            error.setErrorDescription(document.valueOf("/autnresponse/responsedata/error/errordescription"));
+            error.setErrorCode(document.valueOf("/autnresponse/responsedata/error/errorcode"));
+            try {
+                error.setErrorTime(DateTimeUtils.getInstance().parseDate(document.valueOf("/autnresponse/responsedata/error/errortime"), "dd MMM yy HH:mm:ss"));
+            } catch (final ParseException pe) {
+                LOGGER.error("ParseException caught while trying to convert errortime tag into java.util.Date.", pe);
+            }
+
+            throw error;
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A view of an element in a {@link CompactDocument}. Views are cheap to create and hold nothing but their position in
+ * the document, so two views of the same element are equal.
+ */
+public final class CompactElement {
+
+    private final CompactDocument document;
+
+    private final int node;
+
+    CompactElement(final CompactDocument document, final int node) {
+        this.document = document;
+        this.node = node;
+    }
+
+    /**
+     * @return The document this element is in
+     */
+    public CompactDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * @return The name of this element, including any prefix, e.g. <code>autn:hit</code>
+     */
+    public String getName() {
+        return document.getName(node);
+    }
+
+    /**
+     * @return The parent of this element, or <code>null</code> if it's the document element
+     */
+    public CompactElement getParent() {
+        final int parent = document.getParent(node);
+        return (parent <= 0) ? null : new CompactElement(document, parent);
+    }
+
+    /**
+     * @return The child elements of this element, in document order
+     */
+    public List<CompactElement> getChildren() {
+        final List<CompactElement> children = new ArrayList<>();
+        for (int child = document.firstChild(node); child >= 0; child = document.nextSibling(child)) {
+            children.add(new CompactElement(document, child));
+        }
+        return children;
+    }
+
+    /**
+     * @param name The name of the elements to return
+     * @return The child elements of this element with the given name, in document order
+     */
+    public List<CompactElement> getChildren(final String name) {
+        final List<CompactElement> children = new ArrayList<>();
+        for (int child = document.firstChild(node); child >= 0; child = document.nextSibling(child)) {
+            if (document.hasName(child, name)) {
+                children.add(new CompactElement(document, child));
+            }
+        }
+        return children;
+    }
+
+    /**
+     * @param name The name of the element to return
+     * @return The first child element of this element with the given name, or <code>null</code> if there isn't one
+     */
+    public CompactElement getChild(final String name) {
+        for (int child = document.firstChild(node); child >= 0; child = document.nextSibling(child)) {
+            if (document.hasName(child, name)) {
+                return new CompactElement(document, child);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The text of this element and all its descendants, as with the DOM <code>getTextContent()</code> method
+     */
+    public String getText() {
+        return document.getText(node);
+    }
+
+    /**
+     * @param name The name of the attribute
+     * @return The value of the attribute, or <code>null</code> if this element doesn't have it
+     */
+    public String getAttribute(final String name) {
+        return document.getAttribute(node, name);
+    }
+
+    /**
+     * @return The attributes of this element, in document order
+     */
+    public Map<String, String> getAttributes() {
+        return document.getAttributes(node);
+    }
+
+    /**
+     * As {@link CompactDocument#select(String)}, with paths that don't start with a <code>/</code> evaluated from this
+     * element.
+     * @param path The path
+     * @return The selected elements, in document order
+     * @throws IllegalArgumentException If the path isn't supported
+     */
+    public List<CompactElement> select(final String path) {
+        return document.select(node, path);
+    }
+
+    /**
+     * As {@link CompactDocument#selectFirst(String)}, with paths that don't start with a <code>/</code> evaluated from
+     * this element.
+     * @param path The path
+     * @return The first selected element, or <code>null</code> if none were
+     */
+    public CompactElement selectFirst(final String path) {
+        return document.selectFirst(node, path);
+    }
+
+    /**
+     * As {@link CompactDocument#valueOf(String)}, with paths that don't start with a <code>/</code> evaluated from this
+     * element, so <code>@id</code> is the value of this element's <code>id</code> attribute.
+     * @param path The path
+     * @return The text of the first element selected, or the value of its attribute, or an empty string
+     */
+    public String valueOf(final String path) {
+        return document.valueOf(node, path);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CompactElement)) {
+            return false;
+        }
+        final CompactElement that = (CompactElement) obj;
+        return (this.document == that.document) && (this.node == that.node);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(document) + node;
+    }
+
+    @Override
+    public String toString() {
+        return '<' + getName() + '>';
+    }
+
+}
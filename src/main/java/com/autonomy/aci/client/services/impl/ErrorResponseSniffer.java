@@ -0,0 +1,265 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Finds out whether an ACI response is an error response by looking for the <code>/autnresponse/response</code>
+ * element in the first few bytes of it, rather than parsing it. The bytes read are pushed back, so a successful response
+ * can be processed exactly as if it hadn't been looked at, and only error responses, which are small, are parsed.
+ * <p>
+ * The bytes are matched as ASCII, which suits UTF-8 and the other encodings ACI servers use. If the element can't be
+ * found in the first {@link #LOOKAHEAD} bytes, e.g. because the response isn't XML, the result is
+ * {@link Result#UNKNOWN}.
+ */
+final class ErrorResponseSniffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ErrorResponseSniffer.class);
+
+    /**
+     * The most bytes read from the start of a response. The <code>response</code> element is well within this...
+     */
+    static final int LOOKAHEAD = 2048;
+
+    private static final byte[] RESPONSE_START = "<response>".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Processor<AciErrorException> ERROR_PROCESSOR = new ErrorProcessor();
+
+    /**
+     * What sniffing a response found.
+     */
+    enum Result {
+        /**
+         * The response is an error response.
+         */
+        ERROR,
+
+        /**
+         * The response is a successful response.
+         */
+        SUCCESS,
+
+        /**
+         * The <code>response</code> element couldn't be found.
+         */
+        UNKNOWN
+    }
+
+    private ErrorResponseSniffer() {
+        // Only static methods...
+    }
+
+    /**
+     * Throws the error if <code>response</code> is an XML error response, otherwise returns a response that can be
+     * processed in its place.
+     * @param response The response to check, which should be closed, rather than the returned response, once it's been
+     *                 processed
+     * @return A response with the same content and headers as <code>response</code>
+     * @throws AciErrorException If the response is an error response
+     * @throws IOException       If the response couldn't be read
+     */
+    static AciResponseInputStream checkForError(final AciResponseInputStream response) throws IOException {
+        LOGGER.trace("checkForError() called...");
+
+        if (!isXml(response)) {
+            return response;
+        }
+
+        final SniffedResponse sniffed = sniff(response);
+        if (sniffed.getResult() == Result.ERROR) {
+            throw ERROR_PROCESSOR.process(sniffed);
+        }
+        return sniffed;
+    }
+
+    /**
+     * @param response The response to check
+     * @return <code>true</code> if the content type of <code>response</code> is <code>text/xml</code>
+     */
+    static boolean isXml(final AciResponseInputStream response) {
+        final String contentType = response.getContentType();
+        return (contentType != null) && contentType.toLowerCase(Locale.ROOT).startsWith("text/xml");
+    }
+
+    /**
+     * Creates the exception to throw when a processor that only handles non-XML responses is given an XML response. If
+     * it's an error response the exception is the error, otherwise it says that <code>processorName</code> shouldn't be
+     * used for XML responses. Only the start of a successful response is read.
+     * @param response       The XML response
+     * @param errorProcessor The processor to parse an error response with
+     * @param processorName  The name of the processor that was given the response
+     * @return The exception to throw
+     * @throws ProcessorException If the response couldn't be read
+     */
+    static AciErrorException rejectXmlResponse(final AciResponseInputStream response, final Processor<AciErrorException> errorProcessor, final String processorName) {
+        LOGGER.trace("rejectXmlResponse() called...");
+
+        final SniffedResponse sniffed;
+        try {
+            sniffed = sniff(response);
+        } catch (final IOException ioe) {
+            throw new ProcessorException("Unable to read the start of the ACI response.", ioe);
+        }
+
+        if (sniffed.getResult() != Result.SUCCESS) {
+            // Process the error response, error processors usually throw what they'd return...
+            AciErrorException error;
+            try {
+                error = errorProcessor.process(sniffed);
+            } catch (final AciErrorException e) {
+                error = e;
+            }
+
+            if ((error != null) && (error.getErrorId() != null)) {
+                return error;
+            }
+        }
+
+        return new AciErrorException(processorName + " should not be used for XML responses");
+    }
+
+    /**
+     * Reads the start of <code>response</code> to find out if it's an error response.
+     * @param response The response to check
+     * @return A response that replays the bytes read, then reads the rest of <code>response</code>, along with what was
+     * found
+     * @throws IOException If the response couldn't be read
+     */
+    static SniffedResponse sniff(final AciResponseInputStream response) throws IOException {
+        LOGGER.trace("sniff() called...");
+
+        final byte[] buffer = new byte[LOOKAHEAD];
+        int length = 0;
+        Result result = Result.UNKNOWN;
+
+        while (length < buffer.length) {
+            final int read = response.read(buffer, length, buffer.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+
+            result = findResult(buffer, length);
+            if (result != Result.UNKNOWN) {
+                break;
+            }
+        }
+
+        LOGGER.debug("Sniffed {} bytes of the response and found {}...", length, result);
+
+        final SniffedResponse sniffed = new SniffedResponse(response, result);
+        sniffed.pushBack(buffer, length);
+        return sniffed;
+    }
+
+    /**
+     * @return What the value of the first <code>response</code> element is, if all of it is in the buffer
+     */
+    private static Result findResult(final byte[] buffer, final int length) {
+        final int start = indexOf(buffer, length, RESPONSE_START);
+        if (start < 0) {
+            return Result.UNKNOWN;
+        }
+
+        final int valueStart = start + RESPONSE_START.length;
+        for (int end = valueStart; end < length; end++) {
+            if (buffer[end] == '<') {
+                final String value = new String(buffer, valueStart, end - valueStart, StandardCharsets.US_ASCII).trim();
+                return "ERROR".equalsIgnoreCase(value) ? Result.ERROR : Result.SUCCESS;
+            }
+        }
+
+        return Result.UNKNOWN;
+    }
+
+    private static int indexOf(final byte[] buffer, final int length, final byte[] target) {
+        outer:
+        for (int ii = 0; ii <= length - target.length; ii++) {
+            for (int jj = 0; jj < target.length; jj++) {
+                if (buffer[ii + jj] != target[jj]) {
+                    continue outer;
+                }
+            }
+            return ii;
+        }
+        return -1;
+    }
+
+    /**
+     * A response that replays the bytes that were sniffed before reading the rest of the original response, and has the
+     * same headers. Closing it closes the original response.
+     */
+    static final class SniffedResponse extends AciResponseInputStream {
+
+        private final AciResponseInputStream response;
+
+        private final Result result;
+
+        private SniffedResponse(final AciResponseInputStream response, final Result result) {
+            super(new PushbackInputStream(response, LOOKAHEAD));
+            this.response = response;
+            this.result = result;
+        }
+
+        private void pushBack(final byte[] buffer, final int length) throws IOException {
+            ((PushbackInputStream) in).unread(buffer, 0, length);
+        }
+
+        /**
+         * @return What sniffing the response found
+         */
+        Result getResult() {
+            return result;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getHeader(final String name) {
+            return response.getHeader(name);
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return response.getContentEncoding();
+        }
+
+        @Override
+        public long getContentLength() {
+            return response.getContentLength();
+        }
+
+        @Override
+        public String getContentType() {
+            return response.getContentType();
+        }
+
+    }
+
+}
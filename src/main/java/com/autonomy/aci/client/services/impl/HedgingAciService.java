@@ -0,0 +1,647 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciConstants;
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.AciService;
+import com.autonomy.aci.client.services.AciServiceException;
+import com.autonomy.aci.client.services.AsyncAciService;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.ActionParameter;
+import com.autonomy.aci.client.transport.impl.AciResponseInputStreamImpl;
+import com.autonomy.aci.client.util.IOUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An <code>AciService</code> that cuts tail latency for idempotent actions by sending a duplicate, or hedge, of the action
+ * to a second server when the first hasn't answered within a percentile of recent response times. Whichever response is
+ * processed first wins, and the other is stopped, closing its connection rather than reading the rest of its response.
+ * <p>
+ * Only actions named in <code>hedgeableActions</code> are ever hedged, everything else is sent to a single server. Hedges
+ * are also capped by a budget, so that they can only ever be a small share, <code>hedgeRatio</code>, of the traffic. No
+ * hedging happens until <code>minimumSamples</code> response times have been recorded.
+ * <p>
+ * As both attempts may process their response at the same time, the <code>Processor</code> passed in must be safe to use
+ * from two threads at once. Transport failures from one attempt are ignored if the other succeeds, while an ACI error
+ * response is treated as an answer, as the other server would most likely return the same. Every attempt that gets a
+ * response, or is overtaken, counts towards the recent response times, so slow losers keep the hedge delay honest.
+ * <p>
+ * If the <code>AciService</code> is also an {@link AsyncAciService}, e.g. an {@link AsyncAciServiceImpl}, the attempts are
+ * sent with that and no threads are used while they're in flight. A losing attempt's future is cancelled, which for an
+ * <code>AsyncAciServiceImpl</code> cancels its HTTP exchange, so it stops downloading straight away. Other implementations
+ * need to do the same when their future is cancelled.
+ * <p>
+ * Otherwise, when there's no chance of a hedge being sent, because not enough response times have been recorded or the
+ * budget has run out, the action is sent on the calling thread. When a hedge might be needed the first attempt is sent
+ * on the executor, so that the calling thread is free to return whichever response wins. A blocking attempt that hasn't
+ * got a response yet when it loses is abandoned, and aborted once its response arrives.
+ * <p>
+ * Call {@link #close()} when finished with this service to shut down its default executor.
+ */
+public class HedgingAciService implements AciService, AutoCloseable {
+
+    /**
+     * Class logger...
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(HedgingAciService.class);
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    /**
+     * The actions hedged by default, all of which are read-only...
+     */
+    private static final Set<String> DEFAULT_HEDGEABLE_ACTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "query", "getcontent", "getstatus"
+    )));
+
+    /**
+     * The delegate used to actually execute the actions.
+     */
+    private final AciService aciService;
+
+    /**
+     * The delegate, if it can execute actions without blocking, otherwise <code>null</code>.
+     */
+    private final AsyncAciService asyncAciService;
+
+    /**
+     * The servers to send actions and hedges to.
+     */
+    private final List<AciServerDetails> servers;
+
+    /**
+     * Used to pick the first server for each action.
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Recent response times, used to work out when to hedge.
+     */
+    private final LatencyWindow latencies = new LatencyWindow(1000);
+
+    /**
+     * Holds the tokens that allow hedges to be sent.
+     */
+    private final HedgeBudget budget = new HedgeBudget();
+
+    /**
+     * The executor we created, and so must shut down, if one wasn't supplied...
+     */
+    private final ExecutorService ownedExecutor;
+
+    /**
+     * Runs the attempts.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Holds value of property hedgeableActions.
+     */
+    private volatile Set<String> hedgeableActions = DEFAULT_HEDGEABLE_ACTIONS;
+
+    /**
+     * Holds value of property percentile.
+     */
+    private volatile double percentile = 0.95;
+
+    /**
+     * Holds value of property minimumSamples.
+     */
+    private volatile int minimumSamples = 20;
+
+    /**
+     * Holds value of property hedgeRatio.
+     */
+    private volatile double hedgeRatio = 0.05;
+
+    /**
+     * Counts the hedges that have been sent.
+     */
+    private final AtomicInteger hedgeCount = new AtomicInteger();
+
+    /**
+     * Creates a new instance of HedgingAciService that runs the attempts on its own cached thread pool.
+     * @param aciService The <code>AciService</code> used to execute actions against each server
+     * @param servers    The details of the equivalent ACI servers to send actions to
+     * @throws NullPointerException     If <code>aciService</code> or <code>servers</code> is <code>null</code>
+     * @throws IllegalArgumentException If <code>servers</code> is empty or contains <code>null</code> elements
+     */
+    public HedgingAciService(final AciService aciService, final List<? extends AciServerDetails> servers) {
+        this(aciService, servers, null);
+    }
+
+    /**
+     * Creates a new instance of HedgingAciService.
+     * @param aciService The <code>AciService</code> used to execute actions against each server
+     * @param servers    The details of the equivalent ACI servers to send actions to. If there's only one, hedges are sent
+     *                   to the same server
+     * @param executor   Runs the attempts when a hedge might be needed, so needs to be able to run at least two at once per
+     *                   concurrent action. Not used if <code>aciService</code> is an <code>AsyncAciService</code>. If
+     *                   <code>null</code> a cached thread pool is created and shut down by {@link #close()}
+     * @throws NullPointerException     If <code>aciService</code> or <code>servers</code> is <code>null</code>
+     * @throws IllegalArgumentException If <code>servers</code> is empty or contains <code>null</code> elements
+     */
+    public HedgingAciService(final AciService aciService, final List<? extends AciServerDetails> servers, final ExecutorService executor) {
+        Validate.notNull(aciService, "AciService must not be null.");
+        Validate.notEmpty(servers, "At least one set of server details must be supplied.");
+        Validate.noNullElements(servers, "Server details must not be null.");
+
+        this.aciService = aciService;
+        this.asyncAciService = (aciService instanceof AsyncAciService) ? (AsyncAciService) aciService : null;
+        this.servers = Collections.unmodifiableList(new ArrayList<>(servers));
+
+        if (executor == null) {
+            this.ownedExecutor = Executors.newCachedThreadPool(runnable -> {
+                final Thread thread = new Thread(runnable, "aci-hedge-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor = ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Executes an ACI action on one of the servers, hedging it to another if it's a hedgeable action and the first server
+     * is slow to respond.
+     * @param parameters The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                   Action=<command>} parameter.
+     * @param processor  The <code>Processor</code> to use for converting the response stream into an object
+     * @return The ACI response encoded as an object of type <code>T</code>
+     * @throws AciServiceException If an error occurred during the communication with the ACI Server, processing the
+     *                             response or if the response contained an error
+     */
+    @Override
+    public <T> T executeAction(final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor) {
+        LOGGER.trace("executeAction() called...");
+
+        final int index = Math.floorMod(next.getAndIncrement(), servers.size());
+        final AciServerDetails primary = servers.get(index);
+
+        if (!isHedgeable(parameters)) {
+            return aciService.executeAction(primary, parameters, processor);
+        }
+
+        budget.deposit(hedgeRatio);
+
+        final long delay = latencies.getPercentile();
+        final Race<T> race = new Race<>(parameters, processor);
+
+        try {
+            if ((asyncAciService == null) && ((delay < 0L) || !budget.canWithdraw())) {
+                // No hedge will be sent, so there's no need to tie up another thread...
+                race.run(race.newAttempt(), primary);
+            } else {
+                race.start(primary);
+
+                if (delay >= 0L) {
+                    try {
+                        return race.result.get(delay, TimeUnit.NANOSECONDS);
+                    } catch (final TimeoutException te) {
+                        if (budget.withdraw()) {
+                            LOGGER.debug("No response after {}ns, hedging the action...", delay);
+                            hedgeCount.incrementAndGet();
+                            race.start(servers.get((index + 1) % servers.size()));
+                        }
+                    }
+                }
+            }
+
+            return race.result.get();
+        } catch (final ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new AciServiceException(cause);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            race.abortAll();
+            throw new AciServiceException("Interrupted while waiting for the ACI response.", ie);
+        }
+    }
+
+    /**
+     * Executes an ACI action on the specified server without hedging.
+     * @param serverDetails The connection details of the ACI Server to execute the action on
+     * @param parameters    The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                      Action=<command>} parameter
+     * @param processor     The <code>Processor</code> to use for converting the response stream into an object
+     * @return The ACI response encoded as an object of type <code>T</code>
+     * @throws AciServiceException If an error occurred during the communication with the ACI Server, processing the
+     *                             response or if the response contained an error
+     */
+    @Override
+    public <T> T executeAction(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor) {
+        LOGGER.trace("executeAction() called...");
+
+        return aciService.executeAction(serverDetails, parameters, processor);
+    }
+
+    /**
+     * Shuts down the executor, if it was created by this service.
+     */
+    @Override
+    public void close() {
+        LOGGER.trace("close() called...");
+
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The number of hedges that have been sent
+     */
+    public int getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /**
+     * @return The current hedge delay in nanoseconds, or <code>-1</code> if not enough response times have been recorded
+     */
+    public long getHedgeDelay() {
+        return latencies.getPercentile();
+    }
+
+    private boolean isHedgeable(final Set<? extends ActionParameter<?>> parameters) {
+        for (final ActionParameter<?> parameter : parameters) {
+            if (AciConstants.PARAM_ACTION.equalsIgnoreCase(parameter.getName())) {
+                final Object value = parameter.getValue();
+                return (value != null) && hedgeableActions.contains(value.toString().toLowerCase(Locale.ENGLISH));
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Getter for property hedgeableActions.
+     * @return Value of property hedgeableActions, lowercased.
+     */
+    public Set<String> getHedgeableActions() {
+        return hedgeableActions;
+    }
+
+    /**
+     * Setter for property hedgeableActions, the names of the actions that may be hedged. Only include idempotent actions.
+     * Names are matched case insensitively. Defaults to <code>Query</code>, <code>GetContent</code> and
+     * <code>GetStatus</code>.
+     * @param hedgeableActions New value of property hedgeableActions.
+     */
+    public void setHedgeableActions(final Set<String> hedgeableActions) {
+        Validate.notNull(hedgeableActions, "Hedgeable actions must not be null.");
+
+        final Set<String> lowercased = new HashSet<>();
+        for (final String action : hedgeableActions) {
+            lowercased.add(action.toLowerCase(Locale.ENGLISH));
+        }
+        this.hedgeableActions = Collections.unmodifiableSet(lowercased);
+    }
+
+    /**
+     * Getter for property percentile.
+     * @return Value of property percentile.
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * Setter for property percentile, the percentile of recent response times after which a hedge is sent. Defaults to
+     * <code>0.95</code>.
+     * @param percentile New value of property percentile, between <code>0</code> and <code>1</code>.
+     */
+    public void setPercentile(final double percentile) {
+        Validate.inclusiveBetween(0.0, 1.0, percentile, "Percentile must be between 0 and 1.");
+        this.percentile = percentile;
+    }
+
+    /**
+     * Getter for property minimumSamples.
+     * @return Value of property minimumSamples.
+     */
+    public int getMinimumSamples() {
+        return minimumSamples;
+    }
+
+    /**
+     * Setter for property minimumSamples, the number of response times that must be recorded before hedging starts.
+     * Defaults to <code>20</code>.
+     * @param minimumSamples New value of property minimumSamples.
+     */
+    public void setMinimumSamples(final int minimumSamples) {
+        Validate.isTrue(minimumSamples > 0, "Minimum samples must be positive.");
+        this.minimumSamples = minimumSamples;
+    }
+
+    /**
+     * Getter for property hedgeRatio.
+     * @return Value of property hedgeRatio.
+     */
+    public double getHedgeRatio() {
+        return hedgeRatio;
+    }
+
+    /**
+     * Setter for property hedgeRatio, the maximum share of hedgeable actions that may be hedged, averaged over time.
+     * Defaults to <code>0.05</code>, i.e. 5%.
+     * @param hedgeRatio New value of property hedgeRatio, between <code>0</code> and <code>1</code>.
+     */
+    public void setHedgeRatio(final double hedgeRatio) {
+        Validate.inclusiveBetween(0.0, 1.0, hedgeRatio, "Hedge ratio must be between 0 and 1.");
+        this.hedgeRatio = hedgeRatio;
+    }
+
+    /**
+     * The attempts for a single action, the first to successfully process its response completing the result.
+     */
+    private final class Race<T> {
+
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private final Set<? extends ActionParameter<?>> parameters;
+
+        private final Processor<T> processor;
+
+        private final List<Attempt> attempts = new ArrayList<>(2);
+
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private final AtomicReference<RuntimeException> firstFailure = new AtomicReference<>();
+
+        private Race(final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor) {
+            this.parameters = parameters;
+            this.processor = processor;
+        }
+
+        private Attempt newAttempt() {
+            final Attempt attempt = new Attempt();
+
+            synchronized (attempts) {
+                attempts.add(attempt);
+            }
+
+            pending.incrementAndGet();
+            return attempt;
+        }
+
+        /**
+         * Sends an attempt without blocking the calling thread.
+         */
+        private void start(final AciServerDetails serverDetails) {
+            final Attempt attempt = newAttempt();
+
+            if (asyncAciService != null) {
+                final long start = System.nanoTime();
+                final CompletableFuture<T> future = asyncAciService.executeActionAsync(serverDetails, parameters, wrap(attempt));
+                attempt.future = future;
+                future.whenComplete((value, throwable) -> finish(attempt, start, value, throwable));
+            } else {
+                attempt.future = executor.submit(() -> run(attempt, serverDetails));
+            }
+        }
+
+        /**
+         * Sends an attempt on the current thread, returning once it has finished.
+         */
+        private void run(final Attempt attempt, final AciServerDetails serverDetails) {
+            final long start = System.nanoTime();
+
+            try {
+                finish(attempt, start, aciService.executeAction(serverDetails, parameters, wrap(attempt)), null);
+            } catch (final RuntimeException re) {
+                finish(attempt, start, null, re);
+            }
+        }
+
+        private Processor<T> wrap(final Attempt attempt) {
+            return response -> {
+                if (!attempt.register(response)) {
+                    throw new ProcessorException("Another attempt has already won.");
+                }
+                return processor.process(response);
+            };
+        }
+
+        private void finish(final Attempt attempt, final long start, final T value, final Throwable throwable) {
+            final Throwable failure = ((throwable instanceof CompletionException) && (throwable.getCause() != null)) ? throwable.getCause() : throwable;
+
+            // Losers count too, otherwise only the fastest responses would be recorded and hedges would get ever more
+            // frequent. Attempts that failed without a response say nothing about how long the servers take...
+            if ((failure == null) || (failure instanceof AciErrorException) || attempt.isAnsweredOrOvertaken()) {
+                latencies.record(System.nanoTime() - start);
+            }
+
+            if (failure == null) {
+                if (result.complete(value)) {
+                    abortOthers(attempt);
+                }
+            } else if (failure instanceof AciErrorException) {
+                // The server answered, the other one will most likely say the same...
+                if (result.completeExceptionally(failure)) {
+                    abortOthers(attempt);
+                }
+            } else {
+                firstFailure.compareAndSet(null, (failure instanceof RuntimeException) ? (RuntimeException) failure : new AciServiceException(failure));
+
+                if (pending.decrementAndGet() == 0) {
+                    result.completeExceptionally(firstFailure.get());
+                }
+            }
+        }
+
+        private void abortOthers(final Attempt winner) {
+            synchronized (attempts) {
+                for (final Attempt attempt : attempts) {
+                    if (attempt != winner) {
+                        attempt.abort();
+                    }
+                }
+            }
+        }
+
+        private void abortAll() {
+            abortOthers(null);
+        }
+    }
+
+    /**
+     * A single send of the action, which can be aborted from another thread.
+     */
+    private static final class Attempt {
+
+        private AciResponseInputStream response;
+
+        private boolean aborted;
+
+        private volatile Future<?> future;
+
+        /**
+         * @return Whether a response has arrived for this attempt, or another attempt has won
+         */
+        private synchronized boolean isAnsweredOrOvertaken() {
+            return aborted || (response != null);
+        }
+
+        /**
+         * @return <code>false</code> if the attempt has already lost, in which case the response has been aborted
+         */
+        private boolean register(final AciResponseInputStream response) {
+            synchronized (this) {
+                if (!aborted) {
+                    this.response = response;
+                    return true;
+                }
+            }
+
+            abort(response);
+            return false;
+        }
+
+        private void abort() {
+            final AciResponseInputStream toAbort;
+
+            synchronized (this) {
+                aborted = true;
+                toAbort = response;
+            }
+
+            if (toAbort != null) {
+                abort(toAbort);
+            }
+
+            // Cancels the exchange of an asynchronous attempt, or wakes the thread if it's waiting on something interruptible...
+            final Future<?> attemptFuture = future;
+            if (attemptFuture != null) {
+                attemptFuture.cancel(true);
+            }
+        }
+
+        private static void abort(final AciResponseInputStream response) {
+            if (response instanceof AciResponseInputStreamImpl) {
+                try {
+                    ((AciResponseInputStreamImpl) response).abort();
+                } catch (final IOException ioe) {
+                    LOGGER.debug("Unable to abort the losing response.", ioe);
+                }
+            } else {
+                IOUtils.getInstance().closeQuietly(response);
+            }
+        }
+    }
+
+    /**
+     * Token bucket, where each hedgeable action deposits <code>hedgeRatio</code> tokens and each hedge withdraws one.
+     */
+    private static final class HedgeBudget {
+
+        private static final double MAX_TOKENS = 10.0;
+
+        private double tokens;
+
+        private synchronized void deposit(final double amount) {
+            tokens = Math.min(MAX_TOKENS, tokens + amount);
+        }
+
+        private synchronized boolean canWithdraw() {
+            return tokens >= 1.0;
+        }
+
+        private synchronized boolean withdraw() {
+            if (tokens >= 1.0) {
+                tokens -= 1.0;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Ring buffer of recent response times, with the configured percentile recalculated every so often rather than on
+     * every request.
+     */
+    private final class LatencyWindow {
+
+        private static final int RECALCULATE_INTERVAL = 64;
+
+        private final long[] samples;
+
+        private int count;
+
+        private int position;
+
+        private volatile long cachedPercentile = -1L;
+
+        private LatencyWindow(final int size) {
+            this.samples = new long[size];
+        }
+
+        private void record(final long latency) {
+            long[] snapshot = null;
+
+            synchronized (this) {
+                samples[position] = latency;
+                position = (position + 1) % samples.length;
+                if (count < samples.length) {
+                    count++;
+                }
+
+                if ((count >= minimumSamples) && ((cachedPercentile < 0L) || (position % RECALCULATE_INTERVAL == 0))) {
+                    snapshot = Arrays.copyOf(samples, count);
+                }
+            }
+
+            if (snapshot != null) {
+                // Sort outside the lock...
+                Arrays.sort(snapshot);
+                final int rank = (int) Math.ceil(percentile * snapshot.length) - 1;
+                cachedPercentile = snapshot[Math.max(0, Math.min(snapshot.length - 1, rank))];
+            }
+        }
+
+        private long getPercentile() {
+            return cachedPercentile;
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.JsonProcessor;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.util.IOUtils;
+import com.autonomy.aci.client.util.JsonTokenizer;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily processes each value of a repeated field in an ACI response requested with
+ * <code>ResponseFormat=simplejson</code>, such as the <code>autn:hit</code> array in a <code>Query</code> response, as
+ * the caller asks for it. It's the JSON equivalent of {@link StAXElementIterator}, and is used in the same way.
+ * <p>
+ * If the value of the field is an array, each of its values is processed, otherwise the value itself is. The element
+ * processor is called with the tokenizer on the first token of each value, e.g. the start of an object, and should
+ * leave it on the last, e.g. by calling {@link JsonTokenizer#skipValue()} once it has what it needs.
+ * @param <T> The type each value is processed into
+ */
+public class JsonElementIterator<T> implements Iterator<T>, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonElementIterator.class);
+
+    private final AciResponseInputStream response;
+
+    private final JsonTokenizer tokenizer;
+
+    private final String fieldName;
+
+    private final JsonProcessor<T> elementProcessor;
+
+    /**
+     * The depth of the array being iterated over, or -1 if there isn't one.
+     */
+    private int arrayDepth = -1;
+
+    /**
+     * Whether the tokenizer is on the start of a value that hasn't been processed yet.
+     */
+    private boolean positioned;
+
+    private boolean closed;
+
+    /**
+     * Creates an iterator over the values of a field in a response, checking straight away whether it's an error
+     * response.
+     * @param response         The ACI response, which is closed if this constructor throws
+     * @param fieldName        The name of the repeated field, either with its prefix, e.g. <code>autn:hit</code>, or
+     *                         without, e.g. <code>hit</code>
+     * @param elementProcessor Processes each value
+     * @throws AciErrorException  If the ACI response was an error response
+     * @throws ProcessorException If the response couldn't be read as JSON
+     */
+    public JsonElementIterator(final AciResponseInputStream response, final String fieldName, final JsonProcessor<T> elementProcessor) {
+        LOGGER.trace("JsonElementIterator() called...");
+
+        this.response = Validate.notNull(response, "response must not be null");
+        this.fieldName = Validate.notNull(fieldName, "fieldName must not be null");
+        this.elementProcessor = Validate.notNull(elementProcessor, "elementProcessor must not be null");
+
+        try {
+            final String contentType = response.getContentType();
+            if (!AbstractJsonProcessor.isJson(contentType)) {
+                throw new ProcessorException("This processor is unable to process non-JSON ACI responses. The content type for this response is " + contentType);
+            }
+
+            tokenizer = new JsonTokenizer(new InputStreamReader(response, AbstractJsonProcessor.getCharset(contentType)));
+
+            if (AbstractJsonProcessor.readErrorResponse(tokenizer)) {
+                new JsonErrorProcessor().process(tokenizer);
+            }
+        } catch (final IOException ioe) {
+            IOUtils.getInstance().closeQuietly(response);
+            throw new ProcessorException("Unable to read the start of the ACI response.", ioe);
+        } catch (final RuntimeException e) {
+            IOUtils.getInstance().closeQuietly(response);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads ahead to the next value, closing the response if there isn't one.
+     * @return <code>true</code> if there's another value
+     * @throws ProcessorException If the response couldn't be read
+     */
+    @Override
+    public boolean hasNext() {
+        if (positioned) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+
+        try {
+            while (tokenizer.hasNext()) {
+                final JsonTokenizer.Token token = tokenizer.next();
+
+                if (arrayDepth >= 0) {
+                    if ((token == JsonTokenizer.Token.END_ARRAY) && (tokenizer.getDepth() < arrayDepth)) {
+                        // That was the last value in the array...
+                        arrayDepth = -1;
+                    } else {
+                        positioned = true;
+                        return true;
+                    }
+                } else if ((token == JsonTokenizer.Token.FIELD_NAME) && isField(tokenizer.getText())) {
+                    if (tokenizer.next() == JsonTokenizer.Token.START_ARRAY) {
+                        arrayDepth = tokenizer.getDepth();
+                    } else {
+                        positioned = true;
+                        return true;
+                    }
+                }
+            }
+        } catch (final IOException ioe) {
+            close();
+            throw new ProcessorException("Unable to read the next " + fieldName + " value.", ioe);
+        }
+
+        // That was the last one...
+        close();
+        return false;
+    }
+
+    private boolean isField(final String name) {
+        // The prefix is optional, as it is for StAXElementIterator...
+        return name.equals(fieldName)
+                || (name.endsWith(fieldName) && (name.length() > fieldName.length())
+                    && (name.charAt(name.length() - fieldName.length() - 1) == ':'));
+    }
+
+    /**
+     * Processes the next value.
+     * @return The processed value
+     * @throws NoSuchElementException If there are no more values
+     * @throws ProcessorException     If the value couldn't be processed
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more " + fieldName + " values.");
+        }
+
+        positioned = false;
+
+        try {
+            return elementProcessor.process(tokenizer);
+        } catch (final RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a sequential, ordered stream of the values, which closes this iterator when it's closed.
+     * @return The stream
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * Closes the response, returning its connection to the pool. Calling this more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            positioned = false;
+            IOUtils.getInstance().closeQuietly(response);
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.util.DateTimeUtils;
+import com.autonomy.aci.client.util.JsonTokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Locale;
+
+/**
+ * Processes an ACI Server error response, requested with <code>ResponseFormat=simplejson</code>, into an
+ * <code>AciErrorException</code>.
+ */
+public class JsonErrorProcessor extends AbstractJsonProcessor<AciErrorException> {
+
+    private static final long serialVersionUID = 7351826095837492120L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonErrorProcessor.class);
+
+    /**
+     * Process the ACI error response into an <code>AciErrorException</code>.
+     * @param aciResponse The ACI response to process
+     * @return Does not actually return anything as it throws the exception when it's finished parsing the response.
+     * @throws AciErrorException  Unless there was an error
+     * @throws ProcessorException If an error occurred during the processing of the ACI response
+     */
+    @Override
+    public AciErrorException process(final JsonTokenizer aciResponse) {
+        LOGGER.trace("process() called...");
+
+        try {
+            // Create the exception that we will throw...
+            final AciErrorException exception = new AciErrorException();
+
+            // We need to be able to handle both being given the full response and a partial response...
+            while (aciResponse.hasNext()) {
+                if (aciResponse.next() != JsonTokenizer.Token.FIELD_NAME) {
+                    continue;
+                }
+
+                final String name = aciResponse.getText().toLowerCase(Locale.ROOT);
+                final JsonTokenizer.Token value = aciResponse.next();
+                if ((value == JsonTokenizer.Token.START_OBJECT) || (value == JsonTokenizer.Token.START_ARRAY)) {
+                    // Look inside, e.g. the error object itself...
+                    continue;
+                }
+
+                switch (name) {
+                    case "errorid":
+                        exception.setErrorId(aciResponse.getText());
+                        break;
+                    case "rawerrorid":
+                        exception.setRawErrorId(aciResponse.getText());
+                        break;
+                    case "errorstring":
+                        exception.setErrorString(aciResponse.getText());
+                        break;
+                    case "errordescription":
+                        exception.setErrorDescription(aciResponse.getText());
+                        break;
+                    case "errorcode":
+                        exception.setErrorCode(aciResponse.getText());
+                        break;
+                    case "errortime":
+                        try {
+                            exception.setErrorTime(DateTimeUtils.getInstance().parseDate(aciResponse.getText(), "dd MMM yy HH:mm:ss"));
+                        } catch (final ParseException pe) {
+                            LOGGER.error("ParseException caught while trying to convert the errortime field into a java.util.Date.", pe);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            // Throw the generated exception...
+            throw exception;
+        } catch (final IOException ioe) {
+            throw new ProcessorException("Unable to create an AciErrorException from the ACI response.", ioe);
+        }
+    }
+
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciConstants;
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.AciService;
+import com.autonomy.aci.client.services.AciServiceException;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciHttpClient;
+import com.autonomy.aci.client.transport.AciHttpException;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.ActionParameter;
+import com.autonomy.aci.client.util.ActionParameters;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * An <code>AciService</code> that spreads actions across a pool of equivalent ACI servers, e.g. replicated content
+ * engines, without needing a DAH in the path.
+ * <p>
+ * Each action picks two servers at random and sends the action to the one with the lower cost, where the cost is the
+ * exponentially weighted moving average of its response times multiplied by the number of actions currently in flight to
+ * it (plus one). Servers that fail with transport errors <code>failureThreshold</code> times in a row are ejected from the
+ * pool, and a <code>GetStatus</code> action is sent to them every <code>probeInterval</code> milliseconds until they
+ * respond, at which point they rejoin the pool with the average response time of the rest of the pool, so they aren't
+ * flooded with every action while their history builds up again. ACI error responses don't count as failures, as the
+ * server is still up.
+ * If every server has been ejected, actions are spread across all of them regardless.
+ * <p>
+ * Actions are never retried on another server, as not all actions are idempotent. Call {@link #close()} when finished
+ * with this service to stop the probing thread.
+ */
+public class LoadBalancingAciService implements AciService, AutoCloseable {
+
+    /**
+     * Class logger...
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadBalancingAciService.class);
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    /**
+     * The delegate used to actually execute the actions.
+     */
+    private final AciService aciService;
+
+    /**
+     * The servers being balanced over, in the order they were supplied.
+     */
+    private final List<Node> nodes;
+
+    /**
+     * Used to probe ejected servers.
+     */
+    private final ScheduledExecutorService probeExecutor;
+
+    /**
+     * The source of the nanosecond times that response times are measured with.
+     */
+    private final LongSupplier ticker;
+
+    /**
+     * Holds value of property failureThreshold.
+     */
+    private volatile int failureThreshold = 3;
+
+    /**
+     * Holds value of property probeInterval.
+     */
+    private volatile long probeInterval = 5000L;
+
+    /**
+     * Holds value of property decay.
+     */
+    private volatile double decay = 0.2;
+
+    /**
+     * Creates a new instance of LoadBalancingAciService that sends actions via an <code>AciServiceImpl</code>.
+     * @param aciHttpClient The configured <code>AciHttpClient</code> to use for communication
+     * @param servers       The details of the equivalent ACI servers to send actions to
+     * @throws NullPointerException     If <code>aciHttpClient</code> or <code>servers</code> is <code>null</code>
+     * @throws IllegalArgumentException If <code>servers</code> is empty or contains <code>null</code> elements
+     */
+    public LoadBalancingAciService(final AciHttpClient aciHttpClient, final List<? extends AciServerDetails> servers) {
+        this(new AciServiceImpl(Validate.notNull(aciHttpClient, "AciHttpClient must not be null.")), servers);
+    }
+
+    /**
+     * Creates a new instance of LoadBalancingAciService.
+     * @param aciService The <code>AciService</code> used to execute actions against the chosen server
+     * @param servers    The details of the equivalent ACI servers to send actions to
+     * @throws NullPointerException     If <code>aciService</code> or <code>servers</code> is <code>null</code>
+     * @throws IllegalArgumentException If <code>servers</code> is empty or contains <code>null</code> elements
+     */
+    public LoadBalancingAciService(final AciService aciService, final List<? extends AciServerDetails> servers) {
+        this(aciService, servers, createProbeExecutor(), System::nanoTime);
+    }
+
+    /**
+     * Creates a new instance of LoadBalancingAciService with the given means of probing servers and measuring time, so
+     * they can be controlled by tests.
+     * @param aciService    The <code>AciService</code> used to execute actions against the chosen server
+     * @param servers       The details of the equivalent ACI servers to send actions to
+     * @param probeExecutor Used to probe ejected servers, which is shut down by {@link #close()}
+     * @param ticker        The source of nanosecond times that response times are measured with
+     */
+    LoadBalancingAciService(final AciService aciService, final List<? extends AciServerDetails> servers, final ScheduledExecutorService probeExecutor, final LongSupplier ticker) {
+        Validate.notNull(aciService, "AciService must not be null.");
+        Validate.notEmpty(servers, "At least one set of server details must be supplied.");
+        Validate.noNullElements(servers, "Server details must not be null.");
+
+        this.aciService = aciService;
+
+        final List<Node> nodeList = new ArrayList<>(servers.size());
+        for (final AciServerDetails server : servers) {
+            nodeList.add(new Node(server));
+        }
+        this.nodes = Collections.unmodifiableList(nodeList);
+
+        this.probeExecutor = probeExecutor;
+        this.ticker = ticker;
+    }
+
+    private static ScheduledExecutorService createProbeExecutor() {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "aci-load-balancer-probe-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return executor;
+    }
+
+    /**
+     * Executes an ACI action on one of the servers in the pool and processes the response with the supplied
+     * <code>Processor</code>.
+     * @param parameters The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                   Action=<command>} parameter.
+     * @param processor  The <code>Processor</code> to use for converting the response stream into an object
+     * @return The ACI response encoded as an object of type <code>T</code>
+     * @throws AciServiceException If an error occurred during the communication with the ACI Server, processing the
+     *                             response or if the response contained an error
+     */
+    @Override
+    public <T> T executeAction(final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor) {
+        LOGGER.trace("executeAction() called...");
+
+        final Node node = choose();
+
+        node.inFlight.incrementAndGet();
+        final long start = ticker.getAsLong();
+
+        try {
+            final T result = aciService.executeAction(node.serverDetails, parameters, processor);
+            node.success(ticker.getAsLong() - start);
+            return result;
+        } catch (final AciServiceException ase) {
+            if (isServerFailure(ase)) {
+                node.failure();
+            } else {
+                // The server responded, so it's still healthy...
+                node.success(ticker.getAsLong() - start);
+            }
+            throw ase;
+        } finally {
+            node.inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Executes an ACI action on the specified server, bypassing the load balancing.
+     * @param serverDetails The connection details of the ACI Server to execute the action on
+     * @param parameters    The parameters to use with the ACI command. This <strong>should</strong> include an {@code
+     *                      Action=<command>} parameter
+     * @param processor     The <code>Processor</code> to use for converting the response stream into an object
+     * @return The ACI response encoded as an object of type <code>T</code>
+     * @throws AciServiceException If an error occurred during the communication with the ACI Server, processing the
+     *                             response or if the response contained an error
+     */
+    @Override
+    public <T> T executeAction(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters, final Processor<T> processor) {
+        LOGGER.trace("executeAction() called...");
+
+        return aciService.executeAction(serverDetails, parameters, processor);
+    }
+
+    /**
+     * Stops probing ejected servers.
+     */
+    @Override
+    public void close() {
+        LOGGER.trace("close() called...");
+
+        probeExecutor.shutdownNow();
+    }
+
+    /**
+     * @return The details of the servers that are currently in the pool, i.e. haven't been ejected
+     */
+    public List<AciServerDetails> getAvailableServers() {
+        final List<AciServerDetails> available = new ArrayList<>(nodes.size());
+
+        for (final Node node : nodes) {
+            if (!node.ejected.get()) {
+                available.add(node.serverDetails);
+            }
+        }
+
+        return available;
+    }
+
+    /**
+     * Chooses the cheaper of two randomly picked servers, preferring ones that haven't been ejected.
+     */
+    private Node choose() {
+        List<Node> candidates = nodes;
+
+        if (nodes.size() > 1) {
+            final List<Node> available = new ArrayList<>(nodes.size());
+            for (final Node node : nodes) {
+                if (!node.ejected.get()) {
+                    available.add(node);
+                }
+            }
+
+            if (!available.isEmpty()) {
+                candidates = available;
+            }
+        }
+
+        final int size = candidates.size();
+        if (size == 1) {
+            return candidates.get(0);
+        }
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int first = random.nextInt(size);
+        final int second = (first + 1 + random.nextInt(size - 1)) % size;
+
+        final Node a = candidates.get(first);
+        final Node b = candidates.get(second);
+
+        return (a.cost() <= b.cost()) ? a : b;
+    }
+
+    /**
+     * Transport errors mean the server is unhealthy, whereas ACI errors and processing errors mean it responded.
+     */
+    private static boolean isServerFailure(final AciServiceException ase) {
+        return !(ase instanceof AciErrorException)
+                && ((ase.getCause() instanceof IOException) || (ase.getCause() instanceof AciHttpException));
+    }
+
+    /**
+     * The mean of the moving averages of the servers in the pool that have any history, or <code>0</code> if none do.
+     */
+    private double poolAverageLatency() {
+        double total = 0.0;
+        int count = 0;
+
+        for (final Node node : nodes) {
+            final double average = Double.longBitsToDouble(node.averageLatency.get());
+            if (!node.ejected.get() && (average > 0.0)) {
+                total += average;
+                count++;
+            }
+        }
+
+        return (count == 0) ? 0.0 : total / count;
+    }
+
+    private void scheduleProbe(final Node node) {
+        try {
+            probeExecutor.schedule(() -> probe(node), probeInterval, TimeUnit.MILLISECONDS);
+        } catch (final RuntimeException re) {
+            LOGGER.debug("Unable to schedule probe as the load balancer has been closed.");
+        }
+    }
+
+    private void probe(final Node node) {
+        LOGGER.debug("Probing ejected ACI server {}:{}...", node.serverDetails.getHost(), node.serverDetails.getPort());
+
+        try {
+            aciService.executeAction(node.serverDetails, new ActionParameters(AciConstants.ACTION_GET_STATUS), new StatusProcessor());
+
+            LOGGER.info("ACI server {}:{} is responding again, returning it to the pool.", node.serverDetails.getHost(), node.serverDetails.getPort());
+            node.reinstate();
+        } catch (final RuntimeException re) {
+            LOGGER.debug("ACI server {}:{} is still not responding.", node.serverDetails.getHost(), node.serverDetails.getPort(), re);
+            scheduleProbe(node);
+        }
+    }
+
+    /**
+     * Getter for property failureThreshold.
+     * @return Value of property failureThreshold.
+     */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Setter for property failureThreshold, the number of consecutive transport failures after which a server is
+     * ejected from the pool. Defaults to <code>3</code>.
+     * @param failureThreshold New value of property failureThreshold.
+     */
+    public void setFailureThreshold(final int failureThreshold) {
+        Validate.isTrue(failureThreshold > 0, "Failure threshold must be positive.");
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * Getter for property probeInterval.
+     * @return Value of property probeInterval.
+     */
+    public long getProbeInterval() {
+        return probeInterval;
+    }
+
+    /**
+     * Setter for property probeInterval, the number of milliseconds between <code>GetStatus</code> probes of an ejected
+     * server. Defaults to <code>5000</code>.
+     * @param probeInterval New value of property probeInterval.
+     */
+    public void setProbeInterval(final long probeInterval) {
+        Validate.isTrue(probeInterval > 0L, "Probe interval must be positive.");
+        this.probeInterval = probeInterval;
+    }
+
+    /**
+     * Getter for property decay.
+     * @return Value of property decay.
+     */
+    public double getDecay() {
+        return decay;
+    }
+
+    /**
+     * Setter for property decay, the weight given to each new response time in a server's moving average. Higher values
+     * react to changes faster, lower values are more stable. Defaults to <code>0.2</code>.
+     * @param decay New value of property decay, greater than <code>0</code> and at most <code>1</code>.
+     */
+    public void setDecay(final double decay) {
+        Validate.isTrue((decay > 0.0) && (decay <= 1.0), "Decay must be greater than 0 and at most 1.");
+        this.decay = decay;
+    }
+
+    /**
+     * The load balancing state of a single server.
+     */
+    private final class Node {
+
+        private final AciServerDetails serverDetails;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+        private final AtomicBoolean ejected = new AtomicBoolean();
+
+        /**
+         * The moving average response time in nanoseconds, stored as the bits of a double so it can be updated atomically.
+         */
+        private final AtomicLong averageLatency = new AtomicLong(Double.doubleToLongBits(0.0));
+
+        private Node(final AciServerDetails serverDetails) {
+            this.serverDetails = serverDetails;
+        }
+
+        private double cost() {
+            // Servers with no history yet cost nothing, so they get tried...
+            return Double.longBitsToDouble(averageLatency.get()) * (inFlight.get() + 1);
+        }
+
+        private void success(final long latency) {
+            consecutiveFailures.set(0);
+
+            final double weight = decay;
+            long current;
+            long updated;
+            do {
+                current = averageLatency.get();
+                final double average = Double.longBitsToDouble(current);
+                updated = Double.doubleToLongBits((average == 0.0) ? latency : average + weight * (latency - average));
+            } while (!averageLatency.compareAndSet(current, updated));
+        }
+
+        private void failure() {
+            if ((consecutiveFailures.incrementAndGet() >= failureThreshold) && ejected.compareAndSet(false, true)) {
+                LOGGER.warn("Ejecting ACI server {}:{} from the pool after {} consecutive failures.", serverDetails.getHost(), serverDetails.getPort(), failureThreshold);
+                scheduleProbe(this);
+            }
+        }
+
+        private void reinstate() {
+            consecutiveFailures.set(0);
+
+            // Start from the rest of the pool's average rather than nothing, as a server that cost nothing would win
+            // every comparison until its history had built up. If nothing else has any history, keep its own...
+            final double poolAverage = poolAverageLatency();
+            if (poolAverage > 0.0) {
+                averageLatency.set(Double.doubleToLongBits(poolAverage));
+            }
+
+            ejected.set(false);
+        }
+    }
+
+    /**
+     * Checks that a <code>GetStatus</code> response wasn't an error.
+     */
+    private static final class StatusProcessor extends AbstractStAXProcessor<Boolean> {
+
+        private static final long serialVersionUID = -6402934466733547381L;
+
+        @Override
+        public Boolean process(final XMLStreamReader aciResponse) throws AciErrorException, ProcessorException {
+            try {
+                if (isErrorResponse(aciResponse)) {
+                    setErrorProcessor(new ErrorProcessor());
+                    processErrorResponse(aciResponse);
+                }
+
+                return Boolean.TRUE;
+            } catch (final XMLStreamException xmlse) {
+                throw new ProcessorException("Unable to parse the GetStatus response.", xmlse);
+            }
+        }
+    }
+
+}
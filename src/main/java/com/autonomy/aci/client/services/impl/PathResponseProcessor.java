@@ -0,0 +1,130 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Writes an ACI response to a file and returns the number of bytes written. Like the {@link BinaryResponseProcessor},
+ * this processor should only be used for those actions that <strong>don't return XML</strong>, e.g. actions that return
+ * an exported file, and it throws an {@link AciErrorException} without creating the file if the content type of the
+ * response is <code>text/xml</code>.
+ * <p>
+ * By default the file is created, or replaced if it already exists. If the response can't be read, the partly written
+ * file is deleted.
+ */
+public class PathResponseProcessor implements Processor<Long> {
+
+    private static final long serialVersionUID = -1693587313938470372L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PathResponseProcessor.class);
+
+    /**
+     * The file to write the response to.
+     */
+    private final Path path;
+
+    /**
+     * The options to open the file with.
+     */
+    private final Set<OpenOption> options;
+
+    /**
+     * This holds the error processor to use if the content type of the response is <code>text/xml</code>.
+     */
+    private Processor<AciErrorException> errorProcessor = new ErrorProcessor();
+
+    /**
+     * Creates a new instance of PathResponseProcessor.
+     * @param path    The file to write responses to
+     * @param options How to open the file, as for {@link Files#newOutputStream(Path, OpenOption...)}. The file is always
+     *                opened for writing, and if no options are given, it's created or truncated
+     * @throws NullPointerException If <code>path</code> is <code>null</code>
+     */
+    public PathResponseProcessor(final Path path, final OpenOption... options) {
+        this.path = Validate.notNull(path, "The path must not be null.");
+
+        this.options = (options.length == 0)
+                ? new HashSet<>(Arrays.asList(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+                : new HashSet<>(Arrays.asList(options));
+        this.options.add(StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Writes the response to the file.
+     * @param inputStream The ACI response to process
+     * @return The number of bytes written to the file
+     * @throws AciErrorException  If the response is an XML response
+     * @throws ProcessorException If the response couldn't be read or written to the file
+     */
+    @Override
+    public Long process(final AciResponseInputStream inputStream) {
+        LOGGER.trace("process() called...");
+
+        if (ErrorResponseSniffer.isXml(inputStream)) {
+            throw ErrorResponseSniffer.rejectXmlResponse(inputStream, errorProcessor, "PathResponseProcessor");
+        }
+
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(path, options);
+        } catch (final IOException ioe) {
+            throw new ProcessorException("Unable to open " + path + " to write the ACI response to.", ioe);
+        }
+
+        try (final FileChannel closing = channel) {
+            return ChannelResponseProcessor.transfer(inputStream, closing);
+        } catch (final IOException ioe) {
+            deleteQuietly();
+            throw new ProcessorException("Unable to write the ACI response to " + path + '.', ioe);
+        }
+    }
+
+    private void deleteQuietly() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (final IOException ioe) {
+            LOGGER.debug("IOException caught while trying to delete {}.", path, ioe);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public Processor<AciErrorException> getErrorProcessor() {
+        return errorProcessor;
+    }
+
+    public void setErrorProcessor(final Processor<AciErrorException> errorProcessor) {
+        this.errorProcessor = errorProcessor;
+    }
+
+}
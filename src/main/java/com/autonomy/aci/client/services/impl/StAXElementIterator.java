@@ -0,0 +1,217 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.services.StAXProcessor;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.util.IOUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily processes each occurrence of a repeated element in an ACI response, such as the <code>autn:hit</code>
+ * elements in a <code>Query</code> response, as the caller asks for it. Only one element is held in memory at a time,
+ * and whatever the caller does with each element overlaps with the rest of the response arriving over the network.
+ * <p>
+ * The iterator owns the response, and so the connection it was read from, until it's closed, which happens
+ * automatically once the last element has been read, or if reading the response fails. Callers that might stop early
+ * <strong>must</strong> close the iterator, or the stream from {@link #stream()}, themselves:
+ * <pre>
+ *   try (final Stream&lt;Hit&gt; hits = aciService.executeStreamingAction(parameters, "autn:hit", new HitProcessor())) {
+ *       hits.forEach(exporter::export);
+ *   }
+ * </pre>
+ * The element processor is called with the reader positioned on the start of each element, and should leave it at
+ * the end of that element, e.g. by reading up to the matching <code>END_ELEMENT</code>.
+ * @param <T> The type each element is processed into
+ */
+public class StAXElementIterator<T> implements Iterator<T>, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StAXElementIterator.class);
+
+    private final AciResponseInputStream response;
+
+    private final XMLStreamReader xmlStreamReader;
+
+    private final String elementName;
+
+    private final StAXProcessor<T> elementProcessor;
+
+    /**
+     * Whether the reader is on the start of an element that hasn't been processed yet.
+     */
+    private boolean positioned;
+
+    private boolean closed;
+
+    /**
+     * Creates an iterator over the elements of a response, checking straight away whether it's an error response.
+     * @param response         The ACI response, which is closed if this constructor throws
+     * @param elementName      The name of the repeated element, either with its prefix, e.g. <code>autn:hit</code>, or
+     *                         without, e.g. <code>hit</code>
+     * @param elementProcessor Processes each element
+     * @throws AciErrorException  If the ACI response was an error response
+     * @throws ProcessorException If the response couldn't be read as XML
+     */
+    public StAXElementIterator(final AciResponseInputStream response, final String elementName, final StAXProcessor<T> elementProcessor) {
+        LOGGER.trace("StAXElementIterator() called...");
+
+        this.response = Validate.notNull(response, "response must not be null");
+        this.elementName = Validate.notNull(elementName, "elementName must not be null");
+        this.elementProcessor = Validate.notNull(elementProcessor, "elementProcessor must not be null");
+
+        XMLStreamReader reader = null;
+
+        try {
+            if (!response.getContentType().toLowerCase(Locale.ROOT).startsWith("text/xml")) {
+                throw new ProcessorException("This processor is unable to process non-text ACI responses. The content type for this response is " + response.getContentType());
+            }
+
+            // Use the same factory as processors with the default properties...
+            reader = XMLInputFactoryCache.getInstance().getXMLInputFactory(false, false, false, true, false, true).createXMLStreamReader(response);
+
+            if (isErrorResponse(reader)) {
+                new ErrorProcessor().process(reader);
+            }
+        } catch (final XMLStreamException xmlse) {
+            close(reader);
+            throw new ProcessorException("Unable to convert the InputStream to a XMLStreamReader", xmlse);
+        } catch (final RuntimeException e) {
+            close(reader);
+            throw e;
+        }
+
+        this.xmlStreamReader = reader;
+    }
+
+    private boolean isErrorResponse(final XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if ((XMLEvent.START_ELEMENT == reader.next()) && "response".equalsIgnoreCase(reader.getLocalName())) {
+                return "ERROR".equalsIgnoreCase(reader.getElementText());
+            }
+        }
+        throw new XMLStreamException("Unable to find /autnresponse/response element.");
+    }
+
+    /**
+     * Reads ahead to the next element, closing the response if there isn't one.
+     * @return <code>true</code> if there's another element
+     * @throws ProcessorException If the response couldn't be read
+     */
+    @Override
+    public boolean hasNext() {
+        if (positioned) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+
+        try {
+            while (xmlStreamReader.hasNext()) {
+                if ((XMLEvent.START_ELEMENT == xmlStreamReader.next()) && isElement(xmlStreamReader.getLocalName())) {
+                    positioned = true;
+                    return true;
+                }
+            }
+        } catch (final XMLStreamException xmlse) {
+            close();
+            throw new ProcessorException("Unable to read the next " + elementName + " element.", xmlse);
+        }
+
+        // That was the last one...
+        close();
+        return false;
+    }
+
+    private boolean isElement(final String localName) {
+        // Without namespace awareness, the local name includes any prefix...
+        return localName.equals(elementName)
+                || (localName.endsWith(elementName) && (localName.length() > elementName.length())
+                    && (localName.charAt(localName.length() - elementName.length() - 1) == ':'));
+    }
+
+    /**
+     * Processes the next element.
+     * @return The processed element
+     * @throws NoSuchElementException If there are no more elements
+     * @throws ProcessorException     If the element couldn't be processed
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more " + elementName + " elements.");
+        }
+
+        positioned = false;
+
+        try {
+            return elementProcessor.process(xmlStreamReader);
+        } catch (final RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a sequential, ordered stream of the elements, which closes this iterator when it's closed.
+     * @return The stream
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * Closes the response, returning its connection to the pool. Calling this more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            positioned = false;
+            close(xmlStreamReader);
+        }
+    }
+
+    private void close(final XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                // This does NOT close the underlying AciResponseInputStream
+                reader.close();
+            } catch (final XMLStreamException xmlse) {
+                LOGGER.error("Unable to close the XMLStreamReader.", xmlse);
+            }
+        }
+
+        IOUtils.getInstance().closeQuietly(response);
+    }
+
+}
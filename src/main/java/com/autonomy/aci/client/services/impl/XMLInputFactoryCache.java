@@ -0,0 +1,87 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import javax.xml.stream.XMLInputFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Holds a shared {@link XMLInputFactory} for each combination of the properties that {@link AbstractStAXProcessor}
+ * exposes, so that processors neither look up a new factory implementation when they're created, nor reconfigure the
+ * factory every time they process a response. Each factory is configured once, before it's published, and is never
+ * modified again, so can safely be used to create readers from any number of threads at once.
+ */
+final class XMLInputFactoryCache {
+
+    private static final XMLInputFactoryCache INSTANCE = new XMLInputFactoryCache();
+
+    private static final int NAMESPACE_AWARE = 1;
+    private static final int VALIDATING = 1 << 1;
+    private static final int COALESCING = 1 << 2;
+    private static final int REPLACING_ENTITY_REFERENCES = 1 << 3;
+    private static final int SUPPORTING_EXTERNAL_ENTITIES = 1 << 4;
+    private static final int SUPPORT_DTD = 1 << 5;
+
+    /**
+     * The factories, indexed by the bitmask of their properties...
+     */
+    private final AtomicReferenceArray<XMLInputFactory> factories = new AtomicReferenceArray<>(1 << 6);
+
+    private XMLInputFactoryCache() {
+        // Use getInstance()...
+    }
+
+    static XMLInputFactoryCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the shared factory with the given properties, creating it the first time it's asked for.
+     * @param namespaceAware             The value of <code>XMLInputFactory.IS_NAMESPACE_AWARE</code>
+     * @param validating                 The value of <code>XMLInputFactory.IS_VALIDATING</code>
+     * @param coalescing                 The value of <code>XMLInputFactory.IS_COALESCING</code>
+     * @param replacingEntityReferences  The value of <code>XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES</code>
+     * @param supportingExternalEntities The value of <code>XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES</code>
+     * @param supportDtd                 The value of <code>XMLInputFactory.SUPPORT_DTD</code>
+     * @return The shared factory, which must not be modified
+     */
+    XMLInputFactory getXMLInputFactory(final boolean namespaceAware, final boolean validating, final boolean coalescing,
+                                       final boolean replacingEntityReferences, final boolean supportingExternalEntities,
+                                       final boolean supportDtd) {
+        final int index = (namespaceAware ? NAMESPACE_AWARE : 0)
+                | (validating ? VALIDATING : 0)
+                | (coalescing ? COALESCING : 0)
+                | (replacingEntityReferences ? REPLACING_ENTITY_REFERENCES : 0)
+                | (supportingExternalEntities ? SUPPORTING_EXTERNAL_ENTITIES : 0)
+                | (supportDtd ? SUPPORT_DTD : 0);
+
+        final XMLInputFactory factory = factories.get(index);
+        if (factory != null) {
+            return factory;
+        }
+
+        final XMLInputFactory created = XMLInputFactory.newInstance();
+        created.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, namespaceAware);
+        created.setProperty(XMLInputFactory.IS_VALIDATING, validating);
+        created.setProperty(XMLInputFactory.IS_COALESCING, coalescing);
+        created.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, replacingEntityReferences);
+        created.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, supportingExternalEntities);
+        created.setProperty(XMLInputFactory.SUPPORT_DTD, supportDtd);
+
+        // If another thread got there first, use its factory so there's only ever one per configuration...
+        return factories.compareAndSet(index, null, created) ? created : factories.get(index);
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport;
+
+/**
+ * Receives timings and sizes for each phase of executing an ACI action, so that slow actions can be found without
+ * attaching a profiler. Register an implementation with {@link com.autonomy.aci.client.transport.impl.AciHttpClientImpl}
+ * for the transport phases, and with {@link com.autonomy.aci.client.services.impl.AciServiceImpl} for processing the
+ * response. When no listener is registered nothing is timed or allocated.
+ * <p>
+ * Every event is tagged with the value of the action parameter, as sent, and the details of the server it was sent to,
+ * which must not be modified. Times are in nanoseconds. Implementations are called on the thread executing the action,
+ * so must be thread safe and quick. All the methods do nothing by default, so only the interesting ones need
+ * implementing.
+ */
+public interface AciMetricsListener {
+
+    /**
+     * How the execution of an action ended.
+     */
+    enum Outcome {
+        /**
+         * The response was processed successfully.
+         */
+        SUCCESS,
+
+        /**
+         * The ACI server returned an error response.
+         */
+        ACI_ERROR,
+
+        /**
+         * The response couldn't be processed.
+         */
+        PROCESSOR_ERROR,
+
+        /**
+         * The action couldn't be sent, or the server didn't return a successful HTTP status code.
+         */
+        TRANSPORT_ERROR
+    }
+
+    /**
+     * Called once the HTTP request has been built, which includes ordering and encoding the parameters and encrypting
+     * them if the server has an <code>EncryptionCodec</code>.
+     * @param action        The name of the action
+     * @param serverDetails The server the action is being sent to
+     * @param nanos         How long building the request took, including any time reported to
+     *                      {@link #requestEncrypted(String, AciServerDetails, long)}
+     */
+    default void requestEncoded(final String action, final AciServerDetails serverDetails, final long nanos) {
+        // Nothing by default...
+    }
+
+    /**
+     * Called once the parameters have been encrypted, if the server has an <code>EncryptionCodec</code>.
+     * @param action        The name of the action
+     * @param serverDetails The server the action is being sent to
+     * @param nanos         How long encrypting the parameters took
+     */
+    default void requestEncrypted(final String action, final AciServerDetails serverDetails, final long nanos) {
+        // Nothing by default...
+    }
+
+    /**
+     * Called once a connection to the server has been leased from the connection pool, if the <code>HttpClient</code>
+     * records when that happens, by having {@link com.autonomy.aci.client.transport.impl.AciHttpClientImpl#CONNECTION_LEASE_INTERCEPTOR}
+     * registered as a request interceptor. The clients made by <code>HttpClient5Factory</code> and
+     * <code>HttpAsyncClient5Factory</code> have it registered. Not called if no connection could be leased.
+     * @param action        The name of the action
+     * @param serverDetails The server the action is being sent to
+     * @param nanos         The time from the request having been built to having a connection, which includes waiting
+     *                      for a free connection in the pool and opening a new connection if one was needed
+     */
+    default void connectionLeased(final String action, final AciServerDetails serverDetails, final long nanos) {
+        // Nothing by default...
+    }
+
+    /**
+     * Called once the status and headers of the response have been received, whatever the status code.
+     * @param action        The name of the action
+     * @param serverDetails The server the action was sent to
+     * @param statusCode    The HTTP status code of the response
+     * @param nanos         The time to the first byte of the response, from the request having been built. This
+     *                      includes leasing a connection from the pool and sending the request
+     */
+    default void responseReceived(final String action, final AciServerDetails serverDetails, final int statusCode, final long nanos) {
+        // Nothing by default...
+    }
+
+    /**
+     * Called once the body of a successful response has been read to the end or closed, whichever happens first. Not
+     * called if the response is aborted.
+     * @param action        The name of the action
+     * @param serverDetails The server the action was sent to
+     * @param bytes         The number of bytes of the body that were read, after any decryption
+     * @param nanos         The time from the response having been received to the body being read
+     */
+    default void responseRead(final String action, final AciServerDetails serverDetails, final long bytes, final long nanos) {
+        // Nothing by default...
+    }
+
+    /**
+     * Called when a successful response is closed before all its body has been read, and the rest is read and discarded
+     * so that the connection can be reused.
+     * @param action        The name of the action
+     * @param serverDetails The server the action was sent to
+     * @param bytes         The number of bytes read and discarded
+     */
+    default void responseDrained(final String action, final AciServerDetails serverDetails, final long bytes) {
+        // Nothing by default...
+    }
+
+    /**
+     * Called when a successful response is aborted rather than read to the end, so the connection is discarded. This
+     * happens when the response is closed with more of its body left than the drain limit, or it's aborted explicitly.
+     * @param action        The name of the action
+     * @param serverDetails The server the action was sent to
+     * @param unreadBytes   The number of bytes of the body left unread, or <code>-1</code> if that isn't known because
+     *                      the response had no <code>Content-Length</code>
+     */
+    default void responseAborted(final String action, final AciServerDetails serverDetails, final long unreadBytes) {
+        // Nothing by default...
+    }
+
+    /**
+     * Called if the request couldn't be sent, no response was received, e.g. because the connection was refused, or the
+     * response had a status code outside the 2xx range.
+     * @param action        The name of the action
+     * @param serverDetails The server the action was being sent to
+     * @param cause         Why the request failed
+     * @param nanos         The time from starting to build the request to it failing
+     */
+    default void requestFailed(final String action, final AciServerDetails serverDetails, final Throwable cause, final long nanos) {
+        // Nothing by default...
+    }
+
+    /**
+     * Called once an action has been executed and its response processed, successfully or otherwise.
+     * @param action          The name of the action
+     * @param serverDetails   The server the action was sent to
+     * @param outcome         How the execution ended
+     * @param processingNanos How long the <code>Processor</code> took, or <code>0</code> if it wasn't called
+     * @param totalNanos      How long executing the action took altogether
+     */
+    default void actionCompleted(final String action, final AciServerDetails serverDetails, final Outcome outcome, final long processingNanos, final long totalNanos) {
+        // Nothing by default...
+    }
+
+}
@@ -23,7 +23,6 @@ import org.apache.hc.core5.http.ContentType;
 
 import java.io.Serializable;
 import java.nio.charset.Charset;
-import java.util.Locale;
 
 /**
  * Holds the name and value of an ACI parameter to be sent as part of an ACI request. The value of the parameter should
@@ -101,7 +100,7 @@ public class AciParameter implements Serializable, ActionParameter<String> {
             final AciParameter that = (AciParameter) obj;
 
             // Check the name of this parameter with the passed in parameter...
-            returnValue = this.name.toLowerCase(Locale.ENGLISH).equals(that.name.toLowerCase(Locale.ENGLISH));
+            returnValue = this.name.equalsIgnoreCase(that.name);
         }
 
         return returnValue;
@@ -113,7 +112,8 @@ public class AciParameter implements Serializable, ActionParameter<String> {
      */
     @Override
     public int hashCode() {
-        return name.toLowerCase(Locale.ENGLISH).hashCode();
+        // Consistent with equalsIgnoreCase, without creating a lowercased copy of the name...
+        return ActionParameter.hashName(name);
     }
 
     /**
@@ -59,6 +59,11 @@ public class AciServerDetails implements Serializable {
      */
     private String charsetName = "UTF-8";
 
+    /**
+     * The charset named by property charsetName, looked up when it's first needed...
+     */
+    private transient Charset charset;
+
     /**
      * If this is non-null, then it will be used to encrypt communication with the ACI Server.
      * <p>
@@ -115,9 +120,18 @@ public class AciServerDetails implements Serializable {
         this.host = that.host;
         this.port = that.port;
         this.charsetName = that.charsetName;
+        this.charset = that.charset;
         this.encryptionCodec = that.encryptionCodec;
     }
 
+    /**
+     * Copies these details, keeping the concrete type, so subclasses with extra details must override this.
+     * @return A copy of these details
+     */
+    public AciServerDetails copy() {
+        return new AciServerDetails(this);
+    }
+
     @Override
     public String toString() {
         return ReflectionToStringBuilder.reflectionToString(this, ToStringStyle.MULTI_LINE_STYLE);
@@ -228,11 +242,26 @@ public class AciServerDetails implements Serializable {
     public void setCharsetName(final String charsetName) {
         if (Charset.isSupported(charsetName)) {
             this.charsetName = charsetName;
+            this.charset = null;
         } else {
             throw new UnsupportedCharsetException("No support for, " + charsetName + ", is available in this instance of the JVM");
         }
     }
 
+    /**
+     * Returns the charset named by property charsetName. This is cached, so it's cheaper than calling
+     * <code>Charset.forName</code> for every request.
+     * @return The charset to use when communicating with the ACI server
+     */
+    public Charset getCharset() {
+        Charset cached = charset;
+        if (cached == null) {
+            cached = Charset.forName(charsetName);
+            charset = cached;
+        }
+        return cached;
+    }
+
     public EncryptionCodec getEncryptionCodec() {
         return encryptionCodec;
     }
@@ -43,4 +43,28 @@ public interface ActionParameter<T> {
      */
     boolean requiresPostRequest();
 
+    /**
+     * A hash of a parameter name that is consistent with <code>String.equalsIgnoreCase</code>, as parameter names are
+     * case insensitive. It's computed without creating a case folded copy of the name.
+     * @param name The parameter name, may be <code>null</code>
+     * @return The hash, or <code>0</code> if <code>name</code> is <code>null</code>
+     */
+    static int hashName(final String name) {
+        if (name == null) {
+            return 0;
+        }
+
+        int hash = 0;
+        for (int ii = 0; ii < name.length(); ii++) {
+            final char c = name.charAt(ii);
+            if (c < 0x80) {
+                // Parameter names are almost always ASCII...
+                hash = (31 * hash) + (((c >= 'A') && (c <= 'Z')) ? (c + ('a' - 'A')) : c);
+            } else {
+                hash = (31 * hash) + Character.toLowerCase(Character.toUpperCase(c));
+            }
+        }
+        return hash;
+    }
+
 }
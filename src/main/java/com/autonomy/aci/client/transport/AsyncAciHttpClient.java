@@ -0,0 +1,37 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This interface defines the methods which should be implemented by any class that does non-blocking communication
+ * with an ACI Server. It is the asynchronous counterpart of {@link AciHttpClient}.
+ */
+public interface AsyncAciHttpClient {
+
+    /**
+     * Execute an ACI action on the ACI Server whose connection details are supplied, without blocking the calling
+     * thread while the request is in flight.
+     * @param serverDetails Details of the ACI Server to send the action to
+     * @param parameters    The parameters to send with the ACI action
+     * @return A {@code CompletableFuture} that is completed with a {@code AciResponseInputStream} containing the ACI
+     * response, or completed exceptionally with an {@code IOException} if an I/O (transport) error occurs, or an
+     * {@code AciHttpException} if a protocol exception occurs
+     */
+    CompletableFuture<AciResponseInputStream> executeActionAsync(AciServerDetails serverDetails, Set<? extends ActionParameter<?>> parameters);
+
+}
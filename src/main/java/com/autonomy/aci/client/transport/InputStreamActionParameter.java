@@ -7,7 +7,6 @@ import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 
 /**
  * {@link ActionParameter} for a sequence of {@link InputStream}s that should be uploaded under a single parameter name.
@@ -99,7 +98,7 @@ public class InputStreamActionParameter implements ActionParameter<List<InputStr
             final InputStreamActionParameter that = (InputStreamActionParameter) obj;
 
             // Check the name of this parameter with the passed in parameter...
-            returnValue = this.name.toLowerCase(Locale.ENGLISH).equals(that.name.toLowerCase(Locale.ENGLISH));
+            returnValue = this.name.equalsIgnoreCase(that.name);
         }
 
         return returnValue;
@@ -111,6 +110,7 @@ public class InputStreamActionParameter implements ActionParameter<List<InputStr
      */
     @Override
     public int hashCode() {
-        return name.toLowerCase(Locale.ENGLISH).hashCode();
+        // Consistent with equalsIgnoreCase, without creating a lowercased copy of the name...
+        return ActionParameter.hashName(name);
     }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link EncryptionCodec} that can work directly with buffers and streams, so that the <code>AUTN:</code> prefix,
+ * the <code>length|</code> framing and the Base64 encoding can be applied as the content is written, rather than by
+ * copying the content into a new array at every stage.
+ * <p>
+ * The {@code AciHttpClient} implementations use these methods whenever the codec on the {@link AciServerDetails}
+ * implements this interface. Any other {@code EncryptionCodec} is used through
+ * {@link com.autonomy.aci.client.transport.impl.StreamingEncryptionCodecAdapter}, so existing implementations keep
+ * working unchanged.
+ */
+public interface StreamingEncryptionCodec extends EncryptionCodec {
+
+    /**
+     * Deflates, encrypts and Base64 encodes the remaining content of {@code input}, writing the result to
+     * {@code output}. The position of {@code input} is advanced to its limit.
+     * @param input  The content to encrypt
+     * @param output Where to write the Base64 encoded, encrypted, deflated content
+     * @throws EncryptionCodecException if there was a problem during any of the three stages of processing
+     * @throws IOException              if there was a problem writing to {@code output}
+     */
+    void encrypt(ByteBuffer input, OutputStream output) throws EncryptionCodecException, IOException;
+
+    /**
+     * Base64 decodes, decrypts and inflates the remaining content of {@code input}, writing the original unencrypted
+     * content to {@code output}. The position of {@code input} is advanced to its limit.
+     * @param input  The Base64 encoded, encrypted and deflated content
+     * @param output Where to write the original unencrypted content
+     * @throws EncryptionCodecException if there was a problem during any of the three stages of processing
+     * @throws IOException              if there was a problem writing to {@code output}
+     */
+    void decrypt(ByteBuffer input, OutputStream output) throws EncryptionCodecException, IOException;
+
+}
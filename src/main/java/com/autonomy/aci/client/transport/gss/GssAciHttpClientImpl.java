@@ -52,6 +52,11 @@ public class GssAciHttpClientImpl extends AciHttpClientImpl {
 
     private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
 
+    /**
+     * Holds value of property gssContextCache.
+     */
+    private GssContextCache gssContextCache;
+
     public GssAciHttpClientImpl() {
         super();
     }
@@ -140,7 +145,9 @@ public class GssAciHttpClientImpl extends AciHttpClientImpl {
      * Sets up a <code>GSSContext</code> for communicating with the GSS-API protected ACI server and then sends the
      * action. The <code>serverDetails</code> are copied and a <code>GssEncryptionCodec</code> set on the copy that has the
      * <code>GSSContext</code> in it. Any excising <code>EncryptionCodec</code> will be removed as only the
-     * <code>GssEncryptionCodec</code> can be used when communicating with Kerberos protected ACI servers.
+     * <code>GssEncryptionCodec</code> can be used when communicating with Kerberos protected ACI servers. If a
+     * <code>GssContextCache</code> has been set, a cached context is used where possible, and is invalidated if the action
+     * fails with an <code>AciHttpException</code>.
      * @param serverDetails A <code>GssAciServerDetails</code> containing the service name and connection details.
      * @param parameters    The parameters to send with the ACI action.
      * @return A <code>AciResponseInputStream</code> containing the ACI response.
@@ -158,8 +165,10 @@ public class GssAciHttpClientImpl extends AciHttpClientImpl {
         Validate.isTrue((serverDetails instanceof GssAciServerDetails), "The serverDetails must be an instance of GssAciServerDetails.");
         Validate.isTrue(StringUtils.isNotBlank(((GssAciServerDetails) serverDetails).getServiceName()), "No serviceName set in serverDetails.");
 
-        // Create the GSSContext...
-        final GSSContext gssContext = getGSSContext((GssAciServerDetails) serverDetails);
+        // Create the GSSContext, or reuse a cached one...
+        final GSSContext gssContext = (gssContextCache == null)
+                ? getGSSContext((GssAciServerDetails) serverDetails)
+                : gssContextCache.getContext((GssAciServerDetails) serverDetails, this::getGSSContext);
 
         LOGGER.debug("Copying ACI server details and adding a GssEncryptionCodec...");
 
@@ -170,7 +179,35 @@ public class GssAciHttpClientImpl extends AciHttpClientImpl {
         LOGGER.debug("Letting the superclass execute the action...");
 
         // Execute the action...
-        return super.executeAction(copyServerDetails, parameters);
+        try {
+            return super.executeAction(copyServerDetails, parameters);
+        } catch (final AciHttpException ahe) {
+            if (gssContextCache != null) {
+                // The server may no longer accept the cached context, so don't reuse it...
+                LOGGER.debug("Invalidating cached GSSContext after a failed action...");
+                gssContextCache.invalidate((GssAciServerDetails) serverDetails);
+            }
+            throw ahe;
+        }
+    }
+
+    /**
+     * Getter for property gssContextCache.
+     * @return Value of property gssContextCache
+     */
+    public GssContextCache getGssContextCache() {
+        return gssContextCache;
+    }
+
+    /**
+     * Setter for property gssContextCache. When set, established <code>GSSContext</code>s are reused across actions
+     * rather than doing the context establishment round trips before every action. Only set this if the ACI servers
+     * accept a context on a different connection to the one it was established on. Defaults to <code>null</code>, i.e.
+     * no caching.
+     * @param gssContextCache New value of property gssContextCache.
+     */
+    public void setGssContextCache(final GssContextCache gssContextCache) {
+        this.gssContextCache = gssContextCache;
     }
 
     /**
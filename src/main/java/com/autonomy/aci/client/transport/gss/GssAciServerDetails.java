@@ -71,6 +71,11 @@ public class GssAciServerDetails extends AciServerDetails {
         this.serviceName = that.serviceName;
     }
 
+    @Override
+    public GssAciServerDetails copy() {
+        return new GssAciServerDetails(this);
+    }
+
     /**
      * Indicates whether some other object is <em>equal to</em> this one.
      * @param obj the reference object with which to compare.
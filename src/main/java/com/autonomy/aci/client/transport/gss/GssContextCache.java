@@ -0,0 +1,357 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.gss;
+
+import com.autonomy.aci.client.transport.AciHttpException;
+import org.apache.commons.lang3.Validate;
+import org.ietf.jgss.GSSContext;
+import org.ietf.jgss.GSSException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches established <code>GSSContext</code>s per <code>GssAciServerDetails</code>, so that steady-state actions against a
+ * GSS-API secured ACI server don't have to do the context establishment round trips before every request. Contexts are
+ * renewed on a background thread <code>renewalMargin</code> seconds before their lifetime runs out, and replaced contexts
+ * are only disposed once they have expired, so that requests still using them can complete.
+ * <p>
+ * Only use this class if the ACI servers being talked to accept a context on connections other than the one it was
+ * established on, as each request will be sent on whatever pooled connection the <code>HttpClient</code> hands out.
+ * <p>
+ * This class is thread-safe. Call {@link #close()} when finished with it to dispose of the cached contexts and stop the
+ * renewal thread.
+ */
+public class GssContextCache implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GssContextCache.class);
+
+    /**
+     * Requests get a context that has at least this long left to run, or a quarter of its lifetime if that is shorter...
+     */
+    private static final long MIN_REMAINING_MILLIS = 5000L;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final ConcurrentMap<GssAciServerDetails, Entry> contexts = new ConcurrentHashMap<>();
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private volatile int renewalMargin = 60;
+
+    /**
+     * Creates a new cache with a single daemon thread for doing the background renewals.
+     */
+    public GssContextCache() {
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "gss-context-renewal-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Gets the cached context for <code>serverDetails</code>, establishing one via <code>factory</code> if there isn't a
+     * cached one or it's about to expire. Only one thread establishes a context for the same server at a time, others
+     * wait for it and then share the result.
+     * @param serverDetails The details of the server to get a context for
+     * @param factory       Used to establish a new context, both now and when it's renewed in the background
+     * @return An established <code>GSSContext</code>
+     * @throws AciHttpException If the context couldn't be established
+     * @throws IOException      If an I/O error occurred while establishing the context
+     */
+    GSSContext getContext(final GssAciServerDetails serverDetails, final ContextFactory factory) throws AciHttpException, IOException {
+        LOGGER.trace("getContext() called...");
+
+        Validate.notNull(serverDetails, "GSS server details must not be null.");
+        Validate.notNull(factory, "Context factory must not be null.");
+        Validate.validState(!executor.isShutdown(), "The GSS context cache has been closed.");
+
+        // Copy the key, as server details are mutable...
+        final Entry entry = contexts.computeIfAbsent(serverDetails, key -> new Entry(new GssAciServerDetails(key)));
+
+        final CachedContext cached = entry.cached;
+        if ((cached != null) && cached.isUsable(System.currentTimeMillis())) {
+            return cached.context;
+        }
+
+        return entry.establish(factory);
+    }
+
+    /**
+     * Removes the cached context for <code>serverDetails</code>, e.g. because the server has rejected it. The next request
+     * will establish a new context. The removed context is disposed once any in-flight requests have had time to finish.
+     * @param serverDetails The details of the server whose context should be removed
+     */
+    public void invalidate(final GssAciServerDetails serverDetails) {
+        LOGGER.trace("invalidate() called...");
+
+        final Entry entry = contexts.remove(serverDetails);
+        if (entry != null) {
+            entry.invalidate();
+        }
+    }
+
+    /**
+     * Removes all the cached contexts.
+     */
+    public void invalidateAll() {
+        LOGGER.trace("invalidateAll() called...");
+
+        for (final GssAciServerDetails serverDetails : contexts.keySet()) {
+            invalidate(serverDetails);
+        }
+    }
+
+    /**
+     * Stops the renewal thread and disposes of all the cached contexts.
+     */
+    @Override
+    public void close() {
+        LOGGER.trace("close() called...");
+
+        executor.shutdownNow();
+
+        for (final GssAciServerDetails serverDetails : contexts.keySet()) {
+            final Entry entry = contexts.remove(serverDetails);
+            if (entry != null) {
+                entry.close();
+            }
+        }
+    }
+
+    /**
+     * @return The number of servers that currently have a cached context
+     */
+    public int size() {
+        return contexts.size();
+    }
+
+    public int getRenewalMargin() {
+        return renewalMargin;
+    }
+
+    /**
+     * Sets how many seconds before a context expires it should be renewed in the background. Contexts with lifetimes
+     * shorter than twice this are renewed half way through their lifetime. Defaults to <code>60</code>.
+     * @param renewalMargin The number of seconds, must not be negative
+     */
+    public void setRenewalMargin(final int renewalMargin) {
+        Validate.isTrue(renewalMargin >= 0, "Renewal margin must not be negative.");
+        this.renewalMargin = renewalMargin;
+    }
+
+    private void scheduleDispose(final CachedContext cached, final long now) {
+        final long delay = (cached.expiresAt == Long.MAX_VALUE)
+                ? TimeUnit.SECONDS.toMillis(renewalMargin)
+                : Math.max(0L, cached.expiresAt - now);
+
+        try {
+            executor.schedule(cached::dispose, delay, TimeUnit.MILLISECONDS);
+        } catch (final RuntimeException re) {
+            // Rejected because we've been closed...
+            cached.dispose();
+        }
+    }
+
+    /**
+     * Establishes a <code>GSSContext</code> with an ACI server.
+     */
+    @FunctionalInterface
+    interface ContextFactory {
+
+        GSSContext createContext(GssAciServerDetails serverDetails) throws AciHttpException, IOException;
+
+    }
+
+    /**
+     * An established context along with when it should be renewed and when it expires.
+     */
+    private static final class CachedContext {
+
+        private final GSSContext context;
+
+        private final long renewAt;
+
+        private final long usableUntil;
+
+        private final long expiresAt;
+
+        private CachedContext(final GSSContext context, final long now, final int renewalMargin) {
+            this.context = context;
+
+            final int lifetime = context.getLifetime();
+
+            if (lifetime == GSSContext.INDEFINITE_LIFETIME) {
+                // Never needs renewing...
+                renewAt = Long.MAX_VALUE;
+                usableUntil = Long.MAX_VALUE;
+                expiresAt = Long.MAX_VALUE;
+            } else {
+                final long lifetimeMillis = TimeUnit.SECONDS.toMillis(Math.max(0, lifetime));
+
+                expiresAt = now + lifetimeMillis;
+                renewAt = now + Math.max(lifetimeMillis - TimeUnit.SECONDS.toMillis(renewalMargin), lifetimeMillis / 2);
+                usableUntil = expiresAt - Math.min(MIN_REMAINING_MILLIS, lifetimeMillis / 4);
+            }
+        }
+
+        private boolean isUsable(final long now) {
+            return now < usableUntil;
+        }
+
+        private void dispose() {
+            try {
+                context.dispose();
+            } catch (final GSSException gsse) {
+                LOGGER.debug("Unable to dispose of GSSContext.", gsse);
+            }
+        }
+    }
+
+    /**
+     * Holds the current context for a server. Establishing and renewing are serialised on the entry, while reading the
+     * current context is lock free.
+     */
+    private final class Entry {
+
+        private final GssAciServerDetails serverDetails;
+
+        private volatile CachedContext cached;
+
+        private ContextFactory factory;
+
+        private ScheduledFuture<?> renewal;
+
+        private boolean invalidated;
+
+        private Entry(final GssAciServerDetails serverDetails) {
+            this.serverDetails = serverDetails;
+        }
+
+        private synchronized GSSContext establish(final ContextFactory factory) throws AciHttpException, IOException {
+            // Another thread may have done it while we were waiting for the lock...
+            if ((cached != null) && cached.isUsable(System.currentTimeMillis())) {
+                return cached.context;
+            }
+
+            LOGGER.debug("Establishing a new GSSContext for {}:{}...", serverDetails.getHost(), serverDetails.getPort());
+
+            final GSSContext context = factory.createContext(serverDetails);
+
+            if (invalidated) {
+                // Raced with an invalidation, so this context won't be cached, but still needs disposing of eventually...
+                final long now = System.currentTimeMillis();
+                scheduleDispose(new CachedContext(context, now, renewalMargin), now);
+                return context;
+            }
+
+            this.factory = factory;
+            replace(context);
+
+            return cached.context;
+        }
+
+        private void renew() {
+            final ContextFactory renewalFactory;
+
+            synchronized (this) {
+                if (invalidated) {
+                    return;
+                }
+                renewalFactory = factory;
+            }
+
+            LOGGER.debug("Renewing GSSContext for {}:{}...", serverDetails.getHost(), serverDetails.getPort());
+
+            try {
+                final GSSContext context = renewalFactory.createContext(serverDetails);
+
+                synchronized (this) {
+                    if (invalidated) {
+                        new CachedContext(context, System.currentTimeMillis(), renewalMargin).dispose();
+                    } else {
+                        replace(context);
+                    }
+                }
+            } catch (final AciHttpException | IOException | RuntimeException e) {
+                // The next request will try to establish one in the foreground once the current one is unusable...
+                LOGGER.warn("Unable to renew GSSContext for {}:{}.", serverDetails.getHost(), serverDetails.getPort(), e);
+            }
+        }
+
+        // Must be called holding the lock...
+        private void replace(final GSSContext context) {
+            final long now = System.currentTimeMillis();
+            final CachedContext previous = cached;
+
+            cached = new CachedContext(context, now, renewalMargin);
+
+            if (previous != null) {
+                scheduleDispose(previous, now);
+            }
+
+            if (renewal != null) {
+                renewal.cancel(false);
+                renewal = null;
+            }
+
+            // Expired contexts get replaced by the next request rather than repeatedly in the background...
+            if ((cached.renewAt != Long.MAX_VALUE) && (cached.renewAt > now)) {
+                try {
+                    renewal = executor.schedule(this::renew, cached.renewAt - now, TimeUnit.MILLISECONDS);
+                } catch (final RuntimeException re) {
+                    LOGGER.debug("Unable to schedule GSSContext renewal as the cache has been closed.");
+                }
+            }
+        }
+
+        private synchronized void invalidate() {
+            invalidated = true;
+
+            if (renewal != null) {
+                renewal.cancel(false);
+            }
+
+            if (cached != null) {
+                scheduleDispose(cached, System.currentTimeMillis());
+                cached = null;
+            }
+        }
+
+        private synchronized void close() {
+            invalidated = true;
+
+            if (renewal != null) {
+                renewal.cancel(false);
+            }
+
+            if (cached != null) {
+                cached.dispose();
+                cached = null;
+            }
+        }
+    }
+
+}
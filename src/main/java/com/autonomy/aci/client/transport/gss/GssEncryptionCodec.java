@@ -24,6 +24,8 @@ import org.ietf.jgss.MessageProp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+
 /**
  * This <code>EncryptionCodec</code> uses the GSS-API to do the encryption/decryption via the <code>wrap</code> and
  * <code>unwrap</code> methods. While this class is <code>Serializable</code> the <code>GSSContext</code> that is used, is marked
@@ -45,16 +47,19 @@ class GssEncryptionCodec extends AbstractEncryptionCodec {
      * This method firstly www-form-urlencoded unescapes the input string, as the response from a GSS-API secured ACI
      * server www-form-urlencoded escapes the Base64 encoded content. Once that's done it passes the resulting string
      * onto the super class for the Base64 decoding and length prefix stripping.
-     * @param bytes The Base64 encoded byte array to decode.
-     * @return The decoded byte array.
+     * @param input The Base64 encoded content to decode.
+     * @return A buffer positioned at the start of the encrypted content.
      * @throws EncryptionCodecException If an error occurred during processing
      */
     @Override
-    protected byte[] decodeInternal(final byte[] bytes) throws EncryptionCodecException {
+    protected ByteBuffer decodeInternal(final ByteBuffer input) throws EncryptionCodecException {
         try {
+            final byte[] bytes = new byte[input.remaining()];
+            input.get(bytes);
+
             // We're not using AciURLCodec as it works on Strings, it uses URLCodec internally anyway, so it's always 
             // going to be shipped, thus we may as well use it's byte[] methods...
-            return super.decodeInternal(URLCodec.decodeUrl(bytes));
+            return super.decodeInternal(ByteBuffer.wrap(URLCodec.decodeUrl(bytes)));
         } catch (final DecoderException de) {
             throw new EncryptionCodecException("Unable to www-form-urlencoded unescape.", de);
         }
@@ -62,11 +67,20 @@ class GssEncryptionCodec extends AbstractEncryptionCodec {
 
     @Override
     protected byte[] encryptInternal(final byte[] bytes) throws EncryptionCodecException {
+        return encryptInternal(bytes, 0, bytes.length);
+    }
+
+    @Override
+    protected byte[] encryptInternal(final byte[] bytes, final int offset, final int length) throws EncryptionCodecException {
         LOGGER.trace("encryptInternal() called...");
 
         try {
             LOGGER.debug("Encrypting content with context.wrap()...");
-            return context.wrap(bytes, 0, bytes.length, new MessageProp(0, true));
+
+            // The context may be shared between concurrent requests if it's been cached...
+            synchronized (context) {
+                return context.wrap(bytes, offset, length, new MessageProp(0, true));
+            }
         } catch (final GSSException gsse) {
             throw new EncryptionCodecException("Unable to encrypt the outgoing ACI data.", gsse);
         }
@@ -74,11 +88,19 @@ class GssEncryptionCodec extends AbstractEncryptionCodec {
 
     @Override
     protected byte[] decryptInternal(final byte[] bytes) throws EncryptionCodecException {
+        return decryptInternal(bytes, 0, bytes.length);
+    }
+
+    @Override
+    protected byte[] decryptInternal(final byte[] bytes, final int offset, final int length) throws EncryptionCodecException {
         LOGGER.trace("decryptInternal() called...");
 
         try {
             LOGGER.debug("Decrypting content with context.unwrap()...");
-            return context.unwrap(bytes, 0, bytes.length, new MessageProp(0, true));
+
+            synchronized (context) {
+                return context.unwrap(bytes, offset, length, new MessageProp(0, true));
+            }
         } catch (final GSSException gsse) {
             throw new EncryptionCodecException("Unable to decrypt the incoming ACI data.", gsse);
         }
@@ -16,13 +16,17 @@ package com.autonomy.aci.client.transport.impl;
 
 import com.autonomy.aci.client.services.ProcessorException;
 import com.autonomy.aci.client.transport.EncryptionCodec;
+import com.autonomy.aci.client.transport.EncryptionCodecException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.Executor;
 
 abstract class AbstractEncryptedResponseProcessor<T> {
 
@@ -34,16 +38,56 @@ abstract class AbstractEncryptedResponseProcessor<T> {
 
     protected final String charsetName;
 
+    /**
+     * Decrypts blocks ahead of the reader if set...
+     */
+    protected final Executor executor;
+
+    protected final int parallelism;
+
     public AbstractEncryptedResponseProcessor(final EncryptionCodec encryptionCodec, final String charsetName) {
+        this(encryptionCodec, charsetName, null, 1);
+    }
+
+    public AbstractEncryptedResponseProcessor(final EncryptionCodec encryptionCodec, final String charsetName, final Executor executor, final int parallelism) {
         this.encryptionCodec = encryptionCodec;
         this.charsetName = charsetName;
+        this.executor = executor;
+        this.parallelism = parallelism;
 
         // Holds the factory for creating XMLStreamReader's...
-        xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory = createXMLInputFactory();
+    }
+
+    /**
+     * Creates a factory suitable for reading encrypted responses, i.e. not namespace aware, as the element names are
+     * matched with their <code>autn:</code> prefix, and with DTDs and external entities disabled.
+     * @return A new <code>XMLInputFactory</code>
+     */
+    static XMLInputFactory createXMLInputFactory() {
+        final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
         xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
         xmlInputFactory.setProperty(XMLInputFactory.IS_VALIDATING, false);
         xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
         xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return xmlInputFactory;
+    }
+
+    /**
+     * Copies all the decrypted content into <code>buffer</code>, converting any failure into a <code>ProcessorException</code>.
+     * @param decrypted The decrypted content
+     * @param buffer    Where to copy the content to
+     * @throws ProcessorException If the content couldn't be decrypted or copied
+     */
+    static void copy(final DecryptedContentInputStream decrypted, final ByteArrayOutputStream buffer) {
+        try {
+            decrypted.transferTo(buffer);
+        } catch (final IOException ioe) {
+            if ((ioe.getCause() instanceof XMLStreamException) || (ioe.getCause() instanceof EncryptionCodecException)) {
+                throw new ProcessorException(ioe.getMessage(), ioe.getCause());
+            }
+            throw new ProcessorException("Unable to decrypt the ACI response due to an IOException.", ioe);
+        }
     }
 
     public T process(final InputStream aciResponse) {
@@ -11,29 +11,45 @@
  * liable for technical or editorial errors or omissions contained herein. The
  * information contained herein is subject to change without notice.
  */
-
 package com.autonomy.aci.client.transport.impl;
 
-import com.autonomy.aci.client.transport.EncryptionCodec;
 import com.autonomy.aci.client.transport.EncryptionCodecException;
-import com.autonomy.aci.client.util.IOUtils;
-import org.apache.commons.codec.binary.Base64;
+import com.autonomy.aci.client.transport.StreamingEncryptionCodec;
 import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterInputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 
 /**
  * Abstract base class that contains everything an <code>EncryptionCodec</code> needs to do apart from the actual encrypt
  * and decrypt routines, which are cipher specific.
+ * <p>
+ * The content is deflated straight into a buffer that already holds the <code>AUTN:</code> prefix, and the
+ * <code>length|</code> framing and encrypted content are Base64 encoded as they're written, so the content is only
+ * copied where the cipher itself requires it. Decrypting works the same way in reverse.
+ * <p>
+ * The native zlib compressors and decompressors, and the buffers they use, are taken from a bounded pool shared by all
+ * codecs, rather than being created for every request. The compression level can be set, and content smaller than
+ * {@link #getStoreThreshold() storeThreshold} is stored uncompressed in the zlib stream, which ACI servers inflate just
+ * the same, as compressing it isn't worth the effort.
+ * <p>
+ * Subclasses that override any of the deprecated byte array stages, e.g. {@link #deflateInternal(byte[])}, are
+ * encrypted and decrypted by passing a copy of the content through each of those stages instead, so the overrides are
+ * still called.
  */
-public abstract class AbstractEncryptionCodec implements EncryptionCodec {
+public abstract class AbstractEncryptionCodec implements StreamingEncryptionCodec {
 
     private static final long serialVersionUID = -261634652396305630L;
 
@@ -42,6 +58,52 @@ public abstract class AbstractEncryptionCodec implements EncryptionCodec {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractEncryptionCodec.class);
 
+    /**
+     * Prefixed to the deflated content before it's encrypted...
+     */
+    private static final byte[] PREFIX = "AUTN:".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Separates the length of the encrypted content from the content itself...
+     */
+    private static final byte SEPARATOR = '|';
+
+    /**
+     * Shared by all codecs, as they're usually used from the same pool of request threads...
+     */
+    private static final ZlibPool ZLIB_POOL = new ZlibPool(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Whether a class overrides any of the deprecated byte array stages, so has to be encrypted and decrypted with them...
+     */
+    private static final ClassValue<Boolean> OVERRIDES_BYTE_ARRAY_STAGES = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            for (Class<?> superclass = type; superclass != AbstractEncryptionCodec.class; superclass = superclass.getSuperclass()) {
+                for (final String name : new String[]{"deflateInternal", "encodeInternal", "decodeInternal", "inflateInternal"}) {
+                    try {
+                        superclass.getDeclaredMethod(name, byte[].class);
+                        LOGGER.debug("{} overrides {}(byte[]), so will encrypt and decrypt with the byte array stages...", type.getName(), name);
+                        return true;
+                    } catch (final NoSuchMethodException nsme) {
+                        // Not overridden here...
+                    }
+                }
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Holds value of property compressionLevel.
+     */
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Holds value of property storeThreshold.
+     */
+    private int storeThreshold;
+
     /**
      * This method should firstly deflate {@code bytes}, then encrypt it and finally Base64 encode it.
      * @param bytes An array of bytes to encrypt
@@ -55,8 +117,49 @@ public abstract class AbstractEncryptionCodec implements EncryptionCodec {
             throw new IllegalArgumentException("The byte array to encrypt must not be null or empty.");
         }
 
-        // Do all the work...
-        return encodeInternal(encryptInternal(deflateInternal(bytes)));
+        try {
+            // Base64 is a third bigger than its input, which is usually a lot smaller once deflated...
+            final ByteArrayOutputStream encrypted = new ByteArrayOutputStream(Math.max(64, bytes.length));
+            encrypt(ByteBuffer.wrap(bytes), encrypted);
+            return encrypted.toByteArray();
+        } catch (final IOException ioe) {
+            throw new EncryptionCodecException("Unable to encrypt the input.", ioe);
+        }
+    }
+
+    @Override
+    public void encrypt(final ByteBuffer input, final OutputStream output) throws EncryptionCodecException, IOException {
+        LOGGER.trace("encrypt() called...");
+
+        if (!input.hasRemaining()) {
+            throw new IllegalArgumentException("The content to encrypt must not be empty.");
+        }
+
+        if (OVERRIDES_BYTE_ARRAY_STAGES.get(getClass())) {
+            final byte[] bytes = new byte[input.remaining()];
+            input.get(bytes);
+            output.write(encodeInternal(encryptInternal(deflateInternal(bytes))));
+            return;
+        }
+
+        final ZlibPool.Compressor compressor = ZLIB_POOL.borrowCompressor();
+
+        try {
+            LOGGER.debug("Deflating content...");
+
+            // Do all the work...
+            final ByteBuffer deflated = compressor.deflate(PREFIX, input, getLevel(input.remaining()));
+            encodeInternal(encryptInternal(deflated.array(), 0, deflated.limit()), output);
+        } finally {
+            ZLIB_POOL.release(compressor);
+        }
+    }
+
+    /**
+     * Works out the compression level to use for content of the given size.
+     */
+    private int getLevel(final int length) {
+        return (length < storeThreshold) ? Deflater.NO_COMPRESSION : compressionLevel;
     }
 
     /**
@@ -72,8 +175,37 @@ public abstract class AbstractEncryptionCodec implements EncryptionCodec {
             throw new IllegalArgumentException("The byte array to decrypt must not be null or empty.");
         }
 
+        try {
+            final ByteArrayOutputStream decrypted = new ByteArrayOutputStream(bytes.length * 2);
+            decrypt(ByteBuffer.wrap(bytes), decrypted);
+            return decrypted.toByteArray();
+        } catch (final IOException ioe) {
+            throw new EncryptionCodecException("Unable to decrypt the input.", ioe);
+        }
+    }
+
+    @Override
+    public void decrypt(final ByteBuffer input, final OutputStream output) throws EncryptionCodecException, IOException {
+        LOGGER.trace("decrypt() called...");
+
+        if (!input.hasRemaining()) {
+            throw new IllegalArgumentException("The content to decrypt must not be empty.");
+        }
+
+        if (OVERRIDES_BYTE_ARRAY_STAGES.get(getClass())) {
+            final byte[] bytes = new byte[input.remaining()];
+            input.get(bytes);
+            output.write(inflateInternal(decryptInternal(decodeInternal(bytes))));
+            return;
+        }
+
         // Do all the work...
-        return inflateInternal(decryptInternal(decodeInternal(bytes)));
+        ByteBuffer decoded = decodeInternal(input);
+        if (!decoded.hasArray()) {
+            decoded = ByteBuffer.allocate(decoded.remaining()).put(decoded).flip();
+        }
+
+        inflateInternal(decryptInternal(decoded.array(), decoded.arrayOffset() + decoded.position(), decoded.remaining()), output);
     }
 
     /**
@@ -81,47 +213,20 @@ public abstract class AbstractEncryptionCodec implements EncryptionCodec {
      * @param bytes The byte array to deflate
      * @return The deflated string prefixed with <code>AUTN:</code> as a byte array
      * @throws EncryptionCodecException If an error occurred during processing
+     * @deprecated Encrypting deflates into a pooled buffer instead. This method is only called if a subclass overrides it,
+     * or one of the other byte array stages, in which case the content is copied between each stage as it used to be
      */
+    @Deprecated
     protected byte[] deflateInternal(final byte[] bytes) throws EncryptionCodecException {
         LOGGER.trace("deflateInternal() called...");
 
-        // This is what will deflate for us...
-        DeflaterOutputStream deflater = null;
+        final ZlibPool.Compressor compressor = ZLIB_POOL.borrowCompressor();
 
         try {
-            // Create the output container...
-            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-            // Create the deflater...
-            deflater = new DeflaterOutputStream(baos);
-
-            LOGGER.debug("Deflating content...");
-
-            // Deflate the input string...
-            deflater.write(bytes);
-            deflater.finish();
-
-            // Get the deflated bytes...
-            final byte[] deflated = baos.toByteArray();
-
-            LOGGER.debug("Adding prefix to deflated content...");
-
-            // Get The deflated array prefix of AUTN: in bytes...
-            final byte[] prefix = "AUTN:".getBytes("UTF-8");
-
-            // Copy both the prefix and the deflated query string into a new array...
-            final byte[] toEncrypt = new byte[prefix.length + deflated.length];
-            System.arraycopy(prefix, 0, toEncrypt, 0, prefix.length);
-            System.arraycopy(deflated, 0, toEncrypt, prefix.length, deflated.length);
-
-            LOGGER.debug("Returning deflated and prefixed string...");
-
-            // Return the deflated query string...
-            return toEncrypt;
-        } catch (final IOException ioe) {
-            throw new EncryptionCodecException("Unable to deflate the input.", ioe);
+            final ByteBuffer deflated = compressor.deflate(PREFIX, ByteBuffer.wrap(bytes), getLevel(bytes.length));
+            return Arrays.copyOf(deflated.array(), deflated.limit());
         } finally {
-            IOUtils.getInstance().closeQuietly(deflater);
+            ZLIB_POOL.release(compressor);
         }
     }
 
@@ -133,41 +238,84 @@ public abstract class AbstractEncryptionCodec implements EncryptionCodec {
      */
     protected abstract byte[] encryptInternal(byte[] bytes) throws EncryptionCodecException;
 
+    /**
+     * Encrypt part of the given byte array. By default the part is copied and passed to {@link #encryptInternal(byte[])},
+     * codecs whose cipher can work on part of an array should override this to avoid the copy.
+     * @param bytes  The array holding the content to encrypt
+     * @param offset Where the content starts in <code>bytes</code>
+     * @param length The length of the content
+     * @return The encrypted byte array
+     * @throws EncryptionCodecException If an error occurred during processing
+     */
+    protected byte[] encryptInternal(final byte[] bytes, final int offset, final int length) throws EncryptionCodecException {
+        return encryptInternal(((offset == 0) && (length == bytes.length)) ? bytes : Arrays.copyOfRange(bytes, offset, offset + length));
+    }
+
+    /**
+     * Base64 encodes the length of the encrypted byte array, a separator character and then the encrypted byte array,
+     * writing the result to <code>output</code>.
+     * @param encrypted The encrypted byte array to Base64 encode
+     * @param output    Where to write the Base64 encoded content
+     * @throws IOException If there was a problem writing to <code>output</code>
+     */
+    protected void encodeInternal(final byte[] encrypted, final OutputStream output) throws IOException {
+        LOGGER.trace("encodeInternal() called...");
+        LOGGER.debug("Base64 encoding the length and the deflated and encrypted input...");
+
+        // Closing the encoder writes any padding, but mustn't close the output...
+        try (final OutputStream encoder = Base64.getEncoder().wrap(new NonClosingOutputStream(output))) {
+            encoder.write(Integer.toString(encrypted.length).getBytes(StandardCharsets.US_ASCII));
+            encoder.write(SEPARATOR);
+            encoder.write(encrypted);
+        }
+    }
+
     /**
      * Base64 encodes the supplied byte array, firstly prefixing the length of the byte array and a separator character.
      * @param encrypted The encrypted byte array to Base64 encode
      * @return The Base64 encoded byte array
      * @throws EncryptionCodecException If an error occurred during processing
+     * @deprecated Use {@link #encodeInternal(byte[], OutputStream)}. This method is only called if a subclass overrides
+     * it, or one of the other byte array stages
      */
+    @Deprecated
     protected byte[] encodeInternal(final byte[] encrypted) throws EncryptionCodecException {
-        LOGGER.trace("encodeInternal() called...");
-
         try {
-            LOGGER.debug("Prefixing length of encrypted section...");
-
-            // This is the prefix to the encrypted byte array...
-            final byte[] prefix = (String.valueOf(encrypted.length) + '|').getBytes("UTF-8");
-
-            // Create a byte array to hold all the bits...
-            final byte[] toEncode = new byte[prefix.length + encrypted.length];
-
-            // Append the two arrays...
-            System.arraycopy(prefix, 0, toEncode, 0, prefix.length);
-            System.arraycopy(encrypted, 0, toEncode, prefix.length, encrypted.length);
-
-            LOGGER.debug("Base64 encoding the deflated and encrypted input...");
+            final ByteArrayOutputStream encoded = new ByteArrayOutputStream(((encrypted.length + 15) / 3) * 4);
+            encodeInternal(encrypted, encoded);
+            return encoded.toByteArray();
+        } catch (final IOException ioe) {
+            throw new EncryptionCodecException("Unable to encode the input.", ioe);
+        }
+    }
 
-            // Base64 encode the array...
-            // org.apache.hc.client5.http.utils.Base64;
-            final byte[] encoded = Base64.encodeBase64(toEncode);
+    /**
+     * Base64 decodes the remaining content of <code>input</code> and skips the encrypted length and separator, for
+     * example <code>52|</code>, at the front of it.
+     * @param input The Base64 encoded content to decode
+     * @return A buffer positioned at the start of the encrypted content
+     * @throws EncryptionCodecException If an error occurred during processing
+     */
+    protected ByteBuffer decodeInternal(final ByteBuffer input) throws EncryptionCodecException {
+        LOGGER.trace("decodeInternal() called...");
+        LOGGER.debug("Decoding Base64 encoded input...");
 
-            LOGGER.debug("Returning deflated, encrypted and encoded input...");
+        // The MIME decoder ignores line breaks and anything else that isn't Base64, as commons-codec used to...
+        final ByteBuffer decoded;
+        try {
+            decoded = Base64.getMimeDecoder().decode(input);
+        } catch (final IllegalArgumentException iae) {
+            throw new EncryptionCodecException("Unable to Base64 decode the input.", iae);
+        }
 
-            // Return the encoded byte array as a String...
-            return encoded;
-        } catch (final UnsupportedEncodingException uee) {
-            throw new EncryptionCodecException("Unable to encode the input.", uee);
+        // We now need to skip the length of the encrypted section and it's separator...
+        for (int ii = decoded.position(); ii < decoded.limit(); ii++) {
+            if (decoded.get(ii) == SEPARATOR) {
+                return decoded.position(ii + 1);
+            }
         }
+
+        throw new EncryptionCodecException("Incorrect decoded input, no length and separator found.");
     }
 
     /**
@@ -176,35 +324,14 @@ public abstract class AbstractEncryptionCodec implements EncryptionCodec {
      * @param bytes The Base64 encoded byte array to decode
      * @return The decoded byte array
      * @throws EncryptionCodecException If an error occurred during processing
+     * @deprecated Use {@link #decodeInternal(ByteBuffer)}, which doesn't copy the result. This method is only called if a
+     * subclass overrides it, or one of the other byte array stages
      */
+    @Deprecated
     protected byte[] decodeInternal(final byte[] bytes) throws EncryptionCodecException {
-        LOGGER.trace("decodeInternal() called...");
-        LOGGER.debug("Decoding Base64 encoded input...");
-
-        // Decode the input string in preparation for stripping encrypted length and separator...
-        final byte[] decoded = Base64.decodeBase64(bytes);
-
-        // We now need to strip off the length of the encrypted section and it's separator...
-        final int index = ArrayUtils.indexOf(decoded, (byte) 0x7C);
-
-        if (index == -1) {
-            throw new EncryptionCodecException("Incorrect decoded input, no length and separator found.");
-        }
-
-        // This is the length of the encrypted portion...
-        final int encryptedLength = decoded.length - (index + 1);
-
-        // This will hold the encrypted bytes, minus the length and separator...
-        final byte[] stripped = new byte[encryptedLength];
-
-        LOGGER.debug("Stripping length and separator from decoded input...");
-
-        // Strip the length and separator...
-        System.arraycopy(decoded, (index + 1), stripped, 0, encryptedLength);
-
-        LOGGER.debug("Returning encrypted portion of the input...");
-
-        // Return the decoded content...
+        final ByteBuffer decoded = decodeInternal(ByteBuffer.wrap(bytes));
+        final byte[] stripped = new byte[decoded.remaining()];
+        decoded.get(stripped);
         return stripped;
     }
 
@@ -217,50 +344,133 @@ public abstract class AbstractEncryptionCodec implements EncryptionCodec {
     protected abstract byte[] decryptInternal(byte[] bytes) throws EncryptionCodecException;
 
     /**
-     * Strip the <code>AUTN:</code> prefix and inflate the given <code>byte[]</code> to it's original form.
-     * @param bytes The bytes to inflate
-     * @return The inflated byte array
+     * Decrypt part of the given byte array. By default the part is copied and passed to {@link #decryptInternal(byte[])},
+     * codecs whose cipher can work on part of an array should override this to avoid the copy.
+     * @param bytes  The array holding the content to decrypt
+     * @param offset Where the content starts in <code>bytes</code>
+     * @param length The length of the content
+     * @return The decrypted byte array
      * @throws EncryptionCodecException If an error occurred during processing
      */
-    protected byte[] inflateInternal(final byte[] bytes) throws EncryptionCodecException {
+    protected byte[] decryptInternal(final byte[] bytes, final int offset, final int length) throws EncryptionCodecException {
+        return decryptInternal(((offset == 0) && (length == bytes.length)) ? bytes : Arrays.copyOfRange(bytes, offset, offset + length));
+    }
+
+    /**
+     * Skip the <code>AUTN:</code> prefix and inflate the given <code>byte[]</code> to it's original form, writing it to
+     * <code>output</code>.
+     * @param bytes  The bytes to inflate
+     * @param output Where to write the inflated content
+     * @throws EncryptionCodecException If an error occurred during processing
+     * @throws IOException              If there was a problem writing to <code>output</code>
+     */
+    protected void inflateInternal(final byte[] bytes, final OutputStream output) throws EncryptionCodecException, IOException {
         LOGGER.trace("inflateInternal() called...");
 
-        // This is the input stream...
-        InflaterInputStream inflater = null;
+        if (bytes.length < PREFIX.length) {
+            throw new EncryptionCodecException("Unable to inflate decrypted content, it's too short to have the AUTN: prefix.");
+        }
+
+        final ZlibPool.Decompressor decompressor = ZLIB_POOL.borrowDecompressor();
 
         try {
-            LOGGER.debug("Stripping AUTN: prefix...");
+            LOGGER.debug("Inflating decrypted input...");
 
-            // This is the prefix in bytes...
-            final byte[] prefix = "AUTN:".getBytes("UTF-8");
+            decompressor.inflater.setInput(bytes, PREFIX.length, bytes.length - PREFIX.length);
 
-            // This will hold the content once it's has the prefix stripped... 
-            final byte[] stripped = new byte[bytes.length - prefix.length];
+            while (!decompressor.inflater.finished()) {
+                final int count = decompressor.inflater.inflate(decompressor.buffer);
 
-            // Strip the prefix...
-            System.arraycopy(bytes, prefix.length, stripped, 0, stripped.length);
+                if (count > 0) {
+                    output.write(decompressor.buffer, 0, count);
+                } else if (decompressor.inflater.needsInput() || decompressor.inflater.needsDictionary()) {
+                    throw new EncryptionCodecException("Unable to inflate decrypted content.", new EOFException("Unexpected end of ZLIB input stream"));
+                }
+            }
+        } catch (final DataFormatException dfe) {
+            throw new EncryptionCodecException("Unable to inflate decrypted content.", dfe);
+        } finally {
+            ZLIB_POOL.release(decompressor);
+        }
+    }
 
-            LOGGER.debug("Inflating decrypted input...");
+    /**
+     * Strip the <code>AUTN:</code> prefix and inflate the given <code>byte[]</code> to it's original form.
+     * @param bytes The bytes to inflate
+     * @return The inflated byte array
+     * @throws EncryptionCodecException If an error occurred during processing
+     * @deprecated Use {@link #inflateInternal(byte[], OutputStream)}. This method is only called if a subclass overrides
+     * it, or one of the other byte array stages
+     */
+    @Deprecated
+    protected byte[] inflateInternal(final byte[] bytes) throws EncryptionCodecException {
+        try {
+            final ByteArrayOutputStream inflated = new ByteArrayOutputStream(bytes.length * 4);
+            inflateInternal(bytes, inflated);
+            return inflated.toByteArray();
+        } catch (final IOException ioe) {
+            throw new EncryptionCodecException("Unable to inflate decrypted content.", ioe);
+        }
+    }
+
+    /**
+     * Getter for property compressionLevel.
+     * @return Value of property compressionLevel
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
 
-            // Create the input stream...
-            inflater = new InflaterInputStream(new ByteArrayInputStream(stripped));
+    /**
+     * Setter for property compressionLevel, which defaults to <code>Deflater.DEFAULT_COMPRESSION</code>. Lower levels
+     * use less CPU per request, at the cost of larger requests.
+     * @param compressionLevel New value of property compressionLevel, from <code>-1</code> to <code>9</code>
+     * @throws IllegalArgumentException if <code>compressionLevel</code> isn't a valid <code>Deflater</code> level
+     */
+    public void setCompressionLevel(final int compressionLevel) {
+        Validate.isTrue((compressionLevel >= Deflater.DEFAULT_COMPRESSION) && (compressionLevel <= Deflater.BEST_COMPRESSION),
+                "Compression level must be between -1 and 9");
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Getter for property storeThreshold.
+     * @return Value of property storeThreshold
+     */
+    public int getStoreThreshold() {
+        return storeThreshold;
+    }
+
+    /**
+     * Setter for property storeThreshold. Content shorter than this many bytes is stored in the zlib stream without
+     * being compressed. The default of <code>0</code> compresses everything.
+     * @param storeThreshold New value of property storeThreshold
+     * @throws IllegalArgumentException if <code>storeThreshold</code> is negative
+     */
+    public void setStoreThreshold(final int storeThreshold) {
+        Validate.isTrue(storeThreshold >= 0, "Store threshold must not be negative");
+        this.storeThreshold = storeThreshold;
+    }
 
-            // Create the output buffer...
-            final ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+    /**
+     * Lets the Base64 encoder be closed to finish it off, without closing the stream it's writing to.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
 
-            // Copy from one stream to the other...
-            IOUtils.getInstance().copy(inflater, inflated);
+        NonClosingOutputStream(final OutputStream output) {
+            super(output);
+        }
 
-            LOGGER.debug("Returning decoded, decrypted and inflated input...");
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
 
-            // Convert to a string and return...
-            return inflated.toByteArray();
-        } catch (final IOException ioe) {
-            throw new EncryptionCodecException("Unable to inflate decrypted content.", ioe);
-        } finally {
-            // Close the stream...
-            IOUtils.getInstance().closeQuietly(inflater);
+        @Override
+        public void close() throws IOException {
+            flush();
         }
+
     }
 
 }
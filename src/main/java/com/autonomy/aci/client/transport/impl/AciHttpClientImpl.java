@@ -18,6 +18,8 @@ import com.autonomy.aci.client.services.AciConstants;
 import com.autonomy.aci.client.transport.*;
 import com.autonomy.aci.client.util.ActionParameters;
 import com.autonomy.aci.client.util.EncryptionCodecUtils;
+import com.autonomy.aci.client.util.ParameterEncoder;
+import com.autonomy.aci.client.util.PreparedAction;
 import org.apache.commons.lang3.Validate;
 import org.apache.hc.client5.http.ClientProtocolException;
 import org.apache.hc.client5.http.classic.HttpClient;
@@ -25,12 +27,11 @@ import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
 import org.apache.hc.client5.http.entity.mime.MultipartEntityBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.core5.http.*;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
-import org.apache.hc.core5.http.io.entity.StringEntity;
-import org.apache.hc.core5.http.message.BasicNameValuePair;
-import org.apache.hc.core5.net.URIBuilder;
-import org.apache.hc.core5.net.WWWFormCodec;
+import org.apache.hc.core5.http.protocol.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,9 +40,10 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Implementation of the {@link com.autonomy.aci.client.transport.AciHttpClient} interface that provides the actual HTTP
@@ -63,6 +65,35 @@ public class AciHttpClientImpl implements AciHttpClient {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(AciHttpClientImpl.class);
 
+    /**
+     * The context attribute holding the {@link LeaseTime} to record when a connection was leased for the request in...
+     */
+    private static final String CONNECTION_LEASED_ATTRIBUTE = "com.autonomy.aci.client.connection-leased";
+
+    /**
+     * The encoders last used by each thread, for query strings and for request bodies...
+     */
+    private static final ThreadLocal<ParameterEncoder[]> ENCODERS = ThreadLocal.withInitial(() -> new ParameterEncoder[2]);
+
+    /**
+     * Encoders that were used for more than this many bytes aren't reused...
+     */
+    private static final int MAX_REUSED_ENCODER_SIZE = 64 * 1024;
+
+    /**
+     * A request interceptor that records when a connection has been leased for a request, so that it can be reported to
+     * {@link AciMetricsListener#connectionLeased(String, AciServerDetails, long)}. <code>HttpClient</code> only runs
+     * request interceptors once it has a connection, so add this as the last request interceptor of an
+     * <code>HttpClient</code> or <code>HttpAsyncClient</code> that isn't made by one of the factories in this package.
+     * It does nothing for requests sent without a metrics listener.
+     */
+    public static final HttpRequestInterceptor CONNECTION_LEASE_INTERCEPTOR = (request, entity, context) -> {
+        final Object leaseTime = (context == null) ? null : context.getAttribute(CONNECTION_LEASED_ATTRIBUTE);
+        if (leaseTime instanceof LeaseTime) {
+            ((LeaseTime) leaseTime).record();
+        }
+    };
+
     /**
      * Holds the {@code HttpClient} that will do the work. By allowing it to be passed in as a parameter, it means it
      * can be configured in an IoC container like {@code Spring} before being injected.
@@ -80,6 +111,26 @@ public class AciHttpClientImpl implements AciHttpClient {
      */
     private boolean usePostMethod;
 
+    /**
+     * Holds value of property metricsListener.
+     */
+    private AciMetricsListener metricsListener;
+
+    /**
+     * Holds value of property drainLimit.
+     */
+    private long drainLimit = Long.MAX_VALUE;
+
+    /**
+     * Holds value of property decryptionExecutor.
+     */
+    private Executor decryptionExecutor;
+
+    /**
+     * Holds value of property decryptionParallelism.
+     */
+    private int decryptionParallelism = Runtime.getRuntime().availableProcessors();
+
     /**
      * Creates a new instance of AciHttpClientImpl. The {@code setHttpClient} method <strong>must</strong> must be
      * called before tyring to use this object to execute  an ACI action, otherwise a {@code NullPointerException} will
@@ -116,10 +167,10 @@ public class AciHttpClientImpl implements AciHttpClient {
      * @throws UnsupportedEncodingException If there was a problem working with the parameters in the specified
      *                                      character encoding
      */
-    private HttpUriRequest constructHttp5Request(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters) throws EncryptionCodecException, URISyntaxException, UnsupportedEncodingException {
+    HttpUriRequest constructHttp5Request(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters) throws EncryptionCodecException, URISyntaxException, UnsupportedEncodingException {
         LOGGER.trace("constructHttpMethod() called...");
 
-        final boolean hasPostParameter = parameters.stream()
+        final boolean hasPostParameter = !(parameters instanceof PreparedAction.Parameters) && parameters.stream()
                 .anyMatch(ActionParameter::requiresPostRequest);
         final boolean encrypt = serverDetails.getEncryptionCodec() != null;
 
@@ -147,7 +198,7 @@ public class AciHttpClientImpl implements AciHttpClient {
     private org.apache.http.client.methods.HttpUriRequest constructHttpRequest(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters) throws EncryptionCodecException, URISyntaxException, UnsupportedEncodingException {
         LOGGER.trace("constructHttpMethod() called...");
 
-        final boolean hasPostParameter = parameters.stream()
+        final boolean hasPostParameter = !(parameters instanceof PreparedAction.Parameters) && parameters.stream()
                 .anyMatch(ActionParameter::requiresPostRequest);
         final boolean encrypt = serverDetails.getEncryptionCodec() != null;
 
@@ -179,13 +230,20 @@ public class AciHttpClientImpl implements AciHttpClient {
     private Set<? extends ActionParameter<?>> createEncryptedParameters(final AciServerDetails serverDetails, final Collection<? extends ActionParameter<?>> parameters) throws EncryptionCodecException {
         LOGGER.trace("createEncryptedParameters() called...");
 
+        final AciMetricsListener listener = metricsListener;
+        final long start = (listener == null) ? 0L : System.nanoTime();
+
         // Generate the query String and put it through the codec...
         final String data = EncryptionCodecUtils.getInstance().encrypt(
                 serverDetails.getEncryptionCodec(),
-                wwwFormEncodeParams(orderParams(parameters), serverDetails.getCharsetName()),
-                serverDetails.getCharsetName()
+                encodeParams(parameters, serverDetails.getCharset(), true).toString(),
+                serverDetails.getCharset()
         );
 
+        if (listener != null) {
+            listener.requestEncrypted(getActionName(parameters), serverDetails, System.nanoTime() - start);
+        }
+
         // Create the parameters for an encrypted action...
         return new ActionParameters(
                 new AciParameter(AciConstants.PARAM_ACTION, AciConstants.ACTION_ENCRYPTED),
@@ -204,34 +262,16 @@ public class AciHttpClientImpl implements AciHttpClient {
     private HttpUriRequest createGet5Method(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters) throws URISyntaxException {
         LOGGER.trace("createGetMethod() called...");
 
-        // Create the URI to use...
-        final URI uri = new URIBuilder()
-                .setScheme(serverDetails.getProtocol().toString().toLowerCase(Locale.ENGLISH))
-                .setHost(serverDetails.getHost())
-                .setPort(serverDetails.getPort())
-                .setPath("/")
-                .setParameters(paramsToNVP(orderParams(parameters)))
-                .build();
-
         // Return the constructed get method...
-        return new HttpGet(uri);
+        return new HttpGet(createUri(serverDetails, parameters));
     }
 
     @Deprecated
     private org.apache.http.client.methods.HttpUriRequest createGetMethod(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters) throws URISyntaxException {
         LOGGER.trace("createGetMethod() called...");
 
-        // Create the URI to use...
-        final URI uri = new URIBuilder()
-                .setScheme(serverDetails.getProtocol().toString().toLowerCase(Locale.ENGLISH))
-                .setHost(serverDetails.getHost())
-                .setPort(serverDetails.getPort())
-                .setPath("/")
-                .setParameters(paramsToNVP(orderParams(parameters)))
-                .build();
-
         // Return the constructed get method...
-        return new org.apache.http.client.methods.HttpGet(uri);
+        return new org.apache.http.client.methods.HttpGet(createUri(serverDetails, parameters));
     }
 
     /**
@@ -251,17 +291,9 @@ public class AciHttpClientImpl implements AciHttpClient {
     ) throws URISyntaxException, UnsupportedEncodingException {
         LOGGER.trace("createMultipartMethod() called...");
 
-        final URI uri = new URIBuilder()
-                .setScheme(serverDetails.getProtocol().toString().toLowerCase(Locale.ENGLISH))
-                .setHost(serverDetails.getHost())
-                .setPort(serverDetails.getPort())
-                .setPath("/")
-                .setParameters(paramsToNVP(urlParams))
-                .build();
+        final HttpPost method = new HttpPost(createUri(serverDetails, urlParams));
 
-        final HttpPost method = new HttpPost(uri);
-
-        final Charset charset = Charset.forName(serverDetails.getCharsetName());
+        final Charset charset = serverDetails.getCharset();
         final MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create();
         multipartEntityBuilder.setCharset(charset);
         bodyParams.forEach(parameter -> parameter.addToEntity(multipartEntityBuilder, charset));
@@ -277,17 +309,9 @@ public class AciHttpClientImpl implements AciHttpClient {
     ) throws URISyntaxException, UnsupportedEncodingException {
         LOGGER.trace("createMultipartMethod() called...");
 
-        final URI uri = new URIBuilder()
-                .setScheme(serverDetails.getProtocol().toString().toLowerCase(Locale.ENGLISH))
-                .setHost(serverDetails.getHost())
-                .setPort(serverDetails.getPort())
-                .setPath("/")
-                .setParameters(paramsToNVP(urlParams))
-                .build();
-
-        final org.apache.http.client.methods.HttpPost method = new org.apache.http.client.methods.HttpPost(uri);
+        final org.apache.http.client.methods.HttpPost method = new org.apache.http.client.methods.HttpPost(createUri(serverDetails, urlParams));
 
-        final Charset charset = Charset.forName(serverDetails.getCharsetName());
+        final Charset charset = serverDetails.getCharset();
         final org.apache.http.entity.mime.MultipartEntityBuilder multipartEntityBuilder = org.apache.http.entity.mime.MultipartEntityBuilder.create();
         multipartEntityBuilder.setCharset(charset);
         bodyParams.forEach(parameter -> parameter.addToEntity(multipartEntityBuilder, charset));
@@ -308,18 +332,12 @@ public class AciHttpClientImpl implements AciHttpClient {
     private HttpUriRequest createPost5Method(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters) throws URISyntaxException, UnsupportedEncodingException {
         LOGGER.trace("createPostMethod() called...");
 
-        final URI uri = new URIBuilder()
-                .setScheme(serverDetails.getProtocol().toString().toLowerCase(Locale.ENGLISH))
-                .setHost(serverDetails.getHost())
-                .setPort(serverDetails.getPort())
-                .setPath("/")
-                .build();
+        final HttpPost method = new HttpPost(createUri(serverDetails, Collections.emptySet()));
 
-        final HttpPost method = new HttpPost(uri);
-
-        method.setEntity(new StringEntity(
-                    wwwFormEncodeParams(orderParams(parameters), serverDetails.getCharsetName()),
-                    ContentType.TEXT_PLAIN));
+        // The encoded body is always ASCII, so it's the same as the ISO-8859-1 text/plain it's labelled as...
+        method.setEntity(new ByteArrayEntity(
+                encodeParams(parameters, serverDetails.getCharset(), true).toByteArray(),
+                ContentType.TEXT_PLAIN));
 
         return method;
     }
@@ -327,22 +345,53 @@ public class AciHttpClientImpl implements AciHttpClient {
     private org.apache.http.client.methods.HttpUriRequest createPostMethod(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters) throws URISyntaxException, UnsupportedEncodingException {
         LOGGER.trace("createPostMethod() called...");
 
-        final URI uri = new URIBuilder()
-                .setScheme(serverDetails.getProtocol().toString().toLowerCase(Locale.ENGLISH))
-                .setHost(serverDetails.getHost())
-                .setPort(serverDetails.getPort())
-                .setPath("/")
-                .build();
-
-        final org.apache.http.client.methods.HttpPost method = new org.apache.http.client.methods.HttpPost(uri);
+        final org.apache.http.client.methods.HttpPost method = new org.apache.http.client.methods.HttpPost(createUri(serverDetails, Collections.emptySet()));
 
-        method.setEntity(new org.apache.http.entity.StringEntity(
-                wwwFormEncodeParams(orderParams(parameters), serverDetails.getCharsetName()),
+        method.setEntity(new org.apache.http.entity.ByteArrayEntity(
+                encodeParams(parameters, serverDetails.getCharset(), true).toByteArray(),
                 org.apache.http.entity.ContentType.TEXT_PLAIN));
 
         return method;
     }
 
+    /**
+     * Creates the URI to send an action to, with the parameters in the query string.
+     * @param serverDetails The details of the ACI server the request will be sent to
+     * @param parameters    The parameters to send in the query string, which may be empty
+     * @return The request URI
+     * @throws URISyntaxException If there was a problem construction the request URI from the <code>serverDetails</code>
+     *                            and <code>parameters</code>
+     */
+    private URI createUri(final AciServerDetails serverDetails, final Collection<? extends ActionParameter<?>> parameters) throws URISyntaxException {
+        final String host = serverDetails.getHost();
+        final StringBuilder uri = new StringBuilder(64)
+                .append(serverDetails.getProtocol().toString().toLowerCase(Locale.ENGLISH))
+                .append("://");
+
+        // IPv6 addresses have to be bracketed, as URIBuilder does...
+        if ((host != null) && (host.indexOf(':') >= 0) && !host.startsWith("[")) {
+            uri.append('[').append(host).append(']');
+        } else {
+            uri.append(host);
+        }
+
+        if (serverDetails.getPort() >= 0) {
+            uri.append(':').append(serverDetails.getPort());
+        }
+        uri.append('/');
+
+        if (!parameters.isEmpty()) {
+            // Query strings are always UTF-8 encoded, whatever the server's charset...
+            final ParameterEncoder query = encodeParams(parameters, StandardCharsets.UTF_8, false);
+            if (query.size() > 0) {
+                uri.append('?').append(query);
+            }
+        }
+
+        // The query is already encoded, so the URI is only parsed once, rather than being built from its parts...
+        return new URI(uri.toString());
+    }
+
     /**
      * @param parameters ACI request parameters
      * @return Parameters ordered so that the action comes first
@@ -374,33 +423,53 @@ public class AciHttpClientImpl implements AciHttpClient {
     }
 
     /**
-     * Converts a sequence of string parameters into a a sequence of {@code NameValuePair} objects suitable for use
-     * in both POST and GET requests.  Order is preserved.
-     *
-     * @param parameters
-     * @return Pairs
+     * Returns an empty encoder, reusing the one this thread last used with the same settings, so that building a
+     * request doesn't allocate a new encoder and buffer. The encoder's content has to be copied out before the next
+     * request is built on the same thread, which <code>toString()</code> and <code>toByteArray()</code> do.
+     * @param charset     The charset to encode the parameters with
+     * @param blankAsPlus Whether spaces are encoded as <code>+</code> rather than <code>%20</code>
+     * @return An empty encoder
      */
-    private List<NameValuePair> paramsToNVP(final Collection<? extends ActionParameter<?>> parameters) {
-        LOGGER.trace("paramsToNameValuePair() called...");
-        return parameters.stream().flatMap(parameter -> {
-            final Object value = parameter.getValue();
-            if (value instanceof String) {
-                return Stream.of(new BasicNameValuePair(parameter.getName(), (String) value));
-            } else {
-                return Stream.of();
-            }
-        }).collect(Collectors.toList());
+    private static ParameterEncoder getEncoder(final Charset charset, final boolean blankAsPlus) {
+        final ParameterEncoder[] encoders = ENCODERS.get();
+        final int slot = blankAsPlus ? 1 : 0;
+
+        // Don't hang on to a buffer that grew for an unusually large request...
+        final ParameterEncoder encoder = encoders[slot];
+        if ((encoder != null) && encoder.getCharset().equals(charset) && (encoder.size() <= MAX_REUSED_ENCODER_SIZE)) {
+            encoder.reset();
+            return encoder;
+        }
+
+        encoders[slot] = new ParameterEncoder(charset, blankAsPlus);
+        return encoders[slot];
     }
 
     /**
-     * Encodes a sequence of parameters to form-urlencoded request body, preserving order.
+     * Encodes the string parameters as either a query string or a form-urlencoded request body, with the action first.
+     * Parameters with any other type of value are skipped, as they can only be sent in a multipart body.
      *
-     * @param parameters
-     * @param charsetName
-     * @return Request body
+     * @param parameters  ACI request parameters
+     * @param charset     The charset to encode the parameters with
+     * @param blankAsPlus Whether spaces are encoded as <code>+</code> rather than <code>%20</code>
+     * @return The encoded parameters
      */
-    private String wwwFormEncodeParams(final List<? extends ActionParameter<?>> parameters, final String charsetName) {
-        return WWWFormCodec.format(paramsToNVP(parameters), Charset.forName(charsetName));
+    private ParameterEncoder encodeParams(final Collection<? extends ActionParameter<?>> parameters, final Charset charset, final boolean blankAsPlus) {
+        LOGGER.trace("encodeParams() called...");
+
+        if (parameters instanceof PreparedAction.Parameters) {
+            // These are already in order, and most of them are already encoded...
+            return ((PreparedAction.Parameters) parameters).encode(charset, blankAsPlus);
+        }
+
+        final ParameterEncoder encoder = getEncoder(charset, blankAsPlus);
+        for (final ActionParameter<?> parameter : orderParams(parameters)) {
+            final Object value = parameter.getValue();
+            if (value instanceof String) {
+                encoder.add(parameter.getName(), (String) value);
+            }
+        }
+        return encoder;
     }
 
     /**
@@ -418,15 +487,75 @@ public class AciHttpClientImpl implements AciHttpClient {
 
         Validate.notEmpty(parameters, "The parameter set must not be null or empty.");
 
+        final AciMetricsListener listener = metricsListener;
+        if (listener == null) {
+            return execute(serverDetails, parameters, null, null, 0L);
+        }
+
+        final String action = getActionName(parameters);
+        final long start = System.nanoTime();
+
+        try {
+            return execute(serverDetails, parameters, listener, action, start);
+        } catch (final IOException | AciHttpException | RuntimeException e) {
+            listener.requestFailed(action, serverDetails, e, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the context to execute a request with when there's a metrics listener, so that
+     * {@link #CONNECTION_LEASE_INTERCEPTOR} can record when a connection was leased for it.
+     * @return A new context
+     */
+    static HttpContext createMetricsContext() {
+        final HttpContext context = HttpClientContext.create();
+        context.setAttribute(CONNECTION_LEASED_ATTRIBUTE, new LeaseTime());
+        return context;
+    }
+
+    /**
+     * Reports when a connection was leased for a request, if {@link #CONNECTION_LEASE_INTERCEPTOR} recorded it.
+     * @param context       The context the request was executed with, from {@link #createMetricsContext()}
+     * @param listener      The listener to report to
+     * @param action        The name of the action
+     * @param serverDetails The server the action was sent to
+     * @param sent          The {@link System#nanoTime()} at which the request had been built
+     */
+    static void connectionLeased(final HttpContext context, final AciMetricsListener listener, final String action, final AciServerDetails serverDetails, final long sent) {
+        final LeaseTime leaseTime = (LeaseTime) context.getAttribute(CONNECTION_LEASED_ATTRIBUTE);
+        if (leaseTime.recorded) {
+            listener.connectionLeased(action, serverDetails, leaseTime.leased - sent);
+        }
+    }
+
+    private AciResponseInputStream execute(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters, final AciMetricsListener listener, final String action, final long start) throws IOException, AciHttpException {
         LOGGER.debug("Executing action on {}:{}...", serverDetails.getHost(), serverDetails.getPort());
         try {
+            final AciResponseInputStreamImpl responseStream;
+            long sent = 0L;
+
             if (httpClient5 != null) {
 
                 final HttpUriRequest request = constructHttp5Request(serverDetails, parameters);
-                final ClassicHttpResponse response = httpClient5.executeOpen(null, request, null);
+                if (listener != null) {
+                    sent = System.nanoTime();
+                    listener.requestEncoded(action, serverDetails, sent - start);
+                }
+
+                final HttpContext context = (listener == null) ? null : createMetricsContext();
+                final ClassicHttpResponse response = httpClient5.executeOpen(null, request, context);
                 final int statusCode = response.getCode();
                 LOGGER.debug("Executed method and got status code - {}...", statusCode);
 
+                if (listener != null) {
+                    connectionLeased(context, listener, action, serverDetails, sent);
+
+                    final long received = System.nanoTime();
+                    listener.responseReceived(action, serverDetails, statusCode, received - sent);
+                    sent = received;
+                }
+
                 // Treat anything other than a 2xx status code as an error...
                 if ((statusCode < 200) || (statusCode >= 300)) {
                     // close the connection so it can be reused
@@ -438,19 +567,30 @@ public class AciHttpClientImpl implements AciHttpClient {
                 }
 
                 // Decorate the InputStream so we can release the HTTP connection once the stream's been read...
-                return decryptResponse(serverDetails.getEncryptionCodec(), response)
-                        ? new DecryptingAciResponseInputStreamImpl(serverDetails, response)
+                responseStream = decryptResponse(serverDetails.getEncryptionCodec(), response)
+                        ? new DecryptingAciResponseInputStreamImpl(serverDetails, response, decryptionExecutor, decryptionParallelism)
                         : new AciResponseInputStreamImpl(response);
+                responseStream.abortWith(request);
 
             } else {
                 Validate.notNull(httpClient, "You must set the HttpClient instance to use before using this class.");
                 final org.apache.http.client.methods.HttpUriRequest request =
                         constructHttpRequest(serverDetails, parameters);
+                if (listener != null) {
+                    sent = System.nanoTime();
+                    listener.requestEncoded(action, serverDetails, sent - start);
+                }
 
                 final org.apache.http.HttpResponse response = httpClient.execute(request);
                 final int statusCode = response.getStatusLine().getStatusCode();
                 LOGGER.debug("Executed method and got status code - {}...", statusCode);
 
+                if (listener != null) {
+                    final long received = System.nanoTime();
+                    listener.responseReceived(action, serverDetails, statusCode, received - sent);
+                    sent = received;
+                }
+
                 // Treat anything other than a 2xx status code as an error...
                 if ((statusCode < 200) || (statusCode >= 300)) {
                     // close the connection so it can be reused
@@ -462,11 +602,19 @@ public class AciHttpClientImpl implements AciHttpClient {
                 }
 
                 // Decorate the InputStream so we can release the HTTP connection once the stream's been read...
-                return decryptResponse(serverDetails.getEncryptionCodec(), response)
+                responseStream = decryptResponse(serverDetails.getEncryptionCodec(), response)
                         ? new DecryptingAciResponseInputStreamImpl(serverDetails, response)
                         : new AciResponseInputStreamImpl(response);
 
             }
+
+            responseStream.setDrainLimit(drainLimit);
+
+            if (listener != null) {
+                responseStream.meter(listener, action, serverDetails, sent);
+            }
+
+            return responseStream;
         } catch (final ClientProtocolException | org.apache.http.client.ClientProtocolException cpe) {
             throw new AciHttpException("A HTTP protocol Exception has been caught while trying to execute the ACI request.", cpe);
         } catch (final EncryptionCodecException ece) {
@@ -476,7 +624,25 @@ public class AciHttpClientImpl implements AciHttpClient {
         }
     }
 
-    private boolean decryptResponse(final EncryptionCodec encryptionCodec, final HttpResponse response) {
+    /**
+     * @param parameters ACI request parameters
+     * @return The value of the action parameter, or <code>null</code> if there isn't one
+     */
+    static String getActionName(final Collection<? extends ActionParameter<?>> parameters) {
+        if (parameters instanceof PreparedAction.Parameters) {
+            return ((PreparedAction.Parameters) parameters).getPreparedAction().getAction();
+        }
+
+        for (final ActionParameter<?> parameter : parameters) {
+            if ((parameter != null) && AciConstants.PARAM_ACTION.equalsIgnoreCase(parameter.getName())) {
+                final Object value = parameter.getValue();
+                return (value == null) ? null : value.toString();
+            }
+        }
+        return null;
+    }
+
+    boolean decryptResponse(final EncryptionCodec encryptionCodec, final HttpResponse response) {
         LOGGER.trace("decryptResponse() called...");
 
         // If there is no encryptionCodec then we don't need to check the headers...
@@ -560,4 +726,98 @@ public class AciHttpClientImpl implements AciHttpClient {
         this.usePostMethod = usePostMethod;
     }
 
+    /**
+     * Getter for property metricsListener.
+     * @return Value of property metricsListener
+     */
+    public AciMetricsListener getMetricsListener() {
+        return this.metricsListener;
+    }
+
+    /**
+     * Setter for property metricsListener, which is told how long each phase of sending an action and reading its
+     * response takes. Defaults to <code>null</code>, in which case nothing is timed.
+     * @param metricsListener New value of property metricsListener
+     */
+    public void setMetricsListener(final AciMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Getter for property drainLimit.
+     * @return Value of property drainLimit
+     */
+    public long getDrainLimit() {
+        return this.drainLimit;
+    }
+
+    /**
+     * Setter for property drainLimit, the most bytes of a response that will be read when it's closed before the end,
+     * so that the connection can be reused. Responses with more than this left are aborted and their connection
+     * discarded instead, which is much quicker when a processor stops part way through a large response. Defaults to
+     * <code>Long.MAX_VALUE</code>, so the rest of a response is always read. See
+     * {@link AciResponseInputStreamImpl#setDrainLimit(long)}.
+     * @param drainLimit New value of property drainLimit
+     * @throws IllegalArgumentException If <code>drainLimit</code> is negative
+     */
+    public void setDrainLimit(final long drainLimit) {
+        Validate.isTrue(drainLimit >= 0L, "drainLimit must not be negative");
+        this.drainLimit = drainLimit;
+    }
+
+    /**
+     * Getter for property decryptionExecutor.
+     * @return Value of property decryptionExecutor
+     */
+    public Executor getDecryptionExecutor() {
+        return this.decryptionExecutor;
+    }
+
+    /**
+     * Setter for property decryptionExecutor. If set, the <code>autn:encrypteddata</code> blocks of encrypted responses
+     * are read ahead and decrypted on this executor, up to <code>decryptionParallelism</code> at once, while still being
+     * returned in order. Only set this if the <code>EncryptionCodec</code> can be used concurrently. Defaults to
+     * <code>null</code>, which decrypts each block on the reading thread as it's needed. Responses received with the
+     * deprecated HttpClient 4 are always decrypted on the reading thread.
+     * @param decryptionExecutor New value of property decryptionExecutor
+     */
+    public void setDecryptionExecutor(final Executor decryptionExecutor) {
+        this.decryptionExecutor = decryptionExecutor;
+    }
+
+    /**
+     * Getter for property decryptionParallelism.
+     * @return Value of property decryptionParallelism
+     */
+    public int getDecryptionParallelism() {
+        return this.decryptionParallelism;
+    }
+
+    /**
+     * Setter for property decryptionParallelism, the most blocks of a response that are decrypted at once on the
+     * <code>decryptionExecutor</code>, which is also how far ahead of the reader blocks are read. Defaults to the number
+     * of available processors.
+     * @param decryptionParallelism New value of property decryptionParallelism
+     * @throws IllegalArgumentException If <code>decryptionParallelism</code> is less than one
+     */
+    public void setDecryptionParallelism(final int decryptionParallelism) {
+        Validate.isTrue(decryptionParallelism > 0, "decryptionParallelism must be greater than zero");
+        this.decryptionParallelism = decryptionParallelism;
+    }
+
+    /**
+     * When a connection was leased for a request, only recorded when there's a metrics listener to report it to.
+     */
+    private static final class LeaseTime {
+
+        private long leased;
+
+        private boolean recorded;
+
+        private void record() {
+            leased = System.nanoTime();
+            recorded = true;
+        }
+    }
+
 }
@@ -14,7 +14,11 @@
 
 package com.autonomy.aci.client.transport.impl;
 
+import com.autonomy.aci.client.transport.AciMetricsListener;
 import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import org.apache.commons.lang3.Validate;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
@@ -22,7 +26,10 @@ import org.apache.http.HttpResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * This {@code AciResponseInputStream} implementation provides the ability to release a {@code HttpClient} connection
@@ -32,6 +39,10 @@ import java.io.IOException;
  * <p>
  * This class is required to decorate the returned {@code InputStream} if the {@code HttpClient} has been setup to use
  * the {@code MultiThreadedHttpConnectionManager}.
+ * <p>
+ * By default, closing the stream before the end of the response reads the rest of it, however big it is, so that the
+ * connection can be reused. Setting a {@link #setDrainLimit(long) drain limit} aborts the response instead when more
+ * than that is left, which is much quicker when a processor stops part way through a large response.
  */
 public class AciResponseInputStreamImpl extends AciResponseInputStream {
 
@@ -42,6 +53,42 @@ public class AciResponseInputStreamImpl extends AciResponseInputStream {
 
     private ClassicHttpResponse response5;
 
+    /**
+     * The request the response is for, which is cancelled to close the connection when the response is aborted...
+     */
+    private HttpUriRequest request5;
+
+    /**
+     * Counts the bytes read from the response body, by the processor or when draining it...
+     */
+    private final CountingInputStream entityContent;
+
+    /**
+     * Holds value of property drainLimit.
+     */
+    private long drainLimit = Long.MAX_VALUE;
+
+    /**
+     * The number of bytes read and discarded when the stream was closed.
+     */
+    private long drainedBytes;
+
+    /**
+     * The number of bytes left unread when the response was aborted, or <code>-1</code> if that isn't known.
+     */
+    private long abortedBytes;
+
+    private AciMetricsListener listener;
+
+    private String action;
+
+    private AciServerDetails serverDetails;
+
+    /**
+     * Set once the response has been aborted, so that a subsequent close doesn't try to read the rest of it...
+     */
+    private volatile boolean aborted;
+
     /**
      * Holds value of property method.
      */
@@ -54,7 +101,8 @@ public class AciResponseInputStreamImpl extends AciResponseInputStream {
      */
     public AciResponseInputStreamImpl(final ClassicHttpResponse response) throws IOException {
         // Give the filter the InputStream to use...
-        super(response.getEntity().getContent());
+        super(new CountingInputStream(response.getEntity().getContent()));
+        entityContent = (CountingInputStream) in;
 
         // Store the method...
         response5 = response;
@@ -69,7 +117,8 @@ public class AciResponseInputStreamImpl extends AciResponseInputStream {
     @Deprecated
     public AciResponseInputStreamImpl(final HttpResponse response) throws IOException {
         // Give the filter the InputStream to use...
-        super(response.getEntity().getContent());
+        super(new CountingInputStream(response.getEntity().getContent()));
+        entityContent = (CountingInputStream) in;
 
         // Store the method...
         this.response = response;
@@ -131,6 +180,25 @@ public class AciResponseInputStreamImpl extends AciResponseInputStream {
     public void close() throws IOException {
         LOGGER.trace("close() called...");
 
+        if (aborted) {
+            return;
+        }
+
+        if (drainLimit == Long.MAX_VALUE) {
+            // HttpClient reads whatever's left, we can only say how much that was if we know the length...
+            drainedBytes = Math.max(0L, getRemainingBytes());
+        } else if (!drain()) {
+            LOGGER.debug("More than {} bytes of the response are unread, aborting it rather than reading them...", drainLimit);
+            // What was read didn't let the connection be reused, so doesn't count as drained...
+            drainedBytes = 0L;
+            abort();
+            return;
+        }
+
+        if ((listener != null) && (drainedBytes > 0L)) {
+            listener.responseDrained(action, serverDetails, drainedBytes);
+        }
+
         try {
             // Close the actual InputStream...
             super.close();
@@ -144,6 +212,172 @@ public class AciResponseInputStreamImpl extends AciResponseInputStream {
         }
     }
 
+    /**
+     * Closes the underlying HTTP response without reading the rest of it, so the connection is discarded rather than
+     * returned to the pool. This is much quicker than {@link #close()} when the rest of a large or slow response isn't
+     * wanted. Can be called from a different thread to the one reading the stream, which will then fail with an
+     * <code>IOException</code>. Once aborted, calling {@link #close()} has no effect.
+     * <p>
+     * Closing a HttpClient 5 response reads the rest of it, so the connection can only be closed straight away for
+     * responses from {@link AciHttpClientImpl}, which cancels the request first. Otherwise the response is closed as
+     * {@link #close()} would.
+     * @throws IOException If an I/O error occurs
+     */
+    public void abort() throws IOException {
+        LOGGER.trace("abort() called...");
+
+        if (aborted) {
+            return;
+        }
+
+        aborted = true;
+        abortedBytes = getRemainingBytes();
+
+        if (listener != null) {
+            listener.responseAborted(action, serverDetails, abortedBytes);
+        }
+
+        LOGGER.debug("Aborting the HTTP Connection...");
+        if (response5 != null) {
+            if (request5 != null) {
+                // Cancelling the request closes the connection, rather than reading the rest of the response...
+                request5.abort();
+                closeAborted(response5);
+            } else {
+                response5.close();
+            }
+        } else if (response instanceof Closeable) {
+            ((Closeable) response).close();
+        } else {
+            super.close();
+        }
+    }
+
+    private static void closeAborted(final ClassicHttpResponse response) {
+        try {
+            response.close();
+        } catch (final IOException e) {
+            // The connection has already been closed, so there's nothing left to release...
+            LOGGER.debug("Ignoring an exception closing an aborted response...", e);
+        }
+    }
+
+    /**
+     * Reads what's left of the response, up to the drain limit, so that the connection can be reused.
+     * @return <code>true</code> if the end of the response was reached, <code>false</code> if it should be aborted
+     * @throws IOException If an I/O error occurs
+     */
+    private boolean drain() throws IOException {
+        final long remaining = getRemainingBytes();
+        if (remaining > drainLimit) {
+            // Don't bother reading any of it...
+            return false;
+        }
+
+        final byte[] buffer = new byte[8192];
+        while (true) {
+            // Read one more than the limit, so we know whether we'd have to read more...
+            final int read = entityContent.read(buffer, 0, (int) Math.min(buffer.length, drainLimit - drainedBytes + 1));
+            if (read == -1) {
+                return true;
+            }
+
+            drainedBytes += read;
+            if (drainedBytes > drainLimit) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return The number of bytes of the response body that haven't been read, or <code>-1</code> if there's no
+     * <code>Content-Length</code>
+     */
+    private long getRemainingBytes() {
+        final long contentLength = getContentLength();
+        return (contentLength < 0L) ? -1L : Math.max(0L, contentLength - entityContent.getCount());
+    }
+
+    /**
+     * Counts the bytes read from the response body and reports them to <code>listener</code> once the body has been read
+     * or closed.
+     * @param listener      The listener to report to
+     * @param action        The name of the action
+     * @param serverDetails The server the action was sent to
+     * @param start         The value of <code>System.nanoTime()</code> when the response was received
+     */
+    void meter(final AciMetricsListener listener, final String action, final AciServerDetails serverDetails, final long start) {
+        reportCloseTo(listener, action, serverDetails);
+        in = new MeteredInputStream(in, listener, action, serverDetails, start);
+    }
+
+    /**
+     * Reports draining or aborting the response to <code>listener</code>.
+     * @param listener      The listener to report to
+     * @param action        The name of the action
+     * @param serverDetails The server the action was sent to
+     */
+    void reportCloseTo(final AciMetricsListener listener, final String action, final AciServerDetails serverDetails) {
+        this.listener = listener;
+        this.action = action;
+        this.serverDetails = serverDetails;
+    }
+
+    /**
+     * Cancels <code>request</code> when the response is aborted, which closes its connection without reading the rest
+     * of the response.
+     * @param request The request that this is the response to
+     */
+    void abortWith(final HttpUriRequest request) {
+        this.request5 = request;
+    }
+
+    /**
+     * Getter for property drainLimit.
+     * @return Value of property drainLimit
+     */
+    public long getDrainLimit() {
+        return drainLimit;
+    }
+
+    /**
+     * Setter for property drainLimit, the most bytes that {@link #close()} will read to get to the end of the response,
+     * so that the connection can be reused. If more than this is left the response is {@link #abort() aborted} instead,
+     * and the connection discarded. When the response has a <code>Content-Length</code> nothing is read if too much is
+     * left, otherwise up to this many bytes are read before giving up. Defaults to <code>Long.MAX_VALUE</code>, so the
+     * rest of the response is always read.
+     * @param drainLimit New value of property drainLimit
+     * @throws IllegalArgumentException If <code>drainLimit</code> is negative
+     */
+    public void setDrainLimit(final long drainLimit) {
+        Validate.isTrue(drainLimit >= 0L, "drainLimit must not be negative");
+        this.drainLimit = drainLimit;
+    }
+
+    /**
+     * @return The number of bytes read and discarded when the stream was closed, so that the connection could be reused.
+     * When the drain limit is <code>Long.MAX_VALUE</code> this is only known if the response had a
+     * <code>Content-Length</code>, and is <code>0</code> otherwise. It's also <code>0</code> if the response was aborted
+     */
+    public long getDrainedBytes() {
+        return drainedBytes;
+    }
+
+    /**
+     * @return Whether the response was aborted, either explicitly or because more than the drain limit was left
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * @return The number of bytes left unread when the response was aborted, <code>-1</code> if that isn't known
+     * because there was no <code>Content-Length</code>, or <code>0</code> if it wasn't aborted
+     */
+    public long getAbortedBytes() {
+        return abortedBytes;
+    }
+
     /**
      * Getter for property method.
      * @return Value of property method
@@ -163,4 +397,46 @@ public class AciResponseInputStreamImpl extends AciResponseInputStream {
         this.response = response;
     }
 
+    /**
+     * Counts the bytes read from the response body, so we know how much of it is left.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int read = in.read();
+            if (read != -1) {
+                count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final int read = in.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        private long getCount() {
+            return count;
+        }
+
+    }
+
 }
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.impl;
+
+import com.autonomy.aci.client.transport.*;
+import org.apache.commons.lang3.Validate;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.*;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityProducer;
+import org.apache.hc.core5.http.nio.support.BasicRequestProducer;
+import org.apache.hc.core5.http.nio.support.BasicResponseConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Implementation of the {@link com.autonomy.aci.client.transport.AsyncAciHttpClient} interface that uses the
+ * non-blocking {@link CloseableHttpAsyncClient} provided by the <a href="http://hc.apache.org/">Apache HttpComponents</a>
+ * project. Requests are built in exactly the same way as they are by {@link AciHttpClientImpl}, so the
+ * {@link #setUsePostMethod(boolean)} property and any <code>EncryptionCodec</code> set on the server details are honoured,
+ * as are the {@link #setMetricsListener(AciMetricsListener) metricsListener} and {@link #setDrainLimit(long) drainLimit}
+ * properties. As the whole body has arrived by the time the response is handed back, the time reported to
+ * {@link AciMetricsListener#responseReceived} includes receiving the body.
+ * <p>
+ * No thread is held while the request is in flight. The response body is collected by the I/O reactor and, once the
+ * exchange is complete, is handed back as an {@link com.autonomy.aci.client.transport.AciResponseInputStream} that can be
+ * given to any of the existing <code>Processor</code> implementations. As the whole response is held in memory until it
+ * has been processed, this client is best suited to the many small to medium sized responses of a fan-out service,
+ * rather than to streaming very large responses.
+ * <p>
+ * This class also implements the blocking {@link com.autonomy.aci.client.transport.AciHttpClient} interface, by waiting
+ * for the asynchronous exchange to complete, so a single configured instance can be shared by both an
+ * {@link com.autonomy.aci.client.services.impl.AciServiceImpl} and an
+ * {@link com.autonomy.aci.client.services.impl.AsyncAciServiceImpl}. The {@code CloseableHttpAsyncClient} must have been
+ * started before it is used, which {@link HttpAsyncClient5Factory} does for you.
+ * @see <a href="http://hc.apache.org/">Apache HttpComponents</a>
+ */
+public class AsyncAciHttpClientImpl extends AciHttpClientImpl implements AsyncAciHttpClient {
+
+    /**
+     * Class logger...
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncAciHttpClientImpl.class);
+
+    private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
+
+    /**
+     * Holds the {@code CloseableHttpAsyncClient} that will do the work.
+     */
+    private CloseableHttpAsyncClient httpAsyncClient;
+
+    /**
+     * Creates a new instance of AsyncAciHttpClientImpl. The {@code setHttpAsyncClient} method <strong>must</strong> be
+     * called before trying to use this object to execute an ACI action.
+     */
+    public AsyncAciHttpClientImpl() {
+        super();
+    }
+
+    /**
+     * Creates a new instance of AsyncAciHttpClientImpl.
+     * @param httpAsyncClient The started {@code CloseableHttpAsyncClient} to use
+     */
+    public AsyncAciHttpClientImpl(final CloseableHttpAsyncClient httpAsyncClient) {
+        this.httpAsyncClient = httpAsyncClient;
+    }
+
+    /**
+     * Execute an ACI action on the specific ACI server without blocking the calling thread.
+     * @param serverDetails Details of the ACI server to send the action to
+     * @param parameters    The parameters to send with the ACI action
+     * @return A <code>CompletableFuture</code> that is completed with an <code>AciResponseInputStream</code> containing the
+     * ACI response, or exceptionally with an <code>IOException</code> or <code>AciHttpException</code>
+     * @throws IllegalArgumentException if the <code>httpAsyncClient</code> property is <code>null</code> or
+     *                                  <code>parameters</code> is <code>null</code>
+     */
+    @Override
+    public CompletableFuture<AciResponseInputStream> executeActionAsync(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters) {
+        LOGGER.trace("executeActionAsync() called...");
+
+        Validate.notEmpty(parameters, "The parameter set must not be null or empty.");
+        Validate.notNull(httpAsyncClient, "You must set the HttpAsyncClient instance to use before using this class.");
+
+        final CompletableFuture<AciResponseInputStream> result = new CompletableFuture<>();
+
+        final AciMetricsListener listener = getMetricsListener();
+        final String action = (listener == null) ? null : getActionName(parameters);
+        final long start = (listener == null) ? 0L : System.nanoTime();
+
+        final AsyncRequestProducer requestProducer;
+        try {
+            requestProducer = createRequestProducer(constructHttp5Request(serverDetails, parameters));
+        } catch (final EncryptionCodecException ece) {
+            fail(result, listener, action, serverDetails, start, new AciHttpException("Unable to send the ACI request due to an encryption failure.", ece));
+            return result;
+        } catch (final URISyntaxException urise) {
+            fail(result, listener, action, serverDetails, start, new AciHttpException("Unable to construct the URI required to send the ACI request.", urise));
+            return result;
+        } catch (final IOException ioe) {
+            fail(result, listener, action, serverDetails, start, ioe);
+            return result;
+        }
+
+        final long sent;
+        if (listener == null) {
+            sent = 0L;
+        } else {
+            sent = System.nanoTime();
+            listener.requestEncoded(action, serverDetails, sent - start);
+        }
+
+        LOGGER.debug("Executing asynchronous action on {}:{}...", serverDetails.getHost(), serverDetails.getPort());
+
+        final HttpContext context = (listener == null) ? null : createMetricsContext();
+        final Future<Message<HttpResponse, byte[]>> exchange = httpAsyncClient.execute(
+                requestProducer,
+                new BasicResponseConsumer<>(new CancellableEntityConsumer(result)),
+                context,
+                new FutureCallback<Message<HttpResponse, byte[]>>() {
+                    @Override
+                    public void completed(final Message<HttpResponse, byte[]> message) {
+                        long received = 0L;
+                        if (listener != null) {
+                            connectionLeased(context, listener, action, serverDetails, sent);
+
+                            received = System.nanoTime();
+                            listener.responseReceived(action, serverDetails, message.getHead().getCode(), received - sent);
+                        }
+
+                        final AciResponseInputStreamImpl response;
+                        try {
+                            response = createResponseInputStream(serverDetails, message, listener, action, received);
+                        } catch (final AciHttpException | IOException | RuntimeException e) {
+                            fail(result, listener, action, serverDetails, start, e);
+                            return;
+                        }
+
+                        complete(result, response);
+                    }
+
+                    @Override
+                    public void failed(final Exception e) {
+                        fail(result, listener, action, serverDetails, start, e);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        result.cancel(false);
+                    }
+                }
+        );
+
+        // Propagate a cancellation by the caller down to the HTTP exchange, so the connection isn't left busy...
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Execute an ACI action on the specific ACI server, blocking until the response has arrived.
+     * @param serverDetails Details of the ACI server to send the action to
+     * @param parameters    The parameters to send with the ACI action
+     * @return An <code>AciResponseInputStream</code> containing the ACI response
+     * @throws IOException              If an I/O (transport) error occurs, or the calling thread is interrupted
+     * @throws AciHttpException         If a protocol exception occurs
+     * @throws IllegalArgumentException if the <code>httpAsyncClient</code> property is <code>null</code> or
+     *                                  <code>parameters</code> is <code>null</code>
+     */
+    @Override
+    public AciResponseInputStream executeAction(final AciServerDetails serverDetails, final Set<? extends ActionParameter<?>> parameters) throws IOException, AciHttpException {
+        LOGGER.trace("executeAction() called...");
+
+        final CompletableFuture<AciResponseInputStream> future = executeActionAsync(serverDetails, parameters);
+
+        try {
+            return future.get();
+        } catch (final InterruptedException ie) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the ACI response.");
+        } catch (final ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof AciHttpException) {
+                throw (AciHttpException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new AciHttpException("Unable to execute the ACI request.", cause);
+            }
+        }
+    }
+
+    /**
+     * Completes the future with a response, closing the response straight away if the future has already been completed,
+     * e.g. because the caller cancelled it, as no one else will ever close it.
+     * @param result   The future to complete
+     * @param response The response to complete it with
+     */
+    static void complete(final CompletableFuture<AciResponseInputStream> result, final AciResponseInputStream response) {
+        if (!result.complete(response)) {
+            LOGGER.debug("The response arrived after the request was cancelled, so closing it...");
+            try {
+                response.close();
+            } catch (final IOException ioe) {
+                LOGGER.warn("Unable to close an unwanted response.", ioe);
+            }
+        }
+    }
+
+    private static void fail(final CompletableFuture<AciResponseInputStream> result, final AciMetricsListener listener, final String action, final AciServerDetails serverDetails, final long start, final Exception e) {
+        if (listener != null) {
+            listener.requestFailed(action, serverDetails, e, System.nanoTime() - start);
+        }
+        result.completeExceptionally(e);
+    }
+
+    /**
+     * Turns the classic request built by {@link #constructHttp5Request} into something the async client can send. The
+     * request line and headers are reused as is, while any entity is written out into a byte array.
+     * @param request The classic request
+     * @return A producer for the same request
+     * @throws IOException If the request entity couldn't be written
+     */
+    private AsyncRequestProducer createRequestProducer(final HttpUriRequest request) throws IOException {
+        LOGGER.trace("createRequestProducer() called...");
+
+        final HttpEntity entity = request.getEntity();
+        if (entity == null) {
+            return new BasicRequestProducer(request, null);
+        }
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        entity.writeTo(buffer);
+
+        return new BasicRequestProducer(request, new BasicAsyncEntityProducer(
+                buffer.toByteArray(),
+                ContentType.parse(entity.getContentType())
+        ));
+    }
+
+    /**
+     * Checks the status of a completed exchange and wraps the response body up so it can be given to a processor.
+     * @param serverDetails The details of the ACI server the request was sent to
+     * @param message       The response head and body
+     * @param listener      The listener to meter reading the response with, or <code>null</code>
+     * @param action        The name of the action, for the listener
+     * @param received      When the response was received, for the listener
+     * @return An <code>AciResponseInputStreamImpl</code> containing the ACI response
+     * @throws AciHttpException If the status code wasn't in the 2xx range
+     * @throws IOException      If the response couldn't be decrypted
+     */
+    private AciResponseInputStreamImpl createResponseInputStream(final AciServerDetails serverDetails, final Message<HttpResponse, byte[]> message, final AciMetricsListener listener, final String action, final long received) throws AciHttpException, IOException {
+        LOGGER.trace("createResponseInputStream() called...");
+
+        final HttpResponse head = message.getHead();
+        final int statusCode = head.getCode();
+        LOGGER.debug("Executed asynchronous request and got status code - {}...", statusCode);
+
+        // Treat anything other than a 2xx status code as an error...
+        if ((statusCode < 200) || (statusCode >= 300)) {
+            throw new AciHttpException(
+                    "The server returned a status code, " + statusCode +
+                            ", that wasn't in the 2xx Success range.");
+        }
+
+        final Header contentType = head.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+        final Header contentEncoding = head.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        final byte[] body = (message.getBody() == null) ? EMPTY_BYTE_ARRAY : message.getBody();
+
+        final ClassicHttpResponse response = new BasicClassicHttpResponse(statusCode, head.getReasonPhrase());
+        response.setHeaders(head.getHeaders());
+        response.setEntity(new ByteArrayEntity(
+                body,
+                (contentType == null) ? null : ContentType.parse(contentType.getValue()),
+                (contentEncoding == null) ? null : contentEncoding.getValue()
+        ));
+
+        final AciResponseInputStreamImpl responseStream = decryptResponse(serverDetails.getEncryptionCodec(), response)
+                ? new DecryptingAciResponseInputStreamImpl(serverDetails, response, getDecryptionExecutor(), getDecryptionParallelism())
+                : new AciResponseInputStreamImpl(response);
+
+        // The same as AciHttpClientImpl, so the two behave identically...
+        responseStream.setDrainLimit(getDrainLimit());
+        if (listener != null) {
+            responseStream.meter(listener, action, serverDetails, received);
+        }
+
+        return responseStream;
+    }
+
+    /**
+     * Getter for property httpAsyncClient.
+     * @return Value of property httpAsyncClient
+     */
+    public CloseableHttpAsyncClient getHttpAsyncClient() {
+        return httpAsyncClient;
+    }
+
+    /**
+     * Setter for property httpAsyncClient.
+     * @param httpAsyncClient New value of property httpAsyncClient
+     */
+    public void setHttpAsyncClient(final CloseableHttpAsyncClient httpAsyncClient) {
+        this.httpAsyncClient = httpAsyncClient;
+    }
+
+    /**
+     * Collects the response body until the caller cancels, then fails the exchange. Cancelling a HttpClient exchange on a
+     * pooled connection only stops the response being handed back, while the rest of the body is still read so that the
+     * connection can be reused. Failing instead makes the client close the connection.
+     */
+    private static final class CancellableEntityConsumer extends BasicAsyncEntityConsumer {
+
+        private final Future<?> result;
+
+        private CancellableEntityConsumer(final Future<?> result) {
+            this.result = result;
+        }
+
+        @Override
+        protected void data(final ByteBuffer src, final boolean endOfStream) throws IOException {
+            if (result.isCancelled()) {
+                throw new InterruptedIOException("The ACI request was cancelled.");
+            }
+            super.data(src, endOfStream);
+        }
+    }
+
+}
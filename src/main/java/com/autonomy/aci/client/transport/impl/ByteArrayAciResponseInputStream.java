@@ -0,0 +1,190 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.impl;
+
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An <code>AciResponseInputStream</code> that holds the whole ACI response in memory, so that it can be read after the
+ * HTTP connection has been released, or read more than once via {@link #copy()}. The content is never modified, so copies
+ * can safely share it and be read on different threads.
+ * <p>
+ * As <code>AciResponseInputStream</code> has no way of listing its headers, only the headers in {@link #BUFFERED_HEADERS}
+ * are kept when buffering another response.
+ */
+public class ByteArrayAciResponseInputStream extends AciResponseInputStream {
+
+    /**
+     * Class logger...
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ByteArrayAciResponseInputStream.class);
+
+    /**
+     * The headers that are kept by {@link #buffer(AciResponseInputStream)}.
+     */
+    public static final String[] BUFFERED_HEADERS = {
+            "AUTN-Content-Type", "Content-Disposition", "Content-Encoding", "Content-Type"
+    };
+
+    private final byte[] content;
+
+    private final int statusCode;
+
+    private final String contentType;
+
+    private final String contentEncoding;
+
+    /**
+     * Case insensitive, as HTTP header names are...
+     */
+    private final TreeMap<String, String> headers;
+
+    /**
+     * Creates a new instance of ByteArrayAciResponseInputStream.
+     * @param content         The response content, which must not be modified afterwards
+     * @param statusCode      The HTTP status code of the response
+     * @param contentType     The content type of the response, can be <code>null</code>
+     * @param contentEncoding The content encoding of the response, can be <code>null</code>
+     * @param headers         The response headers, can be <code>null</code>
+     * @throws NullPointerException If <code>content</code> is <code>null</code>
+     */
+    public ByteArrayAciResponseInputStream(
+            final byte[] content,
+            final int statusCode,
+            final String contentType,
+            final String contentEncoding,
+            final Map<String, String> headers
+    ) {
+        this(content, statusCode, contentType, contentEncoding, copyHeaders(headers));
+    }
+
+    private ByteArrayAciResponseInputStream(
+            final byte[] content,
+            final int statusCode,
+            final String contentType,
+            final String contentEncoding,
+            final TreeMap<String, String> headers
+    ) {
+        super(new ByteArrayInputStream(Validate.notNull(content, "Content must not be null.")));
+
+        this.content = content;
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.headers = headers;
+    }
+
+    private static TreeMap<String, String> copyHeaders(final Map<String, String> headers) {
+        final TreeMap<String, String> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        if (headers != null) {
+            copy.putAll(headers);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Reads the whole of <code>response</code> into memory. The <code>response</code> isn't closed.
+     * @param response The response to buffer
+     * @return A <code>ByteArrayAciResponseInputStream</code> with the content, status code and headers of <code>response</code>
+     * @throws IOException If an I/O error occurs while reading the response
+     */
+    public static ByteArrayAciResponseInputStream buffer(final AciResponseInputStream response) throws IOException {
+        LOGGER.trace("buffer() called...");
+
+        final long contentLength = response.getContentLength();
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(((contentLength > 0L) && (contentLength < Integer.MAX_VALUE)) ? (int) contentLength : 8192);
+
+        final byte[] bytes = new byte[8192];
+        for (int read = response.read(bytes); read != -1; read = response.read(bytes)) {
+            buffer.write(bytes, 0, read);
+        }
+
+        final TreeMap<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (final String name : BUFFERED_HEADERS) {
+            final String value = response.getHeader(name);
+            if (value != null) {
+                headers.put(name, value);
+            }
+        }
+
+        return new ByteArrayAciResponseInputStream(buffer.toByteArray(), response.getStatusCode(), response.getContentType(), response.getContentEncoding(), headers);
+    }
+
+    /**
+     * Creates a new stream over the same content, positioned at the start.
+     * @return A new <code>ByteArrayAciResponseInputStream</code>
+     */
+    public ByteArrayAciResponseInputStream copy() {
+        return new ByteArrayAciResponseInputStream(content, statusCode, contentType, contentEncoding, headers);
+    }
+
+    /**
+     * @return The number of bytes in the response, regardless of how many have been read
+     */
+    public int size() {
+        return content.length;
+    }
+
+    @Override
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public String getHeader(final String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * @return The headers that were kept, with case insensitive names
+     */
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    @Override
+    public long getContentLength() {
+        return content.length;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "ByteArrayAciResponseInputStream[statusCode=%d, contentType=%s, size=%d]", statusCode, contentType, content.length);
+    }
+
+}
@@ -0,0 +1,523 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.impl;
+
+import com.autonomy.aci.client.transport.EncryptionCodec;
+import com.autonomy.aci.client.transport.EncryptionCodecException;
+import com.autonomy.aci.client.transport.StreamingEncryptionCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Decrypts an encrypted ACI response one <code>autn:encrypteddata</code> block at a time, as the bytes are read, rather than
+ * decrypting the whole response up front. Decrypted text responses are wrapped in an <code>autnresponse</code> envelope
+ * so that they can be parsed like any other response. The Base64 block content is copied straight from the parser's character
+ * buffer into a reusable byte buffer, rather than going through <code>getElementText()</code>, and each block is decrypted
+ * straight into another reusable buffer by the {@link StreamingEncryptionCodec}.
+ * <p>
+ * If it's given an <code>Executor</code>, blocks are read ahead of the reader and decrypted on the executor, up to a
+ * given number at once, and are returned in the order they appear in the response. This spreads the decryption of large
+ * responses with many blocks across cores, as long as the codec can be used concurrently.
+ * <p>
+ * Closing this stream closes the <code>XMLStreamReader</code>, but not the <code>InputStream</code> it's reading from.
+ */
+class DecryptedContentInputStream extends InputStream {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecryptedContentInputStream.class);
+
+    private static final String TEMPLATE_1 = "<?xml version=''{0}'' encoding=''{1}'' ?><autnresponse xmlns:autn=''http://schemas.autonomy.com/aci/''>";
+    private static final String TEMPLATE_2 = "<responsedata>";
+    private static final String TEMPLATE_3 = "</responsedata></autnresponse>";
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final XMLStreamReader aciResponse;
+
+    private final StreamingEncryptionCodec encryptionCodec;
+
+    private final String charsetName;
+
+    private final boolean textContent;
+
+    /**
+     * Whether Base64 characters can be cast straight to bytes in <code>charsetName</code>...
+     */
+    private final boolean asciiCompatible;
+
+    /**
+     * Reused for the encrypted content of each block...
+     */
+    private byte[] encrypted = new byte[8192];
+
+    /**
+     * Reused for the decrypted content of each block...
+     */
+    private final BlockBuffer decrypted = new BlockBuffer();
+
+    /**
+     * The current block, how much of it is content and how far through it we've read...
+     */
+    private byte[] block = EMPTY;
+
+    private int blockLength;
+
+    private int position;
+
+    /**
+     * Bytes to emit after the current block, i.e. the response data opening tag after the header...
+     */
+    private byte[] pending;
+
+    private boolean started;
+
+    /**
+     * Set when the reader is already on the next event to look at...
+     */
+    private boolean positioned;
+
+    private boolean finished;
+
+    /**
+     * Decrypts blocks ahead of the reader if set...
+     */
+    private final Executor executor;
+
+    private final int parallelism;
+
+    /**
+     * The blocks being decrypted by the executor, in response order...
+     */
+    private final Deque<CompletableFuture<byte[]>> decrypting = new ArrayDeque<>();
+
+    /**
+     * @param aciResponse     Positioned at the start of the encrypted response
+     * @param encryptionCodec Used to decrypt each block
+     * @param charsetName     The character encoding of the response
+     * @param textContent     <code>true</code> if the decrypted content is <code>text/xml</code> and so needs wrapping in
+     *                        an <code>autnresponse</code>, <code>false</code> if it's binary
+     */
+    DecryptedContentInputStream(final XMLStreamReader aciResponse, final EncryptionCodec encryptionCodec, final String charsetName, final boolean textContent) {
+        this(aciResponse, encryptionCodec, charsetName, textContent, null, 1);
+    }
+
+    /**
+     * @param aciResponse     Positioned at the start of the encrypted response
+     * @param encryptionCodec Used to decrypt each block, which must be safe to use concurrently if there's an executor
+     * @param charsetName     The character encoding of the response
+     * @param textContent     <code>true</code> if the decrypted content is <code>text/xml</code> and so needs wrapping in
+     *                        an <code>autnresponse</code>, <code>false</code> if it's binary
+     * @param executor        Used to decrypt blocks ahead of the reader, or <code>null</code> to decrypt each block on the
+     *                        reading thread when it's needed
+     * @param parallelism     The most blocks to decrypt at once on <code>executor</code>
+     */
+    DecryptedContentInputStream(final XMLStreamReader aciResponse, final EncryptionCodec encryptionCodec, final String charsetName,
+                                final boolean textContent, final Executor executor, final int parallelism) {
+        this.aciResponse = aciResponse;
+        this.encryptionCodec = StreamingEncryptionCodecAdapter.adapt(encryptionCodec);
+        this.charsetName = charsetName;
+        this.textContent = textContent;
+        this.asciiCompatible = isAsciiCompatible(charsetName);
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    private static boolean isAsciiCompatible(final String charsetName) {
+        try {
+            final byte[] bytes = "Az09+/=".getBytes(charsetName);
+            return Arrays.equals(bytes, new byte[]{'A', 'z', '0', '9', '+', '/', '='});
+        } catch (final UnsupportedEncodingException uee) {
+            // Will fail properly when the first block is decoded...
+            return false;
+        }
+    }
+
+    /**
+     * Reads the start of the response, up to the root element, so that unreadable or malformed responses are detected
+     * straight away rather than on the first read. Called automatically by the first read if not called before.
+     * @throws IOException If the response couldn't be read or parsed
+     */
+    void start() throws IOException {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        try {
+            if (textContent) {
+                // We should already be on the START_DOCUMENT event...
+                LOGGER.debug("Preparing the initial template...");
+                pending = MessageFormat.format(TEMPLATE_1, aciResponse.getVersion(), aciResponse.getEncoding()).getBytes(charsetName);
+            }
+
+            while (aciResponse.hasNext()) {
+                final int eventType = aciResponse.next();
+
+                if ((eventType == XMLEvent.START_ELEMENT) || (eventType == XMLEvent.END_DOCUMENT)) {
+                    // Leave it for nextBlock() to deal with...
+                    positioned = true;
+                    break;
+                }
+            }
+        } catch (final XMLStreamException xmlse) {
+            throw new IOException("Unable to decrypt the ACI response due to a problem with the input stream.", xmlse);
+        }
+    }
+
+    /**
+     * Moves on to the next chunk of decrypted content, decrypting the next block from the response if needed.
+     * @return <code>false</code> at the end of the response
+     * @throws IOException If the response couldn't be parsed or decrypted
+     */
+    private boolean nextBlock() throws IOException {
+        start();
+
+        if (executor != null) {
+            return nextDecryptedBlock();
+        }
+
+        if (pending != null) {
+            setBlock(pending, pending.length);
+            pending = null;
+            return true;
+        }
+
+        try {
+            switch (nextElement()) {
+                case HEADER:
+                    pending = TEMPLATE_2.getBytes(charsetName);
+                    decryptElement();
+                    return true;
+                case DATA:
+                    decryptElement();
+                    return true;
+                case FOOTER:
+                    final byte[] footer = TEMPLATE_3.getBytes(charsetName);
+                    setBlock(footer, footer.length);
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (final XMLStreamException xmlse) {
+            throw new IOException("Unable to decrypt the ACI response due to a problem with the input stream.", xmlse);
+        } catch (final EncryptionCodecException ece) {
+            throw new IOException("Unable to decrypt the ACI response.", ece);
+        }
+    }
+
+    /**
+     * Keeps up to <code>parallelism</code> blocks decrypting on the executor, then waits for the first of them.
+     */
+    private boolean nextDecryptedBlock() throws IOException {
+        try {
+            while (!finished && (decrypting.size() < parallelism)) {
+                if (pending != null) {
+                    decrypting.add(CompletableFuture.completedFuture(pending));
+                    pending = null;
+                    continue;
+                }
+
+                switch (nextElement()) {
+                    case HEADER:
+                        decrypting.add(decryptElementAsync());
+                        pending = TEMPLATE_2.getBytes(charsetName);
+                        break;
+                    case DATA:
+                        decrypting.add(decryptElementAsync());
+                        break;
+                    case FOOTER:
+                        decrypting.add(CompletableFuture.completedFuture(TEMPLATE_3.getBytes(charsetName)));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (final XMLStreamException xmlse) {
+            throw new IOException("Unable to decrypt the ACI response due to a problem with the input stream.", xmlse);
+        }
+
+        final CompletableFuture<byte[]> next = decrypting.poll();
+        if (next == null) {
+            return false;
+        }
+
+        try {
+            final byte[] decryptedBlock = next.get();
+            setBlock(decryptedBlock, decryptedBlock.length);
+            return true;
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a block to be decrypted.");
+        } catch (final ExecutionException ee) {
+            if (ee.getCause() instanceof EncryptionCodecException) {
+                throw new IOException("Unable to decrypt the ACI response.", ee.getCause());
+            } else if (ee.getCause() instanceof IOException) {
+                throw (IOException) ee.getCause();
+            }
+            throw new IOException("Unable to decrypt the ACI response.", ee.getCause());
+        }
+    }
+
+    /**
+     * Reads up to the start of the next encrypted element, or the end of the response.
+     */
+    private Element nextElement() throws XMLStreamException {
+        while (!finished) {
+            final int eventType;
+
+            if (positioned) {
+                positioned = false;
+                eventType = aciResponse.getEventType();
+            } else if (aciResponse.hasNext()) {
+                eventType = aciResponse.next();
+            } else {
+                break;
+            }
+
+            if (eventType == XMLEvent.START_ELEMENT) {
+                if (textContent && "autn:encryptedheader".equals(aciResponse.getLocalName())) {
+                    LOGGER.debug("Found the encrypted header, decrypting...");
+                    return Element.HEADER;
+                } else if ("autn:encrypteddata".equals(aciResponse.getLocalName())) {
+                    LOGGER.debug("Found an encrypted data block, decrypting...");
+                    return Element.DATA;
+                }
+            } else if (eventType == XMLEvent.END_DOCUMENT) {
+                finished = true;
+
+                if (textContent) {
+                    LOGGER.debug("Found the end of the response, returning the footer...");
+                    return Element.FOOTER;
+                }
+            }
+        }
+
+        finished = true;
+        return Element.NONE;
+    }
+
+    private void setBlock(final byte[] block, final int blockLength) {
+        this.block = block;
+        this.blockLength = blockLength;
+        this.position = 0;
+    }
+
+    /**
+     * Decrypts the content of the current element into the current block, leaving the reader on its end element.
+     */
+    private void decryptElement() throws XMLStreamException, EncryptionCodecException, IOException {
+        final int length = readElement();
+
+        decrypted.reset();
+        encryptionCodec.decrypt(ByteBuffer.wrap(encrypted, 0, length), decrypted);
+        setBlock(decrypted.array(), decrypted.size());
+    }
+
+    /**
+     * Starts decrypting a copy of the content of the current element on the executor, leaving the reader on its end
+     * element.
+     */
+    private CompletableFuture<byte[]> decryptElementAsync() throws XMLStreamException, IOException {
+        final byte[] content = Arrays.copyOf(encrypted, readElement());
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                final ByteArrayOutputStream output = new ByteArrayOutputStream(content.length * 2);
+                encryptionCodec.decrypt(ByteBuffer.wrap(content), output);
+                return output.toByteArray();
+            } catch (final EncryptionCodecException | IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Copies the content of the current element into <code>encrypted</code>, leaving the reader on its end element.
+     * @return The length of the content
+     */
+    private int readElement() throws XMLStreamException, IOException {
+        int length = 0;
+
+        while (true) {
+            final int eventType = aciResponse.next();
+
+            if ((eventType == XMLEvent.CHARACTERS) || (eventType == XMLEvent.CDATA) || (eventType == XMLEvent.SPACE)) {
+                final char[] characters = aciResponse.getTextCharacters();
+                final int start = aciResponse.getTextStart();
+                final int count = aciResponse.getTextLength();
+
+                if (asciiCompatible) {
+                    if (length + count > encrypted.length) {
+                        encrypted = Arrays.copyOf(encrypted, Math.max(encrypted.length * 2, length + count));
+                    }
+
+                    for (int ii = 0; ii < count; ii++) {
+                        encrypted[length++] = (byte) characters[start + ii];
+                    }
+                } else {
+                    final byte[] bytes = new String(characters, start, count).getBytes(charsetName);
+                    if (length + bytes.length > encrypted.length) {
+                        encrypted = Arrays.copyOf(encrypted, Math.max(encrypted.length * 2, length + bytes.length));
+                    }
+                    System.arraycopy(bytes, 0, encrypted, length, bytes.length);
+                    length += bytes.length;
+                }
+            } else if (eventType == XMLEvent.END_ELEMENT) {
+                break;
+            } else if (eventType == XMLEvent.START_ELEMENT) {
+                throw new XMLStreamException("Unexpected element in encrypted block.", aciResponse.getLocation());
+            } else if (eventType == XMLEvent.END_DOCUMENT) {
+                throw new XMLStreamException("Unexpected end of document in encrypted block.", aciResponse.getLocation());
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Makes sure there's something left in the current block.
+     * @return <code>false</code> at the end of the response
+     */
+    private boolean fill() throws IOException {
+        while (position >= blockLength) {
+            if (!nextBlock()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return fill() ? (block[position++] & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!fill()) {
+            return -1;
+        }
+
+        final int count = Math.min(len, blockLength - position);
+        System.arraycopy(block, position, bytes, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(final long num) throws IOException {
+        long skipped = 0L;
+
+        while ((skipped < num) && fill()) {
+            final int count = (int) Math.min(num - skipped, blockLength - position);
+            position += count;
+            skipped += count;
+        }
+
+        return skipped;
+    }
+
+    /**
+     * Writes the rest of the decrypted content straight from each block to <code>output</code>.
+     * @param output Where to write the decrypted content
+     * @return The number of bytes written
+     * @throws IOException If the response couldn't be parsed or decrypted, or <code>output</code> couldn't be written to
+     */
+    @Override
+    public long transferTo(final OutputStream output) throws IOException {
+        long transferred = 0L;
+
+        while (fill()) {
+            output.write(block, position, blockLength - position);
+            transferred += blockLength - position;
+            position = blockLength;
+        }
+
+        return transferred;
+    }
+
+    @Override
+    public int available() {
+        return blockLength - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        setBlock(EMPTY, 0);
+
+        // Don't start decrypting anything that's no longer needed...
+        for (final CompletableFuture<byte[]> future : decrypting) {
+            future.cancel(false);
+        }
+        decrypting.clear();
+
+        try {
+            // This does NOT close the underlying InputStream
+            aciResponse.close();
+        } catch (final XMLStreamException xmlse) {
+            throw new IOException("Unable to close the XMLStreamReader.", xmlse);
+        }
+    }
+
+    /**
+     * What was found by {@link #nextElement()}...
+     */
+    private enum Element {
+        HEADER,
+        DATA,
+        FOOTER,
+        NONE
+    }
+
+    /**
+     * Gives access to the decrypted content without copying it...
+     */
+    private static final class BlockBuffer extends ByteArrayOutputStream {
+
+        BlockBuffer() {
+            super(8192);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+    }
+
+}
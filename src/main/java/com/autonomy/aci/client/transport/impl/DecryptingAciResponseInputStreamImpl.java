@@ -14,32 +14,51 @@
 
 package com.autonomy.aci.client.transport.impl;
 
-import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciMetricsListener;
 import com.autonomy.aci.client.transport.AciServerDetails;
-import com.autonomy.aci.client.util.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.http.HttpResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.Executor;
 
 /**
  * This <code>AciResponseInputStream</code> implementation decrypts ACI responses from actions that have been sent with the
- * {@code EncryptResponse} parameter set to {@code true}.
+ * {@code EncryptResponse} parameter set to {@code true}. The response is decrypted one encrypted block at a time as it's
+ * read, so the whole response never has to be held in memory and processing can start before it's all arrived.
+ * Optionally, blocks can be decrypted ahead of the reader on an <code>Executor</code>, which is worthwhile for large
+ * responses with many blocks when the codec can be used concurrently.
+ * <p>
+ * As only the first block is decrypted up front, a response that can't be read or decrypted at all still fails when this
+ * is constructed, but a problem with a later block is thrown as an <code>IOException</code> from <code>read</code>, at
+ * the point it's reached. The decrypted content is buffered, so <code>mark</code> and <code>reset</code> are supported.
  */
 public class DecryptingAciResponseInputStreamImpl extends AciResponseInputStreamImpl {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DecryptingAciResponseInputStreamImpl.class);
 
     /**
-     * This is what we'll decrypt the input into...
+     * Shared, as creating factories is expensive and creating readers from one is thread-safe...
      */
-    private ByteArrayInputStream decryptedResponse;
+    private static final XMLInputFactory XML_INPUT_FACTORY = AbstractEncryptedResponseProcessor.createXMLInputFactory();
+
+    /**
+     * This is what we'll read the decrypted input from, a buffer over {@link #decryptedContent} so that mark and reset
+     * are supported...
+     */
+    private InputStream decryptedResponse;
+
+    /**
+     * The decrypted input, as it comes...
+     */
+    private InputStream decryptedContent;
 
     /**
      * Holds the content type of the encrypted data.
@@ -56,9 +75,28 @@ public class DecryptingAciResponseInputStreamImpl extends AciResponseInputStream
     public DecryptingAciResponseInputStreamImpl(
             final AciServerDetails serverDetails,
             final ClassicHttpResponse response
+    ) throws IOException {
+        this(serverDetails, response, null, 1);
+    }
+
+    /**
+     * Creates a new instance of DecryptingAciResponseInputStreamImpl, that decrypts blocks ahead of the reader.
+     * @param serverDetails The <code>AciServerDetails</code> that contains the <code>EncryptionCodec</code> that is being used
+     *                      to decrypt the ACI response and the character encoding being used on this ACI request/response
+     * @param response      An {@code HttpResponse} that contains the ACI response as an {@code InputStream}
+     * @param executor      Used to decrypt blocks ahead of the reader, or {@code null} to decrypt each block as it's
+     *                      read
+     * @param parallelism   The most blocks to decrypt at once on {@code executor}
+     * @throws IOException If an I/O error occurs
+     */
+    public DecryptingAciResponseInputStreamImpl(
+            final AciServerDetails serverDetails,
+            final ClassicHttpResponse response,
+            final Executor executor,
+            final int parallelism
     ) throws IOException {
         super(response);
-        setup(serverDetails, () -> new AciResponseInputStreamImpl(response));
+        setup(serverDetails, executor, parallelism);
     }
 
     /**
@@ -75,44 +113,52 @@ public class DecryptingAciResponseInputStreamImpl extends AciResponseInputStream
             final HttpResponse response
     ) throws IOException {
         super(response);
-        setup(serverDetails, () -> new AciResponseInputStreamImpl(response));
+        setup(serverDetails, null, 1);
     }
 
-    private void setup(final AciServerDetails serverDetails, GetInputStream getStream) throws IOException {
-        try {
-            LOGGER.debug("Checking AUTN-Content-Type header...");
-
-            // Get the autonomy content type header...
-            final String autnContentType = getHeader("AUTN-Content-Type");
-
-            // This shouldn't be necessary, but just in case someone is using this outwith the API...
-            if (StringUtils.isBlank(autnContentType)) {
-                LOGGER.debug("AUTN-Content-Type header doesn't exist, will return response unprocessed...");
-
-                // Copy the response to the decryptedResponse property unmolested... 
-                final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-                IOUtils.getInstance().copy(getStream.get(), buffer);
-                decryptedResponse = new ByteArrayInputStream(buffer.toByteArray());
-
-                // Set the content type...
-                contentType = super.getContentType();
-            } else {
-                LOGGER.debug("AUTN-Content-Type header is {}...", autnContentType);
-
-                // Set the content type...
-                contentType = autnContentType;
-
-                // Get the response and decrypt it into the internal buffer... We have to create a new
-                // AciResponseInputStreamImpl rather than giving this, otherwise the overridden methods we be called
-                // resulting in bad things happening...
-                decryptedResponse = "text/xml".equals(autnContentType)
-                        ? new EncryptedTextContentProcessor(serverDetails.getEncryptionCodec(), serverDetails.getCharsetName()).process(in)
-                        : new EncryptedBinaryContentProcessor(serverDetails.getEncryptionCodec(), serverDetails.getCharsetName()).process(in);
+    private void setup(final AciServerDetails serverDetails, final Executor executor, final int parallelism) throws IOException {
+        LOGGER.debug("Checking AUTN-Content-Type header...");
+
+        // Get the autonomy content type header...
+        final String autnContentType = getHeader("AUTN-Content-Type");
+
+        // This shouldn't be necessary, but just in case someone is using this outwith the API...
+        if (StringUtils.isBlank(autnContentType)) {
+            LOGGER.debug("AUTN-Content-Type header doesn't exist, will return response unprocessed...");
+
+            // Pass the response through unmolested...
+            decryptedContent = in;
+
+            // Set the content type...
+            contentType = super.getContentType();
+        } else {
+            LOGGER.debug("AUTN-Content-Type header is {}...", autnContentType);
+
+            // Set the content type...
+            contentType = autnContentType;
+
+            try {
+                // Decrypt the response as it's read... We read from the wrapped stream rather than this, otherwise the
+                // overridden methods would be called resulting in bad things happening...
+                final DecryptedContentInputStream content = new DecryptedContentInputStream(
+                        XML_INPUT_FACTORY.createXMLStreamReader(in),
+                        serverDetails.getEncryptionCodec(),
+                        serverDetails.getCharsetName(),
+                        "text/xml".equals(autnContentType),
+                        executor,
+                        parallelism
+                );
+
+                // Fail now rather than on the first read if the response is unreadable...
+                content.start();
+                decryptedContent = content;
+            } catch (final XMLStreamException xmlse) {
+                LOGGER.error("XMLStreamException caught while trying to read the encrypted ACI response", xmlse);
+                throw new IOException(xmlse.getMessage(), xmlse);
             }
-        } catch (final ProcessorException pe) {
-            LOGGER.error("ProcessorException caught while trying to decrypt the ACI response", pe);
-            throw new IOException(pe.getMessage());
         }
+
+        decryptedResponse = new BufferedInputStream(decryptedContent);
     }
 
     /**
@@ -145,6 +191,26 @@ public class DecryptingAciResponseInputStreamImpl extends AciResponseInputStream
         return decryptedResponse.available();
     }
 
+    @Override
+    public void close() throws IOException {
+        try {
+            // Closes the XMLStreamReader if we're decrypting...
+            decryptedResponse.close();
+        } finally {
+            super.close();
+        }
+    }
+
+    @Override
+    void meter(final AciMetricsListener listener, final String action, final AciServerDetails serverDetails, final long start) {
+        // Count what's read from the decrypted response, as the encrypted one has already been partly read...
+        // This is called before anything's been read, so nothing in the buffer is lost by replacing it. Metering under the
+        // buffer means bytes read again after a reset aren't counted twice...
+        reportCloseTo(listener, action, serverDetails);
+        decryptedContent = new MeteredInputStream(decryptedContent, listener, action, serverDetails, start);
+        decryptedResponse = new BufferedInputStream(decryptedContent);
+    }
+
     @Override
     public synchronized void mark(final int readlimit) {
         decryptedResponse.mark(readlimit);
@@ -160,8 +226,4 @@ public class DecryptingAciResponseInputStreamImpl extends AciResponseInputStream
         return decryptedResponse.markSupported();
     }
 
-    private interface GetInputStream {
-        InputStream get() throws IOException;
-    }
-
 }
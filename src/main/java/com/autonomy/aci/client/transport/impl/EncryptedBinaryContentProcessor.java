@@ -17,17 +17,13 @@ package com.autonomy.aci.client.transport.impl;
 import com.autonomy.aci.client.services.AciErrorException;
 import com.autonomy.aci.client.services.ProcessorException;
 import com.autonomy.aci.client.transport.EncryptionCodec;
-import com.autonomy.aci.client.transport.EncryptionCodecException;
-import com.autonomy.aci.client.util.EncryptionCodecUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
-import javax.xml.stream.events.XMLEvent;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.util.concurrent.Executor;
 
 class EncryptedBinaryContentProcessor extends AbstractEncryptedResponseProcessor<ByteArrayInputStream> {
 
@@ -39,28 +35,17 @@ class EncryptedBinaryContentProcessor extends AbstractEncryptedResponseProcessor
         super(encryptionCodec, charsetName);
     }
 
+    public EncryptedBinaryContentProcessor(final EncryptionCodec encryptionCodec, final String charsetName, final Executor executor, final int parallelism) {
+        super(encryptionCodec, charsetName, executor, parallelism);
+    }
+
     @Override
     public ByteArrayInputStream process(final XMLStreamReader aciResponse) throws AciErrorException, ProcessorException {
-        try {
-            while (aciResponse.hasNext()) {
-                // Get the event type...
-                final int eventType = aciResponse.next();
-
-                if ((eventType == XMLEvent.START_ELEMENT) && "autn:encrypteddata".equals(aciResponse.getLocalName())) {
-                    LOGGER.debug("Found an encrypted data block, decrypting and appending to buffer...");
-                    buffer.write(encryptionCodec.decrypt(EncryptionCodecUtils.getInstance().toBytes(aciResponse.getElementText(), charsetName)));
-                }
-            }
+        LOGGER.debug("Decrypting the binary response into the buffer...");
+        copy(new DecryptedContentInputStream(aciResponse, encryptionCodec, charsetName, false, executor, parallelism), buffer);
 
-            // Return the decrypted response...
-            return new ByteArrayInputStream(buffer.toByteArray());
-        } catch (final XMLStreamException xmlse) {
-            throw new ProcessorException("Unable to decrypt the ACI response due to a problem with the input stream.", xmlse);
-        } catch (final IOException ioe) {
-            throw new ProcessorException("Unable to decrypt the ACI response due to an IOException.", ioe);
-        } catch (final EncryptionCodecException ece) {
-            throw new ProcessorException("Unable to decrypt the ACI response.", ece);
-        }
+        // Return the decrypted response...
+        return new ByteArrayInputStream(buffer.toByteArray());
     }
 
 }
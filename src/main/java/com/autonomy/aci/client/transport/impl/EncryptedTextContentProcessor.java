@@ -17,72 +17,35 @@ package com.autonomy.aci.client.transport.impl;
 import com.autonomy.aci.client.services.AciErrorException;
 import com.autonomy.aci.client.services.ProcessorException;
 import com.autonomy.aci.client.transport.EncryptionCodec;
-import com.autonomy.aci.client.transport.EncryptionCodecException;
-import com.autonomy.aci.client.util.EncryptionCodecUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
-import javax.xml.stream.events.XMLEvent;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.text.MessageFormat;
+import java.util.concurrent.Executor;
 
 class EncryptedTextContentProcessor extends AbstractEncryptedResponseProcessor<ByteArrayInputStream> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EncryptedTextContentProcessor.class);
 
-    private static final String TEMPLATE_1 = "<?xml version=''{0}'' encoding=''{1}'' ?><autnresponse xmlns:autn=''http://schemas.autonomy.com/aci/''>";
-    private static final String TEMPLATE_2 = "<responsedata>";
-    private static final String TEMPLATE_3 = "</responsedata></autnresponse>";
-
     private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 
     public EncryptedTextContentProcessor(final EncryptionCodec encryptionCodec, final String charsetName) {
         super(encryptionCodec, charsetName);
     }
 
+    public EncryptedTextContentProcessor(final EncryptionCodec encryptionCodec, final String charsetName, final Executor executor, final int parallelism) {
+        super(encryptionCodec, charsetName, executor, parallelism);
+    }
+
     @Override
     public ByteArrayInputStream process(final XMLStreamReader aciResponse) throws AciErrorException, ProcessorException {
-        try {
-            // We should already be on the START_DOCUMENT event...
-            LOGGER.debug("Writing initial template to buffer...");
-            final String template = MessageFormat.format(TEMPLATE_1, aciResponse.getVersion(), aciResponse.getEncoding());
-            buffer.write(template.getBytes(charsetName));
-
-            // As the content type was text/xml, we can use string to string methods...
-            final EncryptionCodecUtils codecUtils = EncryptionCodecUtils.getInstance();
-
-            while (aciResponse.hasNext()) {
-                // Get the event type...
-                final int eventType = aciResponse.next();
-
-                if (eventType == XMLEvent.START_ELEMENT) {
-                    if ("autn:encryptedheader".equals(aciResponse.getLocalName())) {
-                        LOGGER.debug("Found the encrypted header, decrypting and appending to buffer...");
-                        buffer.write(encryptionCodec.decrypt(codecUtils.toBytes(aciResponse.getElementText(), charsetName)));
-                        buffer.write(TEMPLATE_2.getBytes(charsetName));
-                    } else if ("autn:encrypteddata".equals(aciResponse.getLocalName())) {
-                        LOGGER.debug("Found an encrypted data block, decrypting and appending to buffer...");
-                        buffer.write(encryptionCodec.decrypt(codecUtils.toBytes(aciResponse.getElementText(), charsetName)));
-                    }
-                } else if (eventType == XMLEvent.END_DOCUMENT) {
-                    LOGGER.debug("Found the end of the response, appending the footer to the buffer...");
-                    buffer.write(TEMPLATE_3.getBytes(charsetName));
-                }
-            }
+        LOGGER.debug("Decrypting the text response into the buffer...");
+        copy(new DecryptedContentInputStream(aciResponse, encryptionCodec, charsetName, true, executor, parallelism), buffer);
 
-            // Return the decrypted response...
-            return new ByteArrayInputStream(buffer.toByteArray());
-        } catch (final XMLStreamException xmlse) {
-            throw new ProcessorException("Unable to decrypt the ACI response due to a problem with the input stream.", xmlse);
-        } catch (final IOException ioe) {
-            throw new ProcessorException("Unable to decrypt the ACI response due to an IOException.", ioe);
-        } catch (final EncryptionCodecException ece) {
-            throw new ProcessorException("Unable to decrypt the ACI response.", ece);
-        }
+        // Return the decrypted response...
+        return new ByteArrayInputStream(buffer.toByteArray());
     }
 
 }
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.impl;
+
+import com.autonomy.aci.client.transport.AciMetricsListener;
+import com.autonomy.aci.client.transport.AciServerDetails;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An <code>AciMetricsListener</code> that keeps a {@link LatencyHistogram} of each phase for every action, so that the
+ * p50 and p99 times of each action can be found while an application is running. Actions are grouped by name,
+ * regardless of case or the server they were sent to. Memory use is fixed for each distinct action name.
+ * <p>
+ * Register the same instance with an {@link AciHttpClientImpl} and a
+ * {@link com.autonomy.aci.client.services.impl.AciServiceImpl} to record every phase.
+ */
+public class HistogramMetricsListener implements AciMetricsListener {
+
+    private final ConcurrentMap<String, ActionStatistics> statistics = new ConcurrentHashMap<>();
+
+    private ActionStatistics statisticsFor(final String action) {
+        final String name = (action == null) ? "" : action.toLowerCase(Locale.ENGLISH);
+
+        // Avoid the lambda allocation for actions we've already seen...
+        final ActionStatistics existing = statistics.get(name);
+        return (existing != null) ? existing : statistics.computeIfAbsent(name, ActionStatistics::new);
+    }
+
+    @Override
+    public void requestEncoded(final String action, final AciServerDetails serverDetails, final long nanos) {
+        statisticsFor(action).encoding.record(nanos);
+    }
+
+    @Override
+    public void requestEncrypted(final String action, final AciServerDetails serverDetails, final long nanos) {
+        statisticsFor(action).encryption.record(nanos);
+    }
+
+    @Override
+    public void connectionLeased(final String action, final AciServerDetails serverDetails, final long nanos) {
+        statisticsFor(action).connectionLease.record(nanos);
+    }
+
+    @Override
+    public void responseReceived(final String action, final AciServerDetails serverDetails, final int statusCode, final long nanos) {
+        statisticsFor(action).timeToFirstByte.record(nanos);
+    }
+
+    @Override
+    public void responseRead(final String action, final AciServerDetails serverDetails, final long bytes, final long nanos) {
+        final ActionStatistics actionStatistics = statisticsFor(action);
+        actionStatistics.bodyRead.record(nanos);
+        actionStatistics.bytes.addAndGet(bytes);
+    }
+
+    @Override
+    public void responseDrained(final String action, final AciServerDetails serverDetails, final long bytes) {
+        statisticsFor(action).drainedBytes.addAndGet(bytes);
+    }
+
+    @Override
+    public void responseAborted(final String action, final AciServerDetails serverDetails, final long unreadBytes) {
+        final ActionStatistics actionStatistics = statisticsFor(action);
+        actionStatistics.aborted.incrementAndGet();
+        if (unreadBytes > 0L) {
+            actionStatistics.abortedBytes.addAndGet(unreadBytes);
+        }
+    }
+
+    @Override
+    public void requestFailed(final String action, final AciServerDetails serverDetails, final Throwable cause, final long nanos) {
+        statisticsFor(action).failures.incrementAndGet();
+    }
+
+    @Override
+    public void actionCompleted(final String action, final AciServerDetails serverDetails, final Outcome outcome, final long processingNanos, final long totalNanos) {
+        final ActionStatistics actionStatistics = statisticsFor(action);
+        actionStatistics.outcomes.incrementAndGet(outcome.ordinal());
+        actionStatistics.total.record(totalNanos);
+
+        if (outcome != Outcome.TRANSPORT_ERROR) {
+            actionStatistics.processing.record(processingNanos);
+        }
+    }
+
+    /**
+     * Returns the statistics for an action.
+     * @param action The name of the action, matched case insensitively
+     * @return The statistics, or <code>null</code> if the action hasn't been seen
+     */
+    public ActionStatistics getStatistics(final String action) {
+        return statistics.get(action.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * @return The statistics for every action seen, keyed and sorted by lowercased action name
+     */
+    public Map<String, ActionStatistics> getStatistics() {
+        return Collections.unmodifiableMap(new TreeMap<>(statistics));
+    }
+
+    /**
+     * Discards all the statistics recorded so far.
+     */
+    public void reset() {
+        statistics.clear();
+    }
+
+    /**
+     * Returns a summary of the total time taken by each action, one per line.
+     * @return a string representation of the object
+     */
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (final ActionStatistics actionStatistics : getStatistics().values()) {
+            builder.append(actionStatistics).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The statistics recorded for one action.
+     */
+    public static final class ActionStatistics {
+
+        private final String action;
+
+        private final LatencyHistogram encoding = new LatencyHistogram();
+
+        private final LatencyHistogram encryption = new LatencyHistogram();
+
+        private final LatencyHistogram connectionLease = new LatencyHistogram();
+
+        private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+
+        private final LatencyHistogram bodyRead = new LatencyHistogram();
+
+        private final LatencyHistogram processing = new LatencyHistogram();
+
+        private final LatencyHistogram total = new LatencyHistogram();
+
+        private final AtomicLong bytes = new AtomicLong();
+
+        private final AtomicLong drainedBytes = new AtomicLong();
+
+        private final AtomicLong aborted = new AtomicLong();
+
+        private final AtomicLong abortedBytes = new AtomicLong();
+
+        private final AtomicLong failures = new AtomicLong();
+
+        private final AtomicLongArray outcomes = new AtomicLongArray(Outcome.values().length);
+
+        private ActionStatistics(final String action) {
+            this.action = action;
+        }
+
+        /**
+         * @return The lowercased name of the action
+         */
+        public String getAction() {
+            return action;
+        }
+
+        /**
+         * @return How long building requests took, including encrypting them
+         */
+        public LatencyHistogram getEncoding() {
+            return encoding;
+        }
+
+        /**
+         * @return How long encrypting requests took
+         */
+        public LatencyHistogram getEncryption() {
+            return encryption;
+        }
+
+        /**
+         * @return How long it took to get a connection once requests had been built, if the client records it
+         */
+        public LatencyHistogram getConnectionLease() {
+            return connectionLease;
+        }
+
+        /**
+         * @return How long it took to receive the status and headers of responses once requests had been built
+         */
+        public LatencyHistogram getTimeToFirstByte() {
+            return timeToFirstByte;
+        }
+
+        /**
+         * @return How long it took to read the bodies of responses once they'd been received
+         */
+        public LatencyHistogram getBodyRead() {
+            return bodyRead;
+        }
+
+        /**
+         * @return How long processors took, excluding actions that failed before the response was processed
+         */
+        public LatencyHistogram getProcessing() {
+            return processing;
+        }
+
+        /**
+         * @return How long executing actions took altogether
+         */
+        public LatencyHistogram getTotal() {
+            return total;
+        }
+
+        /**
+         * @return The total number of bytes read from response bodies
+         */
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        /**
+         * @return The total number of bytes read and discarded when responses were closed before the end
+         */
+        public long getDrainedBytes() {
+            return drainedBytes.get();
+        }
+
+        /**
+         * @return The number of responses aborted rather than read to the end
+         */
+        public long getAborted() {
+            return aborted.get();
+        }
+
+        /**
+         * @return The total number of bytes left unread by aborted responses, where that was known
+         */
+        public long getAbortedBytes() {
+            return abortedBytes.get();
+        }
+
+        /**
+         * @return The number of requests that failed in the transport
+         */
+        public long getFailures() {
+            return failures.get();
+        }
+
+        /**
+         * @param outcome How executions ended
+         * @return The number of executions that ended that way
+         */
+        public long getOutcomeCount(final Outcome outcome) {
+            return outcomes.get(outcome.ordinal());
+        }
+
+        /**
+         * Returns a summary of the total time taken by the action.
+         * @return a string representation of the object
+         */
+        @Override
+        public String toString() {
+            // If only the transport is instrumented there won't be any totals...
+            final LatencyHistogram summary = (total.getCount() > 0L) ? total : timeToFirstByte;
+            return action + ": " + summary;
+        }
+    }
+
+}
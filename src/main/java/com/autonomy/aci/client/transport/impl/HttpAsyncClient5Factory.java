@@ -0,0 +1,297 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.impl;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This is a utility class to help create and configure an instance of Apache {@link CloseableHttpAsyncClient} for use
+ * with {@link AsyncAciHttpClientImpl}. It is the asynchronous counterpart of {@link HttpClient5Factory} and creates a
+ * client with a {@link PoolingAsyncClientConnectionManager}, configured with the values that have been set via the
+ * setter methods. The returned client has already been started and should be closed when it is no longer needed.
+ * <p>
+ * As the client doesn't hold a thread per request, the number of connections rather than the number of threads limits
+ * how many actions can be in flight at once, so the connection limits are usually set a lot higher than they would be
+ * for a blocking client.
+ * <p>
+ * Defaults for all the properties that can be configured are:
+ * <table style="margin-left: 2em;">
+ *     <caption></caption>
+ *     <tr><td><code>maxTotalConnections</code></td><td>&#160;</td><td>20</td></tr>
+ *     <tr><td><code>maxConnectionsPerRoute</code></td><td>&#160;</td><td>4</tr>
+ *     <tr><td><code>connectionTimeout</code></td><td>&#160;</td><td>7000</tr>
+ *     <tr><td><code>ioThreadCount</code></td><td>&#160;</td><td>number of available processors</tr>
+ *     <tr><td><code>linger</code></td><td>&#160;</td><td>-1</tr>
+ *     <tr><td><code>socketBufferSize</code></td><td>&#160;</td><td>8192</tr>
+ *     <tr><td><code>soKeepAlive</code></td><td>&#160;</td><td>true</tr>
+ *     <tr><td><code>soReuseAddr</code></td><td>&#160;</td><td>true</tr>
+ *     <tr><td><code>soTimeout</code></td><td>&#160;</td><td>10000</tr>
+ *     <tr><td><code>staleCheckingEnabled</code></td><td>&#160;</td><td>false</tr>
+ *     <tr><td><code>tcpNoDelay</code></td><td>&#160;</td><td>true</tr>
+ * </table>
+ * <p>
+ * If you are using something like Spring's IoC container, you can use this class to configure your
+ * {@link com.autonomy.aci.client.services.impl.AsyncAciServiceImpl} like so:
+ * <pre>
+ *   &lt;bean id="httpAsyncClientFactory" class="com.autonomy.aci.client.transport.impl.HttpAsyncClient5Factory"
+ *       p:maxConnectionsPerRoute="200"
+ *       p:maxTotalConnections="1000" /&gt;
+ *
+ *   &lt;bean id="httpAsyncClient" factory-bean="httpAsyncClientFactory" factory-method="createInstance" destroy-method="close" /&gt;
+ *
+ *   &lt;bean id="asyncAciService" class="com.autonomy.aci.client.services.impl.AsyncAciServiceImpl"&gt;
+ *     &lt;constructor-arg&gt;
+ *       &lt;bean class="com.autonomy.aci.client.transport.impl.AsyncAciHttpClientImpl"&gt;
+ *         &lt;constructor-arg ref="httpAsyncClient" /&gt;
+ *       &lt;/bean&gt;
+ *     &lt;/constructor-arg&gt;
+ *   &lt;/bean&gt;
+ * </pre>
+ */
+public class HttpAsyncClient5Factory {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(HttpAsyncClient5Factory.class);
+
+    private int maxTotalConnections = 20;
+
+    private int maxConnectionsPerRoute = 4;
+
+    private int connectionTimeout = 7000;
+
+    private int ioThreadCount = Runtime.getRuntime().availableProcessors();
+
+    private int linger = -1;
+
+    private int socketBufferSize = 8192;
+
+    private boolean soKeepAlive = true;
+
+    private boolean soReuseAddr = true;
+
+    private int soTimeout = 10000;
+
+    private boolean staleCheckingEnabled;
+
+    private boolean tcpNoDelay = true;
+
+    /**
+     * Creates and starts an instance of <code>CloseableHttpAsyncClient</code> with a
+     * <code>PoolingAsyncClientConnectionManager</code>.
+     * @return a started <code>CloseableHttpAsyncClient</code>.
+     */
+    public CloseableHttpAsyncClient createInstance() {
+        LOGGER.debug("Creating a new instance of CloseableHttpAsyncClient with configuration -> {}", toString());
+
+        final PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotalConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectionTimeout))
+                        .setSocketTimeout(Timeout.ofMilliseconds(soTimeout))
+                        .build())
+                .build();
+
+        final IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(ioThreadCount)
+                .setSoLinger(TimeValue.ofSeconds(linger))
+                .setSndBufSize(socketBufferSize).setRcvBufSize(socketBufferSize)
+                .setSoKeepAlive(soKeepAlive)
+                .setSoReuseAddress(soReuseAddr)
+                .setSoTimeout(Timeout.ofMilliseconds(soTimeout))
+                .setTcpNoDelay(tcpNoDelay)
+                .build();
+
+        final HttpAsyncClientBuilder httpAsyncClientBuilder = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setIOReactorConfig(ioReactorConfig);
+        // Record when a connection is leased for requests sent with an AciMetricsListener...
+        httpAsyncClientBuilder.addRequestInterceptorLast(AciHttpClientImpl.CONNECTION_LEASE_INTERCEPTOR);
+        if (staleCheckingEnabled) {
+            httpAsyncClientBuilder.evictExpiredConnections();
+        }
+
+        final CloseableHttpAsyncClient httpAsyncClient = httpAsyncClientBuilder.build();
+        httpAsyncClient.start();
+        return httpAsyncClient;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.MULTI_LINE_STYLE)
+                .append("maxTotalConnections", maxTotalConnections)
+                .append("maxConnectionsPerRoute", maxConnectionsPerRoute)
+                .append("connectionTimeout", connectionTimeout)
+                .append("ioThreadCount", ioThreadCount)
+                .append("linger", linger)
+                .append("socketBufferSize", socketBufferSize)
+                .append("soKeepAlive", soKeepAlive)
+                .append("soReuseAddr", soReuseAddr)
+                .append("soTimeout", soTimeout)
+                .append("staleCheckingEnabled", staleCheckingEnabled)
+                .append("tcpNoDelay", tcpNoDelay)
+                .toString();
+    }
+
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    /**
+     * Defines the maximum number of connections in total. The default is <code>20</code>.
+     * @param maxTotalConnections The maximum number of connections to set
+     */
+    public void setMaxTotalConnections(final int maxTotalConnections) {
+        this.maxTotalConnections = maxTotalConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Defines the maximum number of connections per route. The default is <code>4</code>.
+     * @param maxConnectionsPerRoute The maximum number of connections per route to set
+     */
+    public void setMaxConnectionsPerRoute(final int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    /**
+     * Determines the timeout in milliseconds until a connection is established. A timeout value of zero is interpreted
+     * as an infinite timeout. The default is <code>7000</code>ms (7s).
+     * @param connectionTimeout The timeout in milliseconds to set
+     */
+    public void setConnectionTimeout(final int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public int getIoThreadCount() {
+        return ioThreadCount;
+    }
+
+    /**
+     * Defines the number of I/O dispatch threads used by the I/O reactor. The default is the number of available
+     * processors.
+     * @param ioThreadCount The number of I/O dispatch threads to use
+     */
+    public void setIoThreadCount(final int ioThreadCount) {
+        this.ioThreadCount = ioThreadCount;
+    }
+
+    public int getLinger() {
+        return linger;
+    }
+
+    /**
+     * Sets <code>SO_LINGER</code> with the specified linger time in seconds. Value <code>0</code> implies that the option
+     * is disabled. Value <code>-1</code> implies that the JRE default is used. The default is <code>-1</code>.
+     * @param linger The specified linger time in seconds to set
+     */
+    public void setLinger(final int linger) {
+        this.linger = linger;
+    }
+
+    public int getSocketBufferSize() {
+        return socketBufferSize;
+    }
+
+    /**
+     * Determines the size of the socket send and receive buffers. The default is <code>8192</code> (8 * 1024).
+     * @param socketBufferSize The size of the socket buffers to use
+     */
+    public void setSocketBufferSize(final int socketBufferSize) {
+        this.socketBufferSize = socketBufferSize;
+    }
+
+    public boolean isSoKeepAlive() {
+        return soKeepAlive;
+    }
+
+    /**
+     * Defines whether or not TCP is to send automatically a keepalive probe to the peer after an interval of inactivity.
+     * @param soKeepAlive {@code true} to set {@code SO_KEEPALIVE}, {@code false} otherwise
+     */
+    public void setSoKeepAlive(final boolean soKeepAlive) {
+        this.soKeepAlive = soKeepAlive;
+    }
+
+    public boolean isSoReuseAddr() {
+        return soReuseAddr;
+    }
+
+    /**
+     * Defines whether the socket can be bound even though a previous connection is still in a timeout state.
+     * @param soReuseAddr {@code true} to set {@code SO_REUSEADDR}, {@code false} otherwise.
+     */
+    public void setSoReuseAddr(final boolean soReuseAddr) {
+        this.soReuseAddr = soReuseAddr;
+    }
+
+    public int getSoTimeout() {
+        return soTimeout;
+    }
+
+    /**
+     * Defines the socket timeout in milliseconds, which is the maximum period of inactivity between two consecutive
+     * data packets. A timeout value of zero is interpreted as an infinite timeout. The default is <code>10000</code> (10s).
+     * @param soTimeout The socket timeout in milliseconds to set
+     */
+    public void setSoTimeout(final int soTimeout) {
+        this.soTimeout = soTimeout;
+    }
+
+    public boolean isStaleCheckingEnabled() {
+        return staleCheckingEnabled;
+    }
+
+    /**
+     * Determines whether expired connections are evicted from the pool by a background thread. The default is
+     * <code>false</code>.
+     * @param staleCheckingEnabled <code>true</code> if expired connections should be evicted, <code>false</code> otherwise
+     */
+    public void setStaleCheckingEnabled(final boolean staleCheckingEnabled) {
+        this.staleCheckingEnabled = staleCheckingEnabled;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * Determines whether Nagle's algorithm is to be used. The default is <code>true</code>, i.e. <code>TCP_NODELAY</code>
+     * is enabled and Nagle's algorithm isn't used.
+     * @param tcpNoDelay <code>false</code> to use Nagle's algorithm, <code>true</code> to enable <code>TCP_NODELAY</code>
+     */
+    public void setTcpNoDelay(final boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+}
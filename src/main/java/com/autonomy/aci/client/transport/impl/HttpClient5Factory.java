@@ -123,6 +123,8 @@ public class HttpClient5Factory {
         // Create the HttpClient and configure the compression interceptors if required...
         final HttpClientBuilder httpClientBuilder = HttpClients.custom()
                 .setConnectionManager(connectionManager);
+        // Record when a connection is leased for requests sent with an AciMetricsListener...
+        httpClientBuilder.addRequestInterceptorLast(AciHttpClientImpl.CONNECTION_LEASE_INTERCEPTOR);
         if (staleCheckingEnabled) {
             httpClientBuilder.evictExpiredConnections();
         }
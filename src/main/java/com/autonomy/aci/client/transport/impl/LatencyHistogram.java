@@ -0,0 +1,147 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.impl;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, lock free histogram of durations in nanoseconds. Durations are counted in log-linear buckets, 16 for
+ * each power of two, so percentiles are accurate to within about 6%, whatever the range of the durations. Durations
+ * longer than about four hours are counted as four hours.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The highest power of two that is bucketed, anything larger is clamped...
+     */
+    private static final int MAX_EXPONENT = 43;
+
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1L;
+
+    private final AtomicLongArray buckets = new AtomicLongArray((MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     * @param nanos The duration, negative durations are recorded as <code>0</code>
+     */
+    public void record(final long nanos) {
+        final long value = Math.min(Math.max(nanos, 0L), MAX_VALUE);
+
+        buckets.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    private static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS) + subBucket;
+    }
+
+    private static long highestValueIn(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int exponent = (index / SUB_BUCKETS) + SUB_BUCKET_BITS - 1;
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final long lowest = ((long) (SUB_BUCKETS + (index % SUB_BUCKETS))) << shift;
+        return lowest + (1L << shift) - 1L;
+    }
+
+    /**
+     * Returns the duration that the given percentage of recorded durations were less than or equal to.
+     * @param percentile The percentile, between <code>0</code> and <code>100</code>
+     * @return The duration in nanoseconds, or <code>0</code> if nothing has been recorded
+     * @throws IllegalArgumentException If <code>percentile</code> isn't between <code>0</code> and <code>100</code>
+     */
+    public long getPercentile(final double percentile) {
+        Validate.isTrue((percentile >= 0.0) && (percentile <= 100.0), "Percentile must be between 0 and 100.");
+
+        final long recorded = count.get();
+        if (recorded == 0L) {
+            return 0L;
+        }
+
+        final long rank = Math.max(1L, (long) Math.ceil((percentile / 100.0) * recorded));
+        long seen = 0L;
+
+        for (int ii = 0; ii < buckets.length(); ii++) {
+            seen += buckets.get(ii);
+            if (seen >= rank) {
+                return Math.min(highestValueIn(ii), max.get());
+            }
+        }
+
+        // Only if durations were recorded while we were counting...
+        return max.get();
+    }
+
+    /**
+     * @return The number of durations recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return The longest duration recorded in nanoseconds, or <code>0</code> if nothing has been recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return The mean duration recorded in nanoseconds, or <code>0</code> if nothing has been recorded
+     */
+    public long getMean() {
+        final long recorded = count.get();
+        return (recorded == 0L) ? 0L : total.get() / recorded;
+    }
+
+    /**
+     * Returns a summary of the histogram, with durations in milliseconds.
+     * @return a string representation of the object
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d, p50=%.3fms, p99=%.3fms, max=%.3fms",
+                getCount(), toMillis(getPercentile(50.0)), toMillis(getPercentile(99.0)), toMillis(getMax()));
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1L);
+    }
+
+}
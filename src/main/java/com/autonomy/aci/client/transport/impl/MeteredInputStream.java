@@ -0,0 +1,103 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.impl;
+
+import com.autonomy.aci.client.transport.AciMetricsListener;
+import com.autonomy.aci.client.transport.AciServerDetails;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a response body and reports them to an <code>AciMetricsListener</code> once the end of the
+ * body is reached or the stream is closed.
+ */
+class MeteredInputStream extends FilterInputStream {
+
+    private final AciMetricsListener listener;
+
+    private final String action;
+
+    private final AciServerDetails serverDetails;
+
+    private final long start;
+
+    private long bytes;
+
+    private boolean reported;
+
+    /**
+     * Creates a new instance of MeteredInputStream.
+     * @param in            The response body
+     * @param listener      The listener to report to
+     * @param action        The name of the action
+     * @param serverDetails The server the action was sent to
+     * @param start         The value of <code>System.nanoTime()</code> when the response was received
+     */
+    MeteredInputStream(final InputStream in, final AciMetricsListener listener, final String action, final AciServerDetails serverDetails, final long start) {
+        super(in);
+        this.listener = listener;
+        this.action = action;
+        this.serverDetails = serverDetails;
+        this.start = start;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int read = in.read();
+        if (read == -1) {
+            report();
+        } else {
+            bytes++;
+        }
+        return read;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        final int read = in.read(buffer, offset, length);
+        if (read == -1) {
+            report();
+        } else {
+            bytes += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long skipped = in.skip(n);
+        bytes += skipped;
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            report();
+        }
+    }
+
+    private void report() {
+        if (!reported) {
+            reported = true;
+            listener.responseRead(action, serverDetails, bytes, System.nanoTime() - start);
+        }
+    }
+
+}
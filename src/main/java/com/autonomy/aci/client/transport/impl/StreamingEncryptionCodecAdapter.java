@@ -0,0 +1,99 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.transport.impl;
+
+import com.autonomy.aci.client.transport.EncryptionCodec;
+import com.autonomy.aci.client.transport.EncryptionCodecException;
+import com.autonomy.aci.client.transport.StreamingEncryptionCodec;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Adapts an <code>EncryptionCodec</code> that only works with whole arrays to the {@link StreamingEncryptionCodec}
+ * interface. The input is only copied if it isn't already an exactly sized array, and the result is written to the
+ * output as the codec returns it.
+ */
+public class StreamingEncryptionCodecAdapter implements StreamingEncryptionCodec {
+
+    private static final long serialVersionUID = -3093742650582183521L;
+
+    private final EncryptionCodec encryptionCodec;
+
+    /**
+     * Creates a new instance of StreamingEncryptionCodecAdapter.
+     * @param encryptionCodec The codec to adapt
+     * @throws NullPointerException if <code>encryptionCodec</code> is <code>null</code>
+     */
+    public StreamingEncryptionCodecAdapter(final EncryptionCodec encryptionCodec) {
+        this.encryptionCodec = Validate.notNull(encryptionCodec, "EncryptionCodec must not be null");
+    }
+
+    /**
+     * Returns <code>encryptionCodec</code> if it already implements <code>StreamingEncryptionCodec</code>, otherwise
+     * adapts it.
+     * @param encryptionCodec The codec to use
+     * @return A <code>StreamingEncryptionCodec</code> that uses <code>encryptionCodec</code>
+     */
+    public static StreamingEncryptionCodec adapt(final EncryptionCodec encryptionCodec) {
+        return (encryptionCodec instanceof StreamingEncryptionCodec)
+                ? (StreamingEncryptionCodec) encryptionCodec
+                : new StreamingEncryptionCodecAdapter(encryptionCodec);
+    }
+
+    @Override
+    public byte[] encrypt(final byte[] bytes) throws EncryptionCodecException {
+        return encryptionCodec.encrypt(bytes);
+    }
+
+    @Override
+    public byte[] decrypt(final byte[] bytes) throws EncryptionCodecException {
+        return encryptionCodec.decrypt(bytes);
+    }
+
+    @Override
+    public void encrypt(final ByteBuffer input, final OutputStream output) throws EncryptionCodecException, IOException {
+        output.write(encryptionCodec.encrypt(toArray(input)));
+    }
+
+    @Override
+    public void decrypt(final ByteBuffer input, final OutputStream output) throws EncryptionCodecException, IOException {
+        output.write(encryptionCodec.decrypt(toArray(input)));
+    }
+
+    /**
+     * Gets the remaining content of the buffer as an array, without copying it if the buffer is backed by an array of
+     * exactly that content.
+     */
+    private static byte[] toArray(final ByteBuffer input) {
+        final byte[] bytes;
+
+        if (input.hasArray() && (input.arrayOffset() + input.position() == 0) && (input.remaining() == input.array().length)) {
+            bytes = input.array();
+        } else {
+            bytes = new byte[input.remaining()];
+            input.duplicate().get(bytes);
+        }
+
+        input.position(input.limit());
+        return bytes;
+    }
+
+    public EncryptionCodec getEncryptionCodec() {
+        return encryptionCodec;
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.transport.impl;
+
+import org.apache.commons.lang3.Validate;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A bounded pool of native zlib compressors and decompressors, each with a growable buffer, so that encrypting and
+ * decrypting at a high rate doesn't allocate and clean up a new <code>Deflater</code> or <code>Inflater</code> every
+ * time. Anything released when the pool is already full is ended straight away, rather than being left for the garbage
+ * collector. Buffers that have grown beyond {@link #MAX_RETAINED_BUFFER} are dropped when released, so that a single
+ * large request doesn't pin a large array for the life of the pool.
+ */
+final class ZlibPool {
+
+    /**
+     * The largest buffer that is kept when a compressor is released...
+     */
+    static final int MAX_RETAINED_BUFFER = 256 * 1024;
+
+    private static final int INITIAL_BUFFER = 1024;
+
+    private final BlockingQueue<Compressor> compressors;
+
+    private final BlockingQueue<Decompressor> decompressors;
+
+    /**
+     * @param capacity The maximum number of idle compressors, and of idle decompressors, that are kept
+     */
+    ZlibPool(final int capacity) {
+        Validate.isTrue(capacity > 0, "Capacity must be greater than zero");
+        compressors = new ArrayBlockingQueue<>(capacity);
+        decompressors = new ArrayBlockingQueue<>(capacity);
+    }
+
+    Compressor borrowCompressor() {
+        final Compressor compressor = compressors.poll();
+        return (compressor == null) ? new Compressor() : compressor;
+    }
+
+    void release(final Compressor compressor) {
+        compressor.deflater.reset();
+
+        if (compressor.buffer.length > MAX_RETAINED_BUFFER) {
+            compressor.buffer = new byte[INITIAL_BUFFER];
+        }
+
+        if (!compressors.offer(compressor)) {
+            compressor.deflater.end();
+        }
+    }
+
+    Decompressor borrowDecompressor() {
+        final Decompressor decompressor = decompressors.poll();
+        return (decompressor == null) ? new Decompressor() : decompressor;
+    }
+
+    void release(final Decompressor decompressor) {
+        decompressor.inflater.reset();
+
+        if (!decompressors.offer(decompressor)) {
+            decompressor.inflater.end();
+        }
+    }
+
+    int idleCompressors() {
+        return compressors.size();
+    }
+
+    int idleDecompressors() {
+        return decompressors.size();
+    }
+
+    /**
+     * A <code>Deflater</code> along with the buffer it deflates into.
+     */
+    static final class Compressor {
+
+        final Deflater deflater = new Deflater();
+
+        byte[] buffer = new byte[INITIAL_BUFFER];
+
+        /**
+         * Deflates the remaining content of <code>input</code> into this compressor's buffer, after <code>prefix</code>.
+         * @param prefix Copied to the start of the buffer
+         * @param input  The content to deflate
+         * @param level  The compression level to use
+         * @return A buffer wrapping the prefix and deflated content, which is only valid until this compressor is
+         * released
+         */
+        ByteBuffer deflate(final byte[] prefix, final ByteBuffer input, final int level) {
+            // Text usually deflates to well under half its size, and we can grow if it doesn't...
+            final int estimate = prefix.length + Math.max(64, input.remaining() / 2);
+            if (buffer.length < estimate) {
+                buffer = new byte[estimate];
+            }
+
+            System.arraycopy(prefix, 0, buffer, 0, prefix.length);
+            int length = prefix.length;
+
+            deflater.setLevel(level);
+            deflater.setInput(input);
+            deflater.finish();
+
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    final byte[] grown = new byte[buffer.length * 2];
+                    System.arraycopy(buffer, 0, grown, 0, length);
+                    buffer = grown;
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+
+            return ByteBuffer.wrap(buffer, 0, length);
+        }
+
+    }
+
+    /**
+     * An <code>Inflater</code> along with the buffer it inflates into.
+     */
+    static final class Decompressor {
+
+        final Inflater inflater = new Inflater();
+
+        final byte[] buffer = new byte[8192];
+
+    }
+
+}
@@ -4,6 +4,7 @@ import com.autonomy.aci.client.services.AciConstants;
 import com.autonomy.aci.client.transport.AciParameter;
 import com.autonomy.aci.client.transport.ActionParameter;
 import com.autonomy.aci.client.transport.InputStreamActionParameter;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 
 import java.io.InputStream;
@@ -39,7 +40,10 @@ import java.util.*;
  */
 public class ActionParameters implements Set<ActionParameter<?>> {
 
-    private final Set<ActionParameter<?>> parameters = new LinkedHashSet<>();
+    /**
+     * Insertion ordered and indexed by parameter name ignoring case...
+     */
+    private final ParameterIndex parameters = new ParameterIndex();
 
     /**
      * Default empty constructor...
@@ -104,16 +108,8 @@ public class ActionParameters implements Set<ActionParameter<?>> {
      * that the parameter doesn't exist as <code>null</code> is an allowed parameter value.
      */
     public Object get(final String name) {
-        Object value = null;
-
-        for (final ActionParameter<?> parameter : this) {
-            if (parameter.getName().equalsIgnoreCase(name)) {
-                value = parameter.getValue();
-                break;
-            }
-        }
-
-        return value;
+        final ActionParameter<?> parameter = parameters.get(name);
+        return (parameter == null) ? null : parameter.getValue();
     }
 
     /**
@@ -143,19 +139,8 @@ public class ActionParameters implements Set<ActionParameter<?>> {
     public ActionParameter<?> put(final ActionParameter<?> parameter) {
         Validate.notNull(parameter, "The parameter must not be null.");
 
-        // Find the existing parameter...
-        ActionParameter<?> oldParameter = null;
-        for (final ActionParameter<?> param : parameters) {
-            if (param.equals(parameter)) {
-                oldParameter = param;
-                break;
-            }
-        }
-
         // Remove the old parameter if there was one...
-        if (oldParameter != null) {
-            parameters.remove(oldParameter);
-        }
+        final ActionParameter<?> oldParameter = parameters.removeEqual(parameter);
 
         // Put in the new parameter...
         parameters.add(parameter);
@@ -239,7 +224,8 @@ public class ActionParameters implements Set<ActionParameter<?>> {
      * @return <code>true</code> if the set contained the specified element.
      */
     public boolean remove(final String name) {
-        return remove(new AciParameter(name, ""));
+        validateName(name);
+        return parameters.removeAciParameter(name);
     }
 
     /**
@@ -353,7 +339,8 @@ public class ActionParameters implements Set<ActionParameter<?>> {
      * @return <code>true</code> if this set contains the specified element
      */
     public boolean contains(final String name) {
-        return parameters.contains(new AciParameter(name, ""));
+        validateName(name);
+        return parameters.containsAciParameter(name);
     }
 
     /**
@@ -435,4 +422,15 @@ public class ActionParameters implements Set<ActionParameter<?>> {
     public int hashCode() {
         return parameters.hashCode();
     }
+
+    /**
+     * Validates a parameter name in the same way as <code>AciParameter</code> does.
+     * @param name The name of the parameter
+     * @throws IllegalArgumentException if <code>name</code> is <code>null</code> or blank.
+     */
+    private static void validateName(final String name) {
+        if (StringUtils.isBlank(name)) {
+            throw new IllegalArgumentException("Parameter names cannot be null.");
+        }
+    }
 }
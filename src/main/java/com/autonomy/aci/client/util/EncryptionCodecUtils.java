@@ -16,12 +16,21 @@ package com.autonomy.aci.client.util;
 
 import com.autonomy.aci.client.transport.EncryptionCodec;
 import com.autonomy.aci.client.transport.EncryptionCodecException;
+import com.autonomy.aci.client.transport.impl.StreamingEncryptionCodecAdapter;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Objects;
 
 /**
  * This is a utility class that encrypts and decrypts <code>String</code> objects, it main function is to hide the required
- * conversions between strings and byte arrays.
+ * conversions between strings and byte arrays. The string is encoded straight into a buffer that's handed to the codec,
+ * and the codec writes its result straight into the buffer the returned string is decoded from, using
+ * {@link com.autonomy.aci.client.transport.StreamingEncryptionCodec} where possible.
  */
 public class EncryptionCodecUtils {
 
@@ -46,9 +55,28 @@ public class EncryptionCodecUtils {
      * @throws EncryptionCodecException if something went wrong during either the conversion of encrypting
      */
     public String encrypt(final EncryptionCodec codec, final String string, final String charsetName) throws EncryptionCodecException {
-        final byte[] bytes = toBytes(string, charsetName);
-        final byte[] encrypted = codec.encrypt(bytes);
-        return toString(encrypted, charsetName);
+        return encrypt(codec, string, toCharset(charsetName));
+    }
+
+    /**
+     * Encrypt the given string with the supplied codec and use the supplied charset for any string/byte conversions.
+     * @param codec   The <code>EncryptionCodec</code> to use
+     * @param string  The input to encrypt
+     * @param charset The charset to use for string and byte array conversion
+     * @return The encrypted input
+     * @throws EncryptionCodecException if something went wrong during either the conversion of encrypting
+     */
+    public String encrypt(final EncryptionCodec codec, final String string, final Charset charset) throws EncryptionCodecException {
+        Objects.requireNonNull(charset, "charset");
+        final ByteArrayOutputStream encrypted = new ByteArrayOutputStream(Math.max(64, string.length()));
+
+        try {
+            StreamingEncryptionCodecAdapter.adapt(codec).encrypt(charset.encode(string), encrypted);
+        } catch (final IOException ioe) {
+            throw new EncryptionCodecException("Unable to encrypt the String.", ioe);
+        }
+
+        return encrypted.toString(charset);
     }
 
     /**
@@ -60,9 +88,24 @@ public class EncryptionCodecUtils {
      * @throws EncryptionCodecException if something went wrong during either the conversion of decrypting.
      */
     public String decrypt(final EncryptionCodec codec, final String string, final String charsetName) throws EncryptionCodecException {
-        final byte[] bytes = toBytes(string, charsetName);
-        final byte[] decrypted = codec.decrypt(bytes);
-        return toString(decrypted, charsetName);
+        final Charset charset = toCharset(charsetName);
+        final ByteArrayOutputStream decrypted = new ByteArrayOutputStream(Math.max(64, string.length() * 2));
+
+        try {
+            StreamingEncryptionCodecAdapter.adapt(codec).decrypt(charset.encode(string), decrypted);
+        } catch (final IOException ioe) {
+            throw new EncryptionCodecException("Unable to decrypt the String.", ioe);
+        }
+
+        return decrypted.toString(charset);
+    }
+
+    private static Charset toCharset(final String charsetName) throws EncryptionCodecException {
+        try {
+            return Charset.forName(Objects.requireNonNull(charsetName, "charsetName"));
+        } catch (final IllegalCharsetNameException | UnsupportedCharsetException uce) {
+            throw new EncryptionCodecException("Unsupported charset: " + charsetName, uce);
+        }
     }
 
     /**
@@ -0,0 +1,432 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.util;
+
+import org.apache.commons.lang3.Validate;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A pull tokenizer for JSON, which reads one token at a time from a <code>Reader</code>, much as an
+ * <code>XMLStreamReader</code> reads XML. Only the current token is held in memory, so responses of any size can be
+ * read, e.g. those returned by ACI servers when <code>ResponseFormat=simplejson</code> is sent.
+ * <p>
+ * Numbers are returned as their text, which {@link #getIntValue()} etc. parse without boxing. The tokenizer checks the
+ * structure of the JSON, i.e. that brackets match and that commas and colons are where they should be, as it reads.
+ */
+public final class JsonTokenizer {
+
+    /**
+     * The types of token.
+     */
+    public enum Token {
+        START_OBJECT,
+        END_OBJECT,
+        START_ARRAY,
+        END_ARRAY,
+        FIELD_NAME,
+        STRING,
+        NUMBER,
+        TRUE,
+        FALSE,
+        NULL
+    }
+
+    /**
+     * Expecting a value, e.g. at the start of the document or after a colon.
+     */
+    private static final int VALUE = 0;
+
+    /**
+     * Expecting a value or the end of an array, i.e. straight after <code>[</code>.
+     */
+    private static final int VALUE_OR_END = 1;
+
+    /**
+     * Expecting a field name, i.e. after a comma in an object.
+     */
+    private static final int FIELD = 2;
+
+    /**
+     * Expecting a field name or the end of an object, i.e. straight after <code>{</code>.
+     */
+    private static final int FIELD_OR_END = 3;
+
+    /**
+     * Expecting a comma, or the end of the current object or array.
+     */
+    private static final int AFTER_VALUE = 4;
+
+    /**
+     * The whole document has been read.
+     */
+    private static final int END = 5;
+
+    private final Reader reader;
+
+    private final char[] buffer = new char[8192];
+
+    private int position;
+
+    private int limit;
+
+    /**
+     * Whether each open container is an object rather than an array...
+     */
+    private boolean[] objects = new boolean[32];
+
+    private int depth;
+
+    private int state = VALUE;
+
+    private Token token;
+
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * Creates a new instance of JsonTokenizer.
+     * @param reader The JSON to read
+     * @throws NullPointerException If <code>reader</code> is <code>null</code>
+     */
+    public JsonTokenizer(final Reader reader) {
+        this.reader = Validate.notNull(reader, "The reader must not be null.");
+    }
+
+    /**
+     * @return <code>true</code> unless the whole document has been read
+     */
+    public boolean hasNext() {
+        return state != END;
+    }
+
+    /**
+     * Reads the next token.
+     * @return The type of the token
+     * @throws IOException            If the JSON couldn't be read or isn't valid
+     * @throws NoSuchElementException If the whole document has already been read
+     */
+    public Token next() throws IOException {
+        if (state == END) {
+            throw new NoSuchElementException("The whole JSON document has been read.");
+        }
+
+        int character = skipWhitespace();
+
+        if (state == AFTER_VALUE) {
+            if (((character == '}') && objects[depth - 1]) || ((character == ']') && !objects[depth - 1])) {
+                return endContainer();
+            }
+            if (character != ',') {
+                throw unexpected(character, "a comma or the end of the " + (objects[depth - 1] ? "object" : "array"));
+            }
+            position++;
+            character = skipWhitespace();
+            state = objects[depth - 1] ? FIELD : VALUE;
+        }
+
+        if ((state == FIELD) || (state == FIELD_OR_END)) {
+            if ((character == '}') && (state == FIELD_OR_END)) {
+                return endContainer();
+            }
+            if (character != '"') {
+                throw unexpected(character, "a field name");
+            }
+            position++;
+            readString();
+
+            if (skipWhitespace() != ':') {
+                throw unexpected(peek(), "a colon");
+            }
+            position++;
+            state = VALUE;
+            token = Token.FIELD_NAME;
+            return token;
+        }
+
+        if ((character == ']') && (state == VALUE_OR_END)) {
+            return endContainer();
+        }
+
+        return readValue(character);
+    }
+
+    /**
+     * @return The type of the current token, or <code>null</code> if no tokens have been read
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /**
+     * @return The name of the field, the value of the string, the text of the number or the literal of the current
+     * token, or <code>null</code> if it's the start or end of an object or array
+     */
+    public String getText() {
+        return (token == null) || (token.compareTo(Token.FIELD_NAME) < 0) ? null : text.toString();
+    }
+
+    /**
+     * Compares the text of the current token to <code>value</code> without creating a string.
+     * @param value The text to compare to
+     * @return <code>true</code> if the text of the current token is <code>value</code>
+     */
+    public boolean textEquals(final String value) {
+        if ((token == null) || (token.compareTo(Token.FIELD_NAME) < 0) || (text.length() != value.length())) {
+            return false;
+        }
+        for (int ii = 0; ii < value.length(); ii++) {
+            if (text.charAt(ii) != value.charAt(ii)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The current number, or string, as an <code>int</code>
+     * @throws NumberFormatException If it isn't an <code>int</code>
+     */
+    public int getIntValue() {
+        return Integer.parseInt(text, 0, text.length(), 10);
+    }
+
+    /**
+     * @return The current number, or string, as a <code>long</code>
+     * @throws NumberFormatException If it isn't a <code>long</code>
+     */
+    public long getLongValue() {
+        return Long.parseLong(text, 0, text.length(), 10);
+    }
+
+    /**
+     * @return The current number, or string, as a <code>double</code>
+     * @throws NumberFormatException If it isn't a number
+     */
+    public double getDoubleValue() {
+        return Double.parseDouble(text.toString());
+    }
+
+    /**
+     * @return The number of objects and arrays that the current token is in, including the one it starts, if it does
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Moves past the current value. If the current token is the start of an object or an array, the tokenizer is left
+     * on its end, otherwise it doesn't move.
+     * @throws IOException If the JSON couldn't be read or isn't valid
+     */
+    public void skipValue() throws IOException {
+        if ((token == Token.START_OBJECT) || (token == Token.START_ARRAY)) {
+            final int target = depth - 1;
+            while (depth > target) {
+                next();
+            }
+        }
+    }
+
+    private Token readValue(final int character) throws IOException {
+        switch (character) {
+            case '{':
+                position++;
+                startContainer(true);
+                state = FIELD_OR_END;
+                token = Token.START_OBJECT;
+                return token;
+            case '[':
+                position++;
+                startContainer(false);
+                state = VALUE_OR_END;
+                token = Token.START_ARRAY;
+                return token;
+            case '"':
+                position++;
+                readString();
+                return valueRead(Token.STRING);
+            case 't':
+                readLiteral("true");
+                return valueRead(Token.TRUE);
+            case 'f':
+                readLiteral("false");
+                return valueRead(Token.FALSE);
+            case 'n':
+                readLiteral("null");
+                return valueRead(Token.NULL);
+            default:
+                if ((character == '-') || ((character >= '0') && (character <= '9'))) {
+                    readNumber();
+                    return valueRead(Token.NUMBER);
+                }
+                throw unexpected(character, "a value");
+        }
+    }
+
+    private Token valueRead(final Token type) {
+        token = type;
+        state = (depth == 0) ? END : AFTER_VALUE;
+        return token;
+    }
+
+    private void startContainer(final boolean object) {
+        if (depth == objects.length) {
+            objects = Arrays.copyOf(objects, depth * 2);
+        }
+        objects[depth++] = object;
+    }
+
+    private Token endContainer() {
+        position++;
+        token = objects[--depth] ? Token.END_OBJECT : Token.END_ARRAY;
+        state = (depth == 0) ? END : AFTER_VALUE;
+        return token;
+    }
+
+    /**
+     * Reads a string, whose opening quote has been read, into the text.
+     */
+    private void readString() throws IOException {
+        text.setLength(0);
+
+        while (true) {
+            if ((position == limit) && !fill()) {
+                throw new EOFException("Unexpected end of JSON in a string.");
+            }
+
+            // Copy everything up to the next quote or escape in one go...
+            final int start = position;
+            while ((position < limit) && (buffer[position] != '"') && (buffer[position] != '\\')) {
+                position++;
+            }
+            text.append(buffer, start, position - start);
+
+            if (position < limit) {
+                if (buffer[position++] == '"') {
+                    return;
+                }
+                readEscape();
+            }
+        }
+    }
+
+    private void readEscape() throws IOException {
+        final int character = read();
+        switch (character) {
+            case '"':
+            case '\\':
+            case '/':
+                text.append((char) character);
+                break;
+            case 'b':
+                text.append('\b');
+                break;
+            case 'f':
+                text.append('\f');
+                break;
+            case 'n':
+                text.append('\n');
+                break;
+            case 'r':
+                text.append('\r');
+                break;
+            case 't':
+                text.append('\t');
+                break;
+            case 'u':
+                int value = 0;
+                for (int ii = 0; ii < 4; ii++) {
+                    final int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw new IOException("Invalid unicode escape in a JSON string.");
+                    }
+                    value = (value << 4) | digit;
+                }
+                text.append((char) value);
+                break;
+            default:
+                throw unexpected(character, "an escape character");
+        }
+    }
+
+    private void readNumber() throws IOException {
+        text.setLength(0);
+
+        int character = peek();
+        while ((character == '-') || (character == '+') || (character == '.') || (character == 'e') || (character == 'E')
+                || ((character >= '0') && (character <= '9'))) {
+            text.append((char) character);
+            position++;
+            character = peek();
+        }
+    }
+
+    private void readLiteral(final String literal) throws IOException {
+        for (int ii = 0; ii < literal.length(); ii++) {
+            final int character = read();
+            if (character != literal.charAt(ii)) {
+                throw unexpected(character, literal);
+            }
+        }
+        text.setLength(0);
+        text.append(literal);
+    }
+
+    private int skipWhitespace() throws IOException {
+        int character = peek();
+        while ((character == ' ') || (character == '\n') || (character == '\r') || (character == '\t')) {
+            position++;
+            character = peek();
+        }
+        return character;
+    }
+
+    /**
+     * @return The next character without consuming it, or -1 at the end of the JSON
+     */
+    private int peek() throws IOException {
+        return ((position < limit) || fill()) ? buffer[position] : -1;
+    }
+
+    private int read() throws IOException {
+        final int character = peek();
+        if (character == -1) {
+            throw new EOFException("Unexpected end of JSON.");
+        }
+        position++;
+        return character;
+    }
+
+    private boolean fill() throws IOException {
+        final int number = reader.read(buffer);
+        if (number <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = number;
+        return true;
+    }
+
+    private IOException unexpected(final int character, final String expected) {
+        if (character == -1) {
+            return new EOFException("Unexpected end of JSON, expected " + expected + '.');
+        }
+        return new IOException("Unexpected character '" + (char) character + "' in JSON, expected " + expected + '.');
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.util;
+
+import org.apache.commons.lang3.Validate;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Percent encodes ACI parameters straight into a byte buffer, either as a URI query string or as an
+ * <code>application/x-www-form-urlencoded</code> request body. The output is exactly the same as that of HttpClient's
+ * <code>URIBuilder</code> and <code>WWWFormCodec</code>, without building a list of <code>NameValuePair</code>s and an
+ * intermediate string for every parameter. For example:
+ * <pre>
+ *    ParameterEncoder encoder = new ParameterEncoder(StandardCharsets.UTF_8, false);
+ *    encoder.add(&quot;action&quot;, &quot;query&quot;).add(&quot;text&quot;, &quot;cats &amp; dogs&quot;);
+ *    encoder.toString(); // action=query&amp;text=cats%20%26%20dogs
+ * </pre>
+ * Instances are not thread safe, but can be reused after calling {@link #reset()}.
+ */
+public final class ParameterEncoder {
+
+    /**
+     * Bytes that are never percent encoded, the same as <code>URIBuilder</code> and <code>WWWFormCodec</code>...
+     */
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Whether each charset encodes ASCII characters as the same single bytes, which nearly all of them do...
+     */
+    private static final ConcurrentMap<Charset, Boolean> ASCII_COMPATIBLE = new ConcurrentHashMap<>();
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    static {
+        for (int i = 'a'; i <= 'z'; i++) {
+            UNRESERVED[i] = true;
+        }
+        for (int i = 'A'; i <= 'Z'; i++) {
+            UNRESERVED[i] = true;
+        }
+        for (int i = '0'; i <= '9'; i++) {
+            UNRESERVED[i] = true;
+        }
+        UNRESERVED['-'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['~'] = true;
+    }
+
+    private final Charset charset;
+
+    private final boolean blankAsPlus;
+
+    private final boolean asciiCompatible;
+
+    private byte[] buffer;
+
+    private int size;
+
+    /**
+     * Creates a new instance of ParameterEncoder.
+     * @param charset     The charset to encode names and values with before percent encoding them
+     * @param blankAsPlus Whether spaces are encoded as <code>+</code>, as in form bodies, rather than <code>%20</code>
+     */
+    public ParameterEncoder(final Charset charset, final boolean blankAsPlus) {
+        this(charset, blankAsPlus, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new instance of ParameterEncoder.
+     * @param charset     The charset to encode names and values with before percent encoding them
+     * @param blankAsPlus Whether spaces are encoded as <code>+</code>, as in form bodies, rather than <code>%20</code>
+     * @param capacity    The initial size of the buffer, which grows as required
+     */
+    public ParameterEncoder(final Charset charset, final boolean blankAsPlus, final int capacity) {
+        Validate.notNull(charset, "The charset must not be null.");
+        Validate.isTrue(capacity >= 0, "The capacity must not be negative.");
+
+        this.charset = charset;
+        this.blankAsPlus = blankAsPlus;
+        this.asciiCompatible = ASCII_COMPATIBLE.computeIfAbsent(charset, ParameterEncoder::isAsciiCompatible);
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Encodes a parameter, separating it from any previous one with an <code>&amp;</code>.
+     * @param name  The name of the parameter
+     * @param value The value of the parameter. If it is <code>null</code>, only the name is written.
+     * @return This encoder
+     */
+    public ParameterEncoder add(final String name, final String value) {
+        if (size > 0) {
+            appendByte('&');
+        }
+
+        encode(name);
+
+        if (value != null) {
+            appendByte('=');
+            encode(value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Getter for property charset.
+     * @return Value of property charset
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Getter for property blankAsPlus.
+     * @return Value of property blankAsPlus
+     */
+    public boolean isBlankAsPlus() {
+        return blankAsPlus;
+    }
+
+    /**
+     * @return The number of bytes written so far
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Discards everything written so far, keeping the buffer for reuse.
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * @return A copy of the bytes written so far
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * @return The bytes written so far, which are always ASCII, as a string
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, size, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Appends bytes that are already encoded, e.g. by another encoder with the same charset and handling of spaces.
+     * @param encoded The encoded bytes
+     */
+    void append(final byte[] encoded) {
+        ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, buffer, size, encoded.length);
+        size += encoded.length;
+    }
+
+    /**
+     * Percent encodes a string, without any separator.
+     * @param string The string to encode
+     */
+    void encode(final String string) {
+        final int length = string.length();
+        int ii = 0;
+
+        if (asciiCompatible) {
+            // Nearly every name and value is ASCII, so there's no need to encode them into a byte array first...
+            ensureCapacity(length);
+            for (; ii < length; ii++) {
+                final char c = string.charAt(ii);
+                if (c >= 0x80) {
+                    break;
+                }
+                appendEncodedByte(c);
+            }
+        }
+
+        if (ii < length) {
+            for (final byte b : ((ii == 0) ? string : string.substring(ii)).getBytes(charset)) {
+                appendEncodedByte(b & 0xFF);
+            }
+        }
+    }
+
+    private void appendEncodedByte(final int b) {
+        if ((b < 0x80) && UNRESERVED[b]) {
+            appendByte(b);
+        } else if ((b == ' ') && blankAsPlus) {
+            appendByte('+');
+        } else {
+            ensureCapacity(3);
+            buffer[size++] = '%';
+            buffer[size++] = HEX_DIGITS[b >> 4];
+            buffer[size++] = HEX_DIGITS[b & 0x0F];
+        }
+    }
+
+    private void appendByte(final int b) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) b;
+    }
+
+    private void ensureCapacity(final int extra) {
+        if ((size + extra) > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+
+    private static boolean isAsciiCompatible(final Charset charset) {
+        final byte[] ascii = new byte[128];
+        for (int ii = 0; ii < ascii.length; ii++) {
+            ascii[ii] = (byte) ii;
+        }
+        return charset.canEncode() && Arrays.equals(new String(ascii, StandardCharsets.US_ASCII).getBytes(charset), ascii);
+    }
+
+}
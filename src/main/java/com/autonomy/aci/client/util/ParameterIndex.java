@@ -0,0 +1,363 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.util;
+
+import com.autonomy.aci.client.transport.AciParameter;
+import com.autonomy.aci.client.transport.ActionParameter;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The set behind {@link ActionParameters}. Parameters are kept in insertion order, like a <code>LinkedHashSet</code>,
+ * but they're hashed by their case folded name in an open addressing table, so that looking them up by name is a
+ * constant time operation that doesn't allocate anything. This relies on parameters only ever being equal to others with
+ * the same name ignoring case, which is the case for all the parameters in this API. A single <code>null</code> element
+ * is allowed, as it was by <code>LinkedHashSet</code>.
+ */
+final class ParameterIndex extends AbstractSet<ActionParameter<?>> {
+
+    /**
+     * Marks a removed element in <code>elements</code>...
+     */
+    private static final Object REMOVED = new Object();
+
+    /**
+     * Marks a removed element in <code>table</code>, so that lookups carry on past it...
+     */
+    private static final int DELETED = -1;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * The elements in insertion order, with gaps where elements have been removed...
+     */
+    private Object[] elements = new Object[INITIAL_CAPACITY];
+
+    /**
+     * The hash of the name of each element in <code>elements</code>...
+     */
+    private int[] hashes = new int[INITIAL_CAPACITY];
+
+    /**
+     * Index into <code>elements</code> plus one, zero for an empty slot or <code>DELETED</code>. It is always at least
+     * twice the length of <code>elements</code>, so it can never fill up.
+     */
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * The number of entries used in <code>elements</code>, including removed ones...
+     */
+    private int end;
+
+    private int size;
+
+    /**
+     * The index of the <code>null</code> element in <code>elements</code>, or -1 if there isn't one...
+     */
+    private int nullIndex = -1;
+
+    private int modCount;
+
+    /**
+     * A hash of a parameter name that is consistent with <code>String.equalsIgnoreCase</code>.
+     * @param name The parameter name, may be <code>null</code>
+     * @return The hash
+     */
+    static int hash(final String name) {
+        final int hash = ActionParameter.hashName(name);
+
+        // Spread the high bits down, as only the low ones are used to pick a slot...
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @param name The name of the parameter, compared ignoring case
+     * @return The first parameter added with the name, or <code>null</code> if there isn't one
+     */
+    ActionParameter<?> get(final String name) {
+        final int index = indexOfName(name, false);
+        return (index < 0) ? null : element(index);
+    }
+
+    /**
+     * @param name The name of the parameter, compared ignoring case
+     * @return <code>true</code> if there is an <code>AciParameter</code> with the name
+     */
+    boolean containsAciParameter(final String name) {
+        return indexOfName(name, true) >= 0;
+    }
+
+    /**
+     * @param name The name of the parameter, compared ignoring case
+     * @return <code>true</code> if there was an <code>AciParameter</code> with the name to remove
+     */
+    boolean removeAciParameter(final String name) {
+        final int index = indexOfName(name, true);
+        if (index < 0) {
+            return false;
+        }
+
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Removes the element that is equal to a parameter.
+     * @param parameter The parameter
+     * @return The removed element, or <code>null</code> if there wasn't one
+     */
+    ActionParameter<?> removeEqual(final ActionParameter<?> parameter) {
+        final int index = indexOf(parameter);
+        if (index < 0) {
+            return null;
+        }
+
+        final ActionParameter<?> removed = element(index);
+        removeAt(index);
+        return removed;
+    }
+
+    @Override
+    public boolean add(final ActionParameter<?> parameter) {
+        final int hash = (parameter == null) ? 0 : hash(parameter.getName());
+        if (indexOf(parameter, hash) >= 0) {
+            return false;
+        }
+
+        if (end == elements.length) {
+            // Either reclaim the removed entries or make room for more...
+            resize((size < (elements.length / 2)) ? elements.length : (elements.length * 2));
+        }
+
+        final int index = end++;
+        elements[index] = parameter;
+
+        if (parameter == null) {
+            nullIndex = index;
+        } else {
+            hashes[index] = hash;
+            insert(hash, index);
+        }
+
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        final int index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+
+        removeAt(index);
+        return true;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(elements, 0, end, null);
+        Arrays.fill(table, 0);
+        end = 0;
+        size = 0;
+        nullIndex = -1;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<ActionParameter<?>> iterator() {
+        return new ParameterIterator();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ActionParameter<?> element(final int index) {
+        return (ActionParameter<?>) elements[index];
+    }
+
+    /**
+     * @param o The object to look for
+     * @return The index in <code>elements</code> of the element equal to <code>o</code>, or -1 if there isn't one
+     */
+    private int indexOf(final Object o) {
+        return (o instanceof ActionParameter) ? indexOf(o, hash(((ActionParameter<?>) o).getName())) : indexOf(o, 0);
+    }
+
+    /**
+     * @param o    The object to look for
+     * @param hash The hash of the name of <code>o</code>
+     * @return The index in <code>elements</code> of the element equal to <code>o</code>, or -1 if there isn't one
+     */
+    private int indexOf(final Object o, final int hash) {
+        if (o == null) {
+            return nullIndex;
+        }
+        if (!(o instanceof ActionParameter)) {
+            return -1;
+        }
+
+        final int mask = table.length - 1;
+
+        for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            final int index = table[slot] - 1;
+            if ((index >= 0) && (hashes[index] == hash) && o.equals(elements[index])) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param name              The name of the parameter, compared ignoring case
+     * @param aciParametersOnly Whether to only look for <code>AciParameter</code>s
+     * @return The index in <code>elements</code> of the first element added with the name, or -1 if there isn't one
+     */
+    private int indexOfName(final String name, final boolean aciParametersOnly) {
+        final int hash = hash(name);
+        final int mask = table.length - 1;
+        int first = -1;
+
+        // Parameters of different types can have the same name, so keep going in case there's an earlier one...
+        for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            final int index = table[slot] - 1;
+            if ((index >= 0) && (hashes[index] == hash) && ((first < 0) || (index < first))) {
+                final ActionParameter<?> parameter = element(index);
+                if ((!aciParametersOnly || (parameter instanceof AciParameter)) && parameter.getName().equalsIgnoreCase(name)) {
+                    first = index;
+                }
+            }
+        }
+
+        return first;
+    }
+
+    private void insert(final int hash, final int index) {
+        final int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] > 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    private void removeAt(final int index) {
+        if (index == nullIndex) {
+            nullIndex = -1;
+        } else {
+            final int mask = table.length - 1;
+            int slot = hashes[index] & mask;
+            while (table[slot] != (index + 1)) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = DELETED;
+        }
+
+        elements[index] = REMOVED;
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Compacts the elements into arrays of a new capacity and rebuilds the table without any deleted slots.
+     * @param capacity The new capacity, which must be a power of two that is at least <code>size</code>
+     */
+    private void resize(final int capacity) {
+        final Object[] oldElements = elements;
+        final int[] oldHashes = hashes;
+        final int oldEnd = end;
+
+        elements = new Object[capacity];
+        hashes = new int[capacity];
+        table = new int[capacity * 2];
+        end = 0;
+        nullIndex = -1;
+
+        for (int ii = 0; ii < oldEnd; ii++) {
+            final Object element = oldElements[ii];
+            if (element != REMOVED) {
+                final int index = end++;
+                elements[index] = element;
+                if (element == null) {
+                    nullIndex = index;
+                } else {
+                    hashes[index] = oldHashes[ii];
+                    insert(oldHashes[ii], index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Iterates over the elements in insertion order.
+     */
+    private final class ParameterIterator implements Iterator<ActionParameter<?>> {
+
+        private int next;
+
+        private int last = -1;
+
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            while ((next < end) && (elements[next] == REMOVED)) {
+                next++;
+            }
+            return next < end;
+        }
+
+        @Override
+        public ActionParameter<?> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            last = next++;
+            return element(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            removeAt(last);
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+}
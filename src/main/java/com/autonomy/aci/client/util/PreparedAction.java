@@ -0,0 +1,360 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.util;
+
+import com.autonomy.aci.client.services.AciConstants;
+import com.autonomy.aci.client.transport.AciParameter;
+import com.autonomy.aci.client.transport.ActionParameter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An ACI action whose action name and static parameters are URL encoded once, so that executing it only has to encode
+ * the values of its variable parameters. For example:
+ * <pre>
+ *    PreparedAction query = new PreparedAction(new ActionParameters(
+ *            new AciParameter(&quot;action&quot;, &quot;query&quot;),
+ *            new AciParameter(&quot;print&quot;, &quot;none&quot;)
+ *    ), &quot;text&quot;, &quot;start&quot;);
+ *    ...
+ *    aciService.executeAction(query.bind(&quot;XPath&quot;, 11), myProcessor);
+ * </pre>
+ * The parameters returned by {@link #bind(Object...)} are a normal, albeit unmodifiable, set of parameters, so they
+ * can be used with any <code>AciService</code>, but <code>AciHttpClientImpl</code> recognises them and uses the
+ * pre-encoded form rather than encoding every parameter again. Parameters are sent with the action first, then the
+ * static parameters in iteration order, then the variable parameters in the order they were named.
+ * <p>
+ * Instances are immutable and thread safe. Parameters that need a POST request, e.g. files, can't be prepared.
+ */
+public final class PreparedAction {
+
+    private static final byte[] AMPERSAND = {'&'};
+
+    private final String action;
+
+    /**
+     * The action parameter followed by the static parameters, copied so they can't be changed afterwards...
+     */
+    private final List<ActionParameter<?>> staticParameters;
+
+    private final String[] variableNames;
+
+    /**
+     * Every parameter, with variable ones having no value, so that parameters can be looked up by name...
+     */
+    private final ParameterIndex names = new ParameterIndex();
+
+    /**
+     * The hash code of every set of parameters for this action, as it only depends on the parameter names...
+     */
+    private final int parametersHashCode;
+
+    /**
+     * Templates for query strings, which are normally only UTF-8 encoded...
+     */
+    private final ConcurrentMap<Charset, Template> queryTemplates = new ConcurrentHashMap<>();
+
+    /**
+     * Templates for form bodies, which are encoded in the server's charset...
+     */
+    private final ConcurrentMap<Charset, Template> formTemplates = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance of PreparedAction.
+     * @param parameters    The action parameter and any parameters whose values are the same for every execution
+     * @param variableNames The names of the parameters whose values are supplied to {@link #bind(Object...)}
+     * @throws IllegalArgumentException If there's no action parameter, a parameter needs a POST request or a variable
+     *                                  parameter name is blank or used more than once
+     */
+    public PreparedAction(final Collection<? extends ActionParameter<?>> parameters, final String... variableNames) {
+        Validate.notNull(parameters, "The parameters must not be null.");
+        Validate.notNull(variableNames, "The variable parameter names must not be null.");
+
+        final List<ActionParameter<?>> ordered = new ArrayList<>(parameters.size());
+        final Set<String> names = new HashSet<>();
+        String actionName = null;
+
+        for (final ActionParameter<?> parameter : parameters) {
+            if (parameter == null) {
+                continue;
+            }
+
+            Validate.isTrue(!parameter.requiresPostRequest(), "The parameter '%s' requires a POST request, so can't be prepared.", parameter.getName());
+            names.add(parameter.getName().toLowerCase(Locale.ENGLISH));
+
+            final Object value = parameter.getValue();
+            final AciParameter copy = new AciParameter(parameter.getName(), (value instanceof String) ? value : null);
+
+            if (AciConstants.PARAM_ACTION.equalsIgnoreCase(parameter.getName())) {
+                actionName = copy.getValue();
+                ordered.add(0, copy);
+            } else {
+                ordered.add(copy);
+            }
+        }
+
+        Validate.isTrue(actionName != null, "No 'action' parameter found in parameter set, please set one before trying to prepare an ACI request.");
+
+        for (final String name : variableNames) {
+            Validate.isTrue(StringUtils.isNotBlank(name), "Variable parameter names must not be blank.");
+            Validate.isTrue(names.add(name.toLowerCase(Locale.ENGLISH)), "The parameter '%s' has been specified more than once.", name);
+        }
+
+        this.action = actionName;
+        this.staticParameters = Collections.unmodifiableList(ordered);
+        this.variableNames = variableNames.clone();
+
+        this.names.addAll(ordered);
+        for (final String name : variableNames) {
+            this.names.add(new AciParameter(name, null));
+        }
+
+        int hashCode = 0;
+        for (final ActionParameter<?> parameter : ordered) {
+            hashCode += parameter.hashCode();
+        }
+        for (final String name : variableNames) {
+            hashCode += ActionParameter.hashName(name);
+        }
+        this.parametersHashCode = hashCode;
+    }
+
+    /**
+     * Supplies the values of the variable parameters for one execution of the action. The values are converted to
+     * strings in the same way as <code>AciParameter</code> does, and a parameter with a <code>null</code> value isn't
+     * sent.
+     * @param values The values of the variable parameters, in the order they were named
+     * @return The parameters to execute the action with
+     * @throws IllegalArgumentException If the number of values doesn't match the number of variable parameters
+     */
+    public Parameters bind(final Object... values) {
+        Validate.notNull(values, "The values must not be null.");
+        Validate.isTrue(values.length == variableNames.length, "Expected %d variable parameter values, but got %d.", variableNames.length, values.length);
+
+        final String[] strings = new String[values.length];
+        for (int ii = 0; ii < values.length; ii++) {
+            strings[ii] = (values[ii] == null) ? null : String.valueOf(values[ii]);
+        }
+
+        return new Parameters(this, strings);
+    }
+
+    /**
+     * Getter for property action.
+     * @return Value of property action
+     */
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * @return The names of the parameters whose values are supplied when the action is executed
+     */
+    public List<String> getVariableNames() {
+        return Collections.unmodifiableList(Arrays.asList(variableNames));
+    }
+
+    /**
+     * @param charset     The charset the template is encoded with
+     * @param blankAsPlus Whether spaces are encoded as <code>+</code>
+     * @return The template, which is created the first time it's needed
+     */
+    private Template getTemplate(final Charset charset, final boolean blankAsPlus) {
+        return (blankAsPlus ? formTemplates : queryTemplates).computeIfAbsent(charset, key -> new Template(key, blankAsPlus));
+    }
+
+    /**
+     * The encoded static parameters and the encoded <code>&amp;name=</code> of each variable parameter.
+     */
+    private final class Template {
+
+        private final byte[] prefix;
+
+        private final byte[][] names;
+
+        Template(final Charset charset, final boolean blankAsPlus) {
+            final ParameterEncoder encoder = new ParameterEncoder(charset, blankAsPlus);
+            for (final ActionParameter<?> parameter : staticParameters) {
+                final Object value = parameter.getValue();
+                if (value != null) {
+                    encoder.add(parameter.getName(), (String) value);
+                }
+            }
+            this.prefix = encoder.toByteArray();
+
+            this.names = new byte[variableNames.length][];
+            for (int ii = 0; ii < variableNames.length; ii++) {
+                encoder.reset();
+                encoder.add(variableNames[ii], "");
+                names[ii] = encoder.toByteArray();
+            }
+        }
+
+        void appendTo(final ParameterEncoder encoder, final String[] values) {
+            if (encoder.size() > 0) {
+                encoder.append(AMPERSAND);
+            }
+            encoder.append(prefix);
+
+            for (int ii = 0; ii < values.length; ii++) {
+                if (values[ii] != null) {
+                    encoder.append(AMPERSAND);
+                    encoder.append(names[ii]);
+                    encoder.encode(values[ii]);
+                }
+            }
+        }
+
+        int estimateSize(final String[] values) {
+            // Assume the values don't need much escaping, the encoder will grow if they do...
+            int size = prefix.length + 16;
+            for (int ii = 0; ii < values.length; ii++) {
+                if (values[ii] != null) {
+                    size += names[ii].length + 1 + values[ii].length();
+                }
+            }
+            return size;
+        }
+    }
+
+    /**
+     * The parameters for one execution of a {@link PreparedAction}. This is an unmodifiable set containing the action,
+     * the static parameters and the variable parameters. Looking up a parameter and iterating over the static ones don't
+     * create any parameters, only iterating over the variable ones does.
+     */
+    public static final class Parameters extends AbstractSet<ActionParameter<?>> {
+
+        private final PreparedAction preparedAction;
+
+        private final String[] values;
+
+        private Parameters(final PreparedAction preparedAction, final String[] values) {
+            this.preparedAction = preparedAction;
+            this.values = values;
+        }
+
+        /**
+         * @return The action these parameters are for
+         */
+        public PreparedAction getPreparedAction() {
+            return preparedAction;
+        }
+
+        /**
+         * Encodes the parameters as a URI query string, in the same way as <code>URIBuilder</code>, i.e. UTF-8 with
+         * spaces encoded as <code>%20</code>.
+         * @return The encoded query string, without a leading <code>?</code>
+         */
+        public String toQueryString() {
+            return encode(StandardCharsets.UTF_8, false).toString();
+        }
+
+        /**
+         * Encodes the parameters as a <code>application/x-www-form-urlencoded</code> body, in the same way as
+         * <code>WWWFormCodec</code>, i.e. with spaces encoded as <code>+</code>.
+         * @param charset The charset to encode the parameters with
+         * @return The encoded form body
+         */
+        public String toFormBody(final Charset charset) {
+            Validate.notNull(charset, "The charset must not be null.");
+            return encode(charset, true).toString();
+        }
+
+        /**
+         * Writes the encoded parameters to an encoder, separated from anything already written by an
+         * <code>&amp;</code>.
+         * @param encoder The encoder, whose charset and handling of spaces are used
+         */
+        public void appendTo(final ParameterEncoder encoder) {
+            preparedAction.getTemplate(encoder.getCharset(), encoder.isBlankAsPlus()).appendTo(encoder, values);
+        }
+
+        /**
+         * @param charset     The charset to encode the parameters with
+         * @param blankAsPlus Whether spaces are encoded as <code>+</code>
+         * @return A new encoder with the encoded parameters written to it, sized to fit them
+         */
+        public ParameterEncoder encode(final Charset charset, final boolean blankAsPlus) {
+            final Template template = preparedAction.getTemplate(charset, blankAsPlus);
+            final ParameterEncoder encoder = new ParameterEncoder(charset, blankAsPlus, template.estimateSize(values));
+            template.appendTo(encoder, values);
+            return encoder;
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            if ((o != null) && (o.getClass() == AciParameter.class)) {
+                // An AciParameter is equal to any other with the same name...
+                return preparedAction.names.get(((AciParameter) o).getName()) != null;
+            }
+
+            return super.contains(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return preparedAction.parametersHashCode;
+        }
+
+        @Override
+        public Iterator<ActionParameter<?>> iterator() {
+            return new Iterator<ActionParameter<?>>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size();
+                }
+
+                @Override
+                public ActionParameter<?> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    final List<ActionParameter<?>> staticParameters = preparedAction.staticParameters;
+                    final int index = next++;
+                    if (index < staticParameters.size()) {
+                        return staticParameters.get(index);
+                    }
+
+                    final int variable = index - staticParameters.size();
+                    return new AciParameter(preparedAction.variableNames[variable], values[variable]);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return preparedAction.staticParameters.size() + values.length;
+        }
+    }
+
+}
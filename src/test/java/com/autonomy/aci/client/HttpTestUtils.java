@@ -22,7 +22,7 @@ public class HttpTestUtils {
         when(mockHttpResponse.getEntity()).thenReturn(responseEntity);
 
         final HttpClient mockHttpClient = mock(HttpClient.class);
-        when(mockHttpClient.executeOpen(eq(null), any(ClassicHttpRequest.class), Mockito.<HttpContext>eq(null)))
+        when(mockHttpClient.executeOpen(eq(null), any(ClassicHttpRequest.class), Mockito.<HttpContext>any()))
                 .thenReturn(mockHttpResponse);
 
         return new HttpMocks(mockHttpClient, mockHttpResponse, responseEntity);
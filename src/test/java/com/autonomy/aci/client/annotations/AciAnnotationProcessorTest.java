@@ -0,0 +1,182 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.annotations;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.services.impl.StAXElementIterator;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * JUnit tests for <code>com.autonomy.aci.client.annotations.AciAnnotationProcessor</code>, and the processors it
+ * generates.
+ */
+public class AciAnnotationProcessorTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static AciResponseInputStream createResponse(final String resource) throws IOException {
+        try (final InputStream inputStream = AciAnnotationProcessorTest.class.getResourceAsStream(resource)) {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            inputStream.transferTo(buffer);
+            return new ByteArrayAciResponseInputStream(buffer.toByteArray(), 200, "text/xml", null, null);
+        }
+    }
+
+    @Test
+    public void testGeneratedProcessor() throws IOException {
+        final List<QueryHit> hits = new QueryHitProcessor().process(createResponse("/com/autonomy/aci/client/annotations/Query.xml"));
+        assertThat(hits, hasSize(2));
+
+        final QueryHit first = hits.get(0);
+        assertThat(first.reference, is(equalTo("http://www.example.com/one")));
+        assertThat(first.id, is(12));
+        assertThat(first.weight, is(88.5));
+        assertThat(first.section, is(0));
+        assertThat(first.database, is(equalTo("News")));
+        assertThat(first.categories, is(equalTo(Arrays.asList("politics", "economics"))));
+        assertThat(first.published, is(true));
+        assertThat(first.notBound, is(nullValue()));
+
+        final QueryHit second = hits.get(1);
+        assertThat(second.reference, is(equalTo("http://www.example.com/two")));
+        assertThat(second.id, is(13));
+        assertThat(second.weight, is(71.25));
+        assertThat(second.section, is(nullValue()));
+        assertThat(second.categories, is(nullValue()));
+        assertThat(second.published, is(false));
+    }
+
+    @Test
+    public void testNestedClass() throws IOException {
+        final List<QueryHit.Summary> summaries = new QueryHit_SummaryProcessor().process(createResponse("/com/autonomy/aci/client/annotations/Query.xml"));
+
+        assertThat(summaries.stream().map(summary -> summary.title).collect(Collectors.toList()),
+                is(equalTo(Arrays.asList("The first hit", "The second hit"))));
+    }
+
+    @Test
+    public void testNamespaceAware() throws IOException {
+        final QueryHitProcessor processor = new QueryHitProcessor();
+        processor.setNamespaceAware(true);
+
+        final List<QueryHit> hits = processor.process(createResponse("/com/autonomy/aci/client/annotations/Query.xml"));
+        assertThat(hits.stream().map(hit -> hit.id).collect(Collectors.toList()), is(equalTo(Arrays.asList(12, 13))));
+    }
+
+    @Test
+    public void testElementProcessor() throws IOException {
+        final List<String> references = new ArrayList<>();
+        try (final StAXElementIterator<QueryHit> hits = new StAXElementIterator<>(createResponse("/com/autonomy/aci/client/annotations/Query.xml"),
+                QueryHitProcessor.ELEMENT_NAME, new QueryHitProcessor.ElementProcessor())) {
+            hits.forEachRemaining(hit -> references.add(hit.reference));
+        }
+
+        assertThat(references, is(equalTo(Arrays.asList("http://www.example.com/one", "http://www.example.com/two"))));
+    }
+
+    @Test
+    public void testErrorResponse() throws IOException {
+        try {
+            new QueryHitProcessor().process(createResponse("/AciException-1.xml"));
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getErrorId(), is(equalTo("AutonomyIDOLServerWOBBLE1")));
+        }
+    }
+
+    @Test
+    public void testBadNumber() {
+        final String xml = "<autnresponse><response>SUCCESS</response><responsedata><autn:hit><autn:id>twelve</autn:id></autn:hit></responsedata></autnresponse>";
+
+        try {
+            new QueryHitProcessor().process(new ByteArrayAciResponseInputStream(xml.getBytes(StandardCharsets.UTF_8), 200, "text/xml", null, null));
+            fail("Should have thrown a ProcessorException.");
+        } catch (final ProcessorException pe) {
+            assertThat(pe.getCause(), is(instanceOf(NumberFormatException.class)));
+        }
+    }
+
+    @Test
+    public void testInvalidClasses() throws IOException {
+        assertThat(compile("Private", "@AciDocument(\"hit\") public class Private { @AciField(\"a\") private String a; }"),
+                contains(containsString("can't be private, final or static")));
+        assertThat(compile("Unsupported", "@AciDocument(\"hit\") public class Unsupported { @AciField(\"a\") Object a; @AciField(\"b\") char b; }"),
+                contains(containsString("must be a String"), containsString("must be a String")));
+        assertThat(compile("Paths", "@AciDocument(\"hit\") public class Paths { @AciField(\"a\") String a; @AciField(\"a/b\") String b; @AciField(\"c//d\") String c; @AciField(\"@e\") String e; }"),
+                contains(containsString("goes through the element that a is bound to"), containsString("must be element names"), containsString("must be element names")));
+        assertThat(compile("Constructor", "@AciDocument(\"hit\") public class Constructor { Constructor(String a) {} }"),
+                contains(containsString("constructor with no arguments")));
+        assertThat(compile("Inner", "public class Inner { @AciDocument(\"hit\") class Hit {} }"),
+                contains(containsString("must be static")));
+    }
+
+    @Test
+    public void testValidClass() throws IOException {
+        assertThat(compile("Valid", "@AciDocument(\"autn:hit\") public class Valid { @AciField(\"a/b\") long b; @AciField(\"a/c\") List<Integer> c; }"),
+                is(empty()));
+    }
+
+    /**
+     * Compiles a class in the default package with this processor, and returns the errors.
+     */
+    private List<String> compile(final String className, final String source) throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + className + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+                return "import com.autonomy.aci.client.annotations.*; import java.util.List; " + source;
+            }
+        };
+
+        final JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-d", folder.newFolder().getPath(), "-classpath", System.getProperty("java.class.path"), "-proc:only"),
+                null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new AciAnnotationProcessor()));
+        task.call();
+
+        return diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(null))
+                .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.annotations;
+
+import java.util.List;
+
+/**
+ * A <code>Query</code> response hit, bound by the generated <code>QueryHitProcessor</code>.
+ */
+@AciDocument("autn:hit")
+public class QueryHit {
+
+    @AciField("autn:reference")
+    String reference;
+
+    @AciField("autn:id")
+    int id;
+
+    @AciField("autn:weight")
+    double weight;
+
+    @AciField("autn:section")
+    Integer section;
+
+    @AciField("autn:database")
+    String database;
+
+    @AciField("autn:content/DOCUMENT/CATEGORY")
+    List<String> categories;
+
+    @AciField("autn:content/DOCUMENT/PUBLISHED")
+    boolean published;
+
+    String notBound;
+
+    @AciDocument("autn:hit")
+    static class Summary {
+
+        @AciField("autn:title")
+        String title;
+
+    }
+
+}
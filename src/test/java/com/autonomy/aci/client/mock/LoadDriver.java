@@ -0,0 +1,228 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.mock;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.AciService;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.transport.ActionParameter;
+import com.autonomy.aci.client.transport.impl.LatencyHistogram;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives an <code>AciService</code>, typically an <code>AciServiceImpl</code> pointed at a {@link MockAciServer}, with
+ * a fixed number of requests for the same action, and reports their throughput and latency percentiles.
+ * <p>
+ * There are two ways to apply load:
+ * <ul>
+ *     <li>{@link #runAtConcurrency(int, int)} keeps a fixed number of requests in flight, each thread sending its next
+ *     request as soon as the last one completes, which finds the maximum throughput</li>
+ *     <li>{@link #runAtRate(double, int, int)} sends requests at a fixed arrival rate regardless of how quickly they
+ *     complete, which is how real traffic behaves. Latency is measured from when each request was due to be sent, so
+ *     that requests delayed behind slow ones are counted as slow rather than hidden</li>
+ * </ul>
+ */
+public class LoadDriver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadDriver.class);
+
+    private final AciService aciService;
+
+    private final Set<? extends ActionParameter<?>> parameters;
+
+    private final Processor<?> processor;
+
+    /**
+     * Creates a driver that sends the same request again and again.
+     * @param aciService The service to drive
+     * @param parameters The parameters of the request
+     * @param processor  The processor for the responses
+     */
+    public LoadDriver(final AciService aciService, final Set<? extends ActionParameter<?>> parameters, final Processor<?> processor) {
+        this.aciService = Validate.notNull(aciService, "aciService must not be null");
+        this.parameters = Validate.notNull(parameters, "parameters must not be null");
+        this.processor = Validate.notNull(processor, "processor must not be null");
+    }
+
+    /**
+     * Sends requests from a fixed number of threads, each sending its next request as soon as its last completes.
+     * @param concurrency The number of requests in flight at once
+     * @param requests    The total number of requests to send
+     * @return The results
+     * @throws InterruptedException If interrupted while waiting for the requests to complete
+     */
+    public Report runAtConcurrency(final int concurrency, final int requests) throws InterruptedException {
+        LOGGER.trace("runAtConcurrency() called...");
+        return run(concurrency, requests, 0L);
+    }
+
+    /**
+     * Sends requests at a fixed rate, for as long as it takes to send <code>requests</code> of them.
+     * @param requestsPerSecond The arrival rate
+     * @param requests          The total number of requests to send
+     * @param maxConcurrency    The most requests in flight at once. If the service can't keep up, requests queue and
+     *                          their latency grows
+     * @return The results
+     * @throws InterruptedException If interrupted while waiting for the requests to complete
+     */
+    public Report runAtRate(final double requestsPerSecond, final int requests, final int maxConcurrency) throws InterruptedException {
+        LOGGER.trace("runAtRate() called...");
+
+        Validate.isTrue(requestsPerSecond > 0, "requestsPerSecond must be positive");
+        return run(maxConcurrency, requests, Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond)));
+    }
+
+    private Report run(final int threads, final int requests, final long intervalNanos) throws InterruptedException {
+        Validate.isTrue(threads > 0, "concurrency must be positive");
+        Validate.isTrue(requests > 0, "requests must be positive");
+
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicLong aciErrors = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final long start = System.nanoTime();
+
+        final Runnable worker = () -> {
+            for (int request = next.getAndIncrement(); request < requests; request = next.getAndIncrement()) {
+                long sent = System.nanoTime();
+
+                if (intervalNanos > 0) {
+                    // Wait until this request is due, then time it from then even if we're running late...
+                    final long due = start + request * intervalNanos;
+                    if (due > sent) {
+                        try {
+                            TimeUnit.NANOSECONDS.sleep(due - sent);
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                    sent = due;
+                }
+
+                try {
+                    aciService.executeAction(parameters, processor);
+                } catch (final AciErrorException e) {
+                    aciErrors.incrementAndGet();
+                } catch (final RuntimeException e) {
+                    LOGGER.debug("Request failed", e);
+                    failures.incrementAndGet();
+                }
+
+                latencies.record(System.nanoTime() - sent);
+            }
+        };
+
+        final List<Thread> workers = new ArrayList<>(threads);
+        for (int ii = 0; ii < threads; ii++) {
+            final Thread thread = new Thread(worker, "load-driver-" + ii);
+            workers.add(thread);
+            thread.start();
+        }
+
+        try {
+            for (final Thread thread : workers) {
+                thread.join();
+            }
+        } catch (final InterruptedException e) {
+            workers.forEach(Thread::interrupt);
+            throw e;
+        }
+
+        final Report report = new Report(latencies, aciErrors.get(), failures.get(), System.nanoTime() - start);
+        LOGGER.debug("Load test complete: {}", report);
+        return report;
+    }
+
+    /**
+     * The results of a load test.
+     */
+    public static final class Report {
+
+        private final LatencyHistogram latencies;
+
+        private final long aciErrors;
+
+        private final long failures;
+
+        private final long elapsedNanos;
+
+        private Report(final LatencyHistogram latencies, final long aciErrors, final long failures, final long elapsedNanos) {
+            this.latencies = latencies;
+            this.aciErrors = aciErrors;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return The latency of every request, successful or not
+         */
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * @return The number of requests that were sent
+         */
+        public long getRequests() {
+            return latencies.getCount();
+        }
+
+        /**
+         * @return The number of requests that got an ACI error response
+         */
+        public long getAciErrors() {
+            return aciErrors;
+        }
+
+        /**
+         * @return The number of requests that failed for any other reason, such as a timeout or a connection failure
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return How long the whole test took, in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return The number of requests completed per second
+         */
+        public double getThroughput() {
+            return getRequests() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d, aciErrors=%d, failures=%d, throughput=%.1f/s, latency: %s",
+                    getRequests(), aciErrors, failures, getThroughput(), latencies);
+        }
+
+    }
+
+}
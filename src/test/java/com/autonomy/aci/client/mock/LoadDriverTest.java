@@ -0,0 +1,122 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.mock;
+
+import com.autonomy.aci.client.TestEncryptionCodec;
+import com.autonomy.aci.client.services.impl.AciServiceImpl;
+import com.autonomy.aci.client.services.impl.DocumentProcessor;
+import com.autonomy.aci.client.transport.impl.AciHttpClientImpl;
+import com.autonomy.aci.client.transport.impl.HttpClient5Factory;
+import com.autonomy.aci.client.util.ActionParameters;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class LoadDriverTest {
+
+    private MockAciServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new MockAciServer(8);
+        server.setDefaultResponse(MockResponse.generated("QUERY", 16 * 1024));
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    private LoadDriver createDriver(final int maxConnections) {
+        final HttpClient5Factory factory = new HttpClient5Factory();
+        factory.setMaxConnectionsPerRoute(maxConnections);
+        factory.setMaxTotalConnections(maxConnections);
+
+        final AciServiceImpl service = new AciServiceImpl(new AciHttpClientImpl(factory.createInstance()), server.getServerDetails());
+        return new LoadDriver(service, new ActionParameters("query"), new DocumentProcessor());
+    }
+
+    @Test
+    public void testRunAtConcurrency() throws InterruptedException {
+        final LoadDriver.Report report = createDriver(4).runAtConcurrency(4, 200);
+
+        assertThat(report.getRequests(), is(200L));
+        assertThat(report.getAciErrors(), is(0L));
+        assertThat(report.getFailures(), is(0L));
+        assertThat(report.getThroughput(), is(greaterThan(0.0)));
+        assertThat(server.getRequestCount(), is(200L));
+    }
+
+    @Test
+    public void testRunAtRate() throws InterruptedException {
+        server.setLatency(10L);
+
+        // 50 requests at 200/s should take about a quarter of a second...
+        final LoadDriver.Report report = createDriver(8).runAtRate(200, 50, 8);
+
+        assertThat(report.getRequests(), is(50L));
+        assertThat(report.getElapsedNanos(), is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(245))));
+        assertThat(report.getLatencies().getPercentile(50), is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(10))));
+    }
+
+    @Test
+    public void testPoolLimitsQueueRequests() throws InterruptedException {
+        server.setLatency(50L);
+
+        // With a single pooled connection, 4 threads have to take turns, so the median request waits behind others...
+        final LoadDriver.Report report = createDriver(1).runAtConcurrency(4, 20);
+
+        assertThat(report.getRequests(), is(20L));
+        assertThat(report.getElapsedNanos(), is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20 * 50))));
+        assertThat(report.getLatencies().getPercentile(50), is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(150))));
+    }
+
+    @Test
+    public void testErrorsAreCounted() throws InterruptedException {
+        server.setErrorRate(0.5);
+
+        final LoadDriver.Report report = createDriver(4).runAtConcurrency(4, 100);
+
+        assertThat(report.getRequests(), is(100L));
+        assertThat(report.getAciErrors(), is(server.getErrorCount()));
+        assertThat(report.getFailures(), is(0L));
+    }
+
+    @Test
+    public void testEncryptedServer() throws InterruptedException {
+        server.setEncryptionCodec(new TestEncryptionCodec());
+
+        final LoadDriver.Report report = createDriver(4).runAtConcurrency(4, 50);
+
+        assertThat(report.getRequests(), is(50L));
+        assertThat(report.getAciErrors() + report.getFailures(), is(0L));
+    }
+
+    @Test
+    public void testServerStopped() throws InterruptedException {
+        final LoadDriver driver = createDriver(2);
+        server.close();
+
+        final LoadDriver.Report report = driver.runAtConcurrency(2, 10);
+        assertThat(report.getFailures(), is(10L));
+    }
+
+}
@@ -0,0 +1,456 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.mock;
+
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.EncryptionCodec;
+import com.autonomy.aci.client.transport.EncryptionCodecException;
+import com.autonomy.aci.client.util.EncryptionCodecUtils;
+import com.autonomy.aci.client.util.IOUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An embedded ACI server for local load tests, built on the JDK's HTTP server so it needs no extra dependencies. It
+ * answers <code>GET</code>, <code>POST</code> and multipart requests, including encrypted ones, with the
+ * {@link MockResponse} configured for the action, falling back to a default response for any other action.
+ * <p>
+ * The server can also simulate a real one under load:
+ * <ul>
+ *     <li><code>latency</code> and <code>latencyJitter</code> delay each response before its first byte</li>
+ *     <li><code>bytesPerSecond</code> throttles how fast each response body is written</li>
+ *     <li><code>errorRate</code> is the fraction of requests that get an ACI error response</li>
+ *     <li><code>encryptionCodec</code> decrypts requests and encrypts responses as an encrypted ACI server would</li>
+ * </ul>
+ * All of these can be changed while the server is running.
+ */
+public class MockAciServer implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MockAciServer.class);
+
+    /**
+     * The size of the blocks that responses are encrypted in.
+     */
+    private static final int ENCRYPTED_BLOCK_SIZE = 64 * 1024;
+
+    private static final int WRITE_CHUNK_SIZE = 8192;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final ConcurrentMap<String, MockResponse> responses = new ConcurrentHashMap<>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    private final Set<InetSocketAddress> clients = ConcurrentHashMap.newKeySet();
+
+    private volatile MockResponse defaultResponse = MockResponse.generated("QUERY", 4096);
+
+    private volatile long latency;
+
+    private volatile long latencyJitter;
+
+    private volatile long bytesPerSecond;
+
+    private volatile double errorRate;
+
+    private volatile EncryptionCodec encryptionCodec;
+
+    /**
+     * Creates and starts a server on an ephemeral port that handles up to 16 requests at once.
+     * @throws IOException If the server couldn't be started
+     */
+    public MockAciServer() throws IOException {
+        this(16);
+    }
+
+    /**
+     * Creates and starts a server on an ephemeral port.
+     * @param threads The number of requests the server handles at once, like the ACI server's <code>Threads</code>
+     * @throws IOException If the server couldn't be started
+     */
+    public MockAciServer(final int threads) throws IOException {
+        Validate.isTrue(threads > 0, "threads must be positive");
+
+        executor = Executors.newFixedThreadPool(threads);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+
+        LOGGER.debug("Mock ACI server started on port {}...", getPort());
+    }
+
+    /**
+     * @return The port the server is listening on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return Details for connecting to this server, including the encryption codec if there is one
+     */
+    public AciServerDetails getServerDetails() {
+        final AciServerDetails serverDetails = new AciServerDetails(server.getAddress().getHostString(), getPort());
+        serverDetails.setEncryptionCodec(encryptionCodec);
+        return serverDetails;
+    }
+
+    /**
+     * Sets the response for an action.
+     * @param action   The action, which is case insensitive
+     * @param response The response to serve
+     */
+    public void setResponse(final String action, final MockResponse response) {
+        Validate.notNull(action, "action must not be null");
+        Validate.notNull(response, "response must not be null");
+        responses.put(action.toLowerCase(Locale.ENGLISH), response);
+    }
+
+    /**
+     * Sets the response for any action that doesn't have one of its own, which is a generated 4KB query response by
+     * default.
+     * @param defaultResponse The response to serve
+     */
+    public void setDefaultResponse(final MockResponse defaultResponse) {
+        Validate.notNull(defaultResponse, "defaultResponse must not be null");
+        this.defaultResponse = defaultResponse;
+    }
+
+    /**
+     * @return The number of requests that have been received
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return The number of requests that were sent an injected error response
+     */
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * @return The number of response body bytes that have been written to clients, which stops growing once a client
+     * closes its connection part way through a response
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Waits until no more response body bytes are being written, e.g. after a client has closed its connection part way
+     * through a response.
+     * @return The number of response body bytes that have been written
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public long awaitWritesStopped() throws InterruptedException {
+        long written = bytesWritten.get();
+        while (true) {
+            Thread.sleep(250L);
+            final long now = bytesWritten.get();
+            if (now == written) {
+                return written;
+            }
+            written = now;
+        }
+    }
+
+    /**
+     * @return The number of connections that requests have been received on, which only grows by one for a series of
+     * requests if the client reuses its connection
+     */
+    public int getConnectionCount() {
+        return clients.size();
+    }
+
+    /**
+     * Stops the server immediately, dropping any requests in progress.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+
+        LOGGER.debug("Mock ACI server on port {} stopped...", getPort());
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            requestCount.incrementAndGet();
+            clients.add(exchange.getRemoteAddress());
+
+            final String action = getAction(exchange);
+            MockResponse response = responses.getOrDefault(action.toLowerCase(Locale.ENGLISH), defaultResponse);
+
+            if ((errorRate > 0) && (ThreadLocalRandom.current().nextDouble() < errorRate)) {
+                errorCount.incrementAndGet();
+                response = MockResponse.error(action.toUpperCase(Locale.ENGLISH));
+            }
+
+            delay();
+            send(exchange, response);
+        } catch (final EncryptionCodecException | RuntimeException e) {
+            LOGGER.error("Mock ACI server failed to handle a request", e);
+            exchange.sendResponseHeaders(500, -1);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String getAction(final HttpExchange exchange) throws IOException, EncryptionCodecException {
+        final Map<String, String> parameters = new HashMap<>();
+        parse(exchange.getRequestURI().getRawQuery(), parameters);
+
+        // POST bodies are form encoded, even though they're sent as text/plain...
+        final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if ("POST".equals(exchange.getRequestMethod()) && ((contentType == null) || !contentType.startsWith("multipart/"))) {
+            parse(new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8), parameters);
+        }
+
+        final EncryptionCodec codec = encryptionCodec;
+        if ((codec != null) && "encrypted".equalsIgnoreCase(parameters.get("action"))) {
+            parse(EncryptionCodecUtils.getInstance().decrypt(codec, parameters.get("data"), "UTF-8"), parameters);
+        }
+
+        final String action = parameters.get("action");
+        return (action == null) ? "" : action;
+    }
+
+    private static void parse(final String query, final Map<String, String> parameters) {
+        if ((query == null) || query.isEmpty()) {
+            return;
+        }
+
+        for (final String pair : query.split("&")) {
+            final int equals = pair.indexOf('=');
+            final String name = (equals < 0) ? pair : pair.substring(0, equals);
+            final String value = (equals < 0) ? "" : pair.substring(equals + 1);
+            parameters.put(
+                    URLDecoder.decode(name, StandardCharsets.UTF_8).toLowerCase(Locale.ENGLISH),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8)
+            );
+        }
+    }
+
+    private void delay() throws InterruptedException {
+        final long jitter = latencyJitter;
+        final long millis = latency + ((jitter > 0) ? ThreadLocalRandom.current().nextLong(-jitter, jitter + 1) : 0);
+
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private void send(final HttpExchange exchange, final MockResponse response) throws IOException, EncryptionCodecException, InterruptedException {
+        final byte[] body;
+        final EncryptionCodec codec = encryptionCodec;
+
+        if (codec == null) {
+            body = response.getBody();
+            exchange.getResponseHeaders().set("Content-Type", response.getContentType());
+        } else {
+            body = encrypt(response, codec);
+            exchange.getResponseHeaders().set("Content-Type", "text/xml");
+            exchange.getResponseHeaders().set("AUTN-Content-Type", response.getContentType());
+        }
+
+        exchange.sendResponseHeaders(200, body.length);
+
+        final long limit = bytesPerSecond;
+        final long start = System.nanoTime();
+
+        try (final OutputStream outputStream = exchange.getResponseBody()) {
+            for (int offset = 0; offset < body.length; offset += WRITE_CHUNK_SIZE) {
+                if (limit > 0) {
+                    // Wait until we're allowed to have written this much...
+                    final long due = start + TimeUnit.SECONDS.toNanos(1) * offset / limit;
+                    final long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+
+                final int length = Math.min(WRITE_CHUNK_SIZE, body.length - offset);
+                outputStream.write(body, offset, length);
+                bytesWritten.addAndGet(length);
+            }
+        }
+    }
+
+    /**
+     * Encrypts a response as an encrypted ACI server would, with the header and the response data of an
+     * <code>autnresponse</code>, or the whole of binary content, in separately encrypted blocks.
+     */
+    private static byte[] encrypt(final MockResponse response, final EncryptionCodec codec) throws EncryptionCodecException {
+        final StringBuilder builder = new StringBuilder("<?xml version='1.0' encoding='UTF-8' ?><autnresponse xmlns:autn='http://schemas.autonomy.com/aci/'>");
+
+        if (response.isXml()) {
+            final String xml = new String(response.getBody(), StandardCharsets.UTF_8);
+            final int headerStart = xml.indexOf('>', xml.indexOf("<autnresponse")) + 1;
+            final int dataStart = xml.indexOf("<responsedata>");
+            final int dataEnd = xml.lastIndexOf("</responsedata>");
+
+            builder.append("<autn:encryptedheader>")
+                    .append(encrypt(xml.substring(headerStart, dataStart).getBytes(StandardCharsets.UTF_8), codec))
+                    .append("</autn:encryptedheader><responsedata>");
+            appendBlocks(builder, xml.substring(dataStart + "<responsedata>".length(), dataEnd).getBytes(StandardCharsets.UTF_8), codec);
+        } else {
+            builder.append("<responsedata>");
+            appendBlocks(builder, response.getBody(), codec);
+        }
+
+        return builder.append("</responsedata></autnresponse>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendBlocks(final StringBuilder builder, final byte[] content, final EncryptionCodec codec) throws EncryptionCodecException {
+        for (int offset = 0; offset < content.length; offset += ENCRYPTED_BLOCK_SIZE) {
+            final int length = Math.min(ENCRYPTED_BLOCK_SIZE, content.length - offset);
+            final byte[] block = new byte[length];
+            System.arraycopy(content, offset, block, 0, length);
+            builder.append("<autn:encrypteddata>").append(encrypt(block, codec)).append("</autn:encrypteddata>");
+        }
+    }
+
+    private static String encrypt(final byte[] bytes, final EncryptionCodec codec) throws EncryptionCodecException {
+        return new String(codec.encrypt(bytes), StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] readAll(final InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        IOUtils.getInstance().copy(inputStream, buffer);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Getter for property latency.
+     * @return Value of property latency, in milliseconds
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    /**
+     * Setter for property latency, the time to wait before sending each response.
+     * @param latency New value of property latency, in milliseconds
+     */
+    public void setLatency(final long latency) {
+        Validate.isTrue(latency >= 0, "latency must not be negative");
+        this.latency = latency;
+    }
+
+    /**
+     * Getter for property latencyJitter.
+     * @return Value of property latencyJitter, in milliseconds
+     */
+    public long getLatencyJitter() {
+        return latencyJitter;
+    }
+
+    /**
+     * Setter for property latencyJitter, the most the latency varies by either way, uniformly at random.
+     * @param latencyJitter New value of property latencyJitter, in milliseconds
+     */
+    public void setLatencyJitter(final long latencyJitter) {
+        Validate.isTrue(latencyJitter >= 0, "latencyJitter must not be negative");
+        this.latencyJitter = latencyJitter;
+    }
+
+    /**
+     * Getter for property bytesPerSecond.
+     * @return Value of property bytesPerSecond
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Setter for property bytesPerSecond, the rate each response body is written at, or <code>0</code> for as fast
+     * as possible.
+     * @param bytesPerSecond New value of property bytesPerSecond
+     */
+    public void setBytesPerSecond(final long bytesPerSecond) {
+        Validate.isTrue(bytesPerSecond >= 0, "bytesPerSecond must not be negative");
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Getter for property errorRate.
+     * @return Value of property errorRate
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Setter for property errorRate, the fraction of requests that are sent an ACI error response.
+     * @param errorRate New value of property errorRate, between <code>0</code> and <code>1</code>
+     */
+    public void setErrorRate(final double errorRate) {
+        Validate.isTrue((errorRate >= 0) && (errorRate <= 1), "errorRate must be between 0 and 1");
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Getter for property encryptionCodec.
+     * @return Value of property encryptionCodec
+     */
+    public EncryptionCodec getEncryptionCodec() {
+        return encryptionCodec;
+    }
+
+    /**
+     * Setter for property encryptionCodec, which makes the server behave as an encrypted ACI server would. Set it
+     * before calling {@link #getServerDetails()}.
+     * @param encryptionCodec New value of property encryptionCodec, or <code>null</code> for an unencrypted server
+     */
+    public void setEncryptionCodec(final EncryptionCodec encryptionCodec) {
+        this.encryptionCodec = encryptionCodec;
+    }
+
+}
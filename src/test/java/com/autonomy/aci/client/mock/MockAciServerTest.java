@@ -0,0 +1,157 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.mock;
+
+import com.autonomy.aci.client.TestEncryptionCodec;
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.impl.AciServiceImpl;
+import com.autonomy.aci.client.services.impl.BinaryResponseProcessor;
+import com.autonomy.aci.client.services.impl.DocumentProcessor;
+import com.autonomy.aci.client.transport.impl.AciHttpClientImpl;
+import com.autonomy.aci.client.transport.impl.HttpClient5Factory;
+import com.autonomy.aci.client.util.ActionParameters;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MockAciServerTest {
+
+    private MockAciServer server;
+
+    private AciHttpClientImpl aciHttpClient;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new MockAciServer();
+        aciHttpClient = new AciHttpClientImpl(new HttpClient5Factory().createInstance());
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    private AciServiceImpl createService() {
+        return new AciServiceImpl(aciHttpClient, server.getServerDetails());
+    }
+
+    @Test
+    public void testRecordedResponse() throws IOException {
+        server.setResponse("GetVersion", MockResponse.resource("/GetVersion.xml"));
+
+        final Document document = createService().executeAction(new ActionParameters("getversion"), new DocumentProcessor());
+        assertThat(document.getElementsByTagName("action").item(0).getTextContent(), is(equalTo("GETVERSION")));
+        assertThat(server.getRequestCount(), is(1L));
+    }
+
+    @Test
+    public void testDefaultResponse() {
+        server.setDefaultResponse(MockResponse.generated("QUERY", 100 * 1024));
+
+        final Document document = createService().executeAction(new ActionParameters("query"), new DocumentProcessor());
+        assertThat(document.getElementsByTagName("autn:hit").getLength(), is(greaterThan(10)));
+    }
+
+    @Test
+    public void testPostRequest() throws IOException {
+        server.setResponse("GetVersion", MockResponse.resource("/GetVersion.xml"));
+        aciHttpClient.setUsePostMethod(true);
+
+        final Document document = createService().executeAction(new ActionParameters("GetVersion"), new DocumentProcessor());
+        assertThat(document.getElementsByTagName("action").item(0).getTextContent(), is(equalTo("GETVERSION")));
+    }
+
+    @Test
+    public void testBinaryResponse() {
+        final byte[] content = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0, 1, 2, 3};
+        server.setResponse("View", MockResponse.binary(content, "image/jpeg"));
+
+        final byte[] bytes = createService().executeAction(new ActionParameters("View"), new BinaryResponseProcessor());
+        assertThat(bytes, is(equalTo(content)));
+    }
+
+    @Test
+    public void testEncryptedResponses() throws IOException {
+        final byte[] content = new byte[200 * 1024];
+        content[content.length - 1] = 42;
+
+        server.setEncryptionCodec(new TestEncryptionCodec());
+        server.setResponse("GetVersion", MockResponse.resource("/GetVersion.xml"));
+        server.setResponse("View", MockResponse.binary(content, "image/jpeg"));
+
+        final AciServiceImpl service = createService();
+
+        final Document document = service.executeAction(new ActionParameters("GetVersion"), new DocumentProcessor());
+        assertThat(document.getElementsByTagName("action").item(0).getTextContent(), is(equalTo("GETVERSION")));
+
+        // Binary content is bigger than a block, so is spread over several...
+        final byte[] bytes = service.executeAction(new ActionParameters("View"), new BinaryResponseProcessor());
+        assertThat(bytes, is(equalTo(content)));
+    }
+
+    @Test
+    public void testErrorRate() {
+        server.setErrorRate(1.0);
+
+        try {
+            createService().executeAction(new ActionParameters("query"), new DocumentProcessor());
+            fail("Should have thrown an AciErrorException...");
+        } catch (final AciErrorException e) {
+            assertThat(e.getErrorId(), is(equalTo("MOCKACI001")));
+        }
+
+        assertThat(server.getErrorCount(), is(1L));
+    }
+
+    @Test
+    public void testLatencyAndThroughput() {
+        server.setLatency(100L);
+        server.setBytesPerSecond(64 * 1024);
+        server.setDefaultResponse(MockResponse.generated("QUERY", 32 * 1024));
+
+        // 100ms of latency and at least 0.4s to write 32KB at 64KB/s...
+        final long start = System.nanoTime();
+        createService().executeAction(new ActionParameters("query"), new DocumentProcessor());
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(greaterThanOrEqualTo(500L)));
+    }
+
+    @Test
+    public void testBytesWrittenAndConnectionCount() {
+        final MockResponse response = MockResponse.generated("QUERY", 8 * 1024);
+        server.setDefaultResponse(response);
+
+        // Both requests should be sent on the same pooled connection...
+        final AciServiceImpl service = createService();
+        service.executeAction(new ActionParameters("query"), new DocumentProcessor());
+        service.executeAction(new ActionParameters("query"), new DocumentProcessor());
+
+        assertThat(server.getBytesWritten(), is(2L * response.getBody().length));
+        assertThat(server.getConnectionCount(), is(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidErrorRate() {
+        server.setErrorRate(1.5);
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.mock;
+
+import com.autonomy.aci.client.util.IOUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * A response that the <code>MockAciServer</code> serves for an action, either an <code>autnresponse</code> or binary
+ * content. Responses are immutable, so can be shared between actions and servers.
+ */
+public final class MockResponse {
+
+    private static final String[] WORDS = {
+            "autonomy", "idol", "content", "index", "query", "document", "field", "reference", "weight", "summary",
+            "database", "cluster", "category", "language", "sentiment", "entity", "concept", "relevance", "archive"
+    };
+
+    private final byte[] body;
+
+    private final String contentType;
+
+    private MockResponse(final byte[] body, final String contentType) {
+        this.body = body;
+        this.contentType = contentType;
+    }
+
+    /**
+     * @param xml A complete <code>autnresponse</code>
+     * @return A response that serves it
+     */
+    public static MockResponse xml(final String xml) {
+        return new MockResponse(xml.getBytes(StandardCharsets.UTF_8), "text/xml");
+    }
+
+    /**
+     * @param resource The classpath location of a recorded <code>autnresponse</code>, e.g. <code>/GetVersion.xml</code>
+     * @return A response that serves it
+     * @throws IOException If the resource couldn't be read
+     */
+    public static MockResponse resource(final String resource) throws IOException {
+        try (final InputStream inputStream = MockResponse.class.getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new IOException("No such resource: " + resource);
+            }
+
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            IOUtils.getInstance().copy(inputStream, buffer);
+            return new MockResponse(buffer.toByteArray(), "text/xml");
+        }
+    }
+
+    /**
+     * Generates a successful response of roughly <code>size</code> bytes, filled with query hits. The same size always
+     * generates the same response.
+     * @param action The action name to put in the response
+     * @param size   The approximate size of the response in bytes
+     * @return The response
+     */
+    public static MockResponse generated(final String action, final int size) {
+        final Random random = new Random(size);
+        final StringBuilder data = new StringBuilder();
+
+        for (int hit = 1; data.length() < size; hit++) {
+            data.append("<autn:hit><autn:reference>http://mock/").append(hit).append("</autn:reference>")
+                    .append("<autn:id>").append(hit).append("</autn:id>")
+                    .append("<autn:weight>").append(random.nextInt(10000) / 100.0).append("</autn:weight>")
+                    .append("<autn:title>").append(words(random, 6)).append("</autn:title>")
+                    .append("<autn:content><DOCUMENT><DRECONTENT>").append(words(random, 64))
+                    .append("</DRECONTENT></DOCUMENT></autn:content></autn:hit>");
+        }
+
+        return xml(success(action, data.toString()));
+    }
+
+    /**
+     * @param content     The binary content, e.g. an image
+     * @param contentType Its content type
+     * @return A response that serves it
+     */
+    public static MockResponse binary(final byte[] content, final String contentType) {
+        return new MockResponse(content.clone(), contentType);
+    }
+
+    /**
+     * @param action The action name to put in the response
+     * @return A typical ACI error response
+     */
+    public static MockResponse error(final String action) {
+        return xml("<?xml version='1.0' encoding='UTF-8' ?><autnresponse xmlns:autn='http://schemas.autonomy.com/aci/'>"
+                + "<action>" + action + "</action><response>ERROR</response><responsedata><error>"
+                + "<errorid>MOCKACI001</errorid><rawerrorid>0x1</rawerrorid>"
+                + "<errorstring>Mock error</errorstring><errordescription>An error injected by the mock ACI server</errordescription>"
+                + "<errorcode>ERRORMOCK</errorcode><errortime>01 Jan 24 12:00:00</errortime>"
+                + "</error></responsedata></autnresponse>");
+    }
+
+    private static String success(final String action, final String data) {
+        return "<?xml version='1.0' encoding='UTF-8' ?><autnresponse xmlns:autn='http://schemas.autonomy.com/aci/'>"
+                + "<action>" + action + "</action><response>SUCCESS</response><responsedata>" + data
+                + "</responsedata></autnresponse>";
+    }
+
+    private static String words(final Random random, final int count) {
+        final StringBuilder builder = new StringBuilder();
+        for (int ii = 0; ii < count; ii++) {
+            if (ii > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    boolean isXml() {
+        return contentType.startsWith("text/xml");
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.JsonProcessor;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import com.autonomy.aci.client.util.JsonTokenizer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * JUnit tests for <code>com.autonomy.aci.client.services.impl.AbstractJsonProcessor</code>.
+ */
+public class AbstractJsonProcessorTest {
+
+    /**
+     * Returns the references of the hits in a response.
+     */
+    private static class ReferenceProcessor extends AbstractJsonProcessor<List<String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public List<String> process(final JsonTokenizer aciResponse) {
+            try {
+                if (isErrorResponse(aciResponse)) {
+                    processErrorResponse(aciResponse);
+                }
+
+                final List<String> references = new ArrayList<>();
+                while (aciResponse.hasNext()) {
+                    if ((aciResponse.next() == JsonTokenizer.Token.FIELD_NAME) && aciResponse.textEquals("autn:reference")) {
+                        aciResponse.next();
+                        references.add(aciResponse.getText());
+                    }
+                }
+                return references;
+            } catch (final IOException ioe) {
+                throw new ProcessorException(ioe);
+            }
+        }
+
+    }
+
+    static AciResponseInputStream createResponse(final String resource, final String contentType) throws IOException {
+        try (final InputStream inputStream = AbstractJsonProcessorTest.class.getResourceAsStream(resource)) {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            inputStream.transferTo(buffer);
+            return new ByteArrayAciResponseInputStream(buffer.toByteArray(), 200, contentType, null, null);
+        }
+    }
+
+    @Test
+    public void testProcess() throws IOException {
+        final List<String> references = new ReferenceProcessor().process(createResponse("/Query.json", "application/json; charset=UTF-8"));
+        assertThat(references, is(equalTo(Arrays.asList("http://www.example.com/one", "http://www.example.com/two", "http://www.example.com/three"))));
+    }
+
+    @Test
+    public void testCharset() {
+        final String json = "{\"autnresponse\": {\"response\": \"SUCCESS\", \"responsedata\": {\"autn:hit\": {\"autn:reference\": \"café\"}}}}";
+        final AciResponseInputStream response = new ByteArrayAciResponseInputStream(json.getBytes(StandardCharsets.ISO_8859_1), 200, "text/json; charset=ISO-8859-1", null, null);
+
+        assertThat(new ReferenceProcessor().process(response), is(equalTo(Arrays.asList("café"))));
+    }
+
+    @Test
+    public void testGetCharset() {
+        assertThat(AbstractJsonProcessor.getCharset("application/json"), is(StandardCharsets.UTF_8));
+        assertThat(AbstractJsonProcessor.getCharset("application/json; charset=UTF-16"), is(StandardCharsets.UTF_16));
+        assertThat(AbstractJsonProcessor.getCharset("application/json; charset=nonsense"), is(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testErrorResponse() throws IOException {
+        try {
+            new ReferenceProcessor().process(createResponse("/AciException.json", "application/json"));
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getErrorId(), is(equalTo("AutonomyIDOLServerWOBBLE1")));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testErrorProcessorProperty() throws IOException {
+        final ReferenceProcessor processor = new ReferenceProcessor();
+        assertThat(processor.getErrorProcessor(), is(nullValue()));
+
+        final JsonProcessor<AciErrorException> errorProcessor = mock(JsonProcessor.class);
+        when(errorProcessor.process(any(JsonTokenizer.class))).thenThrow(new AciErrorException("Custom"));
+        processor.setErrorProcessor(errorProcessor);
+        assertThat(processor.getErrorProcessor(), is(sameInstance(errorProcessor)));
+
+        try {
+            processor.process(createResponse("/AciException.json", "application/json"));
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getMessage(), is(equalTo("Custom")));
+        }
+    }
+
+    @Test
+    public void testNoResponseField() {
+        final AciResponseInputStream response = new ByteArrayAciResponseInputStream("{\"autnresponse\": {}}".getBytes(StandardCharsets.UTF_8), 200, "application/json", null, null);
+
+        try {
+            new ReferenceProcessor().process(response);
+            fail("Should have thrown a ProcessorException.");
+        } catch (final ProcessorException pe) {
+            assertThat(pe.getCause().getMessage(), is(equalTo("Unable to find the autnresponse.response field.")));
+        }
+    }
+
+    @Test(expected = ProcessorException.class)
+    public void testXmlResponse() throws IOException {
+        new ReferenceProcessor().process(createResponse("/GetVersion.xml", "text/xml"));
+    }
+
+    @Test
+    public void testForwardToNamedField() throws IOException {
+        final JsonTokenizer tokenizer = new JsonTokenizer(new java.io.StringReader("{\"a\": {\"b\": 1}, \"c\": 2}"));
+        final ReferenceProcessor processor = new ReferenceProcessor();
+
+        processor.forwardToNamedField("b", tokenizer);
+        assertThat(tokenizer.getDepth(), is(2));
+
+        try {
+            processor.forwardToNamedField("b", tokenizer);
+            fail("Should have thrown an IOException.");
+        } catch (final IOException ioe) {
+            assertThat(ioe.getMessage(), is(equalTo("Unable to find a field called b")));
+        }
+    }
+
+}
@@ -14,7 +14,6 @@
 
 package com.autonomy.aci.client.services.impl;
 
-import com.autonomy.aci.client.ReflectionTestUtils;
 import com.autonomy.aci.client.services.AciErrorException;
 import com.autonomy.aci.client.services.ProcessorException;
 import com.autonomy.aci.client.transport.AciResponseInputStream;
@@ -28,7 +27,6 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.XMLEvent;
 import java.io.IOException;
-import java.lang.reflect.Field;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
@@ -52,16 +50,32 @@ public class AbstractStAXProcessorTest {
     }
 
     @Test
-    public void testReadObject() throws NoSuchFieldException, IllegalAccessException {
-        AbstractStAXProcessor<?> abstractStAXProcessor = spy(AbstractStAXProcessor.class);
-
-        final Field field = ReflectionTestUtils.getAccessibleField(AbstractStAXProcessor.class, "xmlInputFactory");
-        assertThat(field.get(abstractStAXProcessor), is(notNullValue()));
+    public void testReadObject() {
+        final AbstractStAXProcessor<?> abstractStAXProcessor = new ErrorProcessor();
+        abstractStAXProcessor.setCoalescing(true);
+        assertThat(abstractStAXProcessor.getXMLInputFactory(), is(notNullValue()));
 
-        // Serialise then deserialise the spy and check the XMLInputFactory has been recreated...
+        // Serialise then deserialise the processor and check it still has the same XMLInputFactory...
         final byte[] serialisedSpy = SerializationUtils.serialize(abstractStAXProcessor);
-        abstractStAXProcessor = (AbstractStAXProcessor<?>) SerializationUtils.deserialize(serialisedSpy);
-        assertThat(field.get(abstractStAXProcessor), is(notNullValue()));
+        final AbstractStAXProcessor<?> deserialised = (AbstractStAXProcessor<?>) SerializationUtils.deserialize(serialisedSpy);
+        assertThat(deserialised.isCoalescing(), is(true));
+        assertThat(deserialised.getXMLInputFactory(), is(sameInstance(abstractStAXProcessor.getXMLInputFactory())));
+    }
+
+    @Test
+    public void testXMLInputFactoryIsShared() {
+        final AbstractStAXProcessor<?> first = spy(AbstractStAXProcessor.class);
+        final AbstractStAXProcessor<?> second = spy(AbstractStAXProcessor.class);
+        assertThat(first.getXMLInputFactory(), is(sameInstance(second.getXMLInputFactory())));
+
+        // Different properties need a different factory...
+        second.setNamespaceAware(true);
+        assertThat(first.getXMLInputFactory(), is(not(sameInstance(second.getXMLInputFactory()))));
+        assertThat(second.getXMLInputFactory().getProperty(XMLInputFactory.IS_NAMESPACE_AWARE), is((Object) true));
+
+        // ...which is shared when another processor's properties change to match...
+        first.setNamespaceAware(true);
+        assertThat(first.getXMLInputFactory(), is(sameInstance(second.getXMLInputFactory())));
     }
 
     @Test(expected = ProcessorException.class)
@@ -86,61 +100,53 @@ public class AbstractStAXProcessorTest {
 
     @Test(expected = ProcessorException.class)
     @SuppressWarnings("unchecked")
-    public void testCantCreateXMLStreamReader() throws IOException, NoSuchFieldException, XMLStreamException, IllegalAccessException {
+    public void testCantCreateXMLStreamReader() throws XMLStreamException {
         final AbstractStAXProcessor<?> abstractStAXProcessor = spy(AbstractStAXProcessor.class);
 
-        final Field field = ReflectionTestUtils.getAccessibleField(AbstractStAXProcessor.class, "xmlInputFactory");
-        field.set(
-                abstractStAXProcessor,
+        doReturn(
                 when(mock(XMLInputFactory.class).createXMLStreamReader(any(AciResponseInputStream.class))).thenThrow(XMLStreamException.class).getMock()
-        );
+        ).when(abstractStAXProcessor).getXMLInputFactory();
 
         abstractStAXProcessor.process(when(mock(AciResponseInputStream.class).getContentType()).thenReturn("text/xml").<AciResponseInputStream>getMock());
         fail("Should've thrown a ProcessorException...");
     }
 
     @Test(expected = AciErrorException.class)
-    public void testCloseCalledAfterException() throws NoSuchFieldException, XMLStreamException, IllegalAccessException {
+    public void testCloseCalledAfterException() throws XMLStreamException {
         final AbstractStAXProcessor<?> abstractStAXProcessor = spy(AbstractStAXProcessor.class);
         doThrow(AciErrorException.class).when(abstractStAXProcessor).process(any(XMLStreamReader.class));
 
         final XMLStreamReader mockXmlStreamReader = mock(XMLStreamReader.class);
 
-        final Field field = ReflectionTestUtils.getAccessibleField(AbstractStAXProcessor.class, "xmlInputFactory");
-        field.set(
-                abstractStAXProcessor,
+        doReturn(
                 when(mock(XMLInputFactory.class).createXMLStreamReader(any(AciResponseInputStream.class))).thenReturn(mockXmlStreamReader).getMock()
-        );
+        ).when(abstractStAXProcessor).getXMLInputFactory();
 
         abstractStAXProcessor.process(when(mock(AciResponseInputStream.class).getContentType()).thenReturn("text/xml").<AciResponseInputStream>getMock());
         verify(mockXmlStreamReader).close();
     }
 
     @Test
-    public void testExceptionClosingXMLStreamReader() throws NoSuchFieldException, XMLStreamException, IllegalAccessException {
+    public void testExceptionClosingXMLStreamReader() throws XMLStreamException {
         final AbstractStAXProcessor<?> abstractStAXProcessor = spy(AbstractStAXProcessor.class);
 
         final XMLStreamReader mockXmlStreamReader = mock(XMLStreamReader.class);
         doThrow(XMLStreamException.class).when(mockXmlStreamReader).close();
 
-        final Field field = ReflectionTestUtils.getAccessibleField(AbstractStAXProcessor.class, "xmlInputFactory");
-        field.set(
-                abstractStAXProcessor,
+        doReturn(
                 when(mock(XMLInputFactory.class).createXMLStreamReader(any(AciResponseInputStream.class))).thenReturn(mockXmlStreamReader).getMock()
-        );
+        ).when(abstractStAXProcessor).getXMLInputFactory();
 
         abstractStAXProcessor.process(when(mock(AciResponseInputStream.class).getContentType()).thenReturn("text/xml").<AciResponseInputStream>getMock());
     }
 
     @Test
-    public void testNullXMLStreamReader() throws NoSuchFieldException, XMLStreamException, IllegalAccessException {
+    public void testNullXMLStreamReader() throws XMLStreamException {
         final AbstractStAXProcessor<?> abstractStAXProcessor = spy(AbstractStAXProcessor.class);
 
-        final Field field = ReflectionTestUtils.getAccessibleField(AbstractStAXProcessor.class, "xmlInputFactory");
-        field.set(
-                abstractStAXProcessor,
+        doReturn(
                 when(mock(XMLInputFactory.class).createXMLStreamReader(any(AciResponseInputStream.class))).thenReturn(null).getMock()
-        );
+        ).when(abstractStAXProcessor).getXMLInputFactory();
 
         abstractStAXProcessor.process(when(mock(AciResponseInputStream.class).getContentType()).thenReturn("text/xml").<AciResponseInputStream>getMock());
     }
@@ -236,21 +242,15 @@ public class AbstractStAXProcessorTest {
     }
 
     @Test
-    public void testXMLInputFactorySystemProperties() throws NoSuchFieldException, IllegalAccessException {
-        AbstractStAXProcessor<?> abstractStAXProcessor = spy(AbstractStAXProcessor.class);
-        final XMLInputFactory mockXmlInputFactory = mock(XMLInputFactory.class);
-
-        final Field field = ReflectionTestUtils.getAccessibleField(AbstractStAXProcessor.class, "xmlInputFactory");
-        field.set(abstractStAXProcessor, mockXmlInputFactory);
-
+    public void testXMLInputFactorySystemProperties() {
         // Check the defaults...
-        abstractStAXProcessor.process(when(mock(AciResponseInputStream.class).getContentType()).thenReturn("text/xml").<AciResponseInputStream>getMock());
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_VALIDATING, false);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_COALESCING, false);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.SUPPORT_DTD, true);
+        XMLInputFactory xmlInputFactory = spy(AbstractStAXProcessor.class).getXMLInputFactory();
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_NAMESPACE_AWARE), is((Object) false));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_VALIDATING), is((Object) false));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_COALESCING), is((Object) false));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES), is((Object) true));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES), is((Object) false));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.SUPPORT_DTD), is((Object) true));
 
         // Set different values via system properties...
         System.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, "true");
@@ -260,22 +260,18 @@ public class AbstractStAXProcessorTest {
         System.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, "true");
         System.setProperty(XMLInputFactory.SUPPORT_DTD, "false");
 
-        // Create a new spy...
-        abstractStAXProcessor = spy(AbstractStAXProcessor.class);
-        field.set(abstractStAXProcessor, mockXmlInputFactory);
-
-        // Check the values have changed when set...
-        abstractStAXProcessor.process(when(mock(AciResponseInputStream.class).getContentType()).thenReturn("text/xml").<AciResponseInputStream>getMock());
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_VALIDATING, true);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_COALESCING, true);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, true);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        // Create a new spy and check the values have changed...
+        xmlInputFactory = spy(AbstractStAXProcessor.class).getXMLInputFactory();
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_NAMESPACE_AWARE), is((Object) true));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_VALIDATING), is((Object) true));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_COALESCING), is((Object) true));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES), is((Object) false));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES), is((Object) true));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.SUPPORT_DTD), is((Object) false));
     }
 
     @Test
-    public void testXMLInputFactoryPropertyAccessors() throws NoSuchFieldException, IllegalAccessException {
+    public void testXMLInputFactoryPropertyAccessors() {
         // Check for the default values...
         final AbstractStAXProcessor<?> abstractStAXProcessor = spy(AbstractStAXProcessor.class);
         assertThat(abstractStAXProcessor.isNamespaceAware(), is(false));
@@ -293,18 +289,14 @@ public class AbstractStAXProcessorTest {
         abstractStAXProcessor.setSupportingExternalEntities(true);
         abstractStAXProcessor.setSupportDtd(false);
 
-        final XMLInputFactory mockXmlInputFactory = mock(XMLInputFactory.class);
-        final Field field = ReflectionTestUtils.getAccessibleField(AbstractStAXProcessor.class, "xmlInputFactory");
-        field.set(abstractStAXProcessor, mockXmlInputFactory);
-
         // Check the values have changed...
-        abstractStAXProcessor.process(when(mock(AciResponseInputStream.class).getContentType()).thenReturn("text/xml").<AciResponseInputStream>getMock());
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_VALIDATING, true);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_COALESCING, true);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, true);
-        verify(mockXmlInputFactory).setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        final XMLInputFactory xmlInputFactory = abstractStAXProcessor.getXMLInputFactory();
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_NAMESPACE_AWARE), is((Object) true));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_VALIDATING), is((Object) true));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_COALESCING), is((Object) true));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES), is((Object) false));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES), is((Object) true));
+        assertThat(xmlInputFactory.getProperty(XMLInputFactory.SUPPORT_DTD), is((Object) false));
     }
 
 }
@@ -15,24 +15,40 @@
 package com.autonomy.aci.client.services.impl;
 
 import com.autonomy.aci.client.services.AciConstants;
+import com.autonomy.aci.client.services.AciErrorException;
 import com.autonomy.aci.client.services.AciServiceException;
+import com.autonomy.aci.client.services.JsonProcessor;
 import com.autonomy.aci.client.services.Processor;
 import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.services.StAXProcessor;
 import com.autonomy.aci.client.transport.AciHttpClient;
 import com.autonomy.aci.client.transport.AciHttpException;
+import com.autonomy.aci.client.transport.AciMetricsListener;
 import com.autonomy.aci.client.transport.AciResponseInputStream;
 import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
 import com.autonomy.aci.client.util.ActionParameters;
+import com.autonomy.aci.client.util.IOUtils;
 import org.junit.Test;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -206,6 +222,64 @@ public class AciServiceImplTest {
         verify(mockAciResponseInputStream).close();
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExecuteActionErrorSniffing() throws IOException, AciHttpException {
+        final ByteArrayAciResponseInputStream response = spy(new ByteArrayAciResponseInputStream(
+                toBytes(getClass().getResourceAsStream("/AciException-1.xml")), 200, "text/xml", null, null));
+        final AciHttpClient mockAciHttpClient = mock(AciHttpClient.class);
+        when(mockAciHttpClient.executeAction(any(AciServerDetails.class), anySet())).thenReturn(response);
+        final AciMetricsListener mockListener = mock(AciMetricsListener.class);
+
+        final AciServiceImpl service = new AciServiceImpl(mockAciHttpClient, details);
+        service.setMetricsListener(mockListener);
+        service.setErrorSniffing(true);
+
+        final Processor<String> mockProcessor = mock(Processor.class);
+        try {
+            service.executeAction(new ActionParameters("query"), mockProcessor);
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getErrorId(), is(equalTo("AutonomyIDOLServerWOBBLE1")));
+        }
+
+        // The processor should never have seen the error response...
+        verify(mockProcessor, never()).process(any(AciResponseInputStream.class));
+        verify(response).close();
+        verify(mockListener).actionCompleted(eq("query"), eq(details), eq(AciMetricsListener.Outcome.ACI_ERROR), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testExecuteActionErrorSniffingSuccess() throws IOException, AciHttpException {
+        final byte[] content = toBytes(getClass().getResourceAsStream("/GetVersion.xml"));
+        final ByteArrayAciResponseInputStream response = spy(new ByteArrayAciResponseInputStream(content, 200, "text/xml", null, null));
+        final AciHttpClient mockAciHttpClient = mock(AciHttpClient.class);
+        when(mockAciHttpClient.executeAction(any(AciServerDetails.class), anySet())).thenReturn(response);
+
+        final AciServiceImpl service = new AciServiceImpl(mockAciHttpClient, details);
+        service.setErrorSniffing(true);
+
+        // The processor should see the whole response, including the bytes that were sniffed...
+        final byte[] processed = service.executeAction(new ActionParameters("getversion"), aciResponse -> {
+            try {
+                return toBytes(aciResponse);
+            } catch (final IOException ioe) {
+                throw new ProcessorException(ioe);
+            }
+        });
+        assertThat(processed, is(equalTo(content)));
+        verify(response).close();
+    }
+
+    @Test
+    public void testErrorSniffingProperty() {
+        final AciServiceImpl service = new AciServiceImpl();
+        assertThat(service.isErrorSniffing(), is(false));
+
+        service.setErrorSniffing(true);
+        assertThat(service.isErrorSniffing(), is(true));
+    }
+
     @Test
     public void testAciHttpClientProperty() {
         // Create a new service implementation...
@@ -237,4 +311,171 @@ public class AciServiceImplTest {
         assertThat(service.getAciServerDetails(), is(nullValue()));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMetricsListener() throws IOException, AciHttpException {
+        final AciHttpClient mockAciHttpClient = mock(AciHttpClient.class);
+        when(mockAciHttpClient.executeAction(any(AciServerDetails.class), anySet())).thenReturn(mock(AciResponseInputStream.class));
+        final AciMetricsListener mockListener = mock(AciMetricsListener.class);
+
+        final AciServiceImpl service = new AciServiceImpl(mockAciHttpClient, details);
+        service.setMetricsListener(mockListener);
+        assertThat(service.getMetricsListener(), is(sameInstance(mockListener)));
+
+        assertThat(service.executeAction(new ActionParameters("GetStatus"), response -> "Success!"), is(equalTo("Success!")));
+        verify(mockListener).actionCompleted(eq("GetStatus"), eq(details), eq(AciMetricsListener.Outcome.SUCCESS), anyLong(), anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMetricsListenerOutcomes() throws IOException, AciHttpException {
+        final AciHttpClient mockAciHttpClient = mock(AciHttpClient.class);
+        when(mockAciHttpClient.executeAction(any(AciServerDetails.class), anySet()))
+                .thenReturn(mock(AciResponseInputStream.class))
+                .thenReturn(mock(AciResponseInputStream.class))
+                .thenThrow(IOException.class);
+        final AciMetricsListener mockListener = mock(AciMetricsListener.class);
+
+        final AciServiceImpl service = new AciServiceImpl(mockAciHttpClient, details);
+        service.setMetricsListener(mockListener);
+
+        try {
+            service.executeAction(new ActionParameters("query"), response -> {
+                throw new AciErrorException("ERROR");
+            });
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            verify(mockListener).actionCompleted(eq("query"), eq(details), eq(AciMetricsListener.Outcome.ACI_ERROR), anyLong(), anyLong());
+        }
+
+        try {
+            service.executeAction(new ActionParameters("query"), response -> {
+                throw new ProcessorException("Bad response");
+            });
+            fail("Should have thrown an AciServiceException.");
+        } catch (final AciServiceException ase) {
+            verify(mockListener).actionCompleted(eq("query"), eq(details), eq(AciMetricsListener.Outcome.PROCESSOR_ERROR), anyLong(), anyLong());
+        }
+
+        try {
+            service.executeAction(new ActionParameters("query"), mock(Processor.class));
+            fail("Should have thrown an AciServiceException.");
+        } catch (final AciServiceException ase) {
+            verify(mockListener).actionCompleted(eq("query"), eq(details), eq(AciMetricsListener.Outcome.TRANSPORT_ERROR), eq(0L), anyLong());
+        }
+    }
+
+    @Test
+    public void testExecuteStreamingAction() throws IOException, AciHttpException {
+        final String xml = "<autnresponse><action>QUERY</action><response>SUCCESS</response><responsedata>"
+                + "<autn:hit><autn:reference>one</autn:reference></autn:hit><autn:hit><autn:reference>two</autn:reference></autn:hit>"
+                + "</responsedata></autnresponse>";
+        final ByteArrayAciResponseInputStream response = spy(new ByteArrayAciResponseInputStream(xml.getBytes(StandardCharsets.UTF_8), 200, "text/xml", null, null));
+
+        final AciHttpClient mockAciHttpClient = mock(AciHttpClient.class);
+        when(mockAciHttpClient.executeAction(any(AciServerDetails.class), anySet())).thenReturn(response);
+
+        final StAXProcessor<String> referenceProcessor = new AbstractStAXProcessor<String>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String process(final XMLStreamReader xmlStreamReader) {
+                try {
+                    forwardToNamedStartElement("autn:reference", xmlStreamReader);
+                    return xmlStreamReader.getElementText();
+                } catch (final XMLStreamException e) {
+                    throw new ProcessorException(e);
+                }
+            }
+        };
+
+        try (final Stream<String> references = new AciServiceImpl(mockAciHttpClient, details).executeStreamingAction(new ActionParameters("query"), "autn:hit", referenceProcessor)) {
+            // The response is held open until the stream has been consumed or closed...
+            verify(response, never()).close();
+            assertThat(references.collect(Collectors.toList()), is(equalTo(Arrays.asList("one", "two"))));
+        }
+
+        verify(response, atLeastOnce()).close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExecuteStreamingActionAciHttpException() throws IOException, AciHttpException {
+        final AciHttpClient mockAciHttpClient = mock(AciHttpClient.class);
+        when(mockAciHttpClient.executeAction(any(AciServerDetails.class), anySet())).thenThrow(AciHttpException.class);
+
+        try {
+            new AciServiceImpl(mockAciHttpClient, details).executeStreamingAction(new ActionParameters("query"), "autn:hit", mock(StAXProcessor.class));
+            fail("Should have thrown an AciServiceException.");
+        } catch (final AciServiceException ase) {
+            assertThat("Exception cause is wrong", ase.getCause(), is(instanceOf(AciHttpException.class)));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExecuteStreamingActionNonXmlResponse() throws IOException, AciHttpException {
+        final AciResponseInputStream mockAciResponseInputStream = mock(AciResponseInputStream.class);
+        when(mockAciResponseInputStream.getContentType()).thenReturn("image/jpeg");
+
+        final AciHttpClient mockAciHttpClient = mock(AciHttpClient.class);
+        when(mockAciHttpClient.executeAction(any(AciServerDetails.class), anySet())).thenReturn(mockAciResponseInputStream);
+
+        try {
+            new AciServiceImpl(mockAciHttpClient, details).executeStreamingAction(new ActionParameters("query"), "autn:hit", mock(StAXProcessor.class));
+            fail("Should have thrown an AciServiceException.");
+        } catch (final AciServiceException ase) {
+            assertThat("Exception cause is wrong", ase.getCause(), is(instanceOf(ProcessorException.class)));
+            verify(mockAciResponseInputStream).close();
+        }
+    }
+
+    @Test
+    public void testExecuteStreamingJsonAction() throws IOException, AciHttpException {
+        final String json = "{\"autnresponse\": {\"action\": \"QUERY\", \"response\": \"SUCCESS\", \"responsedata\": "
+                + "{\"autn:hit\": [{\"autn:reference\": \"one\"}, {\"autn:reference\": \"two\"}]}}}";
+        final ByteArrayAciResponseInputStream response = spy(new ByteArrayAciResponseInputStream(json.getBytes(StandardCharsets.UTF_8), 200, "application/json", null, null));
+
+        final AciHttpClient mockAciHttpClient = mock(AciHttpClient.class);
+        when(mockAciHttpClient.executeAction(any(AciServerDetails.class), anySet())).thenReturn(response);
+
+        try (final Stream<String> references = new AciServiceImpl(mockAciHttpClient, details).executeStreamingAction(
+                new ActionParameters("query"), "autn:hit", new JsonElementIteratorTest.ReferenceProcessor())) {
+            verify(response, never()).close();
+            assertThat(references.collect(Collectors.toList()), is(equalTo(Arrays.asList("one", "two"))));
+        }
+
+        verify(response, atLeastOnce()).close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExecuteStreamingJsonActionXmlResponse() throws IOException, AciHttpException {
+        final AciResponseInputStream mockAciResponseInputStream = mock(AciResponseInputStream.class);
+        when(mockAciResponseInputStream.getContentType()).thenReturn("text/xml");
+
+        final AciHttpClient mockAciHttpClient = mock(AciHttpClient.class);
+        when(mockAciHttpClient.executeAction(any(AciServerDetails.class), anySet())).thenReturn(mockAciResponseInputStream);
+
+        try {
+            new AciServiceImpl(mockAciHttpClient, details).executeStreamingAction(new ActionParameters("query"), "autn:hit", mock(JsonProcessor.class));
+            fail("Should have thrown an AciServiceException.");
+        } catch (final AciServiceException ase) {
+            assertThat("Exception cause is wrong", ase.getCause(), is(instanceOf(ProcessorException.class)));
+            verify(mockAciResponseInputStream).close();
+        }
+    }
+
+    @Test(expected = NullPointerException.class)
+    @SuppressWarnings("unchecked")
+    public void testExecuteStreamingActionNullElementName() {
+        new AciServiceImpl(mock(AciHttpClient.class), details).executeStreamingAction(new ActionParameters("query"), null, mock(StAXProcessor.class));
+    }
+
+    private static byte[] toBytes(final InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        IOUtils.getInstance().copy(inputStream, buffer);
+        return buffer.toByteArray();
+    }
+
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.InputStreamActionParameter;
+import com.autonomy.aci.client.util.ActionParameters;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * JUnit test class for the <code>com.autonomy.aci.client.services.impl.ActionKey</code> class.
+ */
+public class ActionKeyTest {
+
+    private final AciServerDetails serverDetails = new AciServerDetails("localhost", 9000);
+
+    @Test
+    public void testNamesCaseAndOrderIgnored() {
+        final ActionParameters first = new ActionParameters("Query");
+        first.add("Text", "cats");
+        first.add("MaxResults", 10);
+
+        final ActionParameters second = new ActionParameters();
+        second.add("maxresults", "10");
+        second.add("TEXT", "cats");
+        second.add("action", "query");
+
+        final ActionKey key = ActionKey.create(serverDetails, first);
+        assertThat(key, is(equalTo(ActionKey.create(serverDetails, second))));
+        assertThat(key.hashCode(), is(ActionKey.create(serverDetails, second).hashCode()));
+        assertThat(key.getAction(), is(equalTo("query")));
+    }
+
+    @Test
+    public void testValuesCompared() {
+        final ActionParameters first = new ActionParameters("Query");
+        first.add("Text", "cats");
+
+        final ActionParameters second = new ActionParameters("Query");
+        second.add("Text", "Cats");
+
+        assertThat(ActionKey.create(serverDetails, first), is(not(equalTo(ActionKey.create(serverDetails, second)))));
+    }
+
+    @Test
+    public void testServerDetailsCompared() {
+        final ActionParameters parameters = new ActionParameters("GetStatus");
+
+        assertThat(ActionKey.create(serverDetails, parameters), is(not(equalTo(ActionKey.create(new AciServerDetails("localhost", 9001), parameters)))));
+    }
+
+    @Test
+    public void testServerDetailsCopied() {
+        final AciServerDetails details = new AciServerDetails("localhost", 9000);
+        final ActionKey key = ActionKey.create(details, new ActionParameters("GetStatus"));
+        details.setPort(9001);
+
+        assertThat(key, is(equalTo(ActionKey.create(serverDetails, new ActionParameters("GetStatus")))));
+    }
+
+    @Test
+    public void testPostParametersNotKeyed() {
+        final ActionParameters parameters = new ActionParameters("DREADD");
+        parameters.add(new InputStreamActionParameter("File", new ByteArrayInputStream(new byte[0])));
+
+        assertThat(ActionKey.create(serverDetails, parameters), is(nullValue()));
+    }
+
+    @Test
+    public void testWithProcessor() {
+        final ActionKey key = ActionKey.create(serverDetails, new ActionParameters("GetStatus"));
+        final ActionKey withProcessor = key.withProcessor("processor");
+
+        assertThat(withProcessor, is(not(equalTo(key))));
+        assertThat(withProcessor, is(equalTo(key.withProcessor("processor"))));
+        assertThat(withProcessor.isSameAction(key), is(true));
+    }
+
+}
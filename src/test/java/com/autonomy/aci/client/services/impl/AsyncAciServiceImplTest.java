@@ -0,0 +1,250 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.mock.MockAciServer;
+import com.autonomy.aci.client.mock.MockResponse;
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.AciServiceException;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciHttpException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.AsyncAciHttpClient;
+import com.autonomy.aci.client.transport.impl.AsyncAciHttpClientImpl;
+import com.autonomy.aci.client.transport.impl.HttpAsyncClient5Factory;
+import com.autonomy.aci.client.util.ActionParameters;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.*;
+
+/**
+ * JUnit test class for the <code>com.autonomy.aci.client.services.impl.AsyncAciServiceImpl</code> class.
+ */
+public class AsyncAciServiceImplTest {
+
+    private final AciServerDetails details = new AciServerDetails("localhost", 9000);
+
+    @Test
+    public void testDefaultConstructor() {
+        final AsyncAciServiceImpl service = new AsyncAciServiceImpl();
+
+        assertThat(service.getAsyncAciHttpClient(), is(nullValue()));
+        assertThat(service.getAciServerDetails(), is(nullValue()));
+        assertThat(service.getProcessorExecutor(), is(notNullValue()));
+    }
+
+    @Test
+    public void testDoublePropertyConstructor() {
+        final AsyncAciHttpClient mockClient = mock(AsyncAciHttpClient.class);
+        final AsyncAciServiceImpl service = new AsyncAciServiceImpl(mockClient, details);
+
+        assertThat(service.getAsyncAciHttpClient(), is(sameInstance(mockClient)));
+        assertThat(service.getAciServerDetails(), is(sameInstance(details)));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testExecuteActionAsyncNullAciHttpClient() {
+        new AsyncAciServiceImpl().executeActionAsync(new ActionParameters("test"), null);
+        fail("Should have thrown an NullPointerException.");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExecuteActionAsyncEmptyParameterSet() {
+        new AsyncAciServiceImpl(mock(AsyncAciHttpClient.class), details).executeActionAsync(new LinkedHashSet<>(), null);
+        fail("Should have thrown an IllegalArgumentException.");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testExecuteActionAsyncNullProcessor() {
+        new AsyncAciServiceImpl(mock(AsyncAciHttpClient.class), details).executeActionAsync(new ActionParameters("test"), null);
+        fail("Should have thrown an NullPointerException.");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExecuteActionAsync() throws Exception {
+        final AciResponseInputStream mockResponse = mock(AciResponseInputStream.class);
+        final AsyncAciHttpClient mockClient = mock(AsyncAciHttpClient.class);
+        when(mockClient.executeActionAsync(any(AciServerDetails.class), anySet())).thenReturn(CompletableFuture.completedFuture(mockResponse));
+
+        final Processor<String> mockProcessor = mock(Processor.class);
+        when(mockProcessor.process(mockResponse)).thenReturn("Success!");
+
+        final CompletableFuture<String> future = new AsyncAciServiceImpl(mockClient, details).executeActionAsync(new ActionParameters("test"), mockProcessor);
+
+        assertThat(future.get(), is(equalTo("Success!")));
+        verify(mockResponse).close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExecuteActionAsyncRunsProcessorOnExecutor() throws Exception {
+        final AciResponseInputStream mockResponse = mock(AciResponseInputStream.class);
+        final AsyncAciHttpClient mockClient = mock(AsyncAciHttpClient.class);
+        when(mockClient.executeActionAsync(any(AciServerDetails.class), anySet())).thenReturn(CompletableFuture.completedFuture(mockResponse));
+
+        final Thread[] processingThread = new Thread[1];
+        final AsyncAciServiceImpl service = new AsyncAciServiceImpl(mockClient, details);
+        service.setProcessorExecutor(command -> {
+            final Thread thread = new Thread(command, "processor-thread");
+            processingThread[0] = thread;
+            thread.start();
+        });
+
+        final String result = service.executeActionAsync(new ActionParameters("test"), (Processor<String>) response -> Thread.currentThread().getName()).get();
+
+        assertThat(result, is(equalTo("processor-thread")));
+        assertThat(processingThread[0], is(notNullValue()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExecuteActionAsyncAciHttpException() throws InterruptedException {
+        final CompletableFuture<AciResponseInputStream> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new AciHttpException("Bad status"));
+
+        final AsyncAciHttpClient mockClient = mock(AsyncAciHttpClient.class);
+        when(mockClient.executeActionAsync(any(AciServerDetails.class), anySet())).thenReturn(failed);
+
+        try {
+            new AsyncAciServiceImpl(mockClient, details).executeActionAsync(new ActionParameters("test"), mock(Processor.class)).get();
+            fail("Should have thrown an ExecutionException.");
+        } catch (final ExecutionException ee) {
+            assertThat(ee.getCause(), is(instanceOf(AciServiceException.class)));
+            assertThat(ee.getCause().getCause(), is(instanceOf(AciHttpException.class)));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExecuteActionIOException() {
+        final CompletableFuture<AciResponseInputStream> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("Connection refused"));
+
+        final AsyncAciHttpClient mockClient = mock(AsyncAciHttpClient.class);
+        when(mockClient.executeActionAsync(any(AciServerDetails.class), anySet())).thenReturn(failed);
+
+        try {
+            new AsyncAciServiceImpl(mockClient, details).executeAction(new ActionParameters("test"), mock(Processor.class));
+            fail("Should have thrown an AciServiceException.");
+        } catch (final AciServiceException ase) {
+            assertThat(ase.getCause(), is(instanceOf(IOException.class)));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExecuteActionProcessorException() throws IOException {
+        final AciResponseInputStream mockResponse = mock(AciResponseInputStream.class);
+        final AsyncAciHttpClient mockClient = mock(AsyncAciHttpClient.class);
+        when(mockClient.executeActionAsync(any(AciServerDetails.class), anySet())).thenReturn(CompletableFuture.completedFuture(mockResponse));
+
+        final Processor<?> mockProcessor = mock(Processor.class);
+        when(mockProcessor.process(any(AciResponseInputStream.class))).thenThrow(ProcessorException.class);
+
+        try {
+            new AsyncAciServiceImpl(mockClient, details).executeAction(new ActionParameters("test"), mockProcessor);
+            fail("Should have thrown an AciServiceException.");
+        } catch (final AciServiceException ase) {
+            assertThat(ase.getCause(), is(instanceOf(ProcessorException.class)));
+            verify(mockResponse).close();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExecuteActionAciErrorException() {
+        final AciResponseInputStream mockResponse = mock(AciResponseInputStream.class);
+        final AsyncAciHttpClient mockClient = mock(AsyncAciHttpClient.class);
+        when(mockClient.executeActionAsync(any(AciServerDetails.class), anySet())).thenReturn(CompletableFuture.completedFuture(mockResponse));
+
+        final AciErrorException error = new AciErrorException("ERROR");
+        final Processor<?> mockProcessor = mock(Processor.class);
+        when(mockProcessor.process(any(AciResponseInputStream.class))).thenThrow(error);
+
+        try {
+            new AsyncAciServiceImpl(mockClient, details).executeAction(new ActionParameters("test"), mockProcessor);
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee, is(sameInstance(error)));
+        }
+    }
+
+    @Test
+    public void testCancelStopsExchange() throws IOException, InterruptedException {
+        final byte[] content = new byte[4 * 1024 * 1024];
+
+        try (final MockAciServer server = new MockAciServer();
+             final CloseableHttpAsyncClient httpAsyncClient = new HttpAsyncClient5Factory().createInstance()) {
+            final AsyncAciServiceImpl service = new AsyncAciServiceImpl(new AsyncAciHttpClientImpl(httpAsyncClient), server.getServerDetails());
+
+            // Cancel on a pooled connection, which HttpClient would otherwise keep reading from so it can be reused...
+            server.setDefaultResponse(MockResponse.binary(new byte[100], "application/octet-stream"));
+            service.executeAction(new ActionParameters("GetStatus"), new BinaryResponseProcessor());
+
+            server.setResponse("View", MockResponse.binary(content, "application/octet-stream"));
+            server.setBytesPerSecond(512 * 1024);
+            final CompletableFuture<byte[]> future = service.executeActionAsync(new ActionParameters("View"), new BinaryResponseProcessor());
+
+            // Cancel part way through the response...
+            while (server.getBytesWritten() <= 100L) {
+                Thread.sleep(10L);
+            }
+            assertThat(future.cancel(true), is(true));
+
+            // The server should stop writing, as the pooled connection has been closed...
+            assertThat(server.awaitWritesStopped(), is(lessThan(content.length / 4L)));
+            assertThat(server.getConnectionCount(), is(1));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCancelledBeforeProcessing() throws IOException {
+        final AciResponseInputStream mockResponse = mock(AciResponseInputStream.class);
+        final AsyncAciHttpClient mockClient = mock(AsyncAciHttpClient.class);
+        when(mockClient.executeActionAsync(any(AciServerDetails.class), anySet())).thenReturn(CompletableFuture.completedFuture(mockResponse));
+
+        // Hold on to the processing until the future has been cancelled...
+        final List<Runnable> tasks = new ArrayList<>();
+        final AsyncAciServiceImpl service = new AsyncAciServiceImpl(mockClient, details);
+        service.setProcessorExecutor(tasks::add);
+
+        final Processor<String> mockProcessor = mock(Processor.class);
+        final CompletableFuture<String> future = service.executeActionAsync(new ActionParameters("test"), mockProcessor);
+        assertThat(future.cancel(true), is(true));
+        tasks.forEach(Runnable::run);
+
+        // The response should be closed without being processed...
+        verify(mockProcessor, never()).process(any(AciResponseInputStream.class));
+        verify(mockResponse).close();
+    }
+
+}
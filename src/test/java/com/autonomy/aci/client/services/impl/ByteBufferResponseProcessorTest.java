@@ -0,0 +1,150 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import org.apache.commons.lang3.SerializationUtils;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * JUnit tests for <code>com.autonomy.aci.client.services.impl.ByteBufferResponseProcessor</code>.
+ */
+public class ByteBufferResponseProcessorTest {
+
+    private static final byte[] CONTENT = "This is a test...".getBytes(StandardCharsets.UTF_8);
+
+    private static ByteArrayAciResponseInputStream createResponse(final byte[] content) {
+        return new ByteArrayAciResponseInputStream(content, 200, "image/jpeg", null, null);
+    }
+
+    private static byte[] toBytes(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testHeapBuffer() {
+        final ByteBuffer buffer = ByteBuffer.allocate(1024);
+        final ByteBufferResponseProcessor processor = new ByteBufferResponseProcessor(buffer);
+
+        final ByteBuffer result = processor.process(createResponse(CONTENT));
+        assertThat(result, is(sameInstance(buffer)));
+        assertThat(result.position(), is(0));
+        assertThat(toBytes(result), is(equalTo(CONTENT)));
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        final byte[] content = new byte[20000];
+        for (int ii = 0; ii < content.length; ii++) {
+            content[ii] = (byte) ii;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+        final ByteBuffer result = new ByteBufferResponseProcessor(buffer).process(createResponse(content));
+
+        assertThat(result.isDirect(), is(true));
+        assertThat(toBytes(result), is(equalTo(content)));
+    }
+
+    @Test
+    public void testSlicedBufferWithPosition() {
+        // A buffer whose array offset isn't zero, with something already in it...
+        final ByteBuffer buffer = ByteBuffer.allocate(100);
+        buffer.position(10);
+        final ByteBuffer slice = buffer.slice();
+        slice.put((byte) '>');
+
+        final ByteBuffer result = new ByteBufferResponseProcessor(slice).process(createResponse(CONTENT));
+        assertThat(new String(toBytes(result), StandardCharsets.UTF_8), is(equalTo(">This is a test...")));
+    }
+
+    @Test
+    public void testReusedBuffer() {
+        final ByteBuffer buffer = ByteBuffer.allocate(1024);
+        final ByteBufferResponseProcessor processor = new ByteBufferResponseProcessor(buffer);
+
+        processor.process(createResponse("First response".getBytes(StandardCharsets.UTF_8)));
+        buffer.clear();
+        final ByteBuffer result = processor.process(createResponse(CONTENT));
+
+        assertThat(toBytes(result), is(equalTo(CONTENT)));
+    }
+
+    @Test(expected = ProcessorException.class)
+    public void testReusedBufferNotCleared() {
+        final ByteBuffer buffer = ByteBuffer.allocate(1024);
+        final ByteBufferResponseProcessor processor = new ByteBufferResponseProcessor(buffer);
+
+        // Reading the first response leaves no room for the next one until the buffer is cleared...
+        toBytes(processor.process(createResponse(CONTENT)));
+        processor.process(createResponse(CONTENT));
+    }
+
+    @Test
+    public void testExactFit() {
+        assertThat(toBytes(new ByteBufferResponseProcessor(ByteBuffer.allocate(CONTENT.length)).process(createResponse(CONTENT))), is(equalTo(CONTENT)));
+        assertThat(toBytes(new ByteBufferResponseProcessor(ByteBuffer.allocateDirect(CONTENT.length)).process(createResponse(CONTENT))), is(equalTo(CONTENT)));
+    }
+
+    @Test(expected = ProcessorException.class)
+    public void testResponseTooLarge() {
+        new ByteBufferResponseProcessor(ByteBuffer.allocate(CONTENT.length - 1)).process(createResponse(CONTENT));
+    }
+
+    @Test(expected = ProcessorException.class)
+    public void testResponseTooLargeForDirectBuffer() {
+        new ByteBufferResponseProcessor(ByteBuffer.allocateDirect(CONTENT.length - 1)).process(createResponse(CONTENT));
+    }
+
+    @Test
+    public void testErrorResponse() {
+        final ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+        try {
+            new ByteBufferResponseProcessor(buffer).process(ChannelResponseProcessorTest.createXmlResponse("/AciException-1.xml"));
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getErrorId(), is(equalTo("AutonomyIDOLServerWOBBLE1")));
+        }
+
+        assertThat(buffer.position(), is(0));
+    }
+
+    @Test
+    public void testSerialization() {
+        final ByteBufferResponseProcessor processor = new ByteBufferResponseProcessor(ByteBuffer.allocateDirect(1024));
+
+        // The buffer isn't serialised...
+        final ByteBufferResponseProcessor deserialised = SerializationUtils.roundtrip(processor);
+        assertThat(deserialised.getBuffer(), is(nullValue()));
+        assertThat(deserialised.getErrorProcessor(), is(notNullValue()));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullBuffer() {
+        new ByteBufferResponseProcessor(null);
+    }
+
+}
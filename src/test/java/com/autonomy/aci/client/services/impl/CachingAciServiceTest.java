@@ -0,0 +1,356 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.AciService;
+import com.autonomy.aci.client.services.AciServiceException;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.gss.GssAciServerDetails;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import com.autonomy.aci.client.util.ActionParameters;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * JUnit test class for the <code>com.autonomy.aci.client.services.impl.CachingAciService</code> class.
+ */
+public class CachingAciServiceTest {
+
+    private final AciServerDetails serverDetails = new AciServerDetails("localhost", 9000);
+
+    /**
+     * Reads the response as a string...
+     */
+    private final Processor<String> processor = response -> {
+        try {
+            return IOUtils.toString(response, StandardCharsets.UTF_8);
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    };
+
+    private final AtomicInteger sent = new AtomicInteger();
+
+    private AciService mockAciService;
+
+    private CachingAciService service;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        mockAciService = mock(AciService.class);
+
+        // Each response is different, so we can tell whether it came from the cache...
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), any(Processor.class))).thenAnswer(invocation -> {
+            final String content = "response " + sent.incrementAndGet();
+            final Processor<?> delegateProcessor = invocation.getArgument(2);
+            return delegateProcessor.process(new ByteArrayAciResponseInputStream(content.getBytes(StandardCharsets.UTF_8), 200, "text/xml", null, null));
+        });
+
+        service = new CachingAciService(mockAciService, serverDetails);
+    }
+
+    private static ActionParameters query(final String text) {
+        final ActionParameters parameters = new ActionParameters("Query");
+        parameters.add("Text", text);
+        return parameters;
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullAciService() {
+        new CachingAciService(null);
+        fail("Should have thrown a NullPointerException...");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNoServerDetails() {
+        new CachingAciService(mockAciService).executeAction(query("cats"), processor);
+        fail("Should have thrown a NullPointerException...");
+    }
+
+    @Test
+    public void testCacheHit() {
+        assertThat(service.executeAction(query("cats"), processor), is(equalTo("response 1")));
+        assertThat(service.executeAction(query("cats"), processor), is(equalTo("response 1")));
+
+        assertThat(sent.get(), is(1));
+        assertThat(service.getHitCount(), is(1L));
+        assertThat(service.getMissCount(), is(1L));
+        assertThat(service.getSize(), is(1));
+        assertThat(service.getBytes(), is((long) "response 1".length()));
+    }
+
+    @Test
+    public void testEquivalentParametersHit() {
+        service.executeAction(query("cats"), processor);
+
+        final ActionParameters parameters = new ActionParameters();
+        parameters.add("text", "cats");
+        parameters.add("ACTION", "query");
+
+        assertThat(service.executeAction(serverDetails, parameters, processor), is(equalTo("response 1")));
+        assertThat(sent.get(), is(1));
+    }
+
+    @Test
+    public void testDifferentParametersMiss() {
+        service.executeAction(query("cats"), processor);
+        assertThat(service.executeAction(query("dogs"), processor), is(equalTo("response 2")));
+        assertThat(service.executeAction(new AciServerDetails("otherhost", 9000), query("cats"), processor), is(equalTo("response 3")));
+    }
+
+    @Test
+    public void testUncacheableActionNotCached() {
+        service.executeAction(new ActionParameters("GetVersion"), processor);
+        service.executeAction(new ActionParameters("GetVersion"), processor);
+
+        assertThat(sent.get(), is(2));
+        assertThat(service.getMissCount(), is(0L));
+    }
+
+    @Test
+    public void testCustomCacheableActions() {
+        service.setCacheableActions(Collections.singleton("GetVersion"));
+        assertThat(service.getCacheableActions(), is(equalTo(Collections.singleton("getversion"))));
+
+        service.executeAction(new ActionParameters("getversion"), processor);
+        service.executeAction(new ActionParameters("GETVERSION"), processor);
+        service.executeAction(query("cats"), processor);
+        service.executeAction(query("cats"), processor);
+
+        assertThat(sent.get(), is(3));
+    }
+
+    @Test
+    public void testDifferentProcessorsShareRawResponse() {
+        service.executeAction(query("cats"), processor);
+
+        final Processor<Integer> lengthProcessor = response -> processor.process(response).length();
+        assertThat(service.executeAction(query("cats"), lengthProcessor), is("response 1".length()));
+        assertThat(sent.get(), is(1));
+    }
+
+    @Test
+    public void testCacheProcessedResults() {
+        service.setCacheProcessedResults(true);
+
+        final AtomicInteger processed = new AtomicInteger();
+        final Processor<String> countingProcessor = response -> {
+            processed.incrementAndGet();
+            return processor.process(response);
+        };
+
+        service.executeAction(query("cats"), countingProcessor);
+        assertThat(service.executeAction(query("cats"), countingProcessor), is(equalTo("response 1")));
+        assertThat(processed.get(), is(1));
+
+        // A different processor gets its own entry...
+        assertThat(service.executeAction(query("cats"), processor), is(equalTo("response 2")));
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        service.setTimeToLive(50L);
+
+        service.executeAction(query("cats"), processor);
+        Thread.sleep(100L);
+
+        assertThat(service.executeAction(query("cats"), processor), is(equalTo("response 2")));
+        assertThat(service.getEvictionCount(), is(1L));
+    }
+
+    @Test
+    public void testMaxEntriesEvictsLeastRecentlyUsed() {
+        service.setMaxEntries(2);
+
+        service.executeAction(query("a"), processor);
+        service.executeAction(query("b"), processor);
+        service.executeAction(query("a"), processor);
+        service.executeAction(query("c"), processor);
+
+        assertThat(service.getSize(), is(2));
+        assertThat(service.getEvictionCount(), is(1L));
+
+        // b was least recently used...
+        assertThat(service.executeAction(query("a"), processor), is(equalTo("response 1")));
+        assertThat(service.executeAction(query("b"), processor), is(equalTo("response 4")));
+    }
+
+    @Test
+    public void testMaxBytes() {
+        service.setMaxBytes(25L);
+
+        service.executeAction(query("a"), processor);
+        service.executeAction(query("b"), processor);
+        service.executeAction(query("c"), processor);
+
+        assertThat(service.getSize(), is(2));
+        assertThat(service.getBytes(), is(20L));
+
+        // Too big to ever cache...
+        service.setMaxBytes(5L);
+        service.invalidateAll();
+        service.executeAction(query("d"), processor);
+        assertThat(service.getSize(), is(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testOversizedResponseStreamed() {
+        final byte[] content = "a response that is too big".getBytes(StandardCharsets.UTF_8);
+        final AtomicInteger bytesRead = new AtomicInteger();
+
+        // Hands out a byte at a time, so we can tell how much was read before the processor was called...
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), any(Processor.class))).thenAnswer(invocation -> {
+            final InputStream trickle = new InputStream() {
+                @Override
+                public int read() {
+                    return (bytesRead.get() < content.length) ? (content[bytesRead.getAndIncrement()] & 0xFF) : -1;
+                }
+
+                @Override
+                public int read(final byte[] bytes, final int offset, final int length) {
+                    final int read = read();
+                    if (read == -1) {
+                        return -1;
+                    }
+
+                    bytes[offset] = (byte) read;
+                    return 1;
+                }
+            };
+
+            final AciResponseInputStream response = mock(AciResponseInputStream.class, withSettings().useConstructor(trickle).defaultAnswer(CALLS_REAL_METHODS));
+            doReturn(-1L).when(response).getContentLength();
+            return ((Processor<?>) invocation.getArgument(2)).process(response);
+        });
+
+        service.setMaxBytes(5L);
+
+        final AtomicInteger readBeforeProcessing = new AtomicInteger();
+        final Processor<String> countingProcessor = response -> {
+            readBeforeProcessing.set(bytesRead.get());
+            return processor.process(response);
+        };
+
+        assertThat(service.executeAction(query("cats"), countingProcessor), is(equalTo("a response that is too big")));
+        assertThat(readBeforeProcessing.get(), is(6));
+        assertThat(service.getSize(), is(0));
+    }
+
+    @Test
+    public void testGssServiceNameInKey() {
+        final GssAciServerDetails httpService = new GssAciServerDetails("HTTP/localhost", "localhost", 9000);
+        final GssAciServerDetails otherService = new GssAciServerDetails("other/localhost", "localhost", 9000);
+
+        assertThat(service.executeAction(httpService, query("cats"), processor), is(equalTo("response 1")));
+        assertThat(service.executeAction(otherService, query("cats"), processor), is(equalTo("response 2")));
+        assertThat(service.executeAction(new GssAciServerDetails(httpService), query("cats"), processor), is(equalTo("response 1")));
+        assertThat(service.getSize(), is(2));
+    }
+
+    @Test
+    public void testErrorsNotCached() {
+        final Processor<String> failingProcessor = response -> {
+            throw new AciErrorException("ERROR");
+        };
+
+        try {
+            service.executeAction(query("cats"), failingProcessor);
+            fail("Should have thrown an AciErrorException...");
+        } catch (final AciErrorException aee) {
+            assertThat(service.getSize(), is(0));
+        }
+
+        assertThat(service.executeAction(query("cats"), processor), is(equalTo("response 2")));
+    }
+
+    @Test
+    public void testProcessorExceptionWrapped() {
+        try {
+            service.executeAction(query("cats"), response -> {
+                throw new ProcessorException("Bad response");
+            });
+            fail("Should have thrown an AciServiceException...");
+        } catch (final AciServiceException ase) {
+            assertThat(ase.getCause(), is(instanceOf(ProcessorException.class)));
+        }
+    }
+
+    @Test
+    public void testInvalidate() {
+        service.executeAction(query("cats"), processor);
+        service.executeAction(query("dogs"), processor);
+
+        service.invalidate(serverDetails, query("cats"));
+        assertThat(service.getSize(), is(1));
+        assertThat(service.executeAction(query("cats"), processor), is(equalTo("response 3")));
+
+        service.invalidate(serverDetails);
+        assertThat(service.getSize(), is(0));
+        assertThat(service.getBytes(), is(0L));
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        service.executeAction(query("cats"), processor);
+        service.executeAction(new AciServerDetails("otherhost", 9000), query("cats"), processor);
+
+        service.invalidateAll();
+        assertThat(service.getSize(), is(0));
+        assertThat(service.getEvictionCount(), is(0L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTransportErrorPropagated() {
+        final AciServiceException failure = new AciServiceException(new IOException("Connection refused"));
+        when(mockAciService.executeAction(eq(serverDetails), anySet(), any(Processor.class))).thenThrow(failure);
+
+        try {
+            service.executeAction(query("cats"), processor);
+            fail("Should have thrown an AciServiceException...");
+        } catch (final AciServiceException ase) {
+            assertThat(ase, is(sameInstance(failure)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxEntries() {
+        service.setMaxEntries(0);
+        fail("Should have thrown an IllegalArgumentException...");
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import org.apache.commons.lang3.SerializationUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * JUnit tests for <code>com.autonomy.aci.client.services.impl.ChannelResponseProcessor</code>.
+ */
+public class ChannelResponseProcessorTest {
+
+    private static byte[] randomBytes(final int length) {
+        final byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testNonXmlResponse() {
+        // Bigger than the copy buffer, so it takes more than one write...
+        final byte[] content = randomBytes(200 * 1024 + 17);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        final ChannelResponseProcessor processor = new ChannelResponseProcessor(Channels.newChannel(output));
+        final Long written = processor.process(new ByteArrayAciResponseInputStream(content, 200, "image/jpeg", null, null));
+
+        assertThat(written, is((long) content.length));
+        assertThat(output.toByteArray(), is(equalTo(content)));
+    }
+
+    @Test
+    public void testPartialWrites() throws IOException {
+        final byte[] content = randomBytes(1000);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final WritableByteChannel target = Channels.newChannel(output);
+
+        // A channel that only writes up to ten bytes at a time...
+        final WritableByteChannel channel = mock(WritableByteChannel.class);
+        when(channel.write(any(ByteBuffer.class))).thenAnswer(invocation -> {
+            final ByteBuffer buffer = invocation.getArgument(0);
+            final ByteBuffer slice = buffer.slice();
+            slice.limit(Math.min(10, slice.remaining()));
+            final int written = target.write(slice);
+            buffer.position(buffer.position() + written);
+            return written;
+        });
+
+        final Long written = new ChannelResponseProcessor(channel).process(new ByteArrayAciResponseInputStream(content, 200, "application/pdf", null, null));
+
+        assertThat(written, is(1000L));
+        assertThat(output.toByteArray(), is(equalTo(content)));
+        verify(channel, never()).close();
+    }
+
+    @Test
+    public void testErrorResponse() {
+        final WritableByteChannel channel = mock(WritableByteChannel.class);
+
+        try {
+            new ChannelResponseProcessor(channel).process(createXmlResponse("/AciException-1.xml"));
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getErrorId(), is(equalTo("AutonomyIDOLServerWOBBLE1")));
+        }
+
+        verifyNoInteractions(channel);
+    }
+
+    @Test
+    public void testXmlResponse() {
+        try {
+            new ChannelResponseProcessor(mock(WritableByteChannel.class)).process(createXmlResponse("/GetVersion.xml"));
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getErrorId(), is(nullValue()));
+            assertThat(aee.getMessage(), is(equalTo("ChannelResponseProcessor should not be used for XML responses")));
+        }
+    }
+
+    @Test(expected = ProcessorException.class)
+    public void testChannelIOException() throws IOException {
+        final WritableByteChannel channel = mock(WritableByteChannel.class);
+        when(channel.write(any(ByteBuffer.class))).thenThrow(IOException.class);
+
+        new ChannelResponseProcessor(channel).process(new ByteArrayAciResponseInputStream(randomBytes(10), 200, "image/jpeg", null, null));
+    }
+
+    @Test
+    public void testSerialization() {
+        final ChannelResponseProcessor processor = new ChannelResponseProcessor(Channels.newChannel(new ByteArrayOutputStream()));
+
+        // The channel isn't serialised...
+        final ChannelResponseProcessor deserialised = SerializationUtils.roundtrip(processor);
+        assertThat(deserialised.getErrorProcessor(), is(notNullValue()));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullChannel() {
+        new ChannelResponseProcessor(null);
+    }
+
+    static AciResponseInputStream createXmlResponse(final String resource) {
+        try (final InputStream inputStream = ChannelResponseProcessorTest.class.getResourceAsStream(resource)) {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            inputStream.transferTo(buffer);
+            return new ByteArrayAciResponseInputStream(buffer.toByteArray(), 200, "text/xml", null, null);
+        } catch (final IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+}
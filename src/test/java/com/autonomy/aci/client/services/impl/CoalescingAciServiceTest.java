@@ -0,0 +1,283 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.AciService;
+import com.autonomy.aci.client.services.AciServiceException;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import com.autonomy.aci.client.util.ActionParameters;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.*;
+
+/**
+ * JUnit test class for the <code>com.autonomy.aci.client.services.impl.CoalescingAciService</code> class.
+ */
+public class CoalescingAciServiceTest {
+
+    private static final int CALLERS = 8;
+
+    private final AciServerDetails serverDetails = new AciServerDetails("localhost", 9000);
+
+    /**
+     * Reads the response as a string...
+     */
+    private final Processor<String> processor = response -> {
+        try {
+            return IOUtils.toString(response, StandardCharsets.UTF_8);
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    };
+
+    private final AtomicInteger sent = new AtomicInteger();
+
+    /**
+     * Holds the requests in the delegate until released...
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    private ExecutorService executor;
+
+    private AciService mockAciService;
+
+    private CoalescingAciService service;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(CALLERS);
+        mockAciService = mock(AciService.class);
+
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), any(Processor.class))).thenAnswer(invocation -> {
+            final String content = "response " + sent.incrementAndGet();
+            release.await(10L, TimeUnit.SECONDS);
+
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+
+            final Processor<?> delegateProcessor = invocation.getArgument(2);
+            return delegateProcessor.process(new ByteArrayAciResponseInputStream(content.getBytes(StandardCharsets.UTF_8), 200, "text/xml", null, null));
+        });
+
+        service = new CoalescingAciService(mockAciService, serverDetails);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    private static ActionParameters query(final String text) {
+        final ActionParameters parameters = new ActionParameters("Query");
+        parameters.add("Text", text);
+        return parameters;
+    }
+
+    /**
+     * Starts the callers, waits until they're all in the service and then lets the request complete...
+     */
+    private <T> List<Future<T>> stampede(final List<Callable<T>> callers) throws InterruptedException {
+        final List<Future<T>> futures = new ArrayList<>();
+        for (final Callable<T> caller : callers) {
+            futures.add(executor.submit(caller));
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (((sent.get() + service.getCoalescedCount()) < callers.size()) && (System.nanoTime() < deadline)) {
+            Thread.sleep(5L);
+        }
+
+        release.countDown();
+        return futures;
+    }
+
+    private List<Callable<String>> callers(final Processor<String> callerProcessor) {
+        final List<Callable<String>> callers = new ArrayList<>();
+        for (int ii = 0; ii < CALLERS; ii++) {
+            callers.add(() -> service.executeAction(query("cats"), callerProcessor));
+        }
+        return callers;
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullAciService() {
+        new CoalescingAciService(null);
+        fail("Should have thrown a NullPointerException...");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNoServerDetails() {
+        new CoalescingAciService(mockAciService).executeAction(query("cats"), processor);
+        fail("Should have thrown a NullPointerException...");
+    }
+
+    @Test
+    public void testIdenticalActionsShareRequest() throws InterruptedException, ExecutionException {
+        for (final Future<String> future : stampede(callers(processor))) {
+            assertThat(future.get(), is(equalTo("response 1")));
+        }
+
+        assertThat(sent.get(), is(1));
+        assertThat(service.getRequestCount(), is(1L));
+        assertThat(service.getCoalescedCount(), is((long) CALLERS - 1));
+        assertThat(service.getInFlightCount(), is(0));
+    }
+
+    @Test
+    public void testEachCallerProcessesResponse() throws InterruptedException, ExecutionException {
+        final AtomicInteger processed = new AtomicInteger();
+        final Processor<String> countingProcessor = response -> {
+            processed.incrementAndGet();
+            return processor.process(response);
+        };
+
+        for (final Future<String> future : stampede(callers(countingProcessor))) {
+            assertThat(future.get(), is(equalTo("response 1")));
+        }
+
+        assertThat(processed.get(), is(CALLERS));
+    }
+
+    @Test
+    public void testShareProcessedResults() throws InterruptedException, ExecutionException {
+        service.setShareProcessedResults(true);
+
+        final AtomicInteger processed = new AtomicInteger();
+        final Processor<String> countingProcessor = response -> {
+            processed.incrementAndGet();
+            return processor.process(response);
+        };
+
+        final List<Future<String>> futures = stampede(callers(countingProcessor));
+        final String first = futures.get(0).get();
+        for (final Future<String> future : futures) {
+            assertThat(future.get(), is(sameInstance(first)));
+        }
+
+        assertThat(processed.get(), is(1));
+    }
+
+    @Test
+    public void testDifferentActionsNotShared() throws InterruptedException, ExecutionException {
+        final List<Callable<String>> callers = new ArrayList<>();
+        callers.add(() -> service.executeAction(query("cats"), processor));
+        callers.add(() -> service.executeAction(query("dogs"), processor));
+
+        final List<String> results = new ArrayList<>();
+        for (final Future<String> future : stampede(callers)) {
+            results.add(future.get());
+        }
+
+        assertThat(results, containsInAnyOrder("response 1", "response 2"));
+        assertThat(service.getCoalescedCount(), is(0L));
+    }
+
+    @Test
+    public void testFailureSharedWithWaitingCallers() throws InterruptedException {
+        final AciServiceException exception = new AciServiceException("Connection refused");
+        failure.set(exception);
+
+        for (final Future<String> future : stampede(callers(processor))) {
+            try {
+                future.get();
+                fail("Should have thrown an AciServiceException...");
+            } catch (final ExecutionException ee) {
+                assertThat(ee.getCause(), is(sameInstance(exception)));
+            }
+        }
+
+        assertThat(sent.get(), is(1));
+        assertThat(service.getInFlightCount(), is(0));
+    }
+
+    @Test
+    public void testProcessingFailureOnlyAffectsCaller() throws InterruptedException, ExecutionException {
+        final List<Callable<String>> callers = callers(processor);
+        callers.set(0, () -> service.executeAction(query("cats"), response -> {
+            throw new AciErrorException("ERROR");
+        }));
+
+        final List<Future<String>> futures = stampede(callers);
+
+        try {
+            futures.get(0).get();
+            fail("Should have thrown an AciErrorException...");
+        } catch (final ExecutionException ee) {
+            assertThat(ee.getCause(), is(instanceOf(AciErrorException.class)));
+        }
+
+        for (final Future<String> future : futures.subList(1, futures.size())) {
+            assertThat(future.get(), is(equalTo("response 1")));
+        }
+    }
+
+    @Test
+    public void testCompletedRequestNotReused() {
+        release.countDown();
+
+        assertThat(service.executeAction(query("cats"), processor), is(equalTo("response 1")));
+        assertThat(service.executeAction(query("cats"), processor), is(equalTo("response 2")));
+    }
+
+    @Test
+    public void testNonCoalescedActionPassedThrough() {
+        release.countDown();
+
+        final ActionParameters parameters = new ActionParameters("DreAdd");
+        service.executeAction(parameters, processor);
+
+        verify(mockAciService).executeAction(serverDetails, parameters, processor);
+        assertThat(service.getRequestCount(), is(0L));
+    }
+
+    @Test
+    public void testCoalescedActions() {
+        service.setCoalescedActions(Collections.singleton("GetVersion"));
+        assertThat(service.getCoalescedActions(), is(equalTo(Collections.singleton("getversion"))));
+    }
+
+}
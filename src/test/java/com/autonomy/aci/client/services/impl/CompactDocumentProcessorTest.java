@@ -0,0 +1,97 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.impl.AciResponseInputStreamImpl;
+import org.apache.commons.lang3.time.DateFormatUtils;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * JUnit test for <code>com.autonomy.aci.client.services.impl.CompactDocumentProcessor</code>.
+ */
+public class CompactDocumentProcessorTest {
+
+    private final CompactDocumentProcessor processor = new CompactDocumentProcessor();
+
+    private AciResponseInputStream getResponse(final String resource, final ContentType contentType) throws IOException {
+        final ClassicHttpResponse response = new BasicClassicHttpResponse(200);
+        response.setEntity(new InputStreamEntity(getClass().getResourceAsStream(resource), contentType));
+        return new AciResponseInputStreamImpl(response);
+    }
+
+    @Test
+    public void testProcess() throws IOException {
+        final CompactDocument document = processor.process(getResponse("/GetVersion.xml", ContentType.TEXT_XML));
+
+        assertThat(document.getRootElement().getName(), is(equalTo("autnresponse")));
+        assertThat(document.valueOf("/autnresponse/response"), is(equalTo("SUCCESS")));
+        assertThat(document.valueOf("/autnresponse/responsedata/autn:version"), is(equalTo("5.0.5")));
+        assertThat(document.valueOf("//autn:qps/autn:queries"), is(equalTo("2")));
+    }
+
+    @Test
+    public void testProcessErrorResponse() throws IOException {
+        try {
+            processor.process(getResponse("/AciException-1.xml", ContentType.TEXT_XML));
+            fail("Should have raised an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getErrorId(), is(equalTo("AutonomyIDOLServerWOBBLE1")));
+            assertThat(aee.getErrorString(), is(equalTo("ERROR")));
+            assertThat(aee.getErrorDescription(), is(equalTo("The requested action was not recognised")));
+            assertThat(aee.getErrorCode(), is(equalTo("ERRORNOTIMPLEMENTED")));
+            assertThat(DateFormatUtils.format(aee.getErrorTime(), "dd MMM yy HH:mm:ss"), is(equalTo("06 Feb 06 17:03:54")));
+        }
+    }
+
+    @Test
+    public void testProcessErrorResponseWithBadDate() throws IOException {
+        try {
+            processor.process(getResponse("/AciException-2.xml", ContentType.TEXT_XML));
+            fail("Should have raised an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getErrorTime(), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void testProcessMalformedResponse() throws IOException {
+        try {
+            processor.process(getResponse("/MalformedAciException.xml", ContentType.TEXT_XML));
+            fail("Should have raised a ProcessorException.");
+        } catch (final ProcessorException pe) {
+            assertThat(pe.getCause(), is(instanceOf(XMLStreamException.class)));
+        }
+    }
+
+    @Test(expected = ProcessorException.class)
+    public void testProcessNonXmlResponse() throws IOException {
+        processor.process(getResponse("/GetVersion.xml", ContentType.IMAGE_JPEG));
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * JUnit test for <code>com.autonomy.aci.client.services.impl.CompactDocument</code> and <code>CompactElement</code>.
+ */
+public class CompactDocumentTest {
+
+    private static final String RESPONSE = "<?xml version='1.0' encoding='UTF-8' ?>\n" +
+            "<autnresponse xmlns:autn='http://schemas.autonomy.com/aci/'>\n" +
+            "  <action>QUERY</action>\n" +
+            "  <response>SUCCESS</response>\n" +
+            "  <responsedata>\n" +
+            "    <autn:numhits>3</autn:numhits>\n" +
+            "    <!-- A comment that isn't kept -->\n" +
+            "    <autn:hit id='1' database='News'>\n" +
+            "      <autn:title>Fish &amp; Chips</autn:title>\n" +
+            "      <autn:content><DOCUMENT><DRETITLE>One</DRETITLE></DOCUMENT></autn:content>\n" +
+            "    </autn:hit>\n" +
+            "    <autn:hit id='2' database='Archive'>\n" +
+            "      <autn:title><![CDATA[<Two>]]> &amp; more</autn:title>\n" +
+            "      <autn:content><DOCUMENT><DRETITLE>Two</DRETITLE><DRETITLE>Also two</DRETITLE></DOCUMENT></autn:content>\n" +
+            "    </autn:hit>\n" +
+            "    <autn:hit id='3'>\n" +
+            "      <autn:title>Three</autn:title>\n" +
+            "    </autn:hit>\n" +
+            "  </responsedata>\n" +
+            "</autnresponse>";
+
+    private static CompactDocument document;
+
+    @BeforeClass
+    public static void parseResponse() throws XMLStreamException {
+        document = parse(RESPONSE);
+    }
+
+    private static CompactDocument parse(final String xml) throws XMLStreamException {
+        final XMLStreamReader xmlStreamReader = createXMLStreamReader(xml);
+        try {
+            return CompactDocument.parse(xmlStreamReader);
+        } finally {
+            xmlStreamReader.close();
+        }
+    }
+
+    private static XMLStreamReader createXMLStreamReader(final String xml) throws XMLStreamException {
+        return XMLInputFactoryCache.getInstance().getXMLInputFactory(false, false, false, true, false, true)
+                .createXMLStreamReader(new StringReader(xml));
+    }
+
+    private static List<String> names(final List<CompactElement> elements) {
+        return elements.stream().map(CompactElement::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testNavigation() {
+        final CompactElement root = document.getRootElement();
+        assertThat(root.getName(), is(equalTo("autnresponse")));
+        assertThat(root.getParent(), is(nullValue()));
+        assertThat(names(root.getChildren()), contains("action", "response", "responsedata"));
+
+        final CompactElement responseData = root.getChild("responsedata");
+        assertThat(responseData.getParent(), is(equalTo(root)));
+        assertThat(responseData.getChildren("autn:hit"), hasSize(3));
+        assertThat(responseData.getChild("autn:numhits").getText(), is(equalTo("3")));
+        assertThat(responseData.getChild("autn:missing"), is(nullValue()));
+        assertThat(document.getElementCount(), is(18));
+    }
+
+    @Test
+    public void testText() {
+        final List<CompactElement> hits = document.select("/autnresponse/responsedata/autn:hit");
+
+        // Entities are replaced and CDATA sections are joined to the text around them...
+        assertThat(hits.get(0).getChild("autn:title").getText(), is(equalTo("Fish & Chips")));
+        assertThat(hits.get(1).getChild("autn:title").getText(), is(equalTo("<Two> & more")));
+
+        // The text of an element includes that of its descendants...
+        assertThat(hits.get(1).getChild("autn:content").getText(), is(equalTo("TwoAlso two")));
+    }
+
+    @Test
+    public void testNonLatin1Text() throws XMLStreamException {
+        final CompactDocument unicode = parse("<autnresponse><a>caf\u00e9</a><b>\u65e5\u672c</b><c x='\u20ac'>na\u00efve</c></autnresponse>");
+        assertThat(unicode.valueOf("/autnresponse/a"), is(equalTo("caf\u00e9")));
+        assertThat(unicode.valueOf("/autnresponse/b"), is(equalTo("\u65e5\u672c")));
+        assertThat(unicode.valueOf("/autnresponse/c/@x"), is(equalTo("\u20ac")));
+        assertThat(unicode.getRootElement().getText(), is(equalTo("caf\u00e9\u65e5\u672cna\u00efve")));
+    }
+
+    @Test
+    public void testAttributes() {
+        final CompactElement hit = document.selectFirst("//autn:hit");
+        assertThat(hit.getAttribute("id"), is(equalTo("1")));
+        assertThat(hit.getAttribute("missing"), is(nullValue()));
+        assertThat(hit.getAttributes().keySet(), contains("id", "database"));
+        assertThat(hit.getChild("autn:title").getAttributes().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testSelect() {
+        assertThat(document.select("/autnresponse/responsedata/autn:hit"), hasSize(3));
+        assertThat(document.select("//DRETITLE"), hasSize(3));
+        assertThat(document.select("/autnresponse/responsedata/*"), hasSize(4));
+        assertThat(document.select("//nothing"), is(empty()));
+        assertThat(document.select("/responsedata"), is(empty()));
+
+        // Positions are counted from each parent...
+        assertThat(document.select("//DOCUMENT/DRETITLE[1]").stream().map(CompactElement::getText).collect(Collectors.toList()), contains("One", "Two"));
+        assertThat(document.selectFirst("//autn:hit[2]").getAttribute("id"), is(equalTo("2")));
+        assertThat(document.selectFirst("//autn:hit[4]"), is(nullValue()));
+
+        // Relative paths start from the element...
+        final CompactElement hit = document.selectFirst("//autn:hit[2]");
+        assertThat(hit.select("autn:content//DRETITLE"), hasSize(2));
+        assertThat(hit.selectFirst("/autnresponse"), is(equalTo(document.getRootElement())));
+
+        // Elements selected more than once are only returned once, in document order...
+        assertThat(names(document.select("//*//DRETITLE")), contains("DRETITLE", "DRETITLE", "DRETITLE"));
+    }
+
+    @Test
+    public void testSelectNestedDescendants() throws XMLStreamException {
+        final CompactDocument nested = parse("<r><a id='1'><a id='2'><a id='3'/></a></a><b><a id='4'/></b></r>");
+
+        // Elements inside other selected elements with the same name are still selected...
+        assertThat(ids(nested.select("//a")), contains("1", "2", "3", "4"));
+        assertThat(ids(nested.select("//a[1]")), contains("1", "2", "3", "4"));
+        assertThat(ids(nested.select("//a//a")), contains("2", "3"));
+        assertThat(ids(nested.select("//a//a[1]")), contains("2", "3"));
+        assertThat(ids(nested.select("//b//a")), contains("4"));
+    }
+
+    private static List<String> ids(final List<CompactElement> elements) {
+        return elements.stream().map(element -> element.getAttribute("id")).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testValueOf() {
+        assertThat(document.valueOf("/autnresponse/action"), is(equalTo("QUERY")));
+        assertThat(document.valueOf("//autn:hit[3]/autn:title"), is(equalTo("Three")));
+        assertThat(document.valueOf("//autn:hit[2]/@database"), is(equalTo("Archive")));
+        assertThat(document.valueOf("//autn:hit[3]/@database"), is(equalTo("")));
+        assertThat(document.valueOf("//nothing"), is(equalTo("")));
+        assertThat(document.valueOf("/@id"), is(equalTo("")));
+        assertThat(document.selectFirst("//autn:hit").valueOf("@id"), is(equalTo("1")));
+        assertThat(document.selectFirst("//autn:hit").valueOf("autn:title"), is(equalTo("Fish & Chips")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSelectUnsupportedFunction() {
+        document.select("//autn:hit/text()");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSelectBadPosition() {
+        document.select("//autn:hit[last()]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSelectZeroPosition() {
+        document.select("//autn:hit[0]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSelectAttribute() {
+        document.select("//autn:hit/@id");
+    }
+
+    @Test
+    public void testParsePartOfDocument() throws XMLStreamException {
+        final XMLStreamReader xmlStreamReader = createXMLStreamReader(RESPONSE);
+
+        // Move to the second hit...
+        int hits = 0;
+        while (hits < 2) {
+            if ((xmlStreamReader.next() == XMLStreamReader.START_ELEMENT) && "autn:hit".equals(xmlStreamReader.getLocalName())) {
+                hits++;
+            }
+        }
+
+        final CompactDocument hit = CompactDocument.parse(xmlStreamReader);
+        assertThat(hit.getRootElement().getAttribute("id"), is(equalTo("2")));
+        assertThat(hit.select("/*/*"), hasSize(2));
+        assertThat(hit.select("/*"), hasSize(1));
+    }
+
+    @Test
+    public void testToDocument() throws XPathExpressionException {
+        final Document dom = document.toDocument();
+        final javax.xml.xpath.XPath xpath = XPathFactory.newInstance().newXPath();
+
+        assertThat(xpath.evaluate("/autnresponse/response", dom), is(equalTo("SUCCESS")));
+        assertThat(((NodeList) xpath.evaluate("//DRETITLE", dom, XPathConstants.NODESET)).getLength(), is(3));
+
+        // The text of the DOM should be the same as that of the compact document...
+        assertThat(dom.getDocumentElement().getTextContent(), is(equalTo(document.getRootElement().getText())));
+
+        // As with the DocumentProcessor, prefixes are part of the element names...
+        final NodeList hits = dom.getElementsByTagName("autn:hit");
+        assertThat(hits.getLength(), is(3));
+
+        final Element hit = (Element) hits.item(1);
+        assertThat(hit.getAttribute("database"), is(equalTo("Archive")));
+        assertThat(hit.getElementsByTagName("autn:title").item(0).getTextContent(), is(equalTo("<Two> & more")));
+        assertThat(hit.getFirstChild().getNodeType(), is(Node.TEXT_NODE));
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import com.autonomy.aci.client.util.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * JUnit test class for the <code>com.autonomy.aci.client.services.impl.ErrorResponseSniffer</code> class.
+ */
+public class ErrorResponseSnifferTest {
+
+    private static byte[] getResource(final String resource) throws IOException {
+        try (final InputStream inputStream = ErrorResponseSnifferTest.class.getResourceAsStream(resource)) {
+            return toBytes(inputStream);
+        }
+    }
+
+    private static byte[] toBytes(final InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        IOUtils.getInstance().copy(inputStream, buffer);
+        return buffer.toByteArray();
+    }
+
+    private static AciResponseInputStream createResponse(final byte[] content, final String contentType) {
+        return new ByteArrayAciResponseInputStream(content, 200, contentType, null, null);
+    }
+
+    @Test
+    public void testSniffError() throws IOException {
+        final byte[] content = getResource("/AciException-1.xml");
+        final ErrorResponseSniffer.SniffedResponse sniffed = ErrorResponseSniffer.sniff(createResponse(content, "text/xml"));
+
+        assertThat(sniffed.getResult(), is(ErrorResponseSniffer.Result.ERROR));
+        assertThat(toBytes(sniffed), is(equalTo(content)));
+    }
+
+    @Test
+    public void testSniffSuccess() throws IOException {
+        final byte[] content = getResource("/GetVersion.xml");
+        final ErrorResponseSniffer.SniffedResponse sniffed = ErrorResponseSniffer.sniff(createResponse(content, "text/xml"));
+
+        assertThat(sniffed.getResult(), is(ErrorResponseSniffer.Result.SUCCESS));
+        assertThat(toBytes(sniffed), is(equalTo(content)));
+    }
+
+    @Test
+    public void testSniffLargeResponse() throws IOException {
+        final byte[] padding = new byte[ErrorResponseSniffer.LOOKAHEAD * 4];
+        Arrays.fill(padding, (byte) 'x');
+        final byte[] content = ("<autnresponse><action>GETCONTENT</action><response>SUCCESS</response><responsedata>"
+                + new String(padding, StandardCharsets.US_ASCII) + "</responsedata></autnresponse>").getBytes(StandardCharsets.UTF_8);
+
+        final ErrorResponseSniffer.SniffedResponse sniffed = ErrorResponseSniffer.sniff(createResponse(content, "text/xml"));
+
+        assertThat(sniffed.getResult(), is(ErrorResponseSniffer.Result.SUCCESS));
+        assertThat(toBytes(sniffed), is(equalTo(content)));
+    }
+
+    @Test
+    public void testSniffResponseElementTooFarIn() throws IOException {
+        final byte[] padding = new byte[ErrorResponseSniffer.LOOKAHEAD];
+        Arrays.fill(padding, (byte) ' ');
+        final byte[] content = ("<autnresponse>" + new String(padding, StandardCharsets.US_ASCII)
+                + "<response>ERROR</response></autnresponse>").getBytes(StandardCharsets.UTF_8);
+
+        final ErrorResponseSniffer.SniffedResponse sniffed = ErrorResponseSniffer.sniff(createResponse(content, "text/xml"));
+
+        assertThat(sniffed.getResult(), is(ErrorResponseSniffer.Result.UNKNOWN));
+        assertThat(toBytes(sniffed), is(equalTo(content)));
+    }
+
+    @Test
+    public void testSniffShortResponse() throws IOException {
+        final byte[] content = "<autnresponse><respon".getBytes(StandardCharsets.UTF_8);
+        final ErrorResponseSniffer.SniffedResponse sniffed = ErrorResponseSniffer.sniff(createResponse(content, "text/xml"));
+
+        assertThat(sniffed.getResult(), is(ErrorResponseSniffer.Result.UNKNOWN));
+        assertThat(toBytes(sniffed), is(equalTo(content)));
+    }
+
+    @Test
+    public void testSniffTrickledResponse() throws IOException {
+        final byte[] content = getResource("/AciException-1.xml");
+        final AciResponseInputStream response = spy(createResponse(content, "text/xml"));
+
+        // Only give the sniffer a byte at a time...
+        doAnswer(invocation -> {
+            final int read = response.read();
+            if (read == -1) {
+                return -1;
+            }
+            ((byte[]) invocation.getArgument(0))[(Integer) invocation.getArgument(1)] = (byte) read;
+            return 1;
+        }).when(response).read(any(byte[].class), anyInt(), anyInt());
+
+        final ErrorResponseSniffer.SniffedResponse sniffed = ErrorResponseSniffer.sniff(response);
+
+        assertThat(sniffed.getResult(), is(ErrorResponseSniffer.Result.ERROR));
+        assertThat(toBytes(sniffed), is(equalTo(content)));
+    }
+
+    @Test
+    public void testSniffedResponseDelegation() throws IOException {
+        final AciResponseInputStream response = spy(createResponse(getResource("/GetVersion.xml"), "text/xml; charset=UTF-8"));
+        when(response.getContentEncoding()).thenReturn("gzip");
+        when(response.getHeader("AUTN-Content-Type")).thenReturn("text/xml");
+
+        final ErrorResponseSniffer.SniffedResponse sniffed = ErrorResponseSniffer.sniff(response);
+
+        assertThat(sniffed.getStatusCode(), is(200));
+        assertThat(sniffed.getContentType(), is(equalTo("text/xml; charset=UTF-8")));
+        assertThat(sniffed.getContentEncoding(), is(equalTo("gzip")));
+        assertThat(sniffed.getContentLength(), is(response.getContentLength()));
+        assertThat(sniffed.getHeader("AUTN-Content-Type"), is(equalTo("text/xml")));
+
+        sniffed.close();
+        verify(response).close();
+    }
+
+    @Test
+    public void testCheckForError() throws IOException {
+        try {
+            ErrorResponseSniffer.checkForError(createResponse(getResource("/AciException-1.xml"), "text/xml"));
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getErrorId(), is(equalTo("AutonomyIDOLServerWOBBLE1")));
+        }
+    }
+
+    @Test
+    public void testCheckForErrorSuccess() throws IOException {
+        final byte[] content = getResource("/GetVersion.xml");
+        final AciResponseInputStream checked = ErrorResponseSniffer.checkForError(createResponse(content, "text/xml"));
+
+        assertThat(toBytes(checked), is(equalTo(content)));
+    }
+
+    @Test
+    public void testCheckForErrorNonXmlResponse() throws IOException {
+        final AciResponseInputStream response = spy(createResponse(getResource("/AciException-1.xml"), "image/jpeg"));
+
+        assertThat(ErrorResponseSniffer.checkForError(response), is(sameInstance(response)));
+        verify(response, never()).read(any(byte[].class), anyInt(), anyInt());
+    }
+
+}
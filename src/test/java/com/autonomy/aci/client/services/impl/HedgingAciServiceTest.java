@@ -0,0 +1,459 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.ReflectionTestUtils;
+import com.autonomy.aci.client.mock.MockAciServer;
+import com.autonomy.aci.client.mock.MockResponse;
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.AciService;
+import com.autonomy.aci.client.services.AciServiceException;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.transport.impl.AciResponseInputStreamImpl;
+import com.autonomy.aci.client.transport.impl.AsyncAciHttpClientImpl;
+import com.autonomy.aci.client.transport.impl.HttpAsyncClient5Factory;
+import com.autonomy.aci.client.util.ActionParameters;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.*;
+
+/**
+ * JUnit test class for the <code>com.autonomy.aci.client.services.impl.HedgingAciService</code> class.
+ */
+public class HedgingAciServiceTest {
+
+    private final AciServerDetails server1 = new AciServerDetails("host1", 9000);
+
+    private final AciServerDetails server2 = new AciServerDetails("host2", 9000);
+
+    private final AciResponseInputStreamImpl fastResponse = mock(AciResponseInputStreamImpl.class);
+
+    private final AciResponseInputStreamImpl slowResponse = mock(AciResponseInputStreamImpl.class);
+
+    /**
+     * Released at the end of each test so that no slow attempts are left running...
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * Returns "slow" for the slow response once it's been released, and "fast" immediately for the fast one...
+     */
+    private final Processor<String> processor = response -> {
+        if (response == slowResponse) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            return "slow";
+        }
+        return "fast";
+    };
+
+    private AciService mockAciService;
+
+    private HedgingAciService service;
+
+    @Before
+    public void setUp() {
+        mockAciService = mock(AciService.class);
+        service = new HedgingAciService(mockAciService, Arrays.asList(server1, server2));
+        service.setMinimumSamples(5);
+        service.setHedgeRatio(1.0);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        service.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void respondWith(final AciResponseInputStreamImpl... responses) {
+        final AtomicBoolean first = new AtomicBoolean(true);
+
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), any(Processor.class))).thenAnswer(invocation -> {
+            final Processor<String> wrapped = invocation.getArgument(2);
+            return wrapped.process(first.getAndSet(false) ? responses[0] : responses[responses.length - 1]);
+        });
+    }
+
+    private void warmUp() {
+        warmUpWith("Query");
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    latch.await(10, TimeUnit.SECONDS);
+                    return;
+                } catch (final InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private int getRecordedSamples() throws NoSuchFieldException, IllegalAccessException {
+        final Object latencies = ReflectionTestUtils.getAccessibleField(HedgingAciService.class, "latencies").get(service);
+        return ReflectionTestUtils.getAccessibleField(latencies.getClass(), "count").getInt(latencies);
+    }
+
+    private void warmUpWith(final String action) {
+        respondWith(fastResponse);
+
+        // Stop timing jitter causing hedges while warming up...
+        final double hedgeRatio = service.getHedgeRatio();
+        service.setHedgeRatio(0.0);
+
+        for (int ii = 0; ii < 20; ii++) {
+            assertThat(service.executeAction(new ActionParameters(action), processor), is(equalTo("fast")));
+        }
+
+        assertThat(service.getHedgeDelay(), is(greaterThanOrEqualTo(0L)));
+        assertThat(service.getHedgeCount(), is(0));
+
+        service.setHedgeRatio(hedgeRatio);
+        reset(mockAciService);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullAciService() {
+        new HedgingAciService(null, Collections.singletonList(server1));
+        fail("Should have thrown a NullPointerException...");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoServers() {
+        new HedgingAciService(mockAciService, Collections.emptyList());
+        fail("Should have thrown an IllegalArgumentException...");
+    }
+
+    @Test
+    public void testNotHedgedBeforeMinimumSamples() {
+        respondWith(fastResponse);
+
+        service.setMinimumSamples(100);
+        for (int ii = 0; ii < 20; ii++) {
+            service.executeAction(new ActionParameters("Query"), processor);
+        }
+
+        assertThat(service.getHedgeDelay(), is(-1L));
+        assertThat(service.getHedgeCount(), is(0));
+    }
+
+    @Test
+    public void testSlowResponseHedged() throws IOException {
+        warmUp();
+        respondWith(slowResponse, fastResponse);
+
+        final long start = System.nanoTime();
+        assertThat(service.executeAction(new ActionParameters("Query"), processor), is(equalTo("fast")));
+
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), is(lessThan(5L)));
+        assertThat(service.getHedgeCount(), is(1));
+        verify(mockAciService, times(2)).executeAction(any(AciServerDetails.class), anySet(), any(Processor.class));
+
+        // The loser's response should have been aborted rather than read to the end...
+        verify(slowResponse, timeout(5000)).abort();
+        verify(fastResponse, never()).abort();
+    }
+
+    @Test
+    public void testHedgeGoesToOtherServer() {
+        warmUp();
+        respondWith(slowResponse, fastResponse);
+
+        service.executeAction(new ActionParameters("Query"), processor);
+
+        verify(mockAciService).executeAction(eq(server1), anySet(), any(Processor.class));
+        verify(mockAciService).executeAction(eq(server2), anySet(), any(Processor.class));
+    }
+
+    @Test
+    public void testNonHedgeableActionNotHedged() {
+        warmUp();
+        respondWith(slowResponse, fastResponse);
+        release.countDown();
+
+        assertThat(service.executeAction(new ActionParameters("DREADD"), processor), is(equalTo("slow")));
+        assertThat(service.getHedgeCount(), is(0));
+        verify(mockAciService, times(1)).executeAction(any(AciServerDetails.class), anySet(), any(Processor.class));
+    }
+
+    @Test
+    public void testCustomHedgeableActions() {
+        service.setHedgeableActions(Collections.singleton("GetVersion"));
+        assertThat(service.getHedgeableActions(), org.hamcrest.Matchers.contains("getversion"));
+
+        warmUpWith("GetVersion");
+        respondWith(slowResponse, fastResponse);
+
+        assertThat(service.executeAction(new ActionParameters("getversion"), processor), is(equalTo("fast")));
+        assertThat(service.getHedgeCount(), is(1));
+    }
+
+    @Test
+    public void testBudgetExhausted() {
+        service.setHedgeRatio(0.0);
+        warmUp();
+        respondWith(slowResponse, fastResponse);
+        release.countDown();
+
+        assertThat(service.executeAction(new ActionParameters("Query"), processor), is(equalTo("slow")));
+        assertThat(service.getHedgeCount(), is(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedAttemptIgnoredIfOtherSucceeds() {
+        warmUp();
+
+        final AtomicBoolean first = new AtomicBoolean(true);
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), any(Processor.class))).thenAnswer(invocation -> {
+            if (first.getAndSet(false)) {
+                // Fails, but only after the hedge has been sent...
+                release.await(10, TimeUnit.SECONDS);
+                throw new AciServiceException(new IOException("Connection reset"));
+            }
+            release.countDown();
+            return ((Processor<String>) invocation.getArgument(2)).process(fastResponse);
+        });
+
+        assertThat(service.executeAction(new ActionParameters("Query"), processor), is(equalTo("fast")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFirstFailureThrownIfAllFail() {
+        warmUp();
+
+        final AciServiceException failure = new AciServiceException(new IOException("Connection refused"));
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), any(Processor.class))).thenThrow(failure);
+
+        try {
+            service.executeAction(new ActionParameters("Query"), processor);
+            fail("Should have thrown an AciServiceException...");
+        } catch (final AciServiceException ase) {
+            assertThat(ase, is(sameInstance(failure)));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAciErrorPropagated() {
+        warmUp();
+
+        // The warmed up hedge delay is so short that a busy machine could hedge before the error is thrown...
+        service.setHedgeRatio(0.0);
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), any(Processor.class))).thenThrow(new AciErrorException("ERROR"));
+
+        try {
+            service.executeAction(new ActionParameters("GetStatus"), processor);
+            fail("Should have thrown an AciErrorException...");
+        } catch (final AciErrorException aee) {
+            assertThat(service.getHedgeCount(), is(0));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLosingAttemptRecorded() throws Exception {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        service.close();
+        service = new HedgingAciService(mockAciService, Arrays.asList(server1, server2), executor);
+        service.setMinimumSamples(5);
+        service.setHedgeRatio(1.0);
+
+        warmUp();
+        assertThat(getRecordedSamples(), is(20));
+
+        final AtomicBoolean first = new AtomicBoolean(true);
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), any(Processor.class))).thenAnswer(invocation -> {
+            final Processor<String> wrapped = invocation.getArgument(2);
+            if (first.getAndSet(false)) {
+                // The first response only arrives after the hedge has won...
+                awaitUninterruptibly(release);
+                return wrapped.process(slowResponse);
+            }
+            return wrapped.process(fastResponse);
+        });
+
+        assertThat(service.executeAction(new ActionParameters("Query"), processor), is(equalTo("fast")));
+        assertThat(getRecordedSamples(), is(21));
+
+        // Once the loser's response has arrived it should have been recorded as well...
+        release.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+        assertThat(getRecordedSamples(), is(22));
+        verify(slowResponse).abort();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCallingThreadUsedWhenNoHedgePossible() {
+        // Nothing saved up from previous actions either...
+        service.setHedgeRatio(0.0);
+
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), any(Processor.class))).thenAnswer(invocation -> {
+            thread.set(Thread.currentThread());
+            return ((Processor<String>) invocation.getArgument(2)).process(fastResponse);
+        });
+
+        // Not enough samples to hedge yet...
+        assertThat(service.executeAction(new ActionParameters("Query"), processor), is(equalTo("fast")));
+        assertThat(thread.get(), is(sameInstance(Thread.currentThread())));
+
+        // No budget to hedge with...
+        for (int ii = 0; ii < 20; ii++) {
+            service.executeAction(new ActionParameters("Query"), processor);
+        }
+        assertThat(service.getHedgeDelay(), is(greaterThanOrEqualTo(0L)));
+        assertThat(thread.get(), is(sameInstance(Thread.currentThread())));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAsyncAciServiceUsedWithoutExecutor() {
+        final AsyncAciServiceImpl asyncAciService = mock(AsyncAciServiceImpl.class);
+        final ExecutorService executor = mock(ExecutorService.class);
+        final CompletableFuture<String> slow = new CompletableFuture<>();
+        final AtomicBoolean hedging = new AtomicBoolean();
+
+        when(asyncAciService.executeActionAsync(any(AciServerDetails.class), anySet(), any(Processor.class))).thenAnswer(invocation -> {
+            final Processor<String> wrapped = invocation.getArgument(2);
+            if (hedging.get() && (invocation.getArgument(0) == server1)) {
+                return slow;
+            }
+            return CompletableFuture.completedFuture(wrapped.process(fastResponse));
+        });
+
+        try (final HedgingAciService async = new HedgingAciService(asyncAciService, Arrays.asList(server1, server2), executor)) {
+            async.setMinimumSamples(5);
+            async.setHedgeRatio(1.0);
+
+            for (int ii = 0; ii < 20; ii++) {
+                assertThat(async.executeAction(new ActionParameters("Query"), processor), is(equalTo("fast")));
+            }
+
+            // After an even number of actions the next one starts on server1, which now doesn't answer...
+            hedging.set(true);
+
+            assertThat(async.executeAction(new ActionParameters("Query"), processor), is(equalTo("fast")));
+            assertThat(async.getHedgeCount(), is(1));
+        }
+
+        // The losing attempt is cancelled, and no threads were needed for any of it...
+        assertThat(slow.isCancelled(), is(true));
+        verify(asyncAciService, never()).executeAction(any(AciServerDetails.class), any(Set.class), any(Processor.class));
+        verifyNoInteractions(executor);
+    }
+
+    @Test
+    public void testLosingExchangeCancelled() throws IOException, InterruptedException {
+        final byte[] content = new byte[4 * 1024 * 1024];
+
+        try (final MockAciServer slowServer = new MockAciServer();
+             final MockAciServer fastServer = new MockAciServer();
+             final CloseableHttpAsyncClient httpAsyncClient = new HttpAsyncClient5Factory().createInstance();
+             final HedgingAciService async = new HedgingAciService(
+                     new AsyncAciServiceImpl(new AsyncAciHttpClientImpl(httpAsyncClient)),
+                     Arrays.asList(slowServer.getServerDetails(), fastServer.getServerDetails())
+             )) {
+            slowServer.setDefaultResponse(MockResponse.binary(new byte[100], "application/octet-stream"));
+            fastServer.setDefaultResponse(MockResponse.binary(new byte[100], "application/octet-stream"));
+            async.setMinimumSamples(5);
+            async.setHedgeRatio(0.0);
+
+            for (int ii = 0; ii < 20; ii++) {
+                async.executeAction(new ActionParameters("Query"), new BinaryResponseProcessor());
+            }
+
+            // After an even number of actions the next one starts on the slow server, which trickles out a big response...
+            slowServer.setResponse("Query", MockResponse.binary(content, "application/octet-stream"));
+            slowServer.setBytesPerSecond(512 * 1024);
+            fastServer.setResponse("Query", MockResponse.binary(content, "application/octet-stream"));
+            async.setHedgeRatio(1.0);
+
+            assertThat(async.executeAction(new ActionParameters("Query"), new BinaryResponseProcessor()).length, is(content.length));
+            assertThat(async.getHedgeCount(), is(1));
+
+            // The losing exchange should have been cancelled, rather than left to download the rest of its response...
+            assertThat(slowServer.awaitWritesStopped(), is(lessThan(content.length / 4L)));
+        }
+    }
+
+    @Test
+    public void testSpecificServerNotHedged() {
+        final ActionParameters parameters = new ActionParameters("Query");
+        when(mockAciService.executeAction(server2, parameters, processor)).thenReturn("result");
+
+        assertThat(service.executeAction(server2, parameters, processor), is(equalTo("result")));
+    }
+
+    @Test
+    public void testProperties() {
+        service.setPercentile(0.99);
+        service.setMinimumSamples(50);
+        service.setHedgeRatio(0.1);
+
+        assertThat(service.getPercentile(), is(0.99));
+        assertThat(service.getMinimumSamples(), is(50));
+        assertThat(service.getHedgeRatio(), is(0.1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        service.setPercentile(1.5);
+        fail("Should have thrown an IllegalArgumentException...");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHedgeRatio() {
+        service.setHedgeRatio(-0.1);
+        fail("Should have thrown an IllegalArgumentException...");
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import com.autonomy.aci.client.util.JsonTokenizer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+/**
+ * JUnit tests for <code>com.autonomy.aci.client.services.impl.JsonElementIterator</code>.
+ */
+public class JsonElementIteratorTest {
+
+    /**
+     * Returns the reference of each hit, leaving the tokenizer at the end of the hit.
+     */
+    static class ReferenceProcessor extends AbstractJsonProcessor<String> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String process(final JsonTokenizer aciResponse) {
+            try {
+                final int depth = aciResponse.getDepth();
+                String reference = null;
+                while (aciResponse.next() != JsonTokenizer.Token.END_OBJECT || aciResponse.getDepth() >= depth) {
+                    if ((aciResponse.getToken() == JsonTokenizer.Token.FIELD_NAME) && aciResponse.textEquals("autn:reference")) {
+                        aciResponse.next();
+                        reference = aciResponse.getText();
+                    } else {
+                        aciResponse.skipValue();
+                    }
+                }
+                return reference;
+            } catch (final IOException ioe) {
+                throw new ProcessorException(ioe);
+            }
+        }
+
+    }
+
+    private static AciResponseInputStream createResponse(final String json) {
+        return spy(new ByteArrayAciResponseInputStream(json.getBytes(StandardCharsets.UTF_8), 200, "application/json", null, null));
+    }
+
+    @Test
+    public void testArray() throws IOException {
+        final AciResponseInputStream response = spy(AbstractJsonProcessorTest.createResponse("/Query.json", "application/json"));
+
+        try (final Stream<String> references = new JsonElementIterator<>(response, "hit", new ReferenceProcessor()).stream()) {
+            verify(response, never()).close();
+            assertThat(references.collect(Collectors.toList()),
+                    is(equalTo(Arrays.asList("http://www.example.com/one", "http://www.example.com/two", "http://www.example.com/three"))));
+        }
+
+        verify(response, atLeastOnce()).close();
+    }
+
+    @Test
+    public void testSingleValueAndScalars() {
+        // A single hit isn't in an array, and scalar values can be iterated over too...
+        final AciResponseInputStream response = createResponse("{\"autnresponse\": {\"response\": \"SUCCESS\", \"responsedata\": "
+                + "{\"autn:hit\": {\"autn:reference\": \"only\"}, \"autn:database\": [\"One\", \"Two\"], \"after\": {\"autn:hit\": {\"autn:reference\": \"later\"}}}}}");
+
+        final JsonElementIterator<String> iterator = new JsonElementIterator<>(response, "autn:hit", new ReferenceProcessor());
+        assertThat(iterator.next(), is(equalTo("only")));
+        assertThat(iterator.next(), is(equalTo("later")));
+        assertThat(iterator.hasNext(), is(false));
+
+        final List<String> databases = new JsonElementIterator<String>(createResponse("{\"autnresponse\": {\"response\": \"SUCCESS\", "
+                + "\"responsedata\": {\"autn:database\": [\"One\", \"Two\"]}}}"), "database", new AbstractJsonProcessor<String>() {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    public String process(final JsonTokenizer aciResponse) {
+                        return aciResponse.getText();
+                    }
+                }).stream()
+                .collect(Collectors.toList());
+        assertThat(databases, is(equalTo(Arrays.asList("One", "Two"))));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        final AciResponseInputStream response = createResponse("{\"autnresponse\": {\"response\": \"SUCCESS\", \"responsedata\": {\"autn:numhits\": 0, \"autn:hit\": []}}}");
+        final JsonElementIterator<String> iterator = new JsonElementIterator<>(response, "autn:hit", new ReferenceProcessor());
+
+        assertThat(iterator.hasNext(), is(false));
+        verify(response).close();
+
+        try {
+            iterator.next();
+            fail("Should have thrown a NoSuchElementException.");
+        } catch (final NoSuchElementException nsee) {
+            // Expected...
+        }
+    }
+
+    @Test
+    public void testErrorResponse() throws IOException {
+        final AciResponseInputStream response = spy(AbstractJsonProcessorTest.createResponse("/AciException.json", "application/json"));
+
+        try {
+            new JsonElementIterator<>(response, "autn:hit", new ReferenceProcessor());
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getErrorId(), is(equalTo("AutonomyIDOLServerWOBBLE1")));
+        }
+
+        verify(response).close();
+    }
+
+    @Test
+    public void testNonJsonResponse() throws IOException {
+        final AciResponseInputStream response = spy(AbstractJsonProcessorTest.createResponse("/GetVersion.xml", "text/xml"));
+
+        try {
+            new JsonElementIterator<>(response, "autn:hit", new ReferenceProcessor());
+            fail("Should have thrown a ProcessorException.");
+        } catch (final ProcessorException pe) {
+            verify(response).close();
+        }
+    }
+
+    @Test
+    public void testMalformedResponse() throws IOException {
+        final AciResponseInputStream response = createResponse("{\"autnresponse\": {\"response\": \"SUCCESS\", \"responsedata\": {\"autn:hit\": [{\"autn:reference\": \"one\"}, ");
+        final JsonElementIterator<String> iterator = new JsonElementIterator<>(response, "autn:hit", new ReferenceProcessor());
+        assertThat(iterator.next(), is(equalTo("one")));
+
+        try {
+            iterator.hasNext();
+            fail("Should have thrown a ProcessorException.");
+        } catch (final ProcessorException pe) {
+            verify(response).close();
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * JUnit tests for <code>com.autonomy.aci.client.services.impl.JsonErrorProcessor</code>.
+ */
+public class JsonErrorProcessorTest {
+
+    @Test
+    public void testFullErrorResponse() throws IOException {
+        try {
+            new JsonErrorProcessor().process(AbstractJsonProcessorTest.createResponse("/AciException.json", "application/json"));
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getErrorId(), is(equalTo("AutonomyIDOLServerWOBBLE1")));
+            assertThat(aee.getRawErrorId(), is(equalTo("0x1")));
+            assertThat(aee.getErrorString(), is(equalTo("ERRORNOTIMPLEMENTED")));
+            assertThat(aee.getErrorDescription(), is(equalTo("The requested action is not recognised")));
+            assertThat(aee.getErrorCode(), is(equalTo("ERRORNOTIMPLEMENTED")));
+            assertThat(aee.getErrorTime(), is(equalTo(new GregorianCalendar(2009, Calendar.FEBRUARY, 16, 13, 52, 1).getTime())));
+        }
+    }
+
+    @Test
+    public void testPartialErrorResponse() {
+        final String json = "{\"error\": {\"errorid\": \"AutonomyIDOLServerWOBBLE1\", \"errorcode\": 42, \"extra\": [1, 2]}}";
+
+        try {
+            new JsonErrorProcessor().process(new ByteArrayAciResponseInputStream(json.getBytes(StandardCharsets.UTF_8), 200, "application/json", null, null));
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getErrorId(), is(equalTo("AutonomyIDOLServerWOBBLE1")));
+            assertThat(aee.getErrorCode(), is(equalTo("42")));
+            assertThat(aee.getErrorString(), is(nullValue()));
+        }
+    }
+
+    @Test(expected = ProcessorException.class)
+    public void testMalformedResponse() {
+        final byte[] json = "{\"error\": {\"errorid\": ".getBytes(StandardCharsets.UTF_8);
+        new JsonErrorProcessor().process(new ByteArrayAciResponseInputStream(json, 200, "application/json", null, null));
+    }
+
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.AciService;
+import com.autonomy.aci.client.services.AciServiceException;
+import com.autonomy.aci.client.services.Processor;
+import com.autonomy.aci.client.transport.AciHttpClient;
+import com.autonomy.aci.client.transport.AciHttpException;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.util.ActionParameters;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * JUnit test class for the <code>com.autonomy.aci.client.services.impl.LoadBalancingAciService</code> class.
+ */
+public class LoadBalancingAciServiceTest {
+
+    private final AciServerDetails server1 = new AciServerDetails("host1", 9000);
+
+    private final AciServerDetails server2 = new AciServerDetails("host2", 9000);
+
+    private final AciServerDetails server3 = new AciServerDetails("host3", 9000);
+
+    /**
+     * The time reported by the ticker, which the mocked actions move on as if they took that long.
+     */
+    private final AtomicLong now = new AtomicLong();
+
+    /**
+     * Probes that have been scheduled, which are only run when the test says so.
+     */
+    private final List<Runnable> probes = new ArrayList<>();
+
+    private ScheduledExecutorService probeExecutor;
+
+    private AciService mockAciService;
+
+    private LoadBalancingAciService service;
+
+    @Before
+    public void setUp() {
+        probeExecutor = mock(ScheduledExecutorService.class);
+        when(probeExecutor.schedule(any(Runnable.class), anyLong(), any(TimeUnit.class))).thenAnswer(invocation -> {
+            probes.add(invocation.getArgument(0));
+            return null;
+        });
+
+        mockAciService = mock(AciService.class);
+        service = createService(server1, server2, server3);
+    }
+
+    private LoadBalancingAciService createService(final AciServerDetails... servers) {
+        return new LoadBalancingAciService(mockAciService, Arrays.asList(servers), probeExecutor, now::get);
+    }
+
+    private void runProbes() {
+        final List<Runnable> scheduled = new ArrayList<>(probes);
+        probes.clear();
+        scheduled.forEach(Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        service.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Processor<String> mockProcessor() {
+        return mock(Processor.class);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullAciService() {
+        new LoadBalancingAciService((AciService) null, Collections.singletonList(server1));
+        fail("Should have thrown a NullPointerException...");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullAciHttpClient() {
+        new LoadBalancingAciService((AciHttpClient) null, Collections.singletonList(server1));
+        fail("Should have thrown a NullPointerException...");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoServers() {
+        new LoadBalancingAciService(mockAciService, Collections.emptyList());
+        fail("Should have thrown an IllegalArgumentException...");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullServer() {
+        new LoadBalancingAciService(mockAciService, Arrays.asList(server1, null));
+        fail("Should have thrown an IllegalArgumentException...");
+    }
+
+    @Test
+    public void testAciHttpClientConstructor() {
+        try (final LoadBalancingAciService httpService = new LoadBalancingAciService(mock(AciHttpClient.class), Collections.singletonList(server1))) {
+            assertThat(httpService.getAvailableServers(), contains(server1));
+        }
+    }
+
+    @Test
+    public void testSpreadsLoad() {
+        final Processor<String> processor = mockProcessor();
+        final Map<String, Integer> counts = new HashMap<>();
+
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), eq(processor))).thenAnswer(invocation -> {
+            final AciServerDetails details = invocation.getArgument(0);
+            counts.merge(details.getHost(), 1, Integer::sum);
+            return details.getHost();
+        });
+
+        for (int ii = 0; ii < 300; ii++) {
+            service.executeAction(new ActionParameters("GetVersion"), processor);
+        }
+
+        assertThat(counts.keySet(), containsInAnyOrder("host1", "host2", "host3"));
+    }
+
+    @Test
+    public void testPrefersFasterServer() {
+        final Processor<String> processor = mockProcessor();
+        final Map<String, Integer> counts = new HashMap<>();
+
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), eq(processor))).thenAnswer(invocation -> {
+            final AciServerDetails details = invocation.getArgument(0);
+            counts.merge(details.getHost(), 1, Integer::sum);
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos("host1".equals(details.getHost()) ? 1L : 20L));
+            return details.getHost();
+        });
+
+        for (int ii = 0; ii < 200; ii++) {
+            service.executeAction(new ActionParameters("GetVersion"), processor);
+        }
+
+        // host1 wins every comparison it's part of, i.e. two thirds of them...
+        assertThat(counts.get("host1"), is(greaterThan(100)));
+    }
+
+    @Test
+    public void testSpecificServerBypassesBalancing() {
+        final Processor<String> processor = mockProcessor();
+        final ActionParameters parameters = new ActionParameters("GetVersion");
+        when(mockAciService.executeAction(server2, parameters, processor)).thenReturn("result");
+
+        assertThat(service.executeAction(server2, parameters, processor), is(equalTo("result")));
+    }
+
+    @Test
+    public void testFailingServerEjectedAndProbed() {
+        final Processor<String> processor = mockProcessor();
+        final AtomicBoolean host1Down = new AtomicBoolean(true);
+
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), any(Processor.class))).thenAnswer(invocation -> {
+            final AciServerDetails details = invocation.getArgument(0);
+            if (host1Down.get() && "host1".equals(details.getHost())) {
+                throw new AciServiceException(new IOException("Connection refused"));
+            }
+            return details.getHost();
+        });
+
+        service.setFailureThreshold(2);
+        service.setProbeInterval(50L);
+
+        int failures = 0;
+        for (int ii = 0; ii < 100; ii++) {
+            try {
+                assertThat(service.executeAction(new ActionParameters("GetVersion"), processor), is(not(equalTo("host1"))));
+            } catch (final AciServiceException ase) {
+                failures++;
+            }
+        }
+
+        assertThat(failures, is(2));
+        assertThat(service.getAvailableServers(), containsInAnyOrder(server2, server3));
+        verify(probeExecutor).schedule(any(Runnable.class), eq(50L), eq(TimeUnit.MILLISECONDS));
+
+        // The probe fails while host1 is still down, so another is scheduled...
+        runProbes();
+        assertThat(service.getAvailableServers(), containsInAnyOrder(server2, server3));
+        assertThat(probes, hasSize(1));
+
+        // The probe succeeds now host1 is back...
+        host1Down.set(false);
+        runProbes();
+        assertThat(service.getAvailableServers(), containsInAnyOrder(server1, server2, server3));
+        assertThat(probes, is(empty()));
+    }
+
+    @Test
+    public void testReinstatedServerNotFlooded() {
+        final Processor<String> processor = mockProcessor();
+        final AtomicBoolean host1Down = new AtomicBoolean(true);
+        final AtomicBoolean nested = new AtomicBoolean();
+        final Map<String, Integer> nestedCounts = new HashMap<>();
+
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), any(Processor.class))).thenAnswer(invocation -> {
+            final AciServerDetails details = invocation.getArgument(0);
+            if ("host1".equals(details.getHost())) {
+                if (host1Down.get()) {
+                    throw new AciServiceException(new IOException("Connection refused"));
+                }
+
+                // Other actions arrive while host1 is busy with its first one since coming back, rather than the probe...
+                if ((invocation.getArgument(2) == processor) && nested.compareAndSet(false, true)) {
+                    for (int ii = 0; ii < 20; ii++) {
+                        nestedCounts.merge(service.executeAction(new ActionParameters("GetVersion"), processor), 1, Integer::sum);
+                    }
+                }
+            }
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(10L));
+            return details.getHost();
+        });
+
+        service.setFailureThreshold(1);
+
+        // Build up some history for the pool, while host1 is ejected...
+        for (int ii = 0; (ii < 100) && (service.getAvailableServers().size() == 3); ii++) {
+            try {
+                service.executeAction(new ActionParameters("GetVersion"), processor);
+            } catch (final AciServiceException ase) {
+                // Expected from host1...
+            }
+        }
+        for (int ii = 0; ii < 20; ii++) {
+            service.executeAction(new ActionParameters("GetVersion"), processor);
+        }
+
+        host1Down.set(false);
+        runProbes();
+        assertThat(service.getAvailableServers(), containsInAnyOrder(server1, server2, server3));
+
+        for (int ii = 0; (ii < 100) && !nested.get(); ii++) {
+            service.executeAction(new ActionParameters("GetVersion"), processor);
+        }
+
+        // host1 starts out as fast as the rest, so while it's busy the others are cheaper...
+        assertThat(nested.get(), is(true));
+        assertThat(nestedCounts.get("host1"), is(nullValue()));
+    }
+
+    @Test
+    public void testFailedProbeKeepsServerEjected() {
+        final Processor<String> processor = mockProcessor();
+
+        when(mockAciService.executeAction(eq(server1), anySet(), any(Processor.class))).thenThrow(new AciServiceException(new AciHttpException("Bad gateway")));
+
+        try (final LoadBalancingAciService single = createService(server1)) {
+            single.setFailureThreshold(1);
+            single.setProbeInterval(20L);
+
+            try {
+                single.executeAction(new ActionParameters("GetVersion"), processor);
+                fail("Should have thrown an AciServiceException...");
+            } catch (final AciServiceException ase) {
+                assertThat(ase.getCause(), is(instanceOf(AciHttpException.class)));
+            }
+
+            // Initial action plus two probes...
+            runProbes();
+            runProbes();
+            verify(mockAciService, times(3)).executeAction(eq(server1), anySet(), any(Processor.class));
+            assertThat(single.getAvailableServers(), is(empty()));
+            assertThat(probes, hasSize(1));
+
+            // With every server ejected, actions are still attempted...
+            try {
+                single.executeAction(new ActionParameters("GetVersion"), processor);
+                fail("Should have thrown an AciServiceException...");
+            } catch (final AciServiceException ase) {
+                assertThat(ase.getCause(), is(instanceOf(AciHttpException.class)));
+            }
+        }
+    }
+
+    @Test
+    public void testAciErrorNotAFailure() {
+        final Processor<String> processor = mockProcessor();
+        when(mockAciService.executeAction(any(AciServerDetails.class), anySet(), eq(processor))).thenThrow(new AciErrorException("ERROR"));
+
+        service.setFailureThreshold(1);
+
+        for (int ii = 0; ii < 10; ii++) {
+            try {
+                service.executeAction(new ActionParameters("GetVersion"), processor);
+                fail("Should have thrown an AciErrorException...");
+            } catch (final AciErrorException aee) {
+                // Expected...
+            }
+        }
+
+        assertThat(service.getAvailableServers(), containsInAnyOrder(server1, server2, server3));
+    }
+
+    @Test
+    public void testProperties() {
+        service.setFailureThreshold(5);
+        service.setProbeInterval(1000L);
+        service.setDecay(0.5);
+
+        assertThat(service.getFailureThreshold(), is(5));
+        assertThat(service.getProbeInterval(), is(1000L));
+        assertThat(service.getDecay(), is(0.5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDecay() {
+        service.setDecay(0.0);
+        fail("Should have thrown an IllegalArgumentException...");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFailureThreshold() {
+        service.setFailureThreshold(0);
+        fail("Should have thrown an IllegalArgumentException...");
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * JUnit tests for <code>com.autonomy.aci.client.services.impl.PathResponseProcessor</code>.
+ */
+public class PathResponseProcessorTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static AciResponseInputStream createResponse(final String content) {
+        return new ByteArrayAciResponseInputStream(content.getBytes(StandardCharsets.UTF_8), 200, "text/plain", null, null);
+    }
+
+    @Test
+    public void testNewFile() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("view.txt");
+
+        final PathResponseProcessor processor = new PathResponseProcessor(path);
+        assertThat(processor.getPath(), is(sameInstance(path)));
+        assertThat(processor.process(createResponse("This is a test...")), is(17L));
+
+        assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), is(equalTo("This is a test...")));
+    }
+
+    @Test
+    public void testReplacesExistingFile() throws IOException {
+        final Path path = folder.newFile().toPath();
+        Files.write(path, "Some much longer existing content".getBytes(StandardCharsets.UTF_8));
+
+        new PathResponseProcessor(path).process(createResponse("Replaced"));
+
+        assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), is(equalTo("Replaced")));
+    }
+
+    @Test
+    public void testOpenOptions() throws IOException {
+        final Path path = folder.newFile().toPath();
+        Files.write(path, "One".getBytes(StandardCharsets.UTF_8));
+
+        new PathResponseProcessor(path, StandardOpenOption.APPEND).process(createResponse("Two"));
+        assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), is(equalTo("OneTwo")));
+
+        try {
+            new PathResponseProcessor(path, StandardOpenOption.CREATE_NEW).process(createResponse("Three"));
+            fail("Should have thrown a ProcessorException.");
+        } catch (final ProcessorException pe) {
+            assertThat(pe.getCause(), is(instanceOf(FileAlreadyExistsException.class)));
+        }
+    }
+
+    @Test
+    public void testErrorResponseDoesNotCreateFile() {
+        final Path path = folder.getRoot().toPath().resolve("error.txt");
+
+        try {
+            new PathResponseProcessor(path).process(ChannelResponseProcessorTest.createXmlResponse("/AciException-1.xml"));
+            fail("Should have thrown an AciErrorException.");
+        } catch (final AciErrorException aee) {
+            assertThat(aee.getErrorId(), is(equalTo("AutonomyIDOLServerWOBBLE1")));
+        }
+
+        assertThat(Files.exists(path), is(false));
+    }
+
+    @Test
+    public void testReadFailureDeletesFile() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("partial.txt");
+        final AciResponseInputStream response = mock(AciResponseInputStream.class);
+        when(response.getContentType()).thenReturn("image/jpeg");
+        when(response.read(any(byte[].class))).thenReturn(10).thenThrow(IOException.class);
+
+        try {
+            new PathResponseProcessor(path).process(response);
+            fail("Should have thrown a ProcessorException.");
+        } catch (final ProcessorException pe) {
+            assertThat(pe.getCause(), is(instanceOf(IOException.class)));
+        }
+
+        assertThat(Files.exists(path), is(false));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullPath() {
+        new PathResponseProcessor(null);
+    }
+
+}
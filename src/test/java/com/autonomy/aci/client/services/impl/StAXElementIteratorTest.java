@@ -0,0 +1,216 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import com.autonomy.aci.client.services.AciErrorException;
+import com.autonomy.aci.client.services.ProcessorException;
+import com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class StAXElementIteratorTest {
+
+    /**
+     * Returns the reference of each <code>autn:hit</code>, leaving the reader at the end of the hit.
+     */
+    private static class ReferenceProcessor extends AbstractStAXProcessor<String> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String process(final XMLStreamReader xmlStreamReader) {
+            try {
+                String reference = null;
+
+                while (forwardToNextStartOrEndElement(xmlStreamReader) == XMLEvent.START_ELEMENT) {
+                    if ("autn:reference".equals(xmlStreamReader.getLocalName())) {
+                        reference = xmlStreamReader.getElementText();
+                    } else {
+                        xmlStreamReader.getElementText();
+                    }
+                }
+
+                return reference;
+            } catch (final XMLStreamException e) {
+                throw new ProcessorException("Unable to read hit", e);
+            }
+        }
+
+    }
+
+    private static ByteArrayAciResponseInputStream queryResponse(final int hits) {
+        final StringBuilder builder = new StringBuilder("<?xml version='1.0' encoding='UTF-8' ?><autnresponse xmlns:autn='http://schemas.autonomy.com/aci/'>"
+                + "<action>QUERY</action><response>SUCCESS</response><responsedata><autn:numhits>" + hits + "</autn:numhits>");
+
+        for (int ii = 1; ii <= hits; ii++) {
+            builder.append("<autn:hit><autn:reference>ref").append(ii).append("</autn:reference><autn:weight>50.00</autn:weight></autn:hit>");
+        }
+
+        builder.append("</responsedata></autnresponse>");
+        return spy(new ByteArrayAciResponseInputStream(builder.toString().getBytes(StandardCharsets.UTF_8), 200, "text/xml", null, null));
+    }
+
+    @Test
+    public void testIteratesElements() throws IOException {
+        final ByteArrayAciResponseInputStream response = queryResponse(3);
+        final StAXElementIterator<String> iterator = new StAXElementIterator<>(response, "autn:hit", new ReferenceProcessor());
+
+        assertThat(iterator.hasNext(), is(true));
+        assertThat(iterator.hasNext(), is(true));
+        assertThat(iterator.next(), is(equalTo("ref1")));
+        assertThat(iterator.next(), is(equalTo("ref2")));
+        assertThat(iterator.next(), is(equalTo("ref3")));
+        verify(response, never()).close();
+
+        // Reading past the last element closes the response...
+        assertThat(iterator.hasNext(), is(false));
+        verify(response).close();
+    }
+
+    @Test
+    public void testUnprefixedElementName() {
+        final StAXElementIterator<String> iterator = new StAXElementIterator<>(queryResponse(2), "hit", new ReferenceProcessor());
+        assertThat(iterator.stream().collect(Collectors.toList()), is(equalTo(Arrays.asList("ref1", "ref2"))));
+    }
+
+    @Test
+    public void testNoElements() throws IOException {
+        final ByteArrayAciResponseInputStream response = queryResponse(0);
+        final StAXElementIterator<String> iterator = new StAXElementIterator<>(response, "autn:hit", new ReferenceProcessor());
+
+        assertThat(iterator.hasNext(), is(false));
+        verify(response).close();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNextWhenExhausted() {
+        final StAXElementIterator<String> iterator = new StAXElementIterator<>(queryResponse(0), "autn:hit", new ReferenceProcessor());
+        iterator.next();
+    }
+
+    @Test
+    public void testReadsLazily() throws IOException {
+        final ByteArrayAciResponseInputStream response = queryResponse(10000);
+        final int size = response.available();
+
+        final StAXElementIterator<String> iterator = new StAXElementIterator<>(response, "autn:hit", new ReferenceProcessor());
+        assertThat(iterator.next(), is(equalTo("ref1")));
+
+        // Only the first buffer or so should have been read...
+        assertThat(response.available(), is(greaterThan(size / 2)));
+        iterator.close();
+    }
+
+    @Test
+    public void testStreamCloseClosesResponse() throws IOException {
+        final ByteArrayAciResponseInputStream response = queryResponse(100);
+
+        try (final Stream<String> stream = new StAXElementIterator<>(response, "autn:hit", new ReferenceProcessor()).stream()) {
+            assertThat(stream.limit(5).collect(Collectors.toList()), hasSize(5));
+            verify(response, never()).close();
+        }
+
+        verify(response).close();
+    }
+
+    @Test
+    public void testCloseIsIdempotent() throws IOException {
+        final ByteArrayAciResponseInputStream response = queryResponse(5);
+        final StAXElementIterator<String> iterator = new StAXElementIterator<>(response, "autn:hit", new ReferenceProcessor());
+
+        iterator.close();
+        iterator.close();
+
+        assertThat(iterator.hasNext(), is(false));
+        verify(response, times(1)).close();
+    }
+
+    @Test
+    public void testErrorResponse() throws IOException {
+        final ByteArrayAciResponseInputStream response = spy(new ByteArrayAciResponseInputStream(
+                IOUtils.toByteArray(getClass().getResourceAsStream("/AciException-1.xml")), 200, "text/xml", null, null));
+
+        try {
+            new StAXElementIterator<>(response, "autn:hit", new ReferenceProcessor());
+            fail("Should have thrown an AciErrorException...");
+        } catch (final AciErrorException e) {
+            assertThat(e.getErrorId(), is(notNullValue()));
+        }
+
+        verify(response).close();
+    }
+
+    @Test
+    public void testNonXmlResponse() throws IOException {
+        final ByteArrayAciResponseInputStream response = spy(new ByteArrayAciResponseInputStream(new byte[10], 200, "image/jpeg", null, null));
+
+        try {
+            new StAXElementIterator<>(response, "autn:hit", new ReferenceProcessor());
+            fail("Should have thrown a ProcessorException...");
+        } catch (final ProcessorException e) {
+            verify(response).close();
+        }
+    }
+
+    @Test
+    public void testElementProcessorFailureClosesResponse() throws IOException {
+        final ByteArrayAciResponseInputStream response = queryResponse(5);
+        final StAXElementIterator<String> iterator = new StAXElementIterator<>(response, "autn:hit", new AbstractStAXProcessor<String>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String process(final XMLStreamReader xmlStreamReader) {
+                throw new ProcessorException("JUnit test exception");
+            }
+        });
+
+        try {
+            iterator.next();
+            fail("Should have thrown a ProcessorException...");
+        } catch (final ProcessorException e) {
+            verify(response).close();
+            assertThat(iterator.hasNext(), is(false));
+        }
+    }
+
+    @Test
+    public void testStreamOfManyHits() {
+        final List<String> references;
+
+        try (final Stream<String> stream = new StAXElementIterator<>(queryResponse(5000), "autn:hit", new ReferenceProcessor()).stream()) {
+            references = stream.collect(Collectors.toList());
+        }
+
+        assertThat(references, hasSize(5000));
+        assertThat(references.get(4999), is(equalTo("ref5000")));
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.services.impl;
+
+import org.junit.Test;
+
+import javax.xml.stream.XMLInputFactory;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class XMLInputFactoryCacheTest {
+
+    @Test
+    public void testFactoriesAreConfigured() {
+        final XMLInputFactory factory = XMLInputFactoryCache.getInstance().getXMLInputFactory(true, false, true, false, false, true);
+
+        assertThat(factory.getProperty(XMLInputFactory.IS_NAMESPACE_AWARE), is((Object) true));
+        assertThat(factory.getProperty(XMLInputFactory.IS_VALIDATING), is((Object) false));
+        assertThat(factory.getProperty(XMLInputFactory.IS_COALESCING), is((Object) true));
+        assertThat(factory.getProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES), is((Object) false));
+        assertThat(factory.getProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES), is((Object) false));
+        assertThat(factory.getProperty(XMLInputFactory.SUPPORT_DTD), is((Object) true));
+    }
+
+    @Test
+    public void testOneFactoryPerConfiguration() {
+        final XMLInputFactoryCache cache = XMLInputFactoryCache.getInstance();
+        final Set<XMLInputFactory> factories = new HashSet<>();
+
+        for (int ii = 0; ii < 64; ii++) {
+            factories.add(cache.getXMLInputFactory((ii & 1) != 0, (ii & 2) != 0, (ii & 4) != 0, (ii & 8) != 0, (ii & 16) != 0, (ii & 32) != 0));
+        }
+        assertThat(factories, hasSize(64));
+
+        // Asking again gets the same factories...
+        for (int ii = 0; ii < 64; ii++) {
+            assertThat(factories, hasItem(sameInstance(cache.getXMLInputFactory((ii & 1) != 0, (ii & 2) != 0, (ii & 4) != 0, (ii & 8) != 0, (ii & 16) != 0, (ii & 32) != 0))));
+        }
+    }
+
+    @Test
+    public void testConcurrentCallersShareAFactory() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            final Callable<XMLInputFactory> task = () -> XMLInputFactoryCache.getInstance().getXMLInputFactory(false, true, true, true, true, false);
+            final Set<XMLInputFactory> factories = new HashSet<>();
+
+            for (final Future<XMLInputFactory> future : executor.invokeAll(Collections.nCopies(32, task))) {
+                factories.add(future.get());
+            }
+
+            assertThat(factories, hasSize(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
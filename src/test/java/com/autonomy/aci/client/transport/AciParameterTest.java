@@ -16,6 +16,7 @@ package com.autonomy.aci.client.transport;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.util.Locale;
 
 import static org.hamcrest.CoreMatchers.*;
@@ -237,6 +238,15 @@ public class AciParameterTest {
         assertThat("Parameters should have the same hashcode after name change", parameter2.hashCode(), is(equalTo(parameter3.hashCode())));
     }
 
+    @Test
+    public void testHashCodeSharedWithOtherParameters() {
+        // Parameters of different types with the same name hash the same, whatever the case...
+        final String name = "DatabaseMatch\u00C9";
+        assertThat(new AciParameter(name, "News").hashCode(), is(equalTo(ActionParameter.hashName(name.toLowerCase(Locale.ENGLISH)))));
+        assertThat(new InputStreamActionParameter(name, new ByteArrayInputStream(new byte[0])).hashCode(), is(equalTo(ActionParameter.hashName(name.toUpperCase(Locale.ENGLISH)))));
+        assertThat(ActionParameter.hashName(null), is(0));
+    }
+
     @Test
     public void testEqualsHashCodeConsistency() {
         // Note that all we test here is that equals() and hashCode() are consistent, we don't make any assertions about
@@ -15,9 +15,11 @@
 package com.autonomy.aci.client.transport;
 
 import com.autonomy.aci.client.TestEncryptionCodec;
+import org.apache.commons.lang3.SerializationUtils;
 import org.junit.Test;
 
 import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
 
 import static org.hamcrest.Matchers.*;
@@ -220,6 +222,26 @@ public class AciServerDetailsTest {
         }
     }
 
+    @Test
+    public void testGetCharset() {
+        // Create an instance, the default charset should be cached...
+        final AciServerDetails details = new AciServerDetails();
+        assertThat("charset is not as expected", details.getCharset(), is(equalTo(StandardCharsets.UTF_8)));
+        assertThat("charset was not cached", details.getCharset(), is(sameInstance(details.getCharset())));
+
+        // Changing the charsetName should change the charset...
+        details.setCharsetName("latin1");
+        assertThat("charset is not as expected", details.getCharset(), is(equalTo(StandardCharsets.ISO_8859_1)));
+
+        // Copies should use the same charset...
+        assertThat("charset is not as expected", new AciServerDetails(details).getCharset(), is(equalTo(StandardCharsets.ISO_8859_1)));
+
+        // The charset isn't serialised, but should be looked up again afterwards...
+        final AciServerDetails deserialised = SerializationUtils.clone(details);
+        assertThat("charsetName is not as expected", deserialised.getCharsetName(), is(equalTo("latin1")));
+        assertThat("charset is not as expected", deserialised.getCharset(), is(equalTo(StandardCharsets.ISO_8859_1)));
+    }
+
     @Test
     public void testEncryptionCodecProperty() {
         // Create an instance...
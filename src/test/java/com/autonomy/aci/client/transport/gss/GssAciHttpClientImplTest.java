@@ -25,6 +25,7 @@ import java.io.IOException;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
@@ -47,6 +48,17 @@ public class GssAciHttpClientImplTest {
         assertThat("Use POST should be false", gssAciHttpClient.isUsePostMethod(), is(false));
     }
 
+    @Test
+    public void testGssContextCache() {
+        final GssAciHttpClientImpl gssAciHttpClient = new GssAciHttpClientImpl(HttpClients.createDefault());
+        assertThat("No cache by default", gssAciHttpClient.getGssContextCache(), is(nullValue()));
+
+        try (final GssContextCache cache = new GssContextCache()) {
+            gssAciHttpClient.setGssContextCache(cache);
+            assertThat("Cache set", gssAciHttpClient.getGssContextCache(), is(sameInstance(cache)));
+        }
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testExecuteWrongClass() throws IOException, AciHttpException {
         new GssAciHttpClientImpl(HttpClients.createDefault()).executeAction(new AciServerDetails(), new ActionParameters());
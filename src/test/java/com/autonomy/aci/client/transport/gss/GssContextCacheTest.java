@@ -0,0 +1,261 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.gss;
+
+import com.autonomy.aci.client.transport.AciHttpException;
+import org.ietf.jgss.GSSContext;
+import org.ietf.jgss.GSSException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class GssContextCacheTest {
+
+    private GssContextCache cache;
+
+    private GssAciServerDetails serverDetails;
+
+    @Before
+    public void setUp() {
+        cache = new GssContextCache();
+        serverDetails = new GssAciServerDetails("HTTP/localhost", "localhost", 9000);
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+    }
+
+    private static GSSContext mockContext(final int lifetime) {
+        final GSSContext context = mock(GSSContext.class);
+        when(context.getLifetime()).thenReturn(lifetime);
+        return context;
+    }
+
+    @Test
+    public void testContextReused() throws IOException, AciHttpException {
+        final AtomicInteger count = new AtomicInteger();
+        final GSSContext context = mockContext(3600);
+
+        final GSSContext first = cache.getContext(serverDetails, details -> {
+            count.incrementAndGet();
+            return context;
+        });
+        final GSSContext second = cache.getContext(new GssAciServerDetails(serverDetails), details -> {
+            count.incrementAndGet();
+            return mockContext(3600);
+        });
+
+        assertThat(first, is(sameInstance(context)));
+        assertThat(second, is(sameInstance(context)));
+        assertThat(count.get(), is(1));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void testContextPerServer() throws IOException, AciHttpException {
+        final GSSContext first = cache.getContext(serverDetails, details -> mockContext(3600));
+        final GSSContext second = cache.getContext(new GssAciServerDetails("HTTP/otherhost", "otherhost", 9000), details -> mockContext(3600));
+
+        assertThat(first, is(not(sameInstance(second))));
+        assertThat(cache.size(), is(2));
+    }
+
+    @Test
+    public void testKeyCopied() throws IOException, AciHttpException {
+        cache.getContext(serverDetails, details -> mockContext(3600));
+        serverDetails.setPort(9001);
+
+        assertThat(cache.size(), is(1));
+        final GSSContext context = mockContext(3600);
+        assertThat(cache.getContext(serverDetails, details -> context), is(sameInstance(context)));
+        assertThat(cache.size(), is(2));
+    }
+
+    @Test
+    public void testExpiredContextReestablished() throws IOException, AciHttpException {
+        final AtomicInteger count = new AtomicInteger();
+
+        // A context with no lifetime left is never usable for a request...
+        cache.getContext(serverDetails, details -> {
+            count.incrementAndGet();
+            return mockContext(0);
+        });
+        cache.getContext(serverDetails, details -> {
+            count.incrementAndGet();
+            return mockContext(0);
+        });
+
+        assertThat(count.get(), is(2));
+    }
+
+    @Test
+    public void testIndefiniteLifetime() throws IOException, AciHttpException {
+        final GSSContext context = mockContext(GSSContext.INDEFINITE_LIFETIME);
+
+        assertThat(cache.getContext(serverDetails, details -> context), is(sameInstance(context)));
+        assertThat(cache.getContext(serverDetails, details -> mockContext(3600)), is(sameInstance(context)));
+    }
+
+    @Test
+    public void testBackgroundRenewal() throws IOException, AciHttpException, InterruptedException {
+        final AtomicInteger count = new AtomicInteger();
+        final GSSContext original = mockContext(2);
+        final GSSContext renewed = mockContext(3600);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        cache.setRenewalMargin(1);
+        cache.getContext(serverDetails, details -> {
+            if (count.incrementAndGet() == 1) {
+                return original;
+            }
+            latch.countDown();
+            return renewed;
+        });
+
+        assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+
+        // The renewal happens in the background, so wait for it to be swapped in...
+        GSSContext current = null;
+        for (int ii = 0; (ii < 50) && (current != renewed); ii++) {
+            current = cache.getContext(serverDetails, details -> {
+                throw new AciHttpException("Should have been renewed in the background");
+            });
+            Thread.sleep(20);
+        }
+
+        assertThat(current, is(sameInstance(renewed)));
+        assertThat(count.get(), is(2));
+    }
+
+    @Test
+    public void testRenewalFailureKeepsContext() throws IOException, AciHttpException, InterruptedException {
+        final AtomicInteger count = new AtomicInteger();
+        final GSSContext original = mockContext(60);
+
+        cache.setRenewalMargin(60);
+        cache.getContext(serverDetails, details -> {
+            if (count.incrementAndGet() == 1) {
+                return original;
+            }
+            throw new IOException("Server down");
+        });
+
+        // The renewal is due half way through the lifetime, i.e. in 30 seconds, so just check the failure handling...
+        assertThat(cache.getContext(serverDetails, details -> mockContext(60)), is(sameInstance(original)));
+    }
+
+    @Test
+    public void testInvalidate() throws IOException, AciHttpException, GSSException {
+        final GSSContext original = mockContext(GSSContext.INDEFINITE_LIFETIME);
+        final GSSContext replacement = mockContext(3600);
+
+        cache.setRenewalMargin(0);
+        cache.getContext(serverDetails, details -> original);
+        cache.invalidate(serverDetails);
+
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getContext(serverDetails, details -> replacement), is(sameInstance(replacement)));
+        verify(original, timeout(5000)).dispose();
+    }
+
+    @Test
+    public void testInvalidateAll() throws IOException, AciHttpException {
+        cache.getContext(serverDetails, details -> mockContext(3600));
+        cache.getContext(new GssAciServerDetails("HTTP/otherhost", "otherhost", 9000), details -> mockContext(3600));
+        cache.invalidateAll();
+
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void testCloseDisposes() throws IOException, AciHttpException, GSSException {
+        final GSSContext context = mockContext(3600);
+        cache.getContext(serverDetails, details -> context);
+        cache.close();
+
+        verify(context).dispose();
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetAfterClose() throws IOException, AciHttpException {
+        cache.close();
+        cache.getContext(serverDetails, details -> mockContext(3600));
+        fail("Should have thrown an IllegalStateException...");
+    }
+
+    @Test(expected = AciHttpException.class)
+    public void testFactoryException() throws IOException, AciHttpException {
+        cache.getContext(serverDetails, details -> {
+            throw new AciHttpException("Unable to establish a GSSContext.");
+        });
+        fail("Should have thrown an AciHttpException...");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeRenewalMargin() {
+        cache.setRenewalMargin(-1);
+        fail("Should have thrown an IllegalArgumentException...");
+    }
+
+    @Test
+    public void testConcurrentEstablishment() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            final List<Future<GSSContext>> futures = new ArrayList<>();
+            for (int ii = 0; ii < 8; ii++) {
+                futures.add(executor.submit((Callable<GSSContext>) () -> {
+                    start.await();
+                    return cache.getContext(serverDetails, details -> {
+                        count.incrementAndGet();
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+                        return mockContext(3600);
+                    });
+                }));
+            }
+            start.countDown();
+
+            final GSSContext first = futures.get(0).get();
+            for (final Future<GSSContext> future : futures) {
+                assertThat(future.get(), is(sameInstance(first)));
+            }
+            assertThat(count.get(), is(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -23,6 +23,7 @@ import org.ietf.jgss.MessageProp;
 import org.junit.Test;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -51,7 +52,7 @@ public class GssEncryptionCodecTest {
         final byte[] bad = new byte[encoded.length - 2];
         System.arraycopy(encoded, 0, bad, 0, (encoded.length - 2));
 
-        new GssEncryptionCodec(spy(GSSContext.class)).decodeInternal(bad);
+        new GssEncryptionCodec(spy(GSSContext.class)).decodeInternal(ByteBuffer.wrap(bad));
         fail("Should've thrown a DecoderException...");
     }
 
@@ -68,6 +69,17 @@ public class GssEncryptionCodecTest {
         verifyNoMoreInteractions(gssContext);
     }
 
+    @Test
+    public void testEncryptInternalPartOfArray() throws GSSException, EncryptionCodecException {
+        final GSSContext gssContext = when(spy(GSSContext.class).wrap((byte[]) any(), anyInt(), anyInt(), any(MessageProp.class))).thenReturn("This is a test result...".getBytes()).getMock();
+        final GssEncryptionCodec codec = new GssEncryptionCodec(gssContext);
+        final byte[] bytes = "xxThis is a test...".getBytes();
+
+        // The range should be wrapped in place, rather than copied first...
+        codec.encryptInternal(bytes, 2, bytes.length - 2);
+        verify(gssContext).wrap(same(bytes), eq(2), eq(bytes.length - 2), any(MessageProp.class));
+    }
+
     @Test(expected = EncryptionCodecException.class)
     @SuppressWarnings("unchecked")
     public void testEncryptInternalException() throws GSSException, EncryptionCodecException {
@@ -19,10 +19,15 @@ import org.apache.commons.codec.binary.Base64;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
 
-import static org.hamcrest.Matchers.equalTo;
-import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
@@ -139,6 +144,170 @@ public class AbstractEncryptionCodecTest extends AbstractEncryptionCodec {
         }
     }
 
+    @Test
+    public void testEncryptStreaming() throws EncryptionCodecException, IOException {
+        // Only the remaining content of the buffer should be encrypted...
+        final byte[] padded = ("xx" + string + "yy").getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer input = ByteBuffer.wrap(padded, 2, padded.length - 4).slice();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write('>');
+
+        encrypt(input, output);
+        assertThat(input.hasRemaining(), is(false));
+        assertThat(output.toString("UTF-8"), is(equalTo('>' + encodedWithPrefix)));
+    }
+
+    @Test
+    public void testDecryptStreaming() throws EncryptionCodecException, IOException {
+        // Line breaks in the Base64 content should be ignored...
+        final String encoded = encodedWithPrefix.substring(0, 20) + "\r\n" + encodedWithPrefix.substring(20);
+        final ByteBuffer input = ByteBuffer.wrap(encoded.getBytes(StandardCharsets.UTF_8));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        decrypt(input, output);
+        assertThat(input.hasRemaining(), is(false));
+        assertThat(output.toString("UTF-8"), is(equalTo(string)));
+    }
+
+    @Test
+    public void testEncryptDecryptLargeContent() throws EncryptionCodecException {
+        // Big enough, and random enough, to outgrow the initial deflate and inflate buffers...
+        final Random random = new Random(42L);
+        final byte[] content = new byte[100000];
+        random.nextBytes(content);
+
+        assertThat(decrypt(encrypt(content)), is(equalTo(content)));
+    }
+
+    @Test(expected = EncryptionCodecException.class)
+    public void testDecryptTruncated() throws EncryptionCodecException {
+        final byte[] truncated = new byte[deflatedWithPrefix.length - 4];
+        System.arraycopy(deflatedWithPrefix, 0, truncated, 0, truncated.length);
+
+        decrypt(encodeInternal(truncated));
+        fail("Should have raised an EncryptionCodecException");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncryptStreamingEmpty() throws EncryptionCodecException, IOException {
+        encrypt(ByteBuffer.allocate(0), new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void testStoreThreshold() throws EncryptionCodecException, IOException {
+        final AbstractEncryptionCodecTest codec = new AbstractEncryptionCodecTest();
+        codec.setStoreThreshold(string.length() + 1);
+        assertThat(codec.getStoreThreshold(), is(string.length() + 1));
+
+        // Stored rather than compressed, so the content should be readable in the deflated stream...
+        final byte[] encrypted = codec.encrypt(string.getBytes(StandardCharsets.UTF_8));
+        final String decoded = new String(java.util.Base64.getDecoder().decode(encrypted), StandardCharsets.ISO_8859_1);
+        assertThat(decoded, containsString(string));
+        assertThat(new String(codec.decrypt(encrypted), StandardCharsets.UTF_8), is(equalTo(string)));
+
+        // At the threshold it should be compressed as normal...
+        codec.setStoreThreshold(string.length());
+        assertThat(new String(codec.encrypt(string.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8), is(equalTo(encodedWithPrefix)));
+    }
+
+    @Test
+    public void testCompressionLevel() throws EncryptionCodecException {
+        final AbstractEncryptionCodecTest codec = new AbstractEncryptionCodecTest();
+        assertThat(codec.getCompressionLevel(), is(Deflater.DEFAULT_COMPRESSION));
+
+        final byte[] content = new byte[10000];
+        codec.setCompressionLevel(Deflater.NO_COMPRESSION);
+        assertThat(codec.getCompressionLevel(), is(Deflater.NO_COMPRESSION));
+        final byte[] stored = codec.encrypt(content);
+
+        codec.setCompressionLevel(Deflater.BEST_SPEED);
+        final byte[] compressed = codec.encrypt(content);
+
+        assertThat(stored.length, is(greaterThan(content.length)));
+        assertThat(compressed.length, is(lessThan(content.length / 10)));
+        assertThat(codec.decrypt(stored), is(equalTo(content)));
+        assertThat(codec.decrypt(compressed), is(equalTo(content)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompressionLevelInvalid() {
+        setCompressionLevel(10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStoreThresholdNegative() {
+        setStoreThreshold(-1);
+    }
+
+    @Test
+    public void testOverriddenByteArrayStagesCalled() throws EncryptionCodecException, IOException {
+        final LegacyEncryptionCodec codec = new LegacyEncryptionCodec();
+
+        final ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        codec.encrypt(ByteBuffer.wrap(string.getBytes(StandardCharsets.UTF_8)), encrypted);
+        assertThat(encrypted.toString("UTF-8"), is(equalTo(encodedWithPrefix)));
+        assertThat(codec.deflated, is(1));
+        assertThat(codec.encoded, is(1));
+
+        assertThat(new String(codec.decrypt(encrypted.toByteArray()), StandardCharsets.UTF_8), is(equalTo(string)));
+        assertThat(codec.decoded, is(1));
+        assertThat(codec.inflated, is(1));
+    }
+
+    /**
+     * A codec written against the byte array stages, before there was a streaming API...
+     */
+    private static class LegacyEncryptionCodec extends AbstractEncryptionCodec {
+
+        private static final long serialVersionUID = 1L;
+
+        private int deflated;
+
+        private int encoded;
+
+        private int decoded;
+
+        private int inflated;
+
+        @Override
+        @SuppressWarnings("deprecation")
+        protected byte[] deflateInternal(final byte[] bytes) throws EncryptionCodecException {
+            deflated++;
+            return super.deflateInternal(bytes);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        protected byte[] encodeInternal(final byte[] encrypted) throws EncryptionCodecException {
+            encoded++;
+            return super.encodeInternal(encrypted);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        protected byte[] decodeInternal(final byte[] bytes) throws EncryptionCodecException {
+            decoded++;
+            return super.decodeInternal(bytes);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        protected byte[] inflateInternal(final byte[] bytes) throws EncryptionCodecException {
+            inflated++;
+            return super.inflateInternal(bytes);
+        }
+
+        @Override
+        protected byte[] encryptInternal(final byte[] bytes) {
+            return bytes;
+        }
+
+        @Override
+        protected byte[] decryptInternal(final byte[] bytes) {
+            return bytes;
+        }
+
+    }
 
     @Override
     public byte[] encryptInternal(final byte[] bytes) throws EncryptionCodecException {
@@ -21,14 +21,22 @@ import com.autonomy.aci.client.services.AciConstants;
 import com.autonomy.aci.client.transport.*;
 import com.autonomy.aci.client.util.ActionParameters;
 import com.autonomy.aci.client.util.EncryptionCodecUtils;
+import com.autonomy.aci.client.util.ParameterEncoder;
+import com.autonomy.aci.client.util.PreparedAction;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.hc.client5.http.ClientProtocolException;
 import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpException;
 import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
 import org.apache.hc.core5.http.message.BasicHeader;
 import org.apache.hc.core5.http.message.BasicHttpResponse;
 import org.apache.hc.core5.http.message.BasicNameValuePair;
@@ -43,8 +51,11 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URISyntaxException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.Matchers.startsWith;
 import static org.hamcrest.Matchers.*;
@@ -220,6 +231,36 @@ public class AciHttpClientImplTest {
                 is(equalTo("http://localhost:9000/?Action=query&Text=This%20is%20some%20text...")));
     }
 
+    @Test
+    public void testCreateGetMethodIPv6Host() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, URISyntaxException {
+        final Method method = ReflectionTestUtils.getAccessibleMethod(AciHttpClientImpl.class, "createGet5Method", AciServerDetails.class, Set.class);
+
+        final HttpUriRequest request = (HttpUriRequest) method.invoke(new AciHttpClientImpl(), new AciServerDetails("::1", 9000), new ActionParameters("GetStatus"));
+        assertThat(request.getUri().toString(), is(equalTo("http://[::1]:9000/?Action=GetStatus")));
+        assertThat(request.getUri().getHost(), is(equalTo("[::1]")));
+    }
+
+    @Test
+    public void testEncoderReusedByThread() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+        final Method method = ReflectionTestUtils.getAccessibleMethod(AciHttpClientImpl.class, "getEncoder", Charset.class, boolean.class);
+
+        final ParameterEncoder encoder = (ParameterEncoder) method.invoke(null, StandardCharsets.UTF_8, false);
+        encoder.add("action", "query");
+
+        // The same settings get the same encoder back, emptied...
+        assertThat(method.invoke(null, StandardCharsets.UTF_8, false), is(sameInstance(encoder)));
+        assertThat(encoder.size(), is(0));
+
+        // Different settings don't...
+        assertThat(method.invoke(null, StandardCharsets.UTF_8, true), is(not(sameInstance(encoder))));
+        assertThat(((ParameterEncoder) method.invoke(null, StandardCharsets.ISO_8859_1, false)).getCharset(), is(StandardCharsets.ISO_8859_1));
+
+        // Nor does an encoder that grew for a large request...
+        final ParameterEncoder large = (ParameterEncoder) method.invoke(null, StandardCharsets.UTF_8, false);
+        large.add("text", StringUtils.repeat('a', 100 * 1024));
+        assertThat(method.invoke(null, StandardCharsets.UTF_8, false), is(not(sameInstance(large))));
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void testCreatePostMethod() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, IOException, URISyntaxException {
@@ -249,6 +290,24 @@ public class AciHttpClientImplTest {
         assertThat("Incorrect query string", baos.toString("UTF-8"), is(equalTo("Action=query&Text=This+is+some+text...")));
     }
 
+    @Test
+    public void testCreatePostMethodServerCharset() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, IOException {
+        final AciHttpClientImpl aciHttpClient = new AciHttpClientImpl();
+        final Method method = ReflectionTestUtils.getAccessibleMethod(AciHttpClientImpl.class, "createPost5Method", AciServerDetails.class, Set.class);
+
+        final Set<AciParameter> parameters = new LinkedHashSet<>();
+        parameters.add(new AciParameter(AciConstants.PARAM_ACTION, "query"));
+        parameters.add(new AciParameter("Text", "caf\u00E9 & cr\u00E8me"));
+
+        // The body should be encoded using the server's charset, exactly as WWWFormCodec would...
+        serverDetails.setCharsetName("ISO-8859-1");
+        final String expected = "Action=query&Text=caf%E9+%26+cr%E8me";
+        final HttpEntity entity = ((HttpPost) method.invoke(aciHttpClient, serverDetails, parameters)).getEntity();
+        assertThat("Incorrect content type", entity.getContentType(), is(equalTo("text/plain; charset=ISO-8859-1")));
+        assertThat("Incorrect content length", entity.getContentLength(), is((long) expected.length()));
+        assertThat("Incorrect request body", IOUtils.toString(entity.getContent(), StandardCharsets.US_ASCII), is(equalTo(expected)));
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void testCreateEncryptedParameters() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, EncryptionCodecException {
@@ -326,6 +385,40 @@ public class AciHttpClientImplTest {
                 startsWith("http://localhost:9000/?Action=Encrypted&Data="));
     }
 
+    @Test
+    public void testConstructPreparedHttpRequest() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, IOException, URISyntaxException {
+        final AciHttpClientImpl aciHttpClient = new AciHttpClientImpl();
+        final Method method = ReflectionTestUtils.getAccessibleMethod(AciHttpClientImpl.class, "constructHttp5Request", AciServerDetails.class, Set.class);
+
+        final PreparedAction.Parameters prepared = new PreparedAction(new ActionParameters(
+                new AciParameter(AciConstants.PARAM_ACTION, "query"),
+                new AciParameter("Print", "all fields")
+        ), "Text").bind("This is some text \u00E9...");
+        final Set<ActionParameter<?>> parameters = new ActionParameters(prepared);
+
+        // The prepared parameters should give exactly the same request as normal parameters...
+        HttpUriRequest request = (HttpUriRequest) method.invoke(aciHttpClient, serverDetails, prepared);
+        assertThat("Incorrect HTTP method", request.getMethod(), is(equalTo("GET")));
+        assertThat("Incorrect URL", request.getUri().toString(),
+                is(equalTo("http://localhost:9000/?Action=query&Print=all%20fields&Text=This%20is%20some%20text%20%C3%A9...")));
+        assertThat(request.getUri(), is(equalTo(((HttpUriRequest) method.invoke(aciHttpClient, serverDetails, parameters)).getUri())));
+
+        aciHttpClient.setUsePostMethod(true);
+        request = (HttpUriRequest) method.invoke(aciHttpClient, serverDetails, prepared);
+        assertThat("Incorrect HTTP method", request.getMethod(), is(equalTo("POST")));
+        assertThat("Incorrect query string", request.getUri().getQuery(), is(nullValue()));
+        final String body = IOUtils.toString(((HttpPost) request).getEntity().getContent(), StandardCharsets.UTF_8);
+        assertThat("Incorrect request body", body, is(equalTo("Action=query&Print=all+fields&Text=This+is+some+text+%C3%A9...")));
+        assertThat(body, is(equalTo(IOUtils.toString(((HttpPost) method.invoke(aciHttpClient, serverDetails, parameters)).getEntity().getContent(), StandardCharsets.UTF_8))));
+
+        // The pre-encoded form is what gets encrypted...
+        serverDetails.setEncryptionCodec(new TestEncryptionCodec());
+        aciHttpClient.setUsePostMethod(false);
+        request = (HttpUriRequest) method.invoke(aciHttpClient, serverDetails, prepared);
+        assertThat("Incorrect HTTP method", request.getMethod(), is(equalTo("GET")));
+        assertThat(request.getUri(), is(equalTo(((HttpUriRequest) method.invoke(aciHttpClient, serverDetails, parameters)).getUri())));
+    }
+
     @Test(expected = NullPointerException.class)
     public void testExecuteActionNoHttpClient() throws IOException, AciHttpException {
         // Create our client and execute...
@@ -378,7 +471,7 @@ public class AciHttpClientImplTest {
     public void testExecuteActionIOException() throws IOException, AciHttpException {
         // Create our mock HttpClient object...
         final HttpClient mockHttpClient = mock(HttpClient.class);
-        when(mockHttpClient.executeOpen(eq(null), any(ClassicHttpRequest.class), Mockito.<HttpContext>eq(null)))
+        when(mockHttpClient.executeOpen(eq(null), any(ClassicHttpRequest.class), Mockito.<HttpContext>any()))
                 .thenThrow(new IOException("JUnit test exception."));
 
         // Create our client...
@@ -398,7 +491,7 @@ public class AciHttpClientImplTest {
     public void testExecuteActionClientProtocolException() throws IOException, AciHttpException {
         // Create our mock HttpClient object...
         final HttpClient mockHttpClient = mock(HttpClient.class);
-        when(mockHttpClient.executeOpen(eq(null), any(ClassicHttpRequest.class), Mockito.<HttpContext>eq(null)))
+        when(mockHttpClient.executeOpen(eq(null), any(ClassicHttpRequest.class), Mockito.<HttpContext>any()))
                 .thenThrow(new ClientProtocolException("JUnit test exception."));
 
         // Create our client...
@@ -479,6 +572,193 @@ public class AciHttpClientImplTest {
         assertThat(response, is(instanceOf(DecryptingAciResponseInputStreamImpl.class)));
     }
 
+    @Test
+    public void testExecuteActionDecryptionExecutor() throws IOException, AciHttpException {
+        final HttpTestUtils.HttpMocks mocks = HttpTestUtils.mockHttpClient(200,
+                "/com/autonomy/aci/client/transport/impl/EncryptedResponse.xml");
+        when(mocks.response().getFirstHeader("AUTN-Content-Type"))
+                .thenReturn(new BasicHeader("AUTN-Content-Type", "text/xml"));
+
+        final AciServerDetails aciServerDetails = new AciServerDetails("localhost", 9000);
+        aciServerDetails.setEncryptionCodec(new TestEncryptionCodec());
+
+        // Count the blocks handed to the executor...
+        final AtomicInteger decrypted = new AtomicInteger();
+        final AciHttpClientImpl aciHttpClient = new AciHttpClientImpl(mocks.client());
+        assertThat(aciHttpClient.getDecryptionExecutor(), is(nullValue()));
+        assertThat(aciHttpClient.getDecryptionParallelism(), is(Runtime.getRuntime().availableProcessors()));
+
+        final Executor executor = command -> {
+            decrypted.incrementAndGet();
+            command.run();
+        };
+        aciHttpClient.setDecryptionExecutor(executor);
+        aciHttpClient.setDecryptionParallelism(4);
+        assertThat(aciHttpClient.getDecryptionExecutor(), is(sameInstance(executor)));
+        assertThat(aciHttpClient.getDecryptionParallelism(), is(4));
+
+        final AciResponseInputStream response = aciHttpClient.executeAction(aciServerDetails, new ActionParameters("Query"));
+        final String content = IOUtils.toString(response, StandardCharsets.UTF_8);
+
+        assertThat(content, is(equalTo(IOUtils.toString(getClass().getResourceAsStream("/com/autonomy/aci/client/transport/impl/UnencryptedResponse.xml"), StandardCharsets.UTF_8))));
+        assertThat(decrypted.get(), is(greaterThan(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetDecryptionParallelismZero() {
+        new AciHttpClientImpl().setDecryptionParallelism(0);
+    }
+
+    @Test
+    public void testMetricsListener() throws IOException, AciHttpException {
+        final HttpClient mockHttpClient = HttpTestUtils.mockHttpClient(200,
+                "/com/autonomy/aci/client/transport/impl/UnencryptedResponse.xml").client();
+        final AciMetricsListener mockListener = mock(AciMetricsListener.class);
+
+        final AciHttpClientImpl aciHttpClient = new AciHttpClientImpl(mockHttpClient);
+        aciHttpClient.setMetricsListener(mockListener);
+        assertThat(aciHttpClient.getMetricsListener(), is(sameInstance(mockListener)));
+
+        // Execute and read the whole response...
+        final AciResponseInputStream response = aciHttpClient.executeAction(
+                serverDetails,
+                new ActionParameters(
+                        new AciParameter(AciConstants.PARAM_ACTION, "query"),
+                        new AciParameter("Text", "This is some text...")
+                )
+        );
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        com.autonomy.aci.client.util.IOUtils.getInstance().copy(response, content);
+        response.close();
+
+        verify(mockListener).requestEncoded(eq("query"), eq(serverDetails), anyLong());
+        verify(mockListener).responseReceived(eq("query"), eq(serverDetails), eq(200), anyLong());
+        verify(mockListener).responseRead(eq("query"), eq(serverDetails), eq((long) content.size()), anyLong());
+        verify(mockListener, never()).requestEncrypted(anyString(), any(AciServerDetails.class), anyLong());
+        verify(mockListener, never()).connectionLeased(anyString(), any(AciServerDetails.class), anyLong());
+        verify(mockListener, never()).requestFailed(anyString(), any(AciServerDetails.class), any(Throwable.class), anyLong());
+    }
+
+    @Test
+    public void testMetricsListenerConnectionLeased() throws IOException, AciHttpException {
+        final HttpTestUtils.HttpMocks mocks = HttpTestUtils.mockHttpClient(200,
+                "/com/autonomy/aci/client/transport/impl/UnencryptedResponse.xml");
+        final AciMetricsListener mockListener = mock(AciMetricsListener.class);
+
+        // Run the interceptor as HttpClient would once it had a connection...
+        when(mocks.client().executeOpen(eq(null), any(ClassicHttpRequest.class), Mockito.<HttpContext>any())).thenAnswer(invocation -> {
+            AciHttpClientImpl.CONNECTION_LEASE_INTERCEPTOR.process(invocation.getArgument(1), null, invocation.getArgument(2));
+            return mocks.response();
+        });
+
+        final AciHttpClientImpl aciHttpClient = new AciHttpClientImpl(mocks.client());
+        aciHttpClient.setMetricsListener(mockListener);
+        aciHttpClient.executeAction(serverDetails, new ActionParameters("GetStatus")).close();
+
+        verify(mockListener).connectionLeased(eq("GetStatus"), eq(serverDetails), longThat(nanos -> nanos >= 0L));
+    }
+
+    @Test
+    public void testConnectionLeaseInterceptorWithoutListener() throws IOException, HttpException {
+        // Requests sent without a metrics listener don't have anything to record the lease time in...
+        final HttpContext mockContext = mock(HttpContext.class);
+        AciHttpClientImpl.CONNECTION_LEASE_INTERCEPTOR.process(new HttpGet("http://localhost:9000/"), null, mockContext);
+        AciHttpClientImpl.CONNECTION_LEASE_INTERCEPTOR.process(new HttpGet("http://localhost:9000/"), null, null);
+
+        verify(mockContext, never()).setAttribute(anyString(), any());
+    }
+
+    @Test
+    public void testMetricsListenerEncryption() throws IOException, AciHttpException {
+        final HttpTestUtils.HttpMocks mocks = HttpTestUtils.mockHttpClient(200,
+                "/com/autonomy/aci/client/transport/impl/EncryptedResponse.xml");
+        when(mocks.response().getFirstHeader("AUTN-Content-Type"))
+                .thenReturn(new BasicHeader("AUTN-Content-Type", "text/xml"));
+        final AciMetricsListener mockListener = mock(AciMetricsListener.class);
+
+        final AciServerDetails aciServerDetails = new AciServerDetails("localhost", 9000);
+        aciServerDetails.setEncryptionCodec(new TestEncryptionCodec());
+
+        final AciHttpClientImpl aciHttpClient = new AciHttpClientImpl(mocks.client());
+        aciHttpClient.setMetricsListener(mockListener);
+
+        final AciResponseInputStream response = aciHttpClient.executeAction(
+                aciServerDetails,
+                new ActionParameters(
+                        new AciParameter(AciConstants.PARAM_ACTION, "query"),
+                        new AciParameter("Text", "This is some text...")
+                )
+        );
+        response.close();
+
+        verify(mockListener).requestEncrypted(eq("query"), eq(aciServerDetails), anyLong());
+        verify(mockListener).responseRead(eq("query"), eq(aciServerDetails), eq(0L), anyLong());
+    }
+
+    @Test
+    public void testDrainLimit() throws IOException, AciHttpException {
+        final byte[] content = new byte[1000];
+        final HttpTestUtils.HttpMocks mocks = HttpTestUtils.mockHttpClient(200, new ByteArrayEntity(content, ContentType.TEXT_XML));
+        final AciMetricsListener mockListener = mock(AciMetricsListener.class);
+
+        final AciHttpClientImpl aciHttpClient = new AciHttpClientImpl(mocks.client());
+        aciHttpClient.setMetricsListener(mockListener);
+        assertThat(aciHttpClient.getDrainLimit(), is(Long.MAX_VALUE));
+        aciHttpClient.setDrainLimit(100L);
+        assertThat(aciHttpClient.getDrainLimit(), is(100L));
+
+        // Read a little and close, leaving more than the limit...
+        final AciResponseInputStream response = aciHttpClient.executeAction(serverDetails, new ActionParameters("Query"));
+        assertThat(response.read(new byte[10]), is(10));
+        response.close();
+
+        assertThat(((AciResponseInputStreamImpl) response).isAborted(), is(true));
+        verify(mocks.response()).close();
+        verify(mockListener).responseAborted(eq("Query"), eq(serverDetails), eq(990L));
+        verify(mockListener, never()).responseDrained(anyString(), any(AciServerDetails.class), anyLong());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetDrainLimitNegative() {
+        new AciHttpClientImpl().setDrainLimit(-1L);
+    }
+
+    @Test
+    public void testMetricsListenerNon200StatusCode() throws IOException {
+        final HttpClient mockHttpClient = HttpTestUtils.mockHttpClient(500, (HttpEntity) null).client();
+        final AciMetricsListener mockListener = mock(AciMetricsListener.class);
+
+        final AciHttpClientImpl aciHttpClient = new AciHttpClientImpl(mockHttpClient);
+        aciHttpClient.setMetricsListener(mockListener);
+
+        try {
+            aciHttpClient.executeAction(serverDetails, new ActionParameters("GetStatus"));
+            fail("should have thrown an AciHttpException.");
+        } catch (final AciHttpException e) {
+            verify(mockListener).responseReceived(eq("GetStatus"), eq(serverDetails), eq(500), anyLong());
+            verify(mockListener).requestFailed(eq("GetStatus"), eq(serverDetails), same(e), anyLong());
+        }
+    }
+
+    @Test
+    public void testMetricsListenerIOException() throws IOException, AciHttpException {
+        final HttpClient mockHttpClient = mock(HttpClient.class);
+        final IOException exception = new IOException("Connection refused");
+        when(mockHttpClient.executeOpen(eq(null), any(ClassicHttpRequest.class), Mockito.<HttpContext>any())).thenThrow(exception);
+        final AciMetricsListener mockListener = mock(AciMetricsListener.class);
+
+        final AciHttpClientImpl aciHttpClient = new AciHttpClientImpl(mockHttpClient);
+        aciHttpClient.setMetricsListener(mockListener);
+
+        try {
+            aciHttpClient.executeAction(serverDetails, new ActionParameters("GetStatus"));
+            fail("should have thrown an IOException.");
+        } catch (final IOException e) {
+            verify(mockListener).requestFailed(eq("GetStatus"), eq(serverDetails), same(exception), anyLong());
+            verify(mockListener, never()).responseReceived(anyString(), any(AciServerDetails.class), anyInt(), anyLong());
+        }
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void testDecryptResponse() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
@@ -509,11 +789,9 @@ public class AciHttpClientImplTest {
             throws Exception
     {
         final AciHttpClientImpl aciHttpClient = new AciHttpClientImpl();
-        final Method orderMethod = ReflectionTestUtils.getAccessibleMethod(
-                AciHttpClientImpl.class, "orderParams", Collection.class);
         final Method encodeMethod = ReflectionTestUtils.getAccessibleMethod(
-                AciHttpClientImpl.class, "wwwFormEncodeParams", List.class, String.class);
-        return (String) encodeMethod.invoke(aciHttpClient, orderMethod.invoke(aciHttpClient, params), charset);
+                AciHttpClientImpl.class, "encodeParams", Collection.class, Charset.class, boolean.class);
+        return encodeMethod.invoke(aciHttpClient, params, Charset.forName(charset), true).toString();
     }
 
 }
@@ -14,14 +14,24 @@
 
 package com.autonomy.aci.client.transport.impl;
 
+import com.autonomy.aci.client.mock.MockAciServer;
+import com.autonomy.aci.client.mock.MockResponse;
+import com.autonomy.aci.client.transport.AciHttpException;
+import com.autonomy.aci.client.transport.AciMetricsListener;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.util.ActionParameters;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
 import org.apache.hc.core5.http.io.entity.StringEntity;
 import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -29,6 +39,7 @@ import static org.hamcrest.Matchers.startsWith;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.*;
 
 /**
@@ -148,4 +159,151 @@ public class AciResponseInputStreamTest {
         stream.close();
     }
 
+    @Test
+    public void testAbort() throws IOException, AciHttpException, InterruptedException {
+        try (final MockAciServer server = new MockAciServer()) {
+            final byte[] content = new byte[4 * 1024 * 1024];
+            server.setResponse("View", MockResponse.binary(content, "application/octet-stream"));
+            server.setBytesPerSecond(512 * 1024);
+
+            final AciHttpClientImpl aciHttpClient = new AciHttpClientImpl(new HttpClient5Factory().createInstance());
+            final AciResponseInputStreamImpl stream = (AciResponseInputStreamImpl) aciHttpClient.executeAction(server.getServerDetails(), new ActionParameters("View"));
+            assertThat(stream.read(new byte[10]), is(10));
+
+            // Abort, then close as a processor or service would...
+            stream.abort();
+            stream.close();
+            assertThat(stream.isAborted(), is(true));
+            assertThat(stream.getAbortedBytes(), is(content.length - 10L));
+
+            // The server should have stopped writing, rather than sending the rest of the response to be read...
+            assertThat(server.awaitWritesStopped(), is(lessThan(content.length / 4L)));
+            assertNextRequestUsesNewConnection(server, aciHttpClient);
+        }
+    }
+
+    @Test
+    public void testCloseDrainsWithinLimit() throws IOException {
+        final ClassicHttpResponse mockHttpResponse = mock(ClassicHttpResponse.class);
+        when(mockHttpResponse.getEntity()).thenReturn(new ByteArrayEntity(new byte[1000], ContentType.TEXT_XML));
+        final AciMetricsListener mockListener = mock(AciMetricsListener.class);
+        final AciServerDetails serverDetails = new AciServerDetails("localhost", 9000);
+
+        final AciResponseInputStreamImpl stream = new AciResponseInputStreamImpl(mockHttpResponse);
+        stream.meter(mockListener, "Query", serverDetails, System.nanoTime());
+        stream.setDrainLimit(990L);
+        assertThat(stream.getDrainLimit(), is(990L));
+        assertThat(stream.read(new byte[10]), is(10));
+        stream.close();
+
+        // Exactly the limit was left, so it should have been read rather than aborted...
+        assertThat(stream.isAborted(), is(false));
+        assertThat(stream.getDrainedBytes(), is(990L));
+        assertThat(stream.getAbortedBytes(), is(0L));
+        verify(mockHttpResponse, never()).close();
+        verify(mockListener).responseDrained("Query", serverDetails, 990L);
+        verify(mockListener, never()).responseAborted(anyString(), any(AciServerDetails.class), anyLong());
+    }
+
+    @Test
+    public void testCloseAbortsOverLimit() throws IOException, AciHttpException, InterruptedException {
+        try (final MockAciServer server = new MockAciServer()) {
+            final byte[] content = new byte[4 * 1024 * 1024];
+            server.setResponse("View", MockResponse.binary(content, "application/octet-stream"));
+            server.setBytesPerSecond(512 * 1024);
+
+            final AciHttpClientImpl aciHttpClient = new AciHttpClientImpl(new HttpClient5Factory().createInstance());
+            aciHttpClient.setDrainLimit(0L);
+            final AciResponseInputStreamImpl stream = (AciResponseInputStreamImpl) aciHttpClient.executeAction(server.getServerDetails(), new ActionParameters("View"));
+            assertThat(stream.read(new byte[10]), is(10));
+            stream.close();
+
+            // Nothing more should have been read, as we know how much was left...
+            assertThat(stream.isAborted(), is(true));
+            assertThat(stream.getDrainedBytes(), is(0L));
+            assertThat(stream.getAbortedBytes(), is(content.length - 10L));
+
+            assertThat(server.awaitWritesStopped(), is(lessThan(content.length / 4L)));
+            assertNextRequestUsesNewConnection(server, aciHttpClient);
+        }
+    }
+
+    @Test
+    public void testAbortWithoutRequest() throws IOException {
+        final ClassicHttpResponse mockHttpResponse = mock(ClassicHttpResponse.class);
+        final HttpEntity mockHttpEntity = mock(HttpEntity.class);
+        when(mockHttpResponse.getEntity()).thenReturn(mockHttpEntity);
+        when(mockHttpEntity.getContent()).thenReturn(mock(InputStream.class));
+
+        // Without the request, all it can do is close the response...
+        final AciResponseInputStreamImpl stream = new AciResponseInputStreamImpl(mockHttpResponse);
+        stream.abort();
+        stream.close();
+
+        verify(mockHttpResponse).close();
+        verify(mockHttpEntity, never()).isStreaming();
+    }
+
+    @Test
+    public void testCloseWithoutContentLength() throws IOException {
+        final ClassicHttpResponse mockHttpResponse = mock(ClassicHttpResponse.class);
+        when(mockHttpResponse.getEntity()).thenReturn(new InputStreamEntity(new ByteArrayInputStream(new byte[1000]), -1L, ContentType.TEXT_XML));
+
+        final AciResponseInputStreamImpl stream = new AciResponseInputStreamImpl(mockHttpResponse);
+        stream.setDrainLimit(1000L);
+        stream.close();
+
+        assertThat(stream.isAborted(), is(false));
+        assertThat(stream.getDrainedBytes(), is(1000L));
+    }
+
+    @Test
+    public void testCloseWithoutContentLengthAbortsOverLimit() throws IOException {
+        final ClassicHttpResponse mockHttpResponse = mock(ClassicHttpResponse.class);
+        final AciMetricsListener mockListener = mock(AciMetricsListener.class);
+        final AciServerDetails serverDetails = new AciServerDetails("localhost", 9000);
+        when(mockHttpResponse.getEntity()).thenReturn(new InputStreamEntity(new ByteArrayInputStream(new byte[1000]), -1L, ContentType.TEXT_XML));
+
+        final AciResponseInputStreamImpl stream = new AciResponseInputStreamImpl(mockHttpResponse);
+        stream.meter(mockListener, "Query", serverDetails, System.nanoTime());
+        stream.setDrainLimit(999L);
+        stream.close();
+
+        // It has to read past the limit to find out there's more, but none of that was drained as it was aborted...
+        assertThat(stream.isAborted(), is(true));
+        assertThat(stream.getDrainedBytes(), is(0L));
+        assertThat(stream.getAbortedBytes(), is(-1L));
+        verify(mockHttpResponse).close();
+        verify(mockListener).responseAborted("Query", serverDetails, -1L);
+        verify(mockListener, never()).responseRead(anyString(), any(AciServerDetails.class), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testCloseDefaultDrainLimit() throws IOException {
+        httpResponse.setEntity(new StringEntity("This is a test..."));
+        final AciResponseInputStreamImpl stream = new AciResponseInputStreamImpl(httpResponse);
+        assertThat(stream.getDrainLimit(), is(Long.MAX_VALUE));
+        assertThat(stream.read(new byte[5]), is(5));
+        stream.close();
+
+        assertThat(stream.isAborted(), is(false));
+        assertThat(stream.getDrainedBytes(), is(12L));
+    }
+
+    private static void assertNextRequestUsesNewConnection(final MockAciServer server, final AciHttpClientImpl aciHttpClient) throws IOException, AciHttpException {
+        server.setBytesPerSecond(0L);
+        try (final AciResponseInputStream stream = aciHttpClient.executeAction(server.getServerDetails(), new ActionParameters("GetVersion"))) {
+            stream.readAllBytes();
+        }
+
+        // The aborted response's connection should have been closed rather than returned to the pool...
+        assertThat(server.getConnectionCount(), is(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetDrainLimitNegative() throws IOException {
+        httpResponse.setEntity(new StringEntity("This is a test..."));
+        new AciResponseInputStreamImpl(httpResponse).setDrainLimit(-1L);
+    }
+
 }
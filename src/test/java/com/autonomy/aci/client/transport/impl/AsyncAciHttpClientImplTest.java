@@ -0,0 +1,218 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.impl;
+
+import com.autonomy.aci.client.transport.AciHttpException;
+import com.autonomy.aci.client.transport.AciMetricsListener;
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import com.autonomy.aci.client.util.ActionParameters;
+import org.apache.commons.io.IOUtils;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.impl.bootstrap.HttpServer;
+import org.apache.hc.core5.http.impl.bootstrap.ServerBootstrap;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.io.CloseMode;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * JUnit test class for the <code>com.autonomy.aci.client.transport.impl.AsyncAciHttpClientImpl</code> class. The tests
+ * run against a local HTTP server, as the async client can't easily be mocked.
+ */
+public class AsyncAciHttpClientImplTest {
+
+    private static final String RESPONSE = "<?xml version='1.0' encoding='UTF-8' ?><autnresponse><action>GETSTATUS</action><response>SUCCESS</response></autnresponse>";
+
+    private static final AtomicReference<String> lastRequest = new AtomicReference<>();
+
+    private static HttpServer server;
+
+    private static CloseableHttpAsyncClient httpAsyncClient;
+
+    private static AciServerDetails serverDetails;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = ServerBootstrap.bootstrap()
+                .setListenerPort(0)
+                .register("*", (request, response, context) -> {
+                    final String body = (request.getEntity() == null) ? "" : EntityUtils.toString(request.getEntity());
+                    lastRequest.set(request.getMethod() + ' ' + request.getRequestUri() + ' ' + body);
+
+                    if (request.getRequestUri().contains("NotFound")) {
+                        response.setCode(404);
+                    } else {
+                        response.setCode(200);
+                        response.setEntity(new StringEntity(RESPONSE, ContentType.TEXT_XML));
+                    }
+                })
+                .create();
+        server.start();
+
+        httpAsyncClient = new HttpAsyncClient5Factory().createInstance();
+        serverDetails = new AciServerDetails("localhost", server.getLocalPort());
+    }
+
+    @AfterClass
+    public static void stopServer() throws IOException {
+        httpAsyncClient.close();
+        server.close(CloseMode.IMMEDIATE);
+    }
+
+    @Test
+    public void testConstructor() {
+        final AsyncAciHttpClientImpl aciHttpClient = new AsyncAciHttpClientImpl(httpAsyncClient);
+        assertThat(aciHttpClient.getHttpAsyncClient(), is(sameInstance(httpAsyncClient)));
+        assertThat(aciHttpClient.isUsePostMethod(), is(false));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testExecuteActionAsyncNoClient() {
+        new AsyncAciHttpClientImpl().executeActionAsync(serverDetails, new ActionParameters("GetStatus"));
+        fail("Should have thrown a NullPointerException...");
+    }
+
+    @Test
+    public void testExecuteActionAsyncGet() throws Exception {
+        final ActionParameters parameters = new ActionParameters("GetStatus");
+        parameters.add("Text", "hello world");
+
+        final CompletableFuture<AciResponseInputStream> future = new AsyncAciHttpClientImpl(httpAsyncClient).executeActionAsync(serverDetails, parameters);
+
+        try (final AciResponseInputStream response = future.get()) {
+            assertThat(response.getStatusCode(), is(200));
+            assertThat(response.getContentType(), startsWith("text/xml"));
+            assertThat(IOUtils.toString(response, StandardCharsets.UTF_8), is(equalTo(RESPONSE)));
+        }
+
+        assertThat(lastRequest.get(), is(equalTo("GET /?Action=GetStatus&Text=hello%20world ")));
+    }
+
+    @Test
+    public void testExecuteActionAsyncPost() throws Exception {
+        final AsyncAciHttpClientImpl aciHttpClient = new AsyncAciHttpClientImpl(httpAsyncClient);
+        aciHttpClient.setUsePostMethod(true);
+
+        final ActionParameters parameters = new ActionParameters("GetStatus");
+        parameters.add("Text", "hello world");
+
+        try (final AciResponseInputStream response = aciHttpClient.executeActionAsync(serverDetails, parameters).get()) {
+            assertThat(IOUtils.toString(response, StandardCharsets.UTF_8), is(equalTo(RESPONSE)));
+        }
+
+        assertThat(lastRequest.get(), is(equalTo("POST / Action=GetStatus&Text=hello+world")));
+    }
+
+    @Test
+    public void testExecuteActionAsyncBadStatusCode() throws InterruptedException {
+        try {
+            new AsyncAciHttpClientImpl(httpAsyncClient).executeActionAsync(serverDetails, new ActionParameters("NotFound")).get();
+            fail("Should have thrown an ExecutionException...");
+        } catch (final ExecutionException ee) {
+            assertThat(ee.getCause(), is(instanceOf(AciHttpException.class)));
+            assertThat(ee.getCause().getMessage(), containsString("404"));
+        }
+    }
+
+    @Test
+    public void testExecuteActionBlocking() throws IOException, AciHttpException {
+        try (final AciResponseInputStream response = new AsyncAciHttpClientImpl(httpAsyncClient).executeAction(serverDetails, new ActionParameters("GetStatus"))) {
+            assertThat(IOUtils.toString(response, StandardCharsets.UTF_8), is(equalTo(RESPONSE)));
+        }
+    }
+
+    @Test(expected = AciHttpException.class)
+    public void testExecuteActionBlockingBadStatusCode() throws IOException, AciHttpException {
+        new AsyncAciHttpClientImpl(httpAsyncClient).executeAction(serverDetails, new ActionParameters("NotFound"));
+        fail("Should have thrown an AciHttpException...");
+    }
+
+    @Test(expected = IOException.class)
+    public void testExecuteActionBlockingConnectionRefused() throws IOException, AciHttpException {
+        new AsyncAciHttpClientImpl(httpAsyncClient).executeAction(new AciServerDetails("localhost", 1), new ActionParameters("GetStatus"));
+        fail("Should have thrown an IOException...");
+    }
+
+    @Test
+    public void testMetricsListenerAndDrainLimit() throws Exception {
+        final AciMetricsListener listener = mock(AciMetricsListener.class);
+        final AsyncAciHttpClientImpl aciHttpClient = new AsyncAciHttpClientImpl(httpAsyncClient);
+        aciHttpClient.setMetricsListener(listener);
+        aciHttpClient.setDrainLimit(0L);
+
+        final AciResponseInputStreamImpl response = (AciResponseInputStreamImpl) aciHttpClient.executeActionAsync(serverDetails, new ActionParameters("GetStatus")).get();
+        assertThat(response.getDrainLimit(), is(0L));
+        assertThat(response.read(new byte[10]), is(10));
+        response.close();
+
+        // The rest of the response was more than the drain limit, so it should have been aborted...
+        assertThat(response.isAborted(), is(true));
+        verify(listener).requestEncoded(eq("GetStatus"), same(serverDetails), anyLong());
+        verify(listener).connectionLeased(eq("GetStatus"), same(serverDetails), anyLong());
+        verify(listener).responseReceived(eq("GetStatus"), same(serverDetails), eq(200), anyLong());
+        verify(listener).responseAborted("GetStatus", serverDetails, RESPONSE.length() - 10L);
+        verify(listener, never()).requestFailed(anyString(), any(AciServerDetails.class), any(Throwable.class), anyLong());
+    }
+
+    @Test
+    public void testMetricsListenerBadStatusCode() throws InterruptedException {
+        final AciMetricsListener listener = mock(AciMetricsListener.class);
+        final AsyncAciHttpClientImpl aciHttpClient = new AsyncAciHttpClientImpl(httpAsyncClient);
+        aciHttpClient.setMetricsListener(listener);
+
+        try {
+            aciHttpClient.executeActionAsync(serverDetails, new ActionParameters("NotFound")).get();
+            fail("Should have thrown an ExecutionException...");
+        } catch (final ExecutionException ee) {
+            verify(listener).responseReceived(eq("NotFound"), same(serverDetails), eq(404), anyLong());
+            verify(listener).requestFailed(eq("NotFound"), same(serverDetails), same(ee.getCause()), anyLong());
+        }
+    }
+
+    @Test
+    public void testCompleteClosesResponseWhenCancelled() throws IOException {
+        final AciResponseInputStream response = mock(AciResponseInputStream.class);
+
+        // A response for a future that's still waiting should be handed over...
+        final CompletableFuture<AciResponseInputStream> waiting = new CompletableFuture<>();
+        AsyncAciHttpClientImpl.complete(waiting, response);
+        assertThat(waiting.join(), is(sameInstance(response)));
+        verify(response, never()).close();
+
+        // ...whereas one for a cancelled future would never be closed by anyone else...
+        final CompletableFuture<AciResponseInputStream> cancelled = new CompletableFuture<>();
+        cancelled.cancel(false);
+        AsyncAciHttpClientImpl.complete(cancelled, response);
+        verify(response).close();
+    }
+
+}
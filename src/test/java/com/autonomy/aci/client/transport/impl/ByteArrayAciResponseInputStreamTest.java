@@ -0,0 +1,91 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.impl;
+
+import com.autonomy.aci.client.transport.AciResponseInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * JUnit test class for the <code>com.autonomy.aci.client.transport.impl.ByteArrayAciResponseInputStream</code> class.
+ */
+public class ByteArrayAciResponseInputStreamTest {
+
+    @Test
+    public void testConstructor() throws IOException {
+        final ByteArrayAciResponseInputStream stream = new ByteArrayAciResponseInputStream(
+                "content".getBytes(StandardCharsets.UTF_8), 200, "text/xml", "gzip", Collections.singletonMap("AUTN-Content-Type", "image/jpeg"));
+
+        assertThat(stream.getStatusCode(), is(200));
+        assertThat(stream.getContentType(), is(equalTo("text/xml")));
+        assertThat(stream.getContentEncoding(), is(equalTo("gzip")));
+        assertThat(stream.getContentLength(), is(7L));
+        assertThat(stream.size(), is(7));
+        assertThat(stream.getHeader("autn-content-type"), is(equalTo("image/jpeg")));
+        assertThat(stream.getHeader("Missing"), is(nullValue()));
+        assertThat(IOUtils.toString(stream, StandardCharsets.UTF_8), is(equalTo("content")));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullContent() {
+        new ByteArrayAciResponseInputStream(null, 200, null, null, null);
+        fail("Should have thrown a NullPointerException...");
+    }
+
+    @Test
+    public void testBuffer() throws IOException {
+        final BasicClassicHttpResponse httpResponse = new BasicClassicHttpResponse(200);
+        httpResponse.setEntity(new StringEntity("<autnresponse/>", ContentType.TEXT_XML));
+        httpResponse.setHeader("AUTN-Content-Type", "text/xml");
+        httpResponse.setHeader("X-Other", "not kept");
+
+        final AciResponseInputStream response = new AciResponseInputStreamImpl(httpResponse);
+        final ByteArrayAciResponseInputStream buffered = ByteArrayAciResponseInputStream.buffer(response);
+
+        assertThat(response.read(), is(-1));
+        assertThat(buffered.getStatusCode(), is(200));
+        assertThat(buffered.getContentType(), startsWith("text/xml"));
+        assertThat(buffered.getHeader("AUTN-Content-Type"), is(equalTo("text/xml")));
+        assertThat(buffered.getHeader("X-Other"), is(nullValue()));
+        assertThat(IOUtils.toString(buffered, StandardCharsets.UTF_8), is(equalTo("<autnresponse/>")));
+    }
+
+    @Test
+    public void testCopy() throws IOException {
+        final ByteArrayAciResponseInputStream stream = new ByteArrayAciResponseInputStream(
+                "content".getBytes(StandardCharsets.UTF_8), 404, "text/plain", null, Collections.singletonMap("Content-Disposition", "inline"));
+
+        assertThat(IOUtils.toString(stream, StandardCharsets.UTF_8), is(equalTo("content")));
+
+        // Copies start from the beginning, even when the original has been read...
+        final ByteArrayAciResponseInputStream copy = stream.copy();
+        assertThat(IOUtils.toString(copy, StandardCharsets.UTF_8), is(equalTo("content")));
+        assertThat(copy.getStatusCode(), is(404));
+        assertThat(copy.getContentType(), is(equalTo("text/plain")));
+        assertThat(copy.getHeaders(), hasEntry("Content-Disposition", "inline"));
+    }
+
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.impl;
+
+import com.autonomy.aci.client.TestEncryptionCodec;
+import com.autonomy.aci.client.transport.EncryptionCodecException;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class DecryptedContentInputStreamTest {
+
+    private static final String ENCRYPTED_RESPONSE = "/com/autonomy/aci/client/transport/impl/EncryptedResponse.xml";
+
+    private static final String UNENCRYPTED_RESPONSE = "/com/autonomy/aci/client/transport/impl/UnencryptedResponse.xml";
+
+    private DecryptedContentInputStream createStream(final String xml, final TestEncryptionCodec codec, final String charsetName, final boolean textContent) throws XMLStreamException {
+        final XMLStreamReader xmlStreamReader = AbstractEncryptedResponseProcessor.createXMLInputFactory()
+                .createXMLStreamReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        return new DecryptedContentInputStream(xmlStreamReader, codec, charsetName, textContent);
+    }
+
+    private DecryptedContentInputStream createStream(final String xml, final TestEncryptionCodec codec, final boolean textContent,
+                                                     final Executor executor, final int parallelism) throws XMLStreamException {
+        final XMLStreamReader xmlStreamReader = AbstractEncryptedResponseProcessor.createXMLInputFactory()
+                .createXMLStreamReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        return new DecryptedContentInputStream(xmlStreamReader, codec, "UTF-8", textContent, executor, parallelism);
+    }
+
+    private String resource(final String name) throws IOException {
+        return IOUtils.toString(getClass().getResourceAsStream(name), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testReadByteByByte() throws IOException, XMLStreamException {
+        final InputStream stream = createStream(resource(ENCRYPTED_RESPONSE), new TestEncryptionCodec(), "UTF-8", true);
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (int read = stream.read(); read != -1; read = stream.read()) {
+            buffer.write(read);
+        }
+
+        assertThat(buffer.toString("UTF-8"), is(equalTo(resource(UNENCRYPTED_RESPONSE))));
+        assertThat(stream.read(), is(-1));
+        assertThat(stream.read(new byte[10], 0, 10), is(-1));
+    }
+
+    @Test
+    public void testDecryptsLazily() throws IOException, XMLStreamException {
+        final AtomicInteger decrypted = new AtomicInteger();
+        final TestEncryptionCodec codec = new TestEncryptionCodec() {
+            @Override
+            public byte[] decrypt(final byte[] bytes) throws EncryptionCodecException {
+                decrypted.incrementAndGet();
+                return super.decrypt(bytes);
+            }
+        };
+
+        final String xml = "<?xml version='1.0' encoding='UTF-8' ?><autnresponse><responsedata>"
+                + "<autn:encrypteddata>Zmlyc3Q=</autn:encrypteddata>"
+                + "<autn:encrypteddata>c2Vjb25k</autn:encrypteddata>"
+                + "</responsedata></autnresponse>";
+        final DecryptedContentInputStream stream = createStream(xml, codec, "UTF-8", false);
+
+        stream.start();
+        assertThat(decrypted.get(), is(0));
+
+        final byte[] bytes = new byte[5];
+        assertThat(stream.read(bytes, 0, 5), is(5));
+        assertThat(new String(bytes, StandardCharsets.UTF_8), is(equalTo("first")));
+        assertThat(decrypted.get(), is(1));
+
+        assertThat(IOUtils.toString(stream, StandardCharsets.UTF_8), is(equalTo("second")));
+        assertThat(decrypted.get(), is(2));
+    }
+
+    @Test
+    public void testSplitAndCdataContent() throws IOException, XMLStreamException {
+        // Entities and CDATA sections split the block text into several events...
+        final String xml = "<?xml version='1.0' encoding='UTF-8' ?><autnresponse><responsedata>"
+                + "<autn:encrypteddata>Zmly&#99;3Q<![CDATA[=]]></autn:encrypteddata>"
+                + "</responsedata></autnresponse>";
+
+        assertThat(IOUtils.toString(createStream(xml, new TestEncryptionCodec(), "UTF-8", false), StandardCharsets.UTF_8), is(equalTo("first")));
+    }
+
+    @Test
+    public void testLargeBlockGrowsBuffer() throws IOException, XMLStreamException, EncryptionCodecException {
+        final StringBuilder content = new StringBuilder();
+        for (int ii = 0; ii < 5000; ii++) {
+            content.append("0123456789");
+        }
+
+        final String encoded = new String(new TestEncryptionCodec().encrypt(content.toString().getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+        final String xml = "<?xml version='1.0' encoding='UTF-8' ?><autnresponse><responsedata><autn:encrypteddata>"
+                + encoded + "</autn:encrypteddata></responsedata></autnresponse>";
+
+        assertThat(IOUtils.toString(createStream(xml, new TestEncryptionCodec(), "UTF-8", false), StandardCharsets.UTF_8), is(equalTo(content.toString())));
+    }
+
+    @Test
+    public void testNonAsciiCompatibleCharset() throws IOException, XMLStreamException {
+        final String xml = "<?xml version='1.0' encoding='UTF-8' ?><autnresponse><responsedata>"
+                + "<autn:encrypteddata>Zmlyc3Q=</autn:encrypteddata>"
+                + "</responsedata></autnresponse>";
+
+        // The codec gets the Base64 in the response character set, which it can't decode...
+        final TestEncryptionCodec codec = new TestEncryptionCodec() {
+            @Override
+            public byte[] decrypt(final byte[] bytes) throws EncryptionCodecException {
+                return super.decrypt(new String(bytes, StandardCharsets.UTF_16BE).getBytes(StandardCharsets.UTF_8));
+            }
+        };
+
+        assertThat(IOUtils.toString(createStream(xml, codec, "UTF-16BE", false), StandardCharsets.UTF_8), is(equalTo("first")));
+    }
+
+    @Test
+    public void testSkipAndAvailable() throws IOException, XMLStreamException {
+        final String xml = "<?xml version='1.0' encoding='UTF-8' ?><autnresponse><responsedata>"
+                + "<autn:encrypteddata>Zmlyc3Q=</autn:encrypteddata>"
+                + "<autn:encrypteddata>c2Vjb25k</autn:encrypteddata>"
+                + "</responsedata></autnresponse>";
+        final DecryptedContentInputStream stream = createStream(xml, new TestEncryptionCodec(), "UTF-8", false);
+
+        assertThat(stream.available(), is(0));
+        assertThat(stream.skip(7), is(7L));
+        assertThat(stream.available(), is(4));
+        assertThat(IOUtils.toString(stream, StandardCharsets.UTF_8), is(equalTo("cond")));
+        assertThat(stream.skip(10), is(0L));
+    }
+
+    @Test
+    public void testMalformedResponseFailsOnStart() throws XMLStreamException {
+        try {
+            createStream("this is not XML", new TestEncryptionCodec(), "UTF-8", true).start();
+            fail("Should have thrown an IOException...");
+        } catch (final IOException ioe) {
+            assertThat(ioe.getCause(), is(instanceOf(XMLStreamException.class)));
+        }
+    }
+
+    @Test
+    public void testTruncatedBlock() throws XMLStreamException {
+        final String xml = "<?xml version='1.0' encoding='UTF-8' ?><autnresponse><responsedata><autn:encrypteddata>Zmlyc";
+
+        try {
+            IOUtils.toString(createStream(xml, new TestEncryptionCodec(), "UTF-8", false), StandardCharsets.UTF_8);
+            fail("Should have thrown an IOException...");
+        } catch (final IOException ioe) {
+            assertThat(ioe.getCause(), is(instanceOf(XMLStreamException.class)));
+        }
+    }
+
+    @Test
+    public void testCloseClosesReader() throws IOException, XMLStreamException {
+        final XMLStreamReader mockXmlStreamReader = mock(XMLStreamReader.class);
+        new DecryptedContentInputStream(mockXmlStreamReader, new TestEncryptionCodec(), "UTF-8", false).close();
+        verify(mockXmlStreamReader).close();
+    }
+
+    @Test
+    public void testParallelTextContent() throws IOException, XMLStreamException, InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            final InputStream stream = createStream(resource(ENCRYPTED_RESPONSE), new TestEncryptionCodec(), true, executor, 2);
+            assertThat(IOUtils.toString(stream, StandardCharsets.UTF_8), is(equalTo(resource(UNENCRYPTED_RESPONSE))));
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testParallelKeepsOrder() throws IOException, XMLStreamException, InterruptedException {
+        // The first block can't finish decrypting until the second has, so they finish out of order...
+        final CountDownLatch secondDecrypted = new CountDownLatch(1);
+        final TestEncryptionCodec codec = new TestEncryptionCodec() {
+            @Override
+            public byte[] decrypt(final byte[] bytes) throws EncryptionCodecException {
+                final byte[] decrypted = super.decrypt(bytes);
+
+                if ("first".equals(new String(decrypted, StandardCharsets.UTF_8))) {
+                    try {
+                        assertThat(secondDecrypted.await(10, TimeUnit.SECONDS), is(true));
+                    } catch (final InterruptedException ie) {
+                        throw new EncryptionCodecException("Interrupted", ie);
+                    }
+                } else {
+                    secondDecrypted.countDown();
+                }
+
+                return decrypted;
+            }
+        };
+
+        final String xml = "<?xml version='1.0' encoding='UTF-8' ?><autnresponse><responsedata>"
+                + "<autn:encrypteddata>Zmlyc3Q=</autn:encrypteddata>"
+                + "<autn:encrypteddata>c2Vjb25k</autn:encrypteddata>"
+                + "<autn:encrypteddata>dGhpcmQ=</autn:encrypteddata>"
+                + "</responsedata></autnresponse>";
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            final InputStream stream = createStream(xml, codec, false, executor, 2);
+            assertThat(IOUtils.toString(stream, StandardCharsets.UTF_8), is(equalTo("firstsecondthird")));
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testParallelReadsAheadWithinLimit() throws IOException, XMLStreamException {
+        final AtomicInteger decrypted = new AtomicInteger();
+        final TestEncryptionCodec codec = new TestEncryptionCodec() {
+            @Override
+            public byte[] decrypt(final byte[] bytes) throws EncryptionCodecException {
+                decrypted.incrementAndGet();
+                return super.decrypt(bytes);
+            }
+        };
+
+        final StringBuilder xml = new StringBuilder("<?xml version='1.0' encoding='UTF-8' ?><autnresponse><responsedata>");
+        for (int ii = 0; ii < 10; ii++) {
+            xml.append("<autn:encrypteddata>Zmlyc3Q=</autn:encrypteddata>");
+        }
+        xml.append("</responsedata></autnresponse>");
+
+        // Decrypt on the calling thread, so we can see exactly how far ahead it's got...
+        final DecryptedContentInputStream parallel = createStream(xml.toString(), codec, false, Runnable::run, 3);
+
+        assertThat(parallel.read(new byte[5], 0, 5), is(5));
+        assertThat(decrypted.get(), is(3));
+
+        assertThat(parallel.skip(5), is(5L));
+        assertThat(decrypted.get(), is(4));
+
+        assertThat(IOUtils.toString(parallel, StandardCharsets.UTF_8).length(), is(40));
+        assertThat(decrypted.get(), is(10));
+    }
+
+    @Test
+    public void testParallelDecryptionFailure() throws XMLStreamException, InterruptedException {
+        final TestEncryptionCodec codec = new TestEncryptionCodec() {
+            @Override
+            public byte[] decrypt(final byte[] bytes) throws EncryptionCodecException {
+                throw new EncryptionCodecException("JUnit test exception");
+            }
+        };
+
+        final String xml = "<?xml version='1.0' encoding='UTF-8' ?><autnresponse><responsedata>"
+                + "<autn:encrypteddata>Zmlyc3Q=</autn:encrypteddata>"
+                + "</responsedata></autnresponse>";
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            IOUtils.toString(createStream(xml, codec, false, executor, 2), StandardCharsets.UTF_8);
+            fail("Should have thrown an IOException...");
+        } catch (final IOException ioe) {
+            assertThat(ioe.getCause(), is(instanceOf(EncryptionCodecException.class)));
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+}
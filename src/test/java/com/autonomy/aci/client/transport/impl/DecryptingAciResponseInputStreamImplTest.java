@@ -132,6 +132,25 @@ public class DecryptingAciResponseInputStreamImplTest {
         assertThat(stream.getContentType(), is(equalTo("image/jpeg")));
     }
 
+    @Test
+    public void testMarkAndReset() throws IOException {
+        httpResponse.setEntity(new StringEntity(encryptedTextResponse, ContentType.TEXT_XML));
+        httpResponse.setHeaders(new Header[]{new BasicHeader("AUTN-Content-Type", "text/xml"), new BasicHeader("Content-Type", "text/xml")});
+
+        // Processors may sniff the start of the response and then rewind it...
+        final DecryptingAciResponseInputStreamImpl stream = new DecryptingAciResponseInputStreamImpl(serverDetails, httpResponse);
+        assertThat(stream.markSupported(), is(true));
+
+        stream.mark(100);
+        final byte[] sniffed = new byte[50];
+        assertThat(stream.read(sniffed), is(50));
+        stream.reset();
+
+        final String decrypted = toString(stream);
+        assertThat(decrypted, is(equalTo(unencryptedTextResponse)));
+        assertThat(new String(sniffed, "UTF-8"), is(equalTo(decrypted.substring(0, 50))));
+    }
+
     @Test(expected = IOException.class)
     @SuppressWarnings("unchecked")
     public void testConstructorProcessorException() throws IOException {
@@ -26,6 +26,9 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
@@ -46,6 +49,35 @@ public class EncryptedTextContentProcessorTest {
         );
     }
 
+    @Test
+    public void testProcessInParallel() throws XMLStreamException, IOException, InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            final ByteArrayInputStream byteArrayInputStream = new EncryptedTextContentProcessor(new TestEncryptionCodec(), "UTF-8", executor, 2)
+                    .process(XmlTestUtils.getResourceAsXMLStreamReader("/com/autonomy/aci/client/transport/impl/EncryptedResponse.xml"));
+
+            assertThat(
+                    IOUtils.toString(byteArrayInputStream),
+                    is(equalTo(IOUtils.toString(getClass().getResourceAsStream("/com/autonomy/aci/client/transport/impl/UnencryptedResponse.xml"))))
+            );
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test(expected = ProcessorException.class)
+    @SuppressWarnings("unchecked")
+    public void testProcessInParallelEncryptionCodecException() throws XMLStreamException, IOException, EncryptionCodecException {
+        final EncryptionCodec mockEncryptionCodec = mock(EncryptionCodec.class);
+        when(mockEncryptionCodec.decrypt((byte[]) any())).thenThrow(EncryptionCodecException.class);
+
+        new EncryptedTextContentProcessor(mockEncryptionCodec, "UTF-8", Runnable::run, 2)
+                .process(XmlTestUtils.getResourceAsXMLStreamReader("/com/autonomy/aci/client/transport/impl/EncryptedResponse.xml"));
+        fail("Should have thrown a ProcessorException...");
+    }
+
     @Test(expected = ProcessorException.class)
     public void testProcessXMLStreamException() throws XMLStreamException, IOException {
         final XMLStreamReader mockXmlStreamReader = mock(XMLStreamReader.class);
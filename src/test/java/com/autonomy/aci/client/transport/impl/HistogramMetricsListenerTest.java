@@ -0,0 +1,111 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.impl;
+
+import com.autonomy.aci.client.transport.AciMetricsListener.Outcome;
+import com.autonomy.aci.client.transport.AciServerDetails;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * JUnit test class for the <code>com.autonomy.aci.client.transport.impl.HistogramMetricsListener</code> class.
+ */
+public class HistogramMetricsListenerTest {
+
+    private final AciServerDetails serverDetails = new AciServerDetails("localhost", 9000);
+
+    private final HistogramMetricsListener listener = new HistogramMetricsListener();
+
+    @Test
+    public void testPhasesRecorded() {
+        listener.requestEncoded("Query", serverDetails, 10L);
+        listener.requestEncrypted("Query", serverDetails, 5L);
+        listener.connectionLeased("Query", serverDetails, 50L);
+        listener.responseReceived("Query", serverDetails, 200, 1000L);
+        listener.responseRead("Query", serverDetails, 1234L, 200L);
+        listener.actionCompleted("Query", serverDetails, Outcome.SUCCESS, 300L, 1500L);
+
+        final HistogramMetricsListener.ActionStatistics statistics = listener.getStatistics("query");
+        assertThat(statistics.getAction(), is(equalTo("query")));
+        assertThat(statistics.getEncoding().getMax(), is(10L));
+        assertThat(statistics.getEncryption().getMax(), is(5L));
+        assertThat(statistics.getConnectionLease().getMax(), is(50L));
+        assertThat(statistics.getTimeToFirstByte().getMax(), is(1000L));
+        assertThat(statistics.getBodyRead().getMax(), is(200L));
+        assertThat(statistics.getProcessing().getMax(), is(300L));
+        assertThat(statistics.getTotal().getMax(), is(1500L));
+        assertThat(statistics.getBytes(), is(1234L));
+        assertThat(statistics.getOutcomeCount(Outcome.SUCCESS), is(1L));
+        assertThat(statistics.getOutcomeCount(Outcome.ACI_ERROR), is(0L));
+    }
+
+    @Test
+    public void testActionsGroupedByName() {
+        listener.actionCompleted("Query", serverDetails, Outcome.SUCCESS, 1L, 10L);
+        listener.actionCompleted("QUERY", new AciServerDetails("otherhost", 9000), Outcome.ACI_ERROR, 1L, 20L);
+        listener.actionCompleted("GetStatus", serverDetails, Outcome.SUCCESS, 1L, 5L);
+
+        assertThat(listener.getStatistics().keySet(), contains("getstatus", "query"));
+        assertThat(listener.getStatistics("Query").getTotal().getCount(), is(2L));
+        assertThat(listener.getStatistics("Query").getOutcomeCount(Outcome.ACI_ERROR), is(1L));
+        assertThat(listener.getStatistics("GetVersion"), is(nullValue()));
+    }
+
+    @Test
+    public void testFailuresRecorded() {
+        listener.requestFailed("Query", serverDetails, new IOException("Connection refused"), 100L);
+        listener.actionCompleted("Query", serverDetails, Outcome.TRANSPORT_ERROR, 0L, 100L);
+
+        final HistogramMetricsListener.ActionStatistics statistics = listener.getStatistics("query");
+        assertThat(statistics.getFailures(), is(1L));
+        assertThat(statistics.getOutcomeCount(Outcome.TRANSPORT_ERROR), is(1L));
+        assertThat(statistics.getProcessing().getCount(), is(0L));
+    }
+
+    @Test
+    public void testDrainedAndAbortedRecorded() {
+        listener.responseDrained("Query", serverDetails, 100L);
+        listener.responseDrained("Query", serverDetails, 50L);
+        listener.responseAborted("Query", serverDetails, 1000L);
+        listener.responseAborted("Query", serverDetails, -1L);
+
+        final HistogramMetricsListener.ActionStatistics statistics = listener.getStatistics("query");
+        assertThat(statistics.getDrainedBytes(), is(150L));
+        assertThat(statistics.getAborted(), is(2L));
+        assertThat(statistics.getAbortedBytes(), is(1000L));
+    }
+
+    @Test
+    public void testReset() {
+        listener.actionCompleted("Query", serverDetails, Outcome.SUCCESS, 1L, 10L);
+        listener.reset();
+
+        assertThat(listener.getStatistics().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testToString() {
+        listener.actionCompleted("Query", serverDetails, Outcome.SUCCESS, 1L, 2_000_000L);
+        listener.responseReceived("GetStatus", serverDetails, 200, 1_000_000L);
+
+        assertThat(listener.toString(), containsString("getstatus: count=1, p50=1.000ms"));
+        assertThat(listener.toString(), containsString("query: count=1, p50=2.000ms"));
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.transport.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * JUnit test class for the <code>com.autonomy.aci.client.transport.impl.LatencyHistogram</code> class.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getPercentile(50.0), is(0L));
+        assertThat(histogram.getMax(), is(0L));
+        assertThat(histogram.getMean(), is(0L));
+    }
+
+    @Test
+    public void testSmallValuesExact() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long ii = 1L; ii <= 10L; ii++) {
+            histogram.record(ii);
+        }
+
+        assertThat(histogram.getPercentile(50.0), is(5L));
+        assertThat(histogram.getPercentile(100.0), is(10L));
+        assertThat(histogram.getPercentile(0.0), is(1L));
+        assertThat(histogram.getMean(), is(5L));
+    }
+
+    @Test
+    public void testPercentilesAccurate() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        // 1ms to 1000ms...
+        for (long ii = 1L; ii <= 1000L; ii++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(ii));
+        }
+
+        assertThat(histogram.getCount(), is(1000L));
+        assertThat((double) histogram.getPercentile(50.0), is(closeTo(TimeUnit.MILLISECONDS.toNanos(500L), TimeUnit.MILLISECONDS.toNanos(500L) * 0.07)));
+        assertThat((double) histogram.getPercentile(99.0), is(closeTo(TimeUnit.MILLISECONDS.toNanos(990L), TimeUnit.MILLISECONDS.toNanos(990L) * 0.07)));
+        assertThat(histogram.getPercentile(100.0), is(TimeUnit.MILLISECONDS.toNanos(1000L)));
+        assertThat(histogram.getMax(), is(TimeUnit.MILLISECONDS.toNanos(1000L)));
+    }
+
+    @Test
+    public void testPercentileNeverUnderestimates() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000L);
+        histogram.record(1_000_000L);
+
+        assertThat(histogram.getPercentile(50.0), is(greaterThanOrEqualTo(1000L)));
+        assertThat(histogram.getPercentile(50.0), is(lessThan(1100L)));
+    }
+
+    @Test
+    public void testOutOfRangeValuesClamped() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5L);
+        histogram.record(Long.MAX_VALUE);
+
+        assertThat(histogram.getPercentile(50.0), is(0L));
+        assertThat(histogram.getMax(), is(greaterThan(TimeUnit.HOURS.toNanos(4L))));
+        assertThat(histogram.getPercentile(100.0), is(histogram.getMax()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new LatencyHistogram().getPercentile(100.1);
+        fail("Should have thrown an IllegalArgumentException...");
+    }
+
+    @Test
+    public void testToString() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(2L));
+
+        assertThat(histogram.toString(), startsWith("count=1, p50=2.000ms"));
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.transport.impl;
+
+import com.autonomy.aci.client.TestEncryptionCodec;
+import com.autonomy.aci.client.transport.EncryptionCodec;
+import com.autonomy.aci.client.transport.EncryptionCodecException;
+import com.autonomy.aci.client.transport.StreamingEncryptionCodec;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class StreamingEncryptionCodecAdapterTest {
+
+    @Test
+    public void testAdaptStreamingCodec() {
+        final StreamingEncryptionCodec codec = new AbstractEncryptionCodecTest();
+        assertThat(StreamingEncryptionCodecAdapter.adapt(codec), is(sameInstance(codec)));
+    }
+
+    @Test
+    public void testAdaptCodec() {
+        final EncryptionCodec codec = new TestEncryptionCodec();
+        final StreamingEncryptionCodec adapted = StreamingEncryptionCodecAdapter.adapt(codec);
+
+        assertThat(adapted, is(instanceOf(StreamingEncryptionCodecAdapter.class)));
+        assertThat(((StreamingEncryptionCodecAdapter) adapted).getEncryptionCodec(), is(sameInstance(codec)));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullCodec() {
+        new StreamingEncryptionCodecAdapter(null);
+    }
+
+    @Test
+    public void testEncryptWholeArray() throws EncryptionCodecException, IOException {
+        final EncryptionCodec codec = mock(EncryptionCodec.class);
+        final byte[] bytes = "first".getBytes(StandardCharsets.UTF_8);
+        when(codec.encrypt(bytes)).thenReturn("Zmlyc3Q=".getBytes(StandardCharsets.UTF_8));
+
+        // The backing array should be passed straight through...
+        final ByteBuffer input = ByteBuffer.wrap(bytes);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new StreamingEncryptionCodecAdapter(codec).encrypt(input, output);
+
+        assertThat(output.toString("UTF-8"), is(equalTo("Zmlyc3Q=")));
+        assertThat(input.hasRemaining(), is(false));
+        verify(codec).encrypt(same(bytes));
+    }
+
+    @Test
+    public void testEncryptPartOfArray() throws EncryptionCodecException, IOException {
+        final byte[] bytes = "xxfirstyy".getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer input = ByteBuffer.wrap(bytes, 2, 5);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        new StreamingEncryptionCodecAdapter(new TestEncryptionCodec()).encrypt(input, output);
+
+        assertThat(output.toString("UTF-8"), is(equalTo("Zmlyc3Q=")));
+        assertThat(input.position(), is(7));
+    }
+
+    @Test
+    public void testDecryptDirectBuffer() throws EncryptionCodecException, IOException {
+        final ByteBuffer input = ByteBuffer.allocateDirect(8).put("c2Vjb25k".getBytes(StandardCharsets.UTF_8)).flip();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        new StreamingEncryptionCodecAdapter(new TestEncryptionCodec()).decrypt(input, output);
+
+        assertThat(output.toString("UTF-8"), is(equalTo("second")));
+        assertThat(input.hasRemaining(), is(false));
+    }
+
+    @Test
+    public void testArrayMethodsDelegate() throws EncryptionCodecException {
+        final StreamingEncryptionCodecAdapter adapter = new StreamingEncryptionCodecAdapter(new TestEncryptionCodec());
+
+        assertThat(adapter.encrypt("first".getBytes(StandardCharsets.UTF_8)), is(equalTo("Zmlyc3Q=".getBytes(StandardCharsets.UTF_8))));
+        assertThat(adapter.decrypt("Zmlyc3Q=".getBytes(StandardCharsets.UTF_8)), is(equalTo("first".getBytes(StandardCharsets.UTF_8))));
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.transport.impl;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ZlibPoolTest {
+
+    private static final byte[] PREFIX = "AUTN:".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void testCompressorsAreReused() {
+        final ZlibPool pool = new ZlibPool(2);
+
+        final ZlibPool.Compressor compressor = pool.borrowCompressor();
+        pool.release(compressor);
+        assertThat(pool.idleCompressors(), is(1));
+
+        assertThat(pool.borrowCompressor(), is(sameInstance(compressor)));
+        assertThat(pool.idleCompressors(), is(0));
+    }
+
+    @Test
+    public void testDecompressorsAreReused() {
+        final ZlibPool pool = new ZlibPool(2);
+
+        final ZlibPool.Decompressor decompressor = pool.borrowDecompressor();
+        pool.release(decompressor);
+        assertThat(pool.idleDecompressors(), is(1));
+
+        assertThat(pool.borrowDecompressor(), is(sameInstance(decompressor)));
+    }
+
+    @Test
+    public void testReleaseWhenFullEnds() {
+        final ZlibPool pool = new ZlibPool(1);
+
+        final ZlibPool.Compressor first = pool.borrowCompressor();
+        final ZlibPool.Compressor second = pool.borrowCompressor();
+        final ZlibPool.Decompressor decompressor = pool.borrowDecompressor();
+        pool.release(first);
+        pool.release(second);
+        pool.release(pool.borrowDecompressor());
+        pool.release(decompressor);
+
+        assertThat(pool.idleCompressors(), is(1));
+        assertThat(pool.idleDecompressors(), is(1));
+
+        // The native resources of what didn't fit should have been released...
+        try {
+            second.deflater.getTotalIn();
+            fail("Should have thrown a NullPointerException, as the Deflater has been ended...");
+        } catch (final NullPointerException npe) {
+            // Expected...
+        }
+
+        try {
+            decompressor.inflater.getTotalIn();
+            fail("Should have thrown a NullPointerException, as the Inflater has been ended...");
+        } catch (final NullPointerException npe) {
+            // Expected...
+        }
+    }
+
+    @Test
+    public void testDeflateAfterReuse() throws DataFormatException {
+        final ZlibPool pool = new ZlibPool(1);
+        final byte[] content = "This is a test string, this is a test string...".getBytes(StandardCharsets.UTF_8);
+
+        // Use it once at one level, then again at another, the second result should be unaffected by the first...
+        final ZlibPool.Compressor compressor = pool.borrowCompressor();
+        compressor.deflate(PREFIX, ByteBuffer.wrap(new byte[10000]), Deflater.NO_COMPRESSION);
+        pool.release(compressor);
+
+        final ZlibPool.Compressor reused = pool.borrowCompressor();
+        final ByteBuffer deflated = reused.deflate(PREFIX, ByteBuffer.wrap(content), Deflater.BEST_COMPRESSION);
+
+        assertThat(deflated.get(0), is((byte) 'A'));
+        assertThat(inflate(deflated), is(equalTo(content)));
+    }
+
+    @Test
+    public void testDeflateGrowsBuffer() throws DataFormatException {
+        final ZlibPool pool = new ZlibPool(1);
+        final byte[] content = new byte[10000];
+        new Random(7L).nextBytes(content);
+
+        // Random content doesn't compress, so won't fit in the estimated size...
+        final ZlibPool.Compressor compressor = pool.borrowCompressor();
+        assertThat(inflate(compressor.deflate(PREFIX, ByteBuffer.wrap(content), Deflater.DEFAULT_COMPRESSION)), is(equalTo(content)));
+    }
+
+    @Test
+    public void testLargeBuffersAreDropped() {
+        final ZlibPool pool = new ZlibPool(1);
+
+        final ZlibPool.Compressor compressor = pool.borrowCompressor();
+        compressor.deflate(PREFIX, ByteBuffer.wrap(new byte[4 * ZlibPool.MAX_RETAINED_BUFFER]), Deflater.NO_COMPRESSION);
+        assertThat(compressor.buffer.length, is(greaterThan(ZlibPool.MAX_RETAINED_BUFFER)));
+
+        pool.release(compressor);
+        assertThat(compressor.buffer.length, is(lessThanOrEqualTo(ZlibPool.MAX_RETAINED_BUFFER)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCapacity() {
+        new ZlibPool(0);
+    }
+
+    private static byte[] inflate(final ByteBuffer deflated) throws DataFormatException {
+        final Inflater inflater = new Inflater();
+
+        try {
+            inflater.setInput(deflated.array(), PREFIX.length, deflated.limit() - PREFIX.length);
+            final byte[] inflated = new byte[20000];
+            final int length = inflater.inflate(inflated);
+            assertThat(inflater.finished(), is(true));
+            return Arrays.copyOf(inflated, length);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
@@ -14,7 +14,9 @@
 
 package com.autonomy.aci.client.util;
 
+import com.autonomy.aci.client.TestEncryptionCodec;
 import com.autonomy.aci.client.transport.EncryptionCodecException;
+import com.autonomy.aci.client.transport.impl.AbstractEncryptionCodec;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -85,4 +87,42 @@ public class EncryptionCodecUtilsTest {
         assertThat("String incorrect", bytes, is(equalTo(result)));
     }
 
+    @Test
+    public void testEncryptDecrypt() throws EncryptionCodecException {
+        final TestEncryptionCodec codec = new TestEncryptionCodec();
+
+        assertThat(EncryptionCodecUtils.getInstance().encrypt(codec, "first", "UTF-8"), is(equalTo("Zmlyc3Q=")));
+        assertThat(EncryptionCodecUtils.getInstance().decrypt(codec, "Zmlyc3Q=", "UTF-8"), is(equalTo("first")));
+    }
+
+    @Test
+    public void testEncryptDecryptStreamingCodec() throws EncryptionCodecException {
+        final AbstractEncryptionCodec codec = new AbstractEncryptionCodec() {
+            @Override
+            protected byte[] encryptInternal(final byte[] bytes) {
+                return bytes;
+            }
+
+            @Override
+            protected byte[] decryptInternal(final byte[] bytes) {
+                return bytes;
+            }
+        };
+
+        final String encrypted = EncryptionCodecUtils.getInstance().encrypt(codec, "action=query&text=caf\u00e9", "UTF-8");
+        assertThat(EncryptionCodecUtils.getInstance().decrypt(codec, encrypted, "UTF-8"), is(equalTo("action=query&text=caf\u00e9")));
+    }
+
+    @Test(expected = EncryptionCodecException.class)
+    public void testEncryptBadCharsetName() throws EncryptionCodecException {
+        EncryptionCodecUtils.getInstance().encrypt(new TestEncryptionCodec(), string, "wibble");
+        fail("Should have thrown an exception");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testDecryptNullCharsetName() throws EncryptionCodecException {
+        EncryptionCodecUtils.getInstance().decrypt(new TestEncryptionCodec(), string, null);
+        fail("Should have thrown an exception");
+    }
+
 }
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.util;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static com.autonomy.aci.client.util.JsonTokenizer.Token.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * JUnit tests for <code>com.autonomy.aci.client.util.JsonTokenizer</code>.
+ */
+public class JsonTokenizerTest {
+
+    /**
+     * @return Each token, followed by its text if it has any
+     */
+    private static List<Object> tokenize(final Reader reader) throws IOException {
+        final JsonTokenizer tokenizer = new JsonTokenizer(reader);
+        final List<Object> tokens = new ArrayList<>();
+        while (tokenizer.hasNext()) {
+            tokens.add(tokenizer.next());
+            if (tokenizer.getText() != null) {
+                tokens.add(tokenizer.getText());
+            }
+        }
+        return tokens;
+    }
+
+    private static List<Object> tokenize(final String json) throws IOException {
+        return tokenize(new StringReader(json));
+    }
+
+    private static void assertInvalid(final String json) {
+        try {
+            tokenize(json);
+            fail("Should have thrown an IOException for " + json);
+        } catch (final IOException ioe) {
+            // Expected...
+        }
+    }
+
+    @Test
+    public void testTokens() throws IOException {
+        assertThat(tokenize(" {\"a\" : [1, -2.5e3, \"x\", true, false, null, {}, []], \"b\":{\"c\":\"d\"}} "), contains(
+                START_OBJECT, FIELD_NAME, "a", START_ARRAY, NUMBER, "1", NUMBER, "-2.5e3", STRING, "x", TRUE, "true",
+                FALSE, "false", NULL, "null", START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, END_ARRAY,
+                FIELD_NAME, "b", START_OBJECT, FIELD_NAME, "c", STRING, "d", END_OBJECT, END_OBJECT));
+    }
+
+    @Test
+    public void testScalarDocument() throws IOException {
+        assertThat(tokenize("42"), contains(NUMBER, "42"));
+        assertThat(tokenize("\"text\""), contains(STRING, "text"));
+    }
+
+    @Test
+    public void testEscapes() throws IOException {
+        assertThat(tokenize("[\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u00e9\\u20AC\"]"), contains(START_ARRAY, STRING, "\"\\/\b\f\n\r\t\u00e9\u20ac", END_ARRAY));
+    }
+
+    @Test
+    public void testAcrossBufferBoundaries() throws IOException {
+        final StringBuilder json = new StringBuilder("[");
+        final StringBuilder longString = new StringBuilder();
+        for (int ii = 0; ii < 10000; ii++) {
+            longString.append((char) ('a' + (ii % 26)));
+            if (ii % 1000 == 0) {
+                longString.append("\\n");
+            }
+        }
+        json.append('"').append(longString).append("\",12345678901]");
+
+        // A reader that only returns a few characters at a time...
+        final Reader trickle = new StringReader(json.toString()) {
+            @Override
+            public int read(final char[] buffer, final int offset, final int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 7));
+            }
+        };
+
+        final List<Object> tokens = tokenize(trickle);
+        assertThat(tokens, hasSize(6));
+        assertThat((String) tokens.get(2), is(equalTo(longString.toString().replace("\\n", "\n"))));
+        assertThat(tokens.get(4), is(equalTo("12345678901")));
+    }
+
+    @Test
+    public void testNumberValues() throws IOException {
+        final JsonTokenizer tokenizer = new JsonTokenizer(new StringReader("[12, 12345678901, -0.5, \"7\"]"));
+        tokenizer.next();
+
+        tokenizer.next();
+        assertThat(tokenizer.getIntValue(), is(12));
+        tokenizer.next();
+        assertThat(tokenizer.getLongValue(), is(12345678901L));
+        tokenizer.next();
+        assertThat(tokenizer.getDoubleValue(), is(-0.5));
+        tokenizer.next();
+        assertThat(tokenizer.getIntValue(), is(7));
+    }
+
+    @Test
+    public void testDepthAndSkipValue() throws IOException {
+        final JsonTokenizer tokenizer = new JsonTokenizer(new StringReader("{\"a\": {\"b\": [1, {\"c\": 2}]}, \"d\": 3}"));
+        assertThat(tokenizer.getDepth(), is(0));
+        assertThat(tokenizer.next(), is(START_OBJECT));
+        assertThat(tokenizer.getDepth(), is(1));
+        assertThat(tokenizer.next(), is(FIELD_NAME));
+        assertThat(tokenizer.next(), is(START_OBJECT));
+        assertThat(tokenizer.getDepth(), is(2));
+
+        tokenizer.skipValue();
+        assertThat(tokenizer.getToken(), is(END_OBJECT));
+        assertThat(tokenizer.getDepth(), is(1));
+
+        assertThat(tokenizer.next(), is(FIELD_NAME));
+        assertThat(tokenizer.textEquals("d"), is(true));
+        assertThat(tokenizer.textEquals("e"), is(false));
+        assertThat(tokenizer.next(), is(NUMBER));
+
+        // Skipping a scalar doesn't move...
+        tokenizer.skipValue();
+        assertThat(tokenizer.getToken(), is(NUMBER));
+
+        assertThat(tokenizer.next(), is(END_OBJECT));
+        assertThat(tokenizer.hasNext(), is(false));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNextAfterEnd() throws IOException {
+        final JsonTokenizer tokenizer = new JsonTokenizer(new StringReader("{}"));
+        tokenizer.next();
+        tokenizer.next();
+        tokenizer.next();
+    }
+
+    @Test
+    public void testInvalid() {
+        assertInvalid("{\"a\" 1}");
+        assertInvalid("{\"a\": 1,}");
+        assertInvalid("[1,]");
+        assertInvalid("[1 2]");
+        assertInvalid("{\"a\": 1]");
+        assertInvalid("[1}");
+        assertInvalid("{a: 1}");
+        assertInvalid("[tru]");
+        assertInvalid("[\"\\x\"]");
+        assertInvalid("[\"\\u12g4\"]");
+        assertInvalid("@");
+    }
+
+    @Test
+    public void testTruncated() {
+        for (final String json : new String[]{"", "{", "{\"a\"", "{\"a\":", "[1", "[\"abc", "[nul"}) {
+            try {
+                tokenize(json);
+                fail("Should have thrown an EOFException for " + json);
+            } catch (final IOException ioe) {
+                assertThat(json, ioe, is(instanceOf(EOFException.class)));
+            }
+        }
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullReader() {
+        new JsonTokenizer(null);
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+
+package com.autonomy.aci.client.util;
+
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.apache.hc.core5.net.URIBuilder;
+import org.apache.hc.core5.net.WWWFormCodec;
+import org.junit.Test;
+
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ParameterEncoderTest {
+
+    private static final String ALL_CHARACTERS;
+
+    static {
+        final StringBuilder builder = new StringBuilder();
+        for (char c = 0; c < 0x100; c++) {
+            builder.append(c);
+        }
+        ALL_CHARACTERS = builder.append("é€😀").toString();
+    }
+
+    @Test
+    public void testAdd() {
+        final ParameterEncoder encoder = new ParameterEncoder(StandardCharsets.UTF_8, false);
+        final String expected = "action=query&text=cats%20%26%20dogs&print";
+        assertThat(encoder.add("action", "query").add("text", "cats & dogs").add("print", null).toString(), is(expected));
+        assertThat(encoder.size(), is(expected.length()));
+    }
+
+    @Test
+    public void testBlankAsPlus() {
+        final ParameterEncoder encoder = new ParameterEncoder(StandardCharsets.UTF_8, true);
+        assertThat(encoder.isBlankAsPlus(), is(true));
+        assertThat(encoder.add("text", "cats + dogs").toString(), is("text=cats+%2B+dogs"));
+    }
+
+    @Test
+    public void testEmptyValue() {
+        assertThat(new ParameterEncoder(StandardCharsets.UTF_8, false).add("text", "").toString(), is("text="));
+    }
+
+    @Test
+    public void testMatchesURIBuilder() throws URISyntaxException {
+        // Query strings are always UTF-8, whatever charset the server uses...
+        final ParameterEncoder encoder = new ParameterEncoder(StandardCharsets.UTF_8, false);
+        encoder.add("all", ALL_CHARACTERS).add(ALL_CHARACTERS, "name").add("unset", null);
+
+        final String expected = new URIBuilder().addParameter("all", ALL_CHARACTERS)
+                .addParameter(ALL_CHARACTERS, "name").addParameter("unset", null).build().getRawQuery();
+        assertThat(encoder.toString(), is(equalTo(expected)));
+    }
+
+    @Test
+    public void testMatchesWWWFormCodec() {
+        for (final String charsetName : Arrays.asList("UTF-8", "ISO-8859-1", "US-ASCII", "windows-1252", "UTF-16")) {
+            final Charset charset = Charset.forName(charsetName);
+            final ParameterEncoder encoder = new ParameterEncoder(charset, true);
+            encoder.add("all", ALL_CHARACTERS).add(ALL_CHARACTERS, "name").add("unset", null);
+
+            final String expected = WWWFormCodec.format(Arrays.asList(
+                    new BasicNameValuePair("all", ALL_CHARACTERS),
+                    new BasicNameValuePair(ALL_CHARACTERS, "name"),
+                    new BasicNameValuePair("unset", null)
+            ), charset);
+            assertThat(charsetName, encoder.toString(), is(equalTo(expected)));
+            assertThat(charsetName, encoder.getCharset(), is(sameInstance(charset)));
+        }
+    }
+
+    @Test
+    public void testBufferGrows() {
+        final ParameterEncoder encoder = new ParameterEncoder(StandardCharsets.UTF_8, false, 0);
+        encoder.add("text", "€€€€").add("ascii", "abcdefghijklmnopqrstuvwxyz");
+
+        assertThat(encoder.toString(), is("text=%E2%82%AC%E2%82%AC%E2%82%AC%E2%82%AC&ascii=abcdefghijklmnopqrstuvwxyz"));
+    }
+
+    @Test
+    public void testReset() {
+        final ParameterEncoder encoder = new ParameterEncoder(StandardCharsets.UTF_8, false);
+        encoder.add("action", "query");
+        encoder.reset();
+        assertThat(encoder.size(), is(0));
+
+        // There should be no separator at the start after a reset...
+        assertThat(encoder.add("action", "getstatus").toString(), is("action=getstatus"));
+    }
+
+    @Test
+    public void testToByteArray() {
+        final ParameterEncoder encoder = new ParameterEncoder(StandardCharsets.ISO_8859_1, true);
+        encoder.add("text", "café");
+
+        final byte[] bytes = encoder.toByteArray();
+        assertThat(new String(bytes, StandardCharsets.US_ASCII), is("text=caf%E9"));
+
+        // It should be a copy...
+        encoder.add("more", "text");
+        assertThat(bytes.length, is(11));
+    }
+
+    @Test
+    public void testAppend() {
+        final ParameterEncoder encoder = new ParameterEncoder(StandardCharsets.UTF_8, false, 4);
+        encoder.append("action=query&".getBytes(StandardCharsets.US_ASCII));
+        encoder.encode("text");
+        assertThat(encoder.toString(), is("action=query&text"));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullCharset() {
+        new ParameterEncoder(null, false);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCapacity() {
+        new ParameterEncoder(StandardCharsets.UTF_8, false, -1);
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.util;
+
+import com.autonomy.aci.client.transport.AciParameter;
+import com.autonomy.aci.client.transport.ActionParameter;
+import com.autonomy.aci.client.transport.InputStreamActionParameter;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ParameterIndexTest {
+
+    @Test
+    public void testHashIgnoresCase() {
+        assertThat(ParameterIndex.hash("DatabaseMatch"), is(ParameterIndex.hash("databasematch")));
+        assertThat(ParameterIndex.hash("DatabaseMatch"), is(ParameterIndex.hash("DATABASEMATCH")));
+        assertThat(ParameterIndex.hash(null), is(0));
+    }
+
+    @Test
+    public void testGet() {
+        final ParameterIndex index = new ParameterIndex();
+        final AciParameter text = new AciParameter("Text", "cats");
+        index.add(new AciParameter("Action", "Query"));
+        index.add(text);
+
+        assertThat(index.get("TEXT"), is(sameInstance(text)));
+        assertThat(index.get("text"), is(sameInstance(text)));
+        assertThat(index.get("Start"), is(nullValue()));
+        assertThat(index.get(null), is(nullValue()));
+    }
+
+    @Test
+    public void testCollidingNames() {
+        // These have the same hash, but aren't the same name...
+        assertThat(ParameterIndex.hash("a_"), is(ParameterIndex.hash("b@")));
+
+        final ParameterIndex index = new ParameterIndex();
+        final AciParameter first = new AciParameter("a_", "first");
+        final AciParameter second = new AciParameter("b@", "second");
+        index.add(first);
+        index.add(second);
+
+        assertThat(index.get("A_"), is(sameInstance(first)));
+        assertThat(index.get("B@"), is(sameInstance(second)));
+
+        assertThat(index.remove(new AciParameter("A_", null)), is(true));
+        assertThat(index.get("a_"), is(nullValue()));
+        assertThat(index.get("b@"), is(sameInstance(second)));
+        assertThat(index.contains(second), is(true));
+    }
+
+    @Test
+    public void testParametersOfDifferentTypesWithTheSameName() {
+        final ParameterIndex index = new ParameterIndex();
+        final InputStreamActionParameter file = new InputStreamActionParameter("File", new ByteArrayInputStream(new byte[0]));
+        final AciParameter aciParameter = new AciParameter("file", "name");
+
+        // They aren't equal, so they can both be added, as with a LinkedHashSet...
+        assertThat(index.add(file), is(true));
+        assertThat(index.add(aciParameter), is(true));
+        assertThat(index.size(), is(2));
+
+        // The first one added is found by name, but only the AciParameter is found as one...
+        assertThat(index.get("FILE"), is(sameInstance(file)));
+        assertThat(index.containsAciParameter("FILE"), is(true));
+        assertThat(index.removeAciParameter("FILE"), is(true));
+        assertThat(index.containsAciParameter("FILE"), is(false));
+        assertThat(index.removeAciParameter("FILE"), is(false));
+        assertThat(index, contains((ActionParameter<?>) file));
+    }
+
+    @Test
+    public void testRemoveEqual() {
+        final ParameterIndex index = new ParameterIndex();
+        final AciParameter text = new AciParameter("Text", "cats");
+        index.add(text);
+
+        assertThat(index.removeEqual(new AciParameter("TEXT", "dogs")), is(sameInstance(text)));
+        assertThat(index.removeEqual(new AciParameter("TEXT", "dogs")), is(nullValue()));
+        assertThat(index.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testNullElement() {
+        final ParameterIndex index = new ParameterIndex();
+        index.add(new AciParameter("Action", "Query"));
+
+        assertThat(index.contains(null), is(false));
+        assertThat(index.add(null), is(true));
+        assertThat(index.add(null), is(false));
+        assertThat(index.contains(null), is(true));
+        assertThat(index.size(), is(2));
+        assertThat(index, contains(new AciParameter("Action", null), null));
+
+        assertThat(index.remove(null), is(true));
+        assertThat(index.contains(null), is(false));
+        assertThat(index.size(), is(1));
+    }
+
+    @Test
+    public void testContainsOtherTypes() {
+        final ParameterIndex index = new ParameterIndex();
+        index.add(new AciParameter("Action", "Query"));
+
+        assertThat(index.contains("Action"), is(false));
+        assertThat(index.remove("Action"), is(false));
+    }
+
+    @Test
+    public void testClear() {
+        final ParameterIndex index = new ParameterIndex();
+        index.add(new AciParameter("Action", "Query"));
+        index.add(null);
+        index.clear();
+
+        assertThat(index.isEmpty(), is(true));
+        assertThat(index.contains(null), is(false));
+        assertThat(index.get("Action"), is(nullValue()));
+        assertThat(index.iterator().hasNext(), is(false));
+
+        index.add(new AciParameter("Action", "GetStatus"));
+        assertThat(index.get("action").getValue(), is("GetStatus"));
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        final ParameterIndex index = new ParameterIndex();
+        for (int ii = 0; ii < 5; ii++) {
+            index.add(new AciParameter("Parameter" + ii, ii));
+        }
+
+        final Iterator<ActionParameter<?>> iterator = index.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getName().matches(".*[13]")) {
+                iterator.remove();
+            }
+        }
+
+        assertThat(index.size(), is(3));
+        assertThat(index.get("Parameter1"), is(nullValue()));
+        assertThat(index.get("Parameter2").getValue(), is("2"));
+        assertThat(names(index), contains("Parameter0", "Parameter2", "Parameter4"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIteratorRemoveTwice() {
+        final ParameterIndex index = new ParameterIndex();
+        index.add(new AciParameter("Action", "Query"));
+
+        final Iterator<ActionParameter<?>> iterator = index.iterator();
+        iterator.next();
+        iterator.remove();
+        iterator.remove();
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIteratorConcurrentModification() {
+        final ParameterIndex index = new ParameterIndex();
+        index.add(new AciParameter("Action", "Query"));
+        index.add(new AciParameter("Text", "cats"));
+
+        for (final ActionParameter<?> parameter : index) {
+            index.add(new AciParameter("Start", 1));
+        }
+    }
+
+    @Test
+    public void testSameBehaviourAsLinkedHashSet() {
+        // Randomly add and remove parameters, so that the arrays are both compacted and grown...
+        final Random random = new Random(42L);
+        final ParameterIndex index = new ParameterIndex();
+        final Set<ActionParameter<?>> expected = new LinkedHashSet<>();
+
+        for (int ii = 0; ii < 10000; ii++) {
+            final String name = ((random.nextBoolean()) ? "parameter" : "PARAMETER") + random.nextInt(100);
+            final AciParameter parameter = new AciParameter(name, ii);
+
+            if (random.nextInt(3) == 0) {
+                assertThat(index.remove(parameter), is(expected.remove(parameter)));
+            } else {
+                assertThat(index.add(parameter), is(expected.add(parameter)));
+            }
+
+            assertThat(index.size(), is(expected.size()));
+        }
+
+        assertThat(new ArrayList<>(index), is(new ArrayList<>(expected)));
+        assertThat(index, is(equalTo(expected)));
+        assertThat(index.hashCode(), is(expected.hashCode()));
+
+        for (final ActionParameter<?> parameter : expected) {
+            assertThat(index.get(parameter.getName().toUpperCase(Locale.ENGLISH)), is(sameInstance(parameter)));
+        }
+    }
+
+    private static List<String> names(final Iterable<ActionParameter<?>> parameters) {
+        final List<String> names = new ArrayList<>();
+        parameters.forEach(parameter -> names.add(parameter.getName()));
+        return names;
+    }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2006-2018 Open Text.
+ *
+ * Licensed under the MIT License (the "License"); you may not use this file
+ * except in compliance with the License.
+ *
+ * The only warranties for products and services of Open Text and its affiliates
+ * and licensors ("Open Text") are as may be set forth in the express warranty
+ * statements accompanying such products and services. Nothing herein should be
+ * construed as constituting an additional warranty. Open Text shall not be
+ * liable for technical or editorial errors or omissions contained herein. The
+ * information contained herein is subject to change without notice.
+ */
+package com.autonomy.aci.client.util;
+
+import com.autonomy.aci.client.services.AciConstants;
+import com.autonomy.aci.client.transport.AciParameter;
+import com.autonomy.aci.client.transport.ActionParameter;
+import com.autonomy.aci.client.transport.InputStreamActionParameter;
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.apache.hc.core5.net.URIBuilder;
+import org.apache.hc.core5.net.WWWFormCodec;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PreparedActionTest {
+
+    private static final String ALL_CHARACTERS;
+
+    static {
+        final StringBuilder builder = new StringBuilder();
+        for (char c = 1; c < 0x100; c++) {
+            builder.append(c);
+        }
+        ALL_CHARACTERS = builder.append("€😀").toString();
+    }
+
+    private final PreparedAction query = new PreparedAction(new ActionParameters(
+            new AciParameter("Print", "all fields"),
+            new AciParameter(AciConstants.PARAM_ACTION, "Query"),
+            new AciParameter("Unset", null)
+    ), "Text", "Start");
+
+    @Test
+    public void testToQueryString() throws URISyntaxException {
+        final PreparedAction.Parameters parameters = query.bind("cats & dogs", 11);
+
+        assertThat(parameters.toQueryString(), is("Action=Query&Print=all%20fields&Text=cats%20%26%20dogs&Start=11"));
+        assertThat(parameters.toQueryString(), is(uriBuilderQuery(parameters)));
+    }
+
+    @Test
+    public void testToFormBody() {
+        final PreparedAction.Parameters parameters = query.bind("cats & dogs", 11);
+
+        assertThat(parameters.toFormBody(StandardCharsets.UTF_8), is("Action=Query&Print=all+fields&Text=cats+%26+dogs&Start=11"));
+        assertThat(parameters.toFormBody(StandardCharsets.UTF_8), is(wwwFormCodecBody(parameters, StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testEncodingMatchesHttpComponents() throws URISyntaxException {
+        final PreparedAction.Parameters parameters = new PreparedAction(new ActionParameters(
+                new AciParameter(AciConstants.PARAM_ACTION, ALL_CHARACTERS),
+                new AciParameter("Static " + ALL_CHARACTERS, ALL_CHARACTERS)
+        ), "Text " + ALL_CHARACTERS).bind("été " + ALL_CHARACTERS);
+
+        assertThat(parameters.toQueryString(), is(uriBuilderQuery(parameters)));
+
+        for (final Charset charset : Arrays.asList(StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII, Charset.forName("windows-1252"))) {
+            assertThat(parameters.toFormBody(charset), is(wwwFormCodecBody(parameters, charset)));
+        }
+    }
+
+    @Test
+    public void testNullValuesNotSent() throws URISyntaxException {
+        final PreparedAction.Parameters parameters = query.bind(null, 11);
+
+        assertThat(parameters.toQueryString(), is("Action=Query&Print=all%20fields&Start=11"));
+        assertThat(parameters.toQueryString(), is(uriBuilderQuery(parameters)));
+        assertThat(parameters.toFormBody(StandardCharsets.UTF_8), is("Action=Query&Print=all+fields&Start=11"));
+    }
+
+    @Test
+    public void testParameters() {
+        final PreparedAction.Parameters parameters = query.bind("cats", 11);
+
+        assertThat(parameters.getPreparedAction(), is(sameInstance(query)));
+        assertThat(parameters.size(), is(5));
+        assertThat(parameters, contains(
+                new AciParameter(AciConstants.PARAM_ACTION, "Query"),
+                new AciParameter("Print", "all fields"),
+                new AciParameter("Unset", null),
+                new AciParameter("Text", "cats"),
+                new AciParameter("Start", 11)
+        ));
+
+        final List<Object> values = new ArrayList<>();
+        parameters.forEach(parameter -> values.add(parameter.getValue()));
+        assertThat(values, contains("Query", "all fields", null, "cats", "11"));
+
+        // It should be equal to the same parameters in any other set...
+        final ActionParameters equivalent = new ActionParameters(parameters);
+        assertThat(parameters, is(equalTo((Object) equivalent)));
+        assertThat(parameters.hashCode(), is(equivalent.hashCode()));
+    }
+
+    @Test
+    public void testContains() {
+        final PreparedAction.Parameters parameters = query.bind("cats", null);
+
+        // Parameters are looked up by name, ignoring case, like any other set of them...
+        assertThat(parameters.contains(new AciParameter("action", "Other")), is(true));
+        assertThat(parameters.contains(new AciParameter("PRINT", null)), is(true));
+        assertThat(parameters.contains(new AciParameter("unset", null)), is(true));
+        assertThat(parameters.contains(new AciParameter("Text", null)), is(true));
+        assertThat(parameters.contains(new AciParameter("start", null)), is(true));
+        assertThat(parameters.contains(new AciParameter("Combine", "simple")), is(false));
+        assertThat(parameters.contains(new AciParameter("Print", "all fields") {}), is(true));
+        assertThat(parameters.contains("Print"), is(false));
+        assertThat(parameters.contains(null), is(false));
+
+        assertThat(parameters.containsAll(Arrays.asList(new AciParameter("Text", null), new AciParameter("Start", null))), is(true));
+        assertThat(new ActionParameters(parameters).equals(parameters), is(true));
+        assertThat(parameters.equals(new ActionParameters(new AciParameter(AciConstants.PARAM_ACTION, "Query"))), is(false));
+    }
+
+    @Test
+    public void testIterator() {
+        final Iterator<ActionParameter<?>> iterator = query.bind("cats", 11).iterator();
+        for (int ii = 0; ii < 5; ii++) {
+            assertThat(iterator.hasNext(), is(true));
+            iterator.next();
+        }
+
+        assertThat(iterator.hasNext(), is(false));
+        try {
+            iterator.next();
+            fail("Should have thrown a NoSuchElementException");
+        } catch (final NoSuchElementException e) {
+            // Expected...
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIteratorUnmodifiable() {
+        final Iterator<ActionParameter<?>> iterator = query.bind("cats", 11).iterator();
+        iterator.next();
+        iterator.remove();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testParametersUnmodifiable() {
+        query.bind("cats", 11).add(new AciParameter("Combine", "simple"));
+    }
+
+    @Test
+    public void testGetters() {
+        assertThat(query.getAction(), is("Query"));
+        assertThat(query.getVariableNames(), contains("Text", "Start"));
+    }
+
+    @Test
+    public void testStaticParametersCopied() {
+        final AciParameter print = new AciParameter("Print", "all");
+        final PreparedAction preparedAction = new PreparedAction(new ActionParameters(new AciParameter(AciConstants.PARAM_ACTION, "Query"), print));
+        print.setValue("none");
+
+        assertThat(preparedAction.bind().toQueryString(), is("Action=Query&Print=all"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoAction() {
+        new PreparedAction(Collections.singleton(new AciParameter("Text", "cats")), "Start");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPostParameter() {
+        new PreparedAction(new ActionParameters(
+                new AciParameter(AciConstants.PARAM_ACTION, "Query"),
+                new InputStreamActionParameter("File", new ByteArrayInputStream(new byte[0]))
+        ));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVariableNameClash() {
+        new PreparedAction(new ActionParameters("Query"), "text", "Text");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVariableNameIsStatic() {
+        new PreparedAction(new ActionParameters("Query"), "ACTION");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBlankVariableName() {
+        new PreparedAction(new ActionParameters("Query"), " ");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBindWrongNumberOfValues() {
+        query.bind("cats");
+    }
+
+    private static List<NameValuePair> toNameValuePairs(final PreparedAction.Parameters parameters) {
+        final List<NameValuePair> pairs = new ArrayList<>();
+        for (final ActionParameter<?> parameter : parameters) {
+            if (parameter.getValue() instanceof String) {
+                pairs.add(new BasicNameValuePair(parameter.getName(), (String) parameter.getValue()));
+            }
+        }
+        return pairs;
+    }
+
+    private static String uriBuilderQuery(final PreparedAction.Parameters parameters) throws URISyntaxException {
+        return new URIBuilder()
+                .setScheme("http")
+                .setHost("localhost")
+                .setPort(9000)
+                .setPath("/")
+                .setParameters(toNameValuePairs(parameters))
+                .build()
+                .getRawQuery();
+    }
+
+    private static String wwwFormCodecBody(final PreparedAction.Parameters parameters, final Charset charset) {
+        return WWWFormCodec.format(toNameValuePairs(parameters), charset);
+    }
+
+}